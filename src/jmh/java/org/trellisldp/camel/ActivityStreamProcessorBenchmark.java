@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the ActivityStreamProcessor, using Trellis-shaped notifications of several sizes.
+ *
+ * <p>The small payload holds only the extracted fields, the medium payload adds the JSON-LD context
+ * and the other members Trellis emits, and the large payload adds a long list of additional members.
+ * Note that {@code mapBody} starts from an already converted {@code Map}: the cost of the JSON
+ * data format that would produce it on a real route is not included. The {@code metrics} parameter
+ * shows the cost of collecting {@link ActivityStreamMetrics}, and {@code streamingEvent} attaches an
+ * {@link ActivityStreamEvent} instead of writing the individual headers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActivityStreamProcessorBenchmark {
+
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private CamelContext context;
+
+    private Map<String, Object> map;
+
+    private byte[] json;
+
+    private final ActivityStreamProcessor processor = new ActivityStreamProcessor();
+
+    private final ActivityStreamProcessor streaming = new ActivityStreamProcessor();
+
+    private final ActivityStreamProcessor event = new ActivityStreamProcessor();
+
+    @Setup
+    public void setup() throws Exception {
+        context = new DefaultCamelContext();
+        context.start();
+        streaming.setStreaming(true);
+        event.setStreaming(true);
+        event.setEvent(true);
+        event.setHeaders(false);
+        if (metrics) {
+            final ActivityStreamMetrics instance = new ActivityStreamMetrics();
+            processor.setMetrics(instance);
+            streaming.setMetrics(instance);
+            event.setMetrics(instance);
+        }
+
+        final int extra = "small".equals(size) ? 0 : "medium".equals(size) ? 4 : 200;
+        final StringBuilder builder = new StringBuilder("{");
+        map = new HashMap<>();
+        if (extra > 0) {
+            builder.append("\"@context\":[\"https://www.w3.org/ns/activitystreams\"],")
+                .append("\"published\":\"2017-06-20T12:00:00Z\",");
+            map.put("@context", asList("https://www.w3.org/ns/activitystreams"));
+            map.put("published", "2017-06-20T12:00:00Z");
+            for (int i = 0; i < extra; i++) {
+                builder.append("\"extra").append(i).append("\":{\"value\":\"").append(i).append("\"},");
+                map.put("extra" + i, "" + i);
+            }
+        }
+        builder.append("\"id\":\"urn:uuid:03f49ab3-b8b9-4a8c-8c4e-bb0b4a2d6ef1\",")
+            .append("\"type\":[\"Update\",\"http://www.w3.org/ns/prov#Activity\"],")
+            .append("\"actor\":[\"http://example.org/users/1\"],")
+            .append("\"object\":{\"id\":\"http://localhost:8080/container/resource\",")
+            .append("\"type\":[\"http://www.w3.org/ns/ldp#RDFSource\"]}}");
+        json = builder.toString().getBytes(UTF_8);
+
+        final Map<String, Object> object = new HashMap<>();
+        object.put("id", "http://localhost:8080/container/resource");
+        object.put("type", asList("http://www.w3.org/ns/ldp#RDFSource"));
+        map.put("id", "urn:uuid:03f49ab3-b8b9-4a8c-8c4e-bb0b4a2d6ef1");
+        map.put("type", asList("Update", "http://www.w3.org/ns/prov#Activity"));
+        map.put("actor", asList("http://example.org/users/1"));
+        map.put("object", object);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.stop();
+    }
+
+    @Benchmark
+    public Exchange mapBody() throws IOException {
+        final Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setBody(map);
+        processor.process(exchange);
+        return exchange;
+    }
+
+    @Benchmark
+    public Exchange streamingBody() throws IOException {
+        final Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setBody(json);
+        streaming.process(exchange);
+        return exchange;
+    }
+
+    @Benchmark
+    public Exchange streamingEvent() throws IOException {
+        final Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setBody(json);
+        event.process(exchange);
+        return exchange;
+    }
+}
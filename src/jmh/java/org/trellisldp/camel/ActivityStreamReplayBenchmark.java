@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A benchmark for {@link ActivityStreamReplay}, replaying a log of Trellis-shaped notifications to a
+ * route that does nothing with them. The score is the number of events replayed per millisecond.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ActivityStreamReplayBenchmark {
+
+    private static final int EVENTS = 200_000;
+
+    private CamelContext context;
+
+    private Path log;
+
+    private ActivityStreamReplay replay;
+
+    @Setup
+    public void setup() throws Exception {
+        log = Files.createTempFile("replay", ".ndjson");
+        try (BufferedWriter writer = Files.newBufferedWriter(log, UTF_8)) {
+            for (int i = 0; i < EVENTS; i++) {
+                writer.write("{\"@context\":\"https://www.w3.org/ns/activitystreams\",\"id\":\"urn:uuid:" + i +
+                        "\",\"type\":[\"Update\",\"http://www.w3.org/ns/prov#Activity\"]," +
+                        "\"actor\":[\"http://example.org/users/1\"],\"published\":\"2017-06-20T12:00:00Z\"," +
+                        "\"object\":{\"id\":\"http://localhost:8080/container/resource/" + i +
+                        "\",\"type\":[\"http://www.w3.org/ns/ldp#RDFSource\"]}}\n");
+            }
+        }
+        context = new DefaultCamelContext();
+        context.addRoutes(new RouteBuilder() {
+            @Override
+            public void configure() {
+                from("direct:sink").process(exchange -> { });
+            }
+        });
+        context.start();
+        replay = new ActivityStreamReplay("direct:sink", singletonList(log));
+        replay.setCamelContext(context);
+        replay.start();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        replay.stop();
+        context.stop();
+        Files.deleteIfExists(log);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long replayLog() throws IOException {
+        return replay.replay();
+    }
+}
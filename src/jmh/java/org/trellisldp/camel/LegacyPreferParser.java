@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.lang.Integer.parseInt;
+import static java.util.Arrays.asList;
+import static java.util.Arrays.stream;
+import static java.util.Collections.emptyList;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The original split-based Prefer parser, kept as a baseline for {@link PreferParserBenchmark}.
+ */
+final class LegacyPreferParser {
+
+    static Prefer valueOf(final String value) {
+        if (value != null) {
+            final Map<String, String> data = new HashMap<>();
+            final Set<String> params = new HashSet<>();
+            stream(value.split(";")).map(String::trim).map(pref -> pref.split("=", 2)).forEach(x -> {
+                if (x.length == 2) {
+                    data.put(x[0].trim(), x[1].trim());
+                } else {
+                    params.add(x[0].trim());
+                }
+            });
+            final String waitValue = data.get(Prefer.PREFER_WAIT);
+            try {
+                Integer wait = null;
+                if (waitValue != null) {
+                    wait = parseInt(waitValue);
+                }
+                return new Prefer(data.get(Prefer.PREFER_RETURN), parseParameter(data.get(Prefer.PREFER_INCLUDE)),
+                        parseParameter(data.get(Prefer.PREFER_OMIT)), params, data.get(Prefer.PREFER_HANDLING),
+                        wait);
+            } catch (final NumberFormatException ex) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static List<String> parseParameter(final String param) {
+        if (param != null) {
+            return asList(trimQuotes(param).split("\\s+"));
+        }
+        return emptyList();
+    }
+
+    private static String trimQuotes(final String param) {
+        return param.startsWith("\"") && param.endsWith("\"") && param.length() > 1 ?
+            param.substring(1, param.length() - 1) : param;
+    }
+
+    private LegacyPreferParser() {
+        // prevent instantiation
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for parsing single and multi-valued Link headers, as returned by a Trellis server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkBenchmark {
+
+    private static final String SINGLE = "<http://www.w3.org/ns/ldp#BasicContainer>; rel=\"type\"";
+
+    private static final String MULTIPLE = "<http://www.w3.org/ns/ldp#Resource>; rel=\"type\", " +
+        "<http://www.w3.org/ns/ldp#RDFSource>; rel=\"type\", " +
+        "<http://www.w3.org/ns/ldp#BasicContainer>; rel=\"type\", " +
+        "<http://localhost:8080/resource?ext=acl>; rel=\"acl\", " +
+        "<http://localhost:8080/resource>; rel=\"original timegate\", " +
+        "<http://localhost:8080/resource?ext=timemap>; rel=\"timemap\"; type=\"application/link-format\"; " +
+        "from=\"Tue, 20 Jun 2017 12:00:00 GMT\"; until=\"Wed, 21 Jun 2017 12:00:00 GMT\"";
+
+    @Benchmark
+    public Link single() {
+        return new Link(SINGLE);
+    }
+
+    @Benchmark
+    public Link singleWithParams() {
+        final Link link = new Link(SINGLE);
+        link.getParams();
+        return link;
+    }
+
+    @Benchmark
+    public List<Link> multiple() {
+        return Link.parseAll(MULTIPLE);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for parsing and building Prefer headers, using values typical of LDP clients.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreferBenchmark {
+
+    private static final String LDP = "http://www.w3.org/ns/ldp#";
+
+    private static final String TRELLIS = "http://www.trellisldp.org/ns/trellis#";
+
+    @Param({"minimal", "containment", "membership", "audit"})
+    public String header;
+
+    private String value;
+
+    private String[] iris;
+
+    @Setup
+    public void setup() {
+        switch (header) {
+            case "minimal":
+                value = "return=minimal";
+                iris = new String[0];
+                break;
+            case "containment":
+                iris = new String[] {LDP + "PreferContainment"};
+                value = "return=representation; include=\"" + iris[0] + "\"";
+                break;
+            case "membership":
+                iris = new String[] {LDP + "PreferMembership", LDP + "PreferMinimalContainer"};
+                value = "return=representation; include=\"" + String.join(" ", iris) + "\"";
+                break;
+            default:
+                iris = new String[] {TRELLIS + "PreferAudit", TRELLIS + "PreferAccessControl",
+                    LDP + "PreferContainment"};
+                value = "return=representation; omit=\"" + String.join(" ", iris) + "\"; handling=lenient";
+        }
+    }
+
+    @Benchmark
+    public Prefer valueOf() {
+        return Prefer.valueOf(value);
+    }
+
+    @Benchmark
+    public Prefer ofInclude() {
+        return Prefer.ofInclude(iris);
+    }
+
+    @Benchmark
+    public Prefer ofOmit() {
+        return Prefer.ofOmit(iris);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the single-pass Prefer parser with the split-based parser it replaced.
+ *
+ * <p>Run with the GC profiler ({@code gradle jmh}) and compare {@code gc.alloc.rate.norm},
+ * the number of bytes allocated per parsed header.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreferParserBenchmark {
+
+    @Param({"minimal", "include", "omit", "async"})
+    public String shape;
+
+    private String header;
+
+    @Setup
+    public void setup() {
+        switch (shape) {
+            case "minimal":
+                header = "return=minimal";
+                break;
+            case "include":
+                header = "return=representation; include=\"http://www.w3.org/ns/ldp#PreferContainment " +
+                    "http://www.w3.org/ns/ldp#PreferMembership\"";
+                break;
+            case "omit":
+                header = "return=representation; omit=\"http://www.w3.org/ns/ldp#PreferContainment " +
+                    "http://www.trellisldp.org/ns/trellis#PreferAudit\"; handling=lenient";
+                break;
+            default:
+                header = "respond-async; wait=10; depth-noroot";
+        }
+    }
+
+    @Benchmark
+    public Prefer singlePass() {
+        return Prefer.valueOf(header);
+    }
+
+    @Benchmark
+    public Prefer legacy() {
+        return LegacyPreferParser.valueOf(header);
+    }
+}
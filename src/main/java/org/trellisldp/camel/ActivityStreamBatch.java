@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+/**
+ * A columnar view of the values extracted from a batch of ActivityStream messages.
+ *
+ * <p>Each field is held in its own array, indexed by the position of the message in the batch.
+ * Missing values are {@code null}; a message without any type has an empty type array. The values
+ * are read one message at a time, so that the arrays themselves are never exposed outside this
+ * package.
+ *
+ * @author acoburn
+ */
+public final class ActivityStreamBatch {
+
+    private static final String[] NO_TYPES = new String[0];
+
+    private final String[] ids;
+    private final String[] objectIds;
+    private final String[][] types;
+
+    ActivityStreamBatch(final int size) {
+        this.ids = new String[size];
+        this.objectIds = new String[size];
+        this.types = new String[size][];
+    }
+
+    void set(final int index, final String id, final String objectId, final String[] type) {
+        ids[index] = id;
+        objectIds[index] = objectId;
+        types[index] = type != null ? type : NO_TYPES;
+    }
+
+    /**
+     * Get the number of messages in the batch.
+     * @return the batch size
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Get the ActivityStream identifiers, one per message.
+     * @return the identifier column, which is shared with the batch
+     */
+    String[] getIds() {
+        return ids;
+    }
+
+    /**
+     * Get the ActivityStream object identifiers, one per message.
+     * @return the object identifier column, which is shared with the batch
+     */
+    String[] getObjectIds() {
+        return objectIds;
+    }
+
+    /**
+     * Get the ActivityStream types, one array per message.
+     * @return the type column, which is shared with the batch
+     */
+    String[][] getTypes() {
+        return types;
+    }
+
+    /**
+     * Get the ActivityStream identifier of a single message.
+     * @param index the position of the message in the batch
+     * @return the identifier or null if one does not exist
+     */
+    public String getId(final int index) {
+        return ids[index];
+    }
+
+    /**
+     * Get the ActivityStream object identifier of a single message.
+     * @param index the position of the message in the batch
+     * @return the object identifier or null if one does not exist
+     */
+    public String getObjectId(final int index) {
+        return objectIds[index];
+    }
+
+    /**
+     * Get the ActivityStream types of a single message.
+     * @param index the position of the message in the batch
+     * @return a copy of the types, which may be empty
+     */
+    public String[] getTypes(final int index) {
+        return types[index].clone();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+
+/**
+ * A Processor class that extracts values from a batch of Activity Stream messages in a single pass.
+ *
+ * <p>The message body may be a {@code List} of {@code Map} objects, of raw JSON ({@code String} or
+ * {@code byte[]}) messages, or of {@link Exchange} objects, as produced by a grouped aggregation.
+ * The extracted values are set as an {@link ActivityStreamBatch} in the {@code ActivityStreamBatch}
+ * header; the message body is left unchanged.
+ *
+ * @author acoburn
+ */
+public class ActivityStreamBatchProcessor implements Processor {
+
+    public static final String ACTIVITY_STREAM_BATCH = "ActivityStreamBatch";
+
+    /**
+     * Process a batch of ActivityStream messages.
+     * @param exchange the Camel exchange
+     * @throws IOException in the event of an error
+     */
+    public void process(final Exchange exchange) throws IOException {
+        final List messages = exchange.getIn().getBody(List.class);
+        if (messages != null) {
+            exchange.getIn().setHeader(ACTIVITY_STREAM_BATCH, extract(messages));
+        }
+    }
+
+    /**
+     * Extract the ActivityStream values from a list of messages.
+     * @param messages the messages
+     * @return the extracted values
+     * @throws IOException if a raw JSON message is malformed
+     */
+    static ActivityStreamBatch extract(final List<?> messages) throws IOException {
+        final ActivityStreamBatch batch = new ActivityStreamBatch(messages.size());
+        int index = 0;
+        for (final Object message : messages) {
+            final Object body = message instanceof Exchange ? getBody((Exchange) message) : message;
+            if (body instanceof Map || body instanceof String || body instanceof byte[]) {
+                final ActivityStreamFields fields;
+                if (body instanceof Map) {
+                    fields = ActivityStreamProcessor.read((Map<?, ?>) body, false);
+                } else {
+                    fields = body instanceof String ?
+                        ActivityStreamParser.parse((String) body) : ActivityStreamParser.parse((byte[]) body);
+                }
+                batch.set(index, asString(fields.id), asString(fields.objectId), asTypes(fields.type));
+            } else {
+                batch.set(index, null, null, null);
+            }
+            index++;
+        }
+        return batch;
+    }
+
+    private static Object getBody(final Exchange exchange) {
+        final Object body = exchange.getIn().getBody();
+        if (body instanceof Map || body instanceof String || body instanceof byte[]) {
+            return body;
+        }
+        return exchange.getIn().getBody(Map.class);
+    }
+
+    private static String asString(final Object value) {
+        return value instanceof String ? (String) value : null;
+    }
+
+    private static String[] asTypes(final Object value) {
+        if (value instanceof String) {
+            return new String[] {(String) value};
+        } else if (value instanceof List) {
+            final List<?> values = (List<?>) value;
+            int count = 0;
+            for (final Object v : values) {
+                if (v instanceof String) {
+                    count++;
+                }
+            }
+            final String[] types = new String[count];
+            int i = 0;
+            for (final Object v : values) {
+                if (v instanceof String) {
+                    types[i++] = (String) v;
+                }
+            }
+            return types;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_OBJECT_ID;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_TYPE;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.CamelContextAware;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.Producer;
+import org.apache.camel.Service;
+import org.apache.camel.spi.ExecutorServiceManager;
+import org.slf4j.Logger;
+
+/**
+ * A Camel processor that coalesces bursts of ActivityStream events for the same resource.
+ *
+ * <p>Each exchange with an {@code ActivityStreamObjectId} header is held back, and the route stops
+ * processing it. Once no further event for that resource has arrived for the quiet period, a single
+ * event is sent to the target endpoint. This is the most recent event, except that a {@code Delete}
+ * is not replaced by a later event other than a {@code Create}: a resource that is deleted and then
+ * updated is still reported as deleted, while one that is deleted and then re-created is reported
+ * as created. The {@code ActivityStreamCoalesced} header records how many events it replaces. Exchanges without
+ * an object id pass through unchanged. If the exchange carries an {@link ActivityStreamEvent}, its
+ * values are used instead of the headers.
+ *
+ * <p>A maximum delay may be set so that a resource that changes continuously is still emitted
+ * periodically. Pending events are tracked with a hashed timing wheel driven by a single timer
+ * thread. Events are sent from a separate pool of delivery threads, so a slow target does not delay
+ * the timer; events for the same resource are still sent in order. Any pending events are sent when
+ * the processor is stopped.
+ *
+ * <p>Note that the incoming exchange completes as soon as its event is held, before the coalesced
+ * event is delivered. Delivery is therefore at most once: held events are lost if the process
+ * exits abnormally, and an error from the target endpoint is logged rather than returned to the
+ * original caller.
+ *
+ * @author acoburn
+ */
+public class ActivityStreamCoalescingProcessor implements Processor, CamelContextAware, Service {
+
+    public static final String ACTIVITY_STREAM_COALESCED = "ActivityStreamCoalesced";
+
+    public static final long DEFAULT_QUIET_PERIOD = 1000L;
+
+    public static final long DEFAULT_TICK_DURATION = 50L;
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+
+    private static final Logger LOGGER = getLogger(ActivityStreamCoalescingProcessor.class);
+
+    private static final String DELETE = "Delete";
+
+    private static final String CREATE = "Create";
+
+    private final String endpointUri;
+    private final Map<String, TimingWheel.Timeout<Pending>> pending = new HashMap<>();
+    private final Map<String, CompletableFuture<Void>> sending = new HashMap<>();
+
+    private CamelContext camelContext;
+    private long quietPeriod = DEFAULT_QUIET_PERIOD;
+    private long maximumDelay;
+    private long tickDuration = DEFAULT_TICK_DURATION;
+    private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+    private TimingWheel<Pending> wheel;
+    private Producer producer;
+    private ScheduledExecutorService scheduler;
+    private ExecutorService executor;
+
+    /**
+     * Create a coalescing processor.
+     * @param endpointUri the endpoint to which coalesced events are sent
+     */
+    public ActivityStreamCoalescingProcessor(final String endpointUri) {
+        this.endpointUri = endpointUri;
+    }
+
+    @Override
+    public void setCamelContext(final CamelContext camelContext) {
+        this.camelContext = camelContext;
+    }
+
+    @Override
+    public CamelContext getCamelContext() {
+        return camelContext;
+    }
+
+    /**
+     * Set how long a resource must be quiet before its event is sent.
+     * @param quietPeriod the quiet period, in milliseconds
+     */
+    public void setQuietPeriod(final long quietPeriod) {
+        this.quietPeriod = quietPeriod;
+    }
+
+    /**
+     * Get the quiet period.
+     * @return the quiet period, in milliseconds
+     */
+    public long getQuietPeriod() {
+        return quietPeriod;
+    }
+
+    /**
+     * Set the longest time an event may be held, measured from the first event in a burst.
+     * @param maximumDelay the maximum delay in milliseconds, or zero for no limit
+     */
+    public void setMaximumDelay(final long maximumDelay) {
+        this.maximumDelay = maximumDelay;
+    }
+
+    /**
+     * Get the maximum delay.
+     * @return the maximum delay in milliseconds, or zero if there is no limit
+     */
+    public long getMaximumDelay() {
+        return maximumDelay;
+    }
+
+    /**
+     * Set the resolution of the timer.
+     * @param tickDuration the tick duration, in milliseconds
+     */
+    public void setTickDuration(final long tickDuration) {
+        this.tickDuration = tickDuration;
+    }
+
+    /**
+     * Get the resolution of the timer.
+     * @return the tick duration, in milliseconds
+     */
+    public long getTickDuration() {
+        return tickDuration;
+    }
+
+    /**
+     * Set the number of threads used to send coalesced events.
+     * @param maxConcurrency the number of delivery threads
+     */
+    public void setMaxConcurrency(final int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Get the number of threads used to send coalesced events.
+     * @return the number of delivery threads
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Get the number of resources with a pending event.
+     * @return the number of pending events
+     */
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    @Override
+    public void process(final Exchange exchange) {
+        final ActivityStreamEvent activity = ActivityStreamEvent.of(exchange);
+        final String key = activity != null ? activity.getObjectId() :
+            exchange.getIn().getHeader(ACTIVITY_STREAM_OBJECT_ID, String.class);
+        if (key == null) {
+            return;
+        }
+        final Object type = exchange.getIn().getHeader(ACTIVITY_STREAM_TYPE);
+        final boolean delete = activity != null ? activity.hasType(DELETE) : isDelete(type);
+        final boolean create = activity != null ? activity.hasType(CREATE) : hasType(type, CREATE);
+        final Exchange copy = exchange.copy();
+        final long now = System.currentTimeMillis();
+        synchronized (pending) {
+            if (wheel == null) {
+                throw new IllegalStateException("The coalescing processor has not been started");
+            }
+            final TimingWheel.Timeout<Pending> timeout = pending.get(key);
+            if (timeout == null) {
+                pending.put(key, wheel.schedule(new Pending(key, copy, delete, now), now + quietPeriod));
+            } else {
+                final Pending event = timeout.getValue();
+                if (delete || create || !event.delete) {
+                    event.exchange = copy;
+                    event.delete = delete;
+                }
+                event.count++;
+                final long deadline = now + quietPeriod;
+                wheel.reschedule(timeout, maximumDelay > 0 ? Math.min(deadline, event.first + maximumDelay)
+                        : deadline);
+            }
+        }
+        exchange.setRouteStop(true);
+    }
+
+    @Override
+    public void start() {
+        if (quietPeriod <= 0 || tickDuration <= 0 || maximumDelay < 0 || maxConcurrency <= 0) {
+            throw new IllegalArgumentException(
+                    "The quiet period, tick duration and concurrency must be positive");
+        }
+        if (camelContext == null) {
+            throw new IllegalStateException("A CamelContext is required to start the coalescing processor");
+        }
+        synchronized (pending) {
+            if (wheel != null) {
+                return;
+            }
+            final long buckets = Math.min(1 << 20, quietPeriod / tickDuration + 1);
+            wheel = new TimingWheel<>((int) buckets, tickDuration, System.currentTimeMillis());
+        }
+        try {
+            producer = camelContext.getEndpoint(endpointUri).createProducer();
+            producer.start();
+        } catch (final Exception ex) {
+            throw new IllegalStateException("Unable to create a producer for " + endpointUri, ex);
+        }
+        executor = camelContext.getExecutorServiceManager().newFixedThreadPool(this,
+                "ActivityStreamCoalescerDelivery", maxConcurrency);
+        scheduler = camelContext.getExecutorServiceManager().newSingleThreadScheduledExecutor(this,
+                "ActivityStreamCoalescer");
+        scheduler.scheduleWithFixedDelay(this::flushExpired, tickDuration, tickDuration, MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (scheduler != null) {
+            camelContext.getExecutorServiceManager().shutdownGraceful(scheduler);
+            scheduler = null;
+        }
+        final List<Pending> events;
+        synchronized (pending) {
+            events = new ArrayList<>(pending.size());
+            for (final TimingWheel.Timeout<Pending> timeout : pending.values()) {
+                wheel.cancel(timeout);
+                events.add(timeout.getValue());
+            }
+            pending.clear();
+            wheel = null;
+        }
+        send(events);
+        if (executor != null) {
+            final ExecutorServiceManager manager = camelContext.getExecutorServiceManager();
+            final CompletableFuture<?>[] inflight;
+            synchronized (pending) {
+                inflight = sending.values().toArray(new CompletableFuture<?>[0]);
+            }
+            try {
+                CompletableFuture.allOf(inflight).get(manager.getShutdownAwaitTermination(), MILLISECONDS);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (final ExecutionException | TimeoutException ex) {
+                LOGGER.warn("Not all coalesced events were sent before the processor stopped", ex);
+            }
+            manager.shutdownGraceful(executor);
+            executor = null;
+        }
+        if (producer != null) {
+            producer.stop();
+            producer = null;
+        }
+    }
+
+    private void flushExpired() {
+        final List<Pending> events = new ArrayList<>();
+        synchronized (pending) {
+            if (wheel != null) {
+                wheel.advance(System.currentTimeMillis(), event -> {
+                    pending.remove(event.key);
+                    events.add(event);
+                });
+            }
+        }
+        send(events);
+    }
+
+    private void send(final List<Pending> events) {
+        synchronized (pending) {
+            for (final Pending event : events) {
+                // Chain sends for the same resource so that they are delivered in order
+                final CompletableFuture<Void> previous = sending.get(event.key);
+                final CompletableFuture<Void> next;
+                try {
+                    next = previous == null ? CompletableFuture.runAsync(() -> deliver(event), executor)
+                        : previous.thenRunAsync(() -> deliver(event), executor);
+                } catch (final RejectedExecutionException ex) {
+                    LOGGER.warn("Unable to send coalesced event for {}", event.key, ex);
+                    continue;
+                }
+                sending.put(event.key, next);
+                next.whenComplete((result, error) -> {
+                    synchronized (pending) {
+                        sending.remove(event.key, next);
+                    }
+                });
+            }
+        }
+    }
+
+    private void deliver(final Pending event) {
+        event.exchange.getIn().setHeader(ACTIVITY_STREAM_COALESCED, event.count);
+        try {
+            producer.process(event.exchange);
+            if (event.exchange.getException() != null) {
+                LOGGER.warn("Error sending coalesced event for {}", event.key, event.exchange.getException());
+            }
+        } catch (final Exception ex) {
+            LOGGER.warn("Error sending coalesced event for {}", event.key, ex);
+        }
+    }
+
+    static boolean isDelete(final Object type) {
+        return hasType(type, DELETE);
+    }
+
+    static boolean hasType(final Object type, final String name) {
+        if (type instanceof List) {
+            return ((List<?>) type).contains(name);
+        }
+        return name.equals(type);
+    }
+
+    private static final class Pending {
+        private final String key;
+        private final long first;
+        private Exchange exchange;
+        private boolean delete;
+        private int count = 1;
+
+        Pending(final String key, final Exchange exchange, final boolean delete, final long first) {
+            this.key = key;
+            this.exchange = exchange;
+            this.delete = delete;
+            this.first = first;
+        }
+    }
+}
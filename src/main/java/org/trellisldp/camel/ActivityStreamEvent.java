@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.unmodifiableList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.camel.Exchange;
+
+/**
+ * The values of a single ActivityStream message, as an immutable object.
+ *
+ * <p>When {@link ActivityStreamProcessor#setEvent(boolean)} is enabled, an instance is attached to
+ * each exchange as the {@value ActivityStreamProcessor#ACTIVITY_STREAM_EVENT} property. Values are
+ * held in the shape in which they were read, and the list accessors decode them on first use. A
+ * single-valued accessor returns the first value if the message held a list.
+ *
+ * @author acoburn
+ */
+public final class ActivityStreamEvent {
+
+    private final Object id;
+    private final Object types;
+    private final Object name;
+    private final Object actors;
+    private final Object inbox;
+    private final Object objectId;
+    private final Object objectTypes;
+
+    /* Lazily decoded lists; a race only results in an equal list being created twice. */
+    private List<String> typeList;
+    private List<String> actorList;
+    private List<String> objectTypeList;
+
+    /**
+     * Create an event from the extracted fields.
+     * @param fields the fields, whose lists must not be shared
+     */
+    ActivityStreamEvent(final ActivityStreamFields fields) {
+        this(fields, false);
+    }
+
+    /**
+     * Create an event from the extracted fields.
+     * @param fields the fields
+     * @param shared whether the fields' lists are shared, for instance with message headers, in which case
+     *               the event keeps unmodifiable copies of them
+     */
+    ActivityStreamEvent(final ActivityStreamFields fields, final boolean shared) {
+        this.id = shared ? copy(fields.id) : fields.id;
+        this.types = shared ? copy(fields.type) : fields.type;
+        this.name = shared ? copy(fields.name) : fields.name;
+        this.actors = shared ? copy(fields.actor) : fields.actor;
+        this.inbox = shared ? copy(fields.inbox) : fields.inbox;
+        this.objectId = shared ? copy(fields.objectId) : fields.objectId;
+        this.objectTypes = shared ? copy(fields.objectType) : fields.objectType;
+    }
+
+    /**
+     * Get the event attached to an exchange.
+     * @param exchange the exchange
+     * @return the event, or null if there is none
+     */
+    public static ActivityStreamEvent of(final Exchange exchange) {
+        return exchange.getProperty(ActivityStreamProcessor.ACTIVITY_STREAM_EVENT, ActivityStreamEvent.class);
+    }
+
+    /**
+     * Get the activity identifier.
+     * @return the identifier, or null if there is none
+     */
+    public String getId() {
+        return first(id);
+    }
+
+    /**
+     * Get the activity types.
+     * @return an unmodifiable list of types
+     */
+    public List<String> getTypes() {
+        List<String> list = typeList;
+        if (list == null) {
+            list = decode(types);
+            typeList = list;
+        }
+        return list;
+    }
+
+    /**
+     * Identify whether the activity has a type.
+     * @param type the type
+     * @return true if the type is one of the activity types
+     */
+    public boolean hasType(final String type) {
+        return types instanceof String ? types.equals(type) : getTypes().contains(type);
+    }
+
+    /**
+     * Get the activity name.
+     * @return the name, or null if there is none
+     */
+    public String getName() {
+        return first(name);
+    }
+
+    /**
+     * Get the first actor.
+     * @return the actor, or null if there is none
+     */
+    public String getActor() {
+        return first(actors);
+    }
+
+    /**
+     * Get the actors.
+     * @return an unmodifiable list of actors
+     */
+    public List<String> getActors() {
+        List<String> list = actorList;
+        if (list == null) {
+            list = decode(actors);
+            actorList = list;
+        }
+        return list;
+    }
+
+    /**
+     * Get the inbox.
+     * @return the inbox, or null if there is none
+     */
+    public String getInbox() {
+        return first(inbox);
+    }
+
+    /**
+     * Get the identifier of the activity's object.
+     * @return the object identifier, or null if there is none
+     */
+    public String getObjectId() {
+        return first(objectId);
+    }
+
+    /**
+     * Get the types of the activity's object.
+     * @return an unmodifiable list of object types
+     */
+    public List<String> getObjectTypes() {
+        List<String> list = objectTypeList;
+        if (list == null) {
+            list = decode(objectTypes);
+            objectTypeList = list;
+        }
+        return list;
+    }
+
+    /**
+     * Identify whether the activity's object has a type.
+     * @param type the type
+     * @return true if the type is one of the object types
+     */
+    public boolean hasObjectType(final String type) {
+        return objectTypes instanceof String ? objectTypes.equals(type) : getObjectTypes().contains(type);
+    }
+
+    @Override
+    public String toString() {
+        return "ActivityStreamEvent[id=" + getId() + ", types=" + getTypes() + ", objectId=" + getObjectId()
+            + ", objectTypes=" + getObjectTypes() + "]";
+    }
+
+    private static String first(final Object value) {
+        if (value instanceof String) {
+            return (String) value;
+        } else if (value instanceof List) {
+            for (final Object v : (List<?>) value) {
+                if (v instanceof String) {
+                    return (String) v;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Object copy(final Object value) {
+        return value instanceof List ? unmodifiableList(new ArrayList<>((List<?>) value)) : value;
+    }
+
+    private static List<String> decode(final Object value) {
+        if (value instanceof String) {
+            return singletonList((String) value);
+        } else if (value instanceof List) {
+            final List<?> values = (List<?>) value;
+            final List<String> strings = new ArrayList<>(values.size());
+            for (final Object v : values) {
+                if (v instanceof String) {
+                    strings.add((String) v);
+                }
+            }
+            return unmodifiableList(strings);
+        }
+        return emptyList();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+/**
+ * The values extracted from a single ActivityStream message.
+ *
+ * <p>Each field holds either a {@code String} or a {@code List} of values, mirroring the
+ * shape of the source. The streaming parser only produces lists for the type and actor fields.
+ * Absent or unusable values are {@code null}.
+ *
+ * @author acoburn
+ */
+final class ActivityStreamFields {
+
+    static final int ID = 1;
+    static final int TYPE = 1 << 1;
+    static final int NAME = 1 << 2;
+    static final int ACTOR = 1 << 3;
+    static final int INBOX = 1 << 4;
+    static final int OBJECT = 1 << 5;
+    static final int OBJECT_ID = 1 << 6;
+    static final int OBJECT_TYPE = 1 << 7;
+
+    Object id;
+    Object type;
+    Object name;
+    Object actor;
+    Object inbox;
+    Object objectId;
+    Object objectType;
+    int invalid;
+
+    /**
+     * Get the value of a field.
+     * @param field the field bit
+     * @return the value, or null if it is absent or the field is {@link #OBJECT}
+     */
+    Object get(final int field) {
+        switch (field) {
+            case ID:
+                return id;
+            case TYPE:
+                return type;
+            case NAME:
+                return name;
+            case ACTOR:
+                return actor;
+            case INBOX:
+                return inbox;
+            case OBJECT_ID:
+                return objectId;
+            case OBJECT_TYPE:
+                return objectType;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static org.slf4j.LoggerFactory.getLogger;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_OBJECT_ID;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.camel.AsyncCallback;
+import org.apache.camel.AsyncProcessor;
+import org.apache.camel.CamelContext;
+import org.apache.camel.CamelContextAware;
+import org.apache.camel.Exchange;
+import org.apache.camel.Producer;
+import org.apache.camel.Service;
+import org.slf4j.Logger;
+
+/**
+ * A Camel processor that processes events for different resources in parallel, while keeping the
+ * events for each resource in order.
+ *
+ * <p>Each exchange is assigned to one of a fixed number of lanes by a hash of its
+ * {@code ActivityStreamObjectId} header, or of the object id of its {@link ActivityStreamEvent}.
+ * Each lane has a bounded queue and a single worker thread, which sends the exchange to the target
+ * endpoint and then continues the route. Events for one resource therefore always share a lane and
+ * are handled in the order they arrived. When a lane's queue is full, the caller blocks until there
+ * is room. Exchanges without an object id are spread across the lanes by exchange id.
+ *
+ * <pre>{@code
+ * from("jms:trellis")
+ *     .process(new ActivityStreamProcessor())
+ *     .process(new ActivityStreamLaneProcessor("direct:index"));
+ * }</pre>
+ *
+ * <p>On Java 21 or later, the workers can be virtual threads. When the processor is stopped, it
+ * stops accepting exchanges and waits for every queued exchange to be processed. An exchange that
+ * reaches a lane after its worker has stopped is rejected with a {@link RejectedExecutionException}.
+ * Since Camel stops route consumers before their processors, no events are lost on a graceful shutdown.
+ *
+ * @author acoburn
+ */
+public class ActivityStreamLaneProcessor implements AsyncProcessor, CamelContextAware, Service {
+
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    private static final Logger LOGGER = getLogger(ActivityStreamLaneProcessor.class);
+
+    private static final Task STOP = new Task(null, null);
+
+    private final String endpointUri;
+
+    private CamelContext camelContext;
+    private int laneCount = Runtime.getRuntime().availableProcessors();
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+    private boolean virtualThreads;
+
+    private volatile Lane[] lanes;
+    private Producer producer;
+
+    /**
+     * Create a lane processor.
+     * @param endpointUri the endpoint to which each exchange is sent
+     */
+    public ActivityStreamLaneProcessor(final String endpointUri) {
+        this.endpointUri = endpointUri;
+    }
+
+    @Override
+    public void setCamelContext(final CamelContext camelContext) {
+        this.camelContext = camelContext;
+    }
+
+    @Override
+    public CamelContext getCamelContext() {
+        return camelContext;
+    }
+
+    /**
+     * Set the number of lanes. The default is the number of available processors.
+     * @param laneCount the number of lanes
+     */
+    public void setLaneCount(final int laneCount) {
+        this.laneCount = laneCount;
+    }
+
+    /**
+     * Get the number of lanes.
+     * @return the number of lanes
+     */
+    public int getLaneCount() {
+        return laneCount;
+    }
+
+    /**
+     * Set the maximum number of exchanges waiting in each lane.
+     * @param queueSize the queue size
+     */
+    public void setQueueSize(final int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Get the maximum number of exchanges waiting in each lane.
+     * @return the queue size
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * Run each lane on a virtual thread. This has no effect before Java 21.
+     * @param virtualThreads true to use virtual threads
+     */
+    public void setVirtualThreads(final boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Identify whether lanes run on virtual threads.
+     * @return true if virtual threads have been requested and are supported
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads && LaneThreads.isVirtualThreadSupported();
+    }
+
+    /**
+     * Get the number of exchanges waiting in each lane.
+     * @return the queue depth of each lane, or an empty array if the processor is not running
+     */
+    public int[] getQueueDepths() {
+        final Lane[] current = lanes;
+        if (current == null) {
+            return new int[0];
+        }
+        final int[] depths = new int[current.length];
+        for (int i = 0; i < current.length; i++) {
+            depths[i] = current[i].queue.size();
+        }
+        return depths;
+    }
+
+    /**
+     * Get the number of exchanges processed by each lane.
+     * @return the processed count of each lane, or an empty array if the processor is not running
+     */
+    public long[] getProcessedCounts() {
+        final Lane[] current = lanes;
+        if (current == null) {
+            return new long[0];
+        }
+        final long[] counts = new long[current.length];
+        for (int i = 0; i < current.length; i++) {
+            counts[i] = current[i].processed.sum();
+        }
+        return counts;
+    }
+
+    @Override
+    public boolean process(final Exchange exchange, final AsyncCallback callback) {
+        final Lane[] current = lanes;
+        if (current == null) {
+            exchange.setException(new RejectedExecutionException("The lane processor is not running"));
+            callback.done(true);
+            return true;
+        }
+        final Lane lane = current[laneOf(key(exchange), current.length)];
+        final Task task = new Task(exchange, callback);
+        try {
+            lane.queue.put(task);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            exchange.setException(ex);
+            callback.done(true);
+            return true;
+        }
+        // A lane that closed meanwhile may never take the task; whoever removes it first rejects it
+        if (lane.closed && lane.queue.remove(task)) {
+            reject(task);
+            callback.done(true);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void process(final Exchange exchange) throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        if (!process(exchange, doneSync -> latch.countDown())) {
+            latch.await();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Exchange> processAsync(final Exchange exchange) {
+        final CompletableFuture<Exchange> future = new CompletableFuture<>();
+        process(exchange, doneSync -> future.complete(exchange));
+        return future;
+    }
+
+    @Override
+    public void start() {
+        if (laneCount <= 0 || queueSize <= 0) {
+            throw new IllegalArgumentException("The lane count and queue size must be positive");
+        }
+        if (camelContext == null) {
+            throw new IllegalStateException("A CamelContext is required to start the lane processor");
+        }
+        if (lanes != null) {
+            return;
+        }
+        try {
+            producer = camelContext.getEndpoint(endpointUri).createProducer();
+            producer.start();
+        } catch (final Exception ex) {
+            throw new IllegalStateException("Unable to create a producer for " + endpointUri, ex);
+        }
+        final boolean virtual = isVirtualThreads();
+        final Lane[] created = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            created[i] = new Lane(queueSize);
+            created[i].worker = LaneThreads.newThread(created[i]::run, "ActivityStreamLane-" + i, virtual);
+            created[i].worker.start();
+        }
+        lanes = created;
+    }
+
+    @Override
+    public void stop() {
+        final Lane[] current = lanes;
+        if (current == null) {
+            return;
+        }
+        lanes = null;
+        for (final Lane lane : current) {
+            lane.stop();
+        }
+        for (final Lane lane : current) {
+            try {
+                lane.worker.join();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                LOGGER.warn("Interrupted while draining {}", lane.worker.getName());
+            }
+        }
+        for (final Lane lane : current) {
+            for (Task task = lane.queue.poll(); task != null; task = lane.queue.poll()) {
+                if (task != STOP) {
+                    reject(task);
+                    task.callback.done(false);
+                }
+            }
+        }
+        producer.stop();
+        producer = null;
+    }
+
+    static int laneOf(final String key, final int laneCount) {
+        return Math.floorMod(Fingerprints.hash(key.hashCode()), laneCount);
+    }
+
+    private static void reject(final Task task) {
+        task.exchange.setException(new RejectedExecutionException("The lane processor has stopped"));
+    }
+
+    private static String key(final Exchange exchange) {
+        final ActivityStreamEvent event = ActivityStreamEvent.of(exchange);
+        final String key = event != null ? event.getObjectId() :
+            exchange.getIn().getHeader(ACTIVITY_STREAM_OBJECT_ID, String.class);
+        return key != null ? key : exchange.getExchangeId();
+    }
+
+    private final class Lane {
+        private final BlockingQueue<Task> queue;
+        private final LongAdder processed = new LongAdder();
+        private volatile boolean closed;
+        private Thread worker;
+
+        Lane(final int queueSize) {
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        void run() {
+            while (true) {
+                final Task task;
+                try {
+                    task = queue.take();
+                } catch (final InterruptedException ex) {
+                    LOGGER.warn("{} was interrupted; {} exchanges will be rejected", worker.getName(),
+                            queue.size());
+                    return;
+                }
+                if (task == STOP) {
+                    return;
+                }
+                try {
+                    producer.process(task.exchange);
+                } catch (final Exception ex) {
+                    task.exchange.setException(ex);
+                } finally {
+                    processed.increment();
+                    task.callback.done(false);
+                }
+            }
+        }
+
+        /* The stop marker may wait for room, but the worker keeps draining ahead of it. */
+        void stop() {
+            closed = true;
+            try {
+                queue.put(STOP);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                worker.interrupt();
+            }
+        }
+    }
+
+    private static final class Task {
+        private final Exchange exchange;
+        private final AsyncCallback callback;
+
+        Task(final Exchange exchange, final AsyncCallback callback) {
+            this.exchange = exchange;
+            this.callback = callback;
+        }
+    }
+}
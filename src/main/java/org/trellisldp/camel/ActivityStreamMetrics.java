@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static org.trellisldp.camel.ActivityStreamFields.OBJECT;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_ACTOR;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_ID;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_INBOX;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_NAME;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_OBJECT_ID;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_OBJECT_TYPE;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_TYPE;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latencies for an {@link ActivityStreamProcessor}.
+ *
+ * <p>Metrics are only collected when an instance is set on the processor with
+ * {@link ActivityStreamProcessor#setMetrics(ActivityStreamMetrics)}; otherwise the processor does
+ * no additional work. All counters are {@link LongAdder} instances and the latency histogram is
+ * lock-free, so a single instance may be shared by processors on many threads. The number of
+ * distinct types that are counted is bounded; any further types are counted together as
+ * {@value #OTHER_TYPE}.
+ *
+ * <p>An instance can be registered as a platform MXBean with {@link #register()}.
+ *
+ * @author acoburn
+ */
+public class ActivityStreamMetrics implements ActivityStreamMetricsMXBean {
+
+    public static final String JMX_DOMAIN = "org.trellisldp.camel";
+
+    public static final String OTHER_TYPE = "(other)";
+
+    public static final int MAXIMUM_TYPES = 1024;
+
+    /* Field names, indexed by the bit position of each field in ActivityStreamFields */
+    private static final String[] FIELDS = {ACTIVITY_STREAM_ID, ACTIVITY_STREAM_TYPE, ACTIVITY_STREAM_NAME,
+        ACTIVITY_STREAM_ACTOR, ACTIVITY_STREAM_INBOX, "ActivityStreamObject", ACTIVITY_STREAM_OBJECT_ID,
+        ACTIVITY_STREAM_OBJECT_TYPE};
+
+    private final String name;
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final ConcurrentMap<String, LongAdder> types = new ConcurrentHashMap<>();
+    private final LongAdder[] missing = adders();
+    private final LongAdder[] invalid = adders();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Create a metrics instance with the name {@code default}.
+     */
+    public ActivityStreamMetrics() {
+        this("default");
+    }
+
+    /**
+     * Create a metrics instance.
+     * @param name the name used to register the MXBean
+     */
+    public ActivityStreamMetrics(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the name of this metrics instance.
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the JMX object name for this metrics instance.
+     * @return the object name
+     * @throws JMException if the name is not valid
+     */
+    public ObjectName getObjectName() throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=ActivityStreamMetrics,name=" + ObjectName.quote(name));
+    }
+
+    /**
+     * Register this instance with the platform MBean server.
+     * @return the object name under which the MXBean was registered
+     * @throws JMException if the MXBean could not be registered
+     */
+    public ObjectName register() throws JMException {
+        final ObjectName objectName = getObjectName();
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Unregister this instance from the platform MBean server.
+     * @throws JMException if the MXBean could not be unregistered
+     */
+    public void unregister() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(getObjectName());
+    }
+
+    /**
+     * Record a processed message.
+     * @param fields the values extracted from the message
+     * @param nanos the time taken to process the message, in nanoseconds
+     */
+    void record(final ActivityStreamFields fields, final long nanos) {
+        messages.increment();
+        latency.record(nanos);
+        final Object type = fields.type;
+        if (type instanceof String) {
+            countType((String) type);
+        } else if (type instanceof List) {
+            for (final Object value : (List<?>) type) {
+                if (value instanceof String) {
+                    countType((String) value);
+                }
+            }
+        }
+        for (int i = 0; i < FIELDS.length; i++) {
+            final int field = 1 << i;
+            if ((fields.invalid & field) != 0) {
+                invalid[i].increment();
+            } else if (field != OBJECT && fields.get(field) == null) {
+                missing[i].increment();
+            }
+        }
+    }
+
+    /**
+     * Record a message that could not be processed.
+     */
+    void recordError() {
+        errors.increment();
+    }
+
+    @Override
+    public long getMessageCount() {
+        return messages.sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public Map<String, Long> getTypeCounts() {
+        final Map<String, Long> counts = new TreeMap<>();
+        types.forEach((type, count) -> counts.put(type, count.sum()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getMissingFieldCounts() {
+        return snapshot(missing);
+    }
+
+    @Override
+    public Map<String, Long> getInvalidFieldCounts() {
+        return snapshot(invalid);
+    }
+
+    @Override
+    public double getLatencyMean() {
+        return latency.getMean();
+    }
+
+    @Override
+    public long getLatency50thPercentile() {
+        return latency.getPercentile(50.0);
+    }
+
+    @Override
+    public long getLatency90thPercentile() {
+        return latency.getPercentile(90.0);
+    }
+
+    @Override
+    public long getLatency99thPercentile() {
+        return latency.getPercentile(99.0);
+    }
+
+    @Override
+    public long getLatency999thPercentile() {
+        return latency.getPercentile(99.9);
+    }
+
+    @Override
+    public long getLatencyMax() {
+        return latency.getMax();
+    }
+
+    @Override
+    public void reset() {
+        messages.reset();
+        errors.reset();
+        types.clear();
+        for (int i = 0; i < FIELDS.length; i++) {
+            missing[i].reset();
+            invalid[i].reset();
+        }
+        latency.reset();
+    }
+
+    private void countType(final String type) {
+        LongAdder count = types.get(type);
+        if (count == null) {
+            count = types.computeIfAbsent(types.size() < MAXIMUM_TYPES ? type : OTHER_TYPE, k -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    private static Map<String, Long> snapshot(final LongAdder[] adders) {
+        final Map<String, Long> counts = new TreeMap<>();
+        for (int i = 0; i < FIELDS.length; i++) {
+            final long count = adders[i].sum();
+            if (count > 0) {
+                counts.put(FIELDS[i], count);
+            }
+        }
+        return counts;
+    }
+
+    private static LongAdder[] adders() {
+        final LongAdder[] adders = new LongAdder[FIELDS.length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
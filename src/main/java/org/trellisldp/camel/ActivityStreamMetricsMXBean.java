@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import java.util.Map;
+
+/**
+ * The JMX management interface for {@link ActivityStreamMetrics}.
+ *
+ * <p>Latencies are reported in nanoseconds.
+ *
+ * @author acoburn
+ */
+public interface ActivityStreamMetricsMXBean {
+
+    /**
+     * Get the number of messages processed.
+     * @return the message count
+     */
+    long getMessageCount();
+
+    /**
+     * Get the number of messages that could not be processed.
+     * @return the error count
+     */
+    long getErrorCount();
+
+    /**
+     * Get the number of messages with each ActivityStream type.
+     * @return the counts, keyed by type
+     */
+    Map<String, Long> getTypeCounts();
+
+    /**
+     * Get the number of messages in which each field was absent.
+     * @return the counts, keyed by header name
+     */
+    Map<String, Long> getMissingFieldCounts();
+
+    /**
+     * Get the number of messages in which each field had a value of the wrong type.
+     * @return the counts, keyed by header name
+     */
+    Map<String, Long> getInvalidFieldCounts();
+
+    /**
+     * Get the mean processing latency.
+     * @return the mean latency
+     */
+    double getLatencyMean();
+
+    /**
+     * Get the median processing latency.
+     * @return the 50th percentile latency
+     */
+    long getLatency50thPercentile();
+
+    /**
+     * Get the 90th percentile processing latency.
+     * @return the 90th percentile latency
+     */
+    long getLatency90thPercentile();
+
+    /**
+     * Get the 99th percentile processing latency.
+     * @return the 99th percentile latency
+     */
+    long getLatency99thPercentile();
+
+    /**
+     * Get the 99.9th percentile processing latency.
+     * @return the 99.9th percentile latency
+     */
+    long getLatency999thPercentile();
+
+    /**
+     * Get the largest processing latency.
+     * @return the maximum latency
+     */
+    long getLatencyMax();
+
+    /**
+     * Reset all counters and the latency histogram.
+     */
+    void reset();
+}
@@ -0,0 +1,509 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static org.trellisldp.camel.ActivityStreamFields.ACTOR;
+import static org.trellisldp.camel.ActivityStreamFields.ID;
+import static org.trellisldp.camel.ActivityStreamFields.INBOX;
+import static org.trellisldp.camel.ActivityStreamFields.NAME;
+import static org.trellisldp.camel.ActivityStreamFields.OBJECT_ID;
+import static org.trellisldp.camel.ActivityStreamFields.OBJECT_TYPE;
+import static org.trellisldp.camel.ActivityStreamFields.TYPE;
+import static org.trellisldp.camel.ActivityStreamVocabulary.field;
+import static org.trellisldp.camel.ActivityStreamVocabulary.isId;
+import static org.trellisldp.camel.ActivityStreamVocabulary.objectField;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A streaming JSON scanner that extracts ActivityStream fields directly from a raw message body.
+ *
+ * <p>Only the {@code id}, {@code type}, {@code name}, {@code actor}, {@code inbox} and {@code object}
+ * members of the top-level object, and the {@code id} and {@code type} members of {@code object},
+ * are decoded. Every other value is skipped without being materialized, and scanning stops as soon
+ * as each of those members has been seen. If a member is repeated, the first occurrence is used.
+ *
+ * <p>Members may also be named with their JSON-LD aliases, as listed in {@link ActivityStreamVocabulary},
+ * and an identifier may be given as a node object such as {@code {"id": "..."}} instead of a string.
+ *
+ * @author acoburn
+ */
+final class ActivityStreamParser {
+
+    private static final int ALL = (1 << 8) - 1;
+
+    private static final int NONE = -2;
+    private static final int EOF = -1;
+
+    private final Source source;
+    private final StringBuilder buffer = new StringBuilder(64);
+    private final ActivityStreamFields fields = new ActivityStreamFields();
+    private int pushback = NONE;
+    private int seen;
+
+    private ActivityStreamParser(final Source source) {
+        this.source = source;
+    }
+
+    /**
+     * Extract the ActivityStream fields from a JSON string.
+     * @param json the JSON message
+     * @return the extracted fields
+     * @throws IOException if the message is not a well-formed JSON object
+     */
+    static ActivityStreamFields parse(final String json) throws IOException {
+        return new ActivityStreamParser(new StringSource(json)).parse();
+    }
+
+    /**
+     * Extract the ActivityStream fields from UTF-8 encoded JSON.
+     * @param json the JSON message
+     * @return the extracted fields
+     * @throws IOException if the message is not a well-formed JSON object
+     */
+    static ActivityStreamFields parse(final byte[] json) throws IOException {
+        return new ActivityStreamParser(new ArraySource(json, 0, json.length)).parse();
+    }
+
+    /**
+     * Extract the ActivityStream fields from a region of a buffer holding UTF-8 encoded JSON.
+     *
+     * <p>The bytes are read in place, using absolute positions, so the buffer's position is unchanged.
+     *
+     * @param json the buffer, such as a memory-mapped file
+     * @param offset the index of the first byte of the message
+     * @param limit the index after the last byte of the message
+     * @return the extracted fields
+     * @throws IOException if the message is not a well-formed JSON object
+     */
+    static ActivityStreamFields parse(final ByteBuffer json, final int offset, final int limit) throws IOException {
+        return new ActivityStreamParser(new BufferSource(json, offset, limit)).parse();
+    }
+
+    /**
+     * Extract the ActivityStream fields from a stream of UTF-8 encoded JSON.
+     *
+     * <p>The stream is read only as far as necessary and is not closed.
+     *
+     * @param json the JSON message
+     * @return the extracted fields
+     * @throws IOException if the stream could not be read or the message is not a well-formed JSON object
+     */
+    static ActivityStreamFields parse(final InputStream json) throws IOException {
+        return new ActivityStreamParser(new StreamSource(json)).parse();
+    }
+
+    private ActivityStreamFields parse() throws IOException {
+        expect(nextToken(), '{');
+        readObject(false);
+        return fields;
+    }
+
+    private void readObject(final boolean nested) throws IOException {
+        int c = nextToken();
+        if (c == '}') {
+            return;
+        }
+        while (true) {
+            expect(c, '"');
+            readString();
+            expect(nextToken(), ':');
+            final int field = nested ? objectField(buffer) : field(buffer);
+            if (field == 0 || (seen & field) != 0) {
+                skipValue(nextToken());
+            } else {
+                seen |= field;
+                readField(field);
+                if (seen == ALL) {
+                    return;
+                }
+            }
+            c = nextToken();
+            if (c == '}') {
+                return;
+            }
+            expect(c, ',');
+            c = nextToken();
+        }
+    }
+
+    private void readField(final int field) throws IOException {
+        switch (field) {
+            case ID:
+                fields.id = readText(field);
+                break;
+            case TYPE:
+                fields.type = readStrings(field);
+                break;
+            case NAME:
+                fields.name = readText(field);
+                break;
+            case ACTOR:
+                fields.actor = readStrings(field);
+                break;
+            case INBOX:
+                fields.inbox = readText(field);
+                break;
+            case OBJECT_ID:
+                fields.objectId = readText(field);
+                break;
+            case OBJECT_TYPE:
+                fields.objectType = readStrings(field);
+                break;
+            default:
+                final int c = nextToken();
+                if (c == '{') {
+                    readObject(true);
+                } else {
+                    skipInvalid(field, c);
+                }
+                seen |= OBJECT_ID | OBJECT_TYPE;
+        }
+    }
+
+    private String readText(final int field) throws IOException {
+        final int c = nextToken();
+        if (c == '"') {
+            readString();
+            return buffer.toString();
+        } else if (c == '{' && field != NAME) {
+            return readNodeId(field);
+        }
+        skipInvalid(field, c);
+        return null;
+    }
+
+    private Object readStrings(final int field) throws IOException {
+        int c = nextToken();
+        if (c == '"') {
+            readString();
+            return buffer.toString();
+        } else if (c == '{') {
+            return readNodeId(field);
+        } else if (c != '[') {
+            skipInvalid(field, c);
+            return null;
+        }
+        final List<String> values = new ArrayList<>();
+        c = nextToken();
+        if (c == ']') {
+            return values;
+        }
+        while (true) {
+            if (c == '"') {
+                readString();
+                values.add(buffer.toString());
+            } else if (c == '{') {
+                final String id = readNodeId(0);
+                if (id != null) {
+                    values.add(id);
+                }
+            } else {
+                skipValue(c);
+            }
+            c = nextToken();
+            if (c == ']') {
+                return values;
+            }
+            expect(c, ',');
+            c = nextToken();
+        }
+    }
+
+    /* Read the identifier of a node object, whose opening brace has been consumed. */
+    private String readNodeId(final int field) throws IOException {
+        String id = null;
+        int c = nextToken();
+        while (c != '}') {
+            expect(c, '"');
+            readString();
+            expect(nextToken(), ':');
+            final boolean identifier = id == null && isId(buffer);
+            c = nextToken();
+            if (identifier && c == '"') {
+                readString();
+                id = buffer.toString();
+            } else {
+                skipValue(c);
+            }
+            c = nextToken();
+            if (c != '}') {
+                expect(c, ',');
+                c = nextToken();
+            }
+        }
+        if (id == null) {
+            fields.invalid |= field;
+        }
+        return id;
+    }
+
+    private void readString() throws IOException {
+        buffer.setLength(0);
+        while (true) {
+            final int c = source.read();
+            if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                buffer.append(readEscape());
+            } else if (c == EOF) {
+                throw malformed("unterminated string");
+            } else {
+                buffer.append((char) c);
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        final int c = source.read();
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    final int digit = Character.digit(source.read(), 16);
+                    if (digit < 0) {
+                        throw malformed("invalid unicode escape");
+                    }
+                    value = value << 4 | digit;
+                }
+                return (char) value;
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            default:
+                throw malformed("invalid escape sequence");
+        }
+    }
+
+    private void skipValue(final int first) throws IOException {
+        if (first == '"') {
+            skipString();
+        } else if (first == '{' || first == '[') {
+            skipNested();
+        } else if (first == '-' || Character.isLetterOrDigit(first)) {
+            int c = source.read();
+            while (c != ',' && c != '}' && c != ']' && c != EOF && !isWhitespace(c)) {
+                c = source.read();
+            }
+            pushback = c;
+        } else {
+            throw malformed("unexpected character");
+        }
+    }
+
+    /* Skip a value of the wrong type for a field; a JSON null is treated as an absent value. */
+    private void skipInvalid(final int field, final int first) throws IOException {
+        if (first != 'n') {
+            fields.invalid |= field;
+        }
+        skipValue(first);
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            final int c = source.read();
+            if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                source.read();
+            } else if (c == EOF) {
+                throw malformed("unterminated string");
+            }
+        }
+    }
+
+    private void skipNested() throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            final int c = source.read();
+            if (c == '"') {
+                skipString();
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            } else if (c == EOF) {
+                throw malformed("unterminated structure");
+            }
+        }
+    }
+
+    private int nextToken() throws IOException {
+        int c = pushback;
+        pushback = NONE;
+        if (c == NONE) {
+            c = source.read();
+        }
+        while (isWhitespace(c)) {
+            c = source.read();
+        }
+        return c;
+    }
+
+    private static void expect(final int actual, final char expected) throws IOException {
+        if (actual != expected) {
+            throw malformed("expected '" + expected + "'");
+        }
+    }
+
+    private static boolean isWhitespace(final int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private static IOException malformed(final String reason) {
+        return new IOException("Malformed ActivityStream message: " + reason);
+    }
+
+    /**
+     * A source of UTF-16 code units, returning {@code -1} at the end of input.
+     */
+    private abstract static class Source {
+        abstract int read() throws IOException;
+    }
+
+    private static final class StringSource extends Source {
+        private final String data;
+        private int position;
+
+        StringSource(final String data) {
+            this.data = data;
+        }
+
+        @Override
+        int read() {
+            return position < data.length() ? data.charAt(position++) : EOF;
+        }
+    }
+
+    /**
+     * A source that decodes UTF-8 bytes, substituting U+FFFD for malformed sequences.
+     */
+    private abstract static class Utf8Source extends Source {
+        private int lowSurrogate = NONE;
+
+        abstract int readByte() throws IOException;
+
+        @Override
+        final int read() throws IOException {
+            if (lowSurrogate != NONE) {
+                final int c = lowSurrogate;
+                lowSurrogate = NONE;
+                return c;
+            }
+            final int b = readByte();
+            if (b < 0x80) {
+                return b;
+            } else if (b >= 0xC0 && b < 0xE0) {
+                return decode(b & 0x1F, 1);
+            } else if (b >= 0xE0 && b < 0xF0) {
+                return decode(b & 0x0F, 2);
+            } else if (b >= 0xF0 && b < 0xF8) {
+                final int codePoint = decode(b & 0x07, 3);
+                if (codePoint > 0xFFFF) {
+                    lowSurrogate = Character.lowSurrogate(codePoint);
+                    return Character.highSurrogate(codePoint);
+                }
+                return codePoint;
+            }
+            return 0xFFFD;
+        }
+
+        private int decode(final int lead, final int continuations) throws IOException {
+            int codePoint = lead;
+            for (int i = 0; i < continuations; i++) {
+                final int b = readByte();
+                if ((b & 0xC0) != 0x80) {
+                    return 0xFFFD;
+                }
+                codePoint = codePoint << 6 | b & 0x3F;
+            }
+            return codePoint;
+        }
+    }
+
+    private static final class ArraySource extends Utf8Source {
+        private final byte[] data;
+        private final int limit;
+        private int position;
+
+        ArraySource(final byte[] data, final int offset, final int limit) {
+            this.data = data;
+            this.position = offset;
+            this.limit = limit;
+        }
+
+        @Override
+        int readByte() {
+            return position < limit ? data[position++] & 0xFF : EOF;
+        }
+    }
+
+    private static final class BufferSource extends Utf8Source {
+        private final ByteBuffer data;
+        private final int limit;
+        private int position;
+
+        BufferSource(final ByteBuffer data, final int offset, final int limit) {
+            this.data = data;
+            this.position = offset;
+            this.limit = limit;
+        }
+
+        @Override
+        int readByte() {
+            return position < limit ? data.get(position++) & 0xFF : EOF;
+        }
+    }
+
+    private static final class StreamSource extends Utf8Source {
+        private final InputStream stream;
+        private final byte[] data = new byte[8192];
+        private int limit;
+        private int position;
+
+        StreamSource(final InputStream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        int readByte() throws IOException {
+            if (position == limit) {
+                limit = stream.read(data);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return EOF;
+                }
+            }
+            return data[position++] & 0xFF;
+        }
+    }
+}
@@ -15,17 +15,41 @@
  */
 package org.trellisldp.camel;
 
+import static org.trellisldp.camel.ActivityStreamVocabulary.field;
+import static org.trellisldp.camel.ActivityStreamVocabulary.isId;
+import static org.trellisldp.camel.ActivityStreamVocabulary.objectField;
+
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.camel.Exchange;
+import org.apache.camel.Message;
 import org.apache.camel.Processor;
+import org.apache.camel.StreamCache;
 
 /**
  * A Processor class that transforms an Activity Stream-based message into
  * easy-to-use Message headers.
  *
+ * <p>By default, the message body is converted to a {@link Map} before the values are read.
+ * In streaming mode, a {@code String}, {@code byte[]} or {@code InputStream} body is instead
+ * scanned directly, and only the values needed for the headers are decoded. Note that a plain
+ * {@code InputStream} body will have been consumed afterwards unless stream caching is enabled.
+ *
+ * <p>In either mode, members may be named with their JSON-LD aliases ({@code @id}, {@code as:actor}, {@code ldp:inbox},
+ * {@code https://www.w3.org/ns/activitystreams#actor} and so on), and an identifier may be given as
+ * a node object such as {@code {"id": "..."}}. No JSON-LD processing is done.
+ *
+ * <p>Rather than, or as well as, the individual headers, an immutable {@link ActivityStreamEvent}
+ * can be attached to the exchange as a property. Exchange properties are not part of the message
+ * header map, so they are not copied into each new message along the route.
+ *
+ * <p>Per-type counts, missing and ill-typed fields and processing latency can be collected by
+ * setting an {@link ActivityStreamMetrics} instance; when none is set, no metrics work is done.
+ *
  * @author acoburn
  */
 public class ActivityStreamProcessor implements Processor {
@@ -37,13 +61,93 @@ public class ActivityStreamProcessor implements Processor {
     public static final String ACTIVITY_STREAM_INBOX = "ActivityStreamInbox";
     public static final String ACTIVITY_STREAM_OBJECT_ID = "ActivityStreamObjectId";
     public static final String ACTIVITY_STREAM_OBJECT_TYPE = "ActivityStreamObjectType";
+    public static final String ACTIVITY_STREAM_EVENT = "ActivityStreamEvent";
+
+    private boolean streaming;
+    private boolean event;
+    private boolean headers = true;
+    private ActivityStreamMetrics metrics;
+    private LdpResourceCache cache;
+
+    /**
+     * Set whether the message body should be scanned directly rather than converted to a Map.
+     * @param streaming true to extract values from the raw message body
+     */
+    public void setStreaming(final boolean streaming) {
+        this.streaming = streaming;
+    }
 
-    private static final String OBJECT = "object";
-    private static final String ID = "id";
-    private static final String TYPE = "type";
-    private static final String NAME = "name";
-    private static final String ACTOR = "actor";
-    private static final String INBOX = "inbox";
+    /**
+     * Identify whether the processor scans the raw message body.
+     * @return true if streaming mode is enabled; false otherwise
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Attach an {@link ActivityStreamEvent} to each exchange, as the {@value #ACTIVITY_STREAM_EVENT} property.
+     * @param event true to attach an event
+     */
+    public void setEvent(final boolean event) {
+        this.event = event;
+    }
+
+    /**
+     * Identify whether an {@link ActivityStreamEvent} is attached to each exchange.
+     * @return true if events are attached; false otherwise
+     */
+    public boolean isEvent() {
+        return event;
+    }
+
+    /**
+     * Set whether the individual ActivityStream message headers are written. This is enabled by default.
+     * @param headers true to write the message headers
+     */
+    public void setHeaders(final boolean headers) {
+        this.headers = headers;
+    }
+
+    /**
+     * Identify whether the individual ActivityStream message headers are written.
+     * @return true if the headers are written; false otherwise
+     */
+    public boolean isHeaders() {
+        return headers;
+    }
+
+    /**
+     * Collect metrics for each processed message.
+     * @param metrics the metrics instance, or null to disable metrics
+     */
+    public void setMetrics(final ActivityStreamMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get the metrics instance.
+     * @return the metrics instance, or null if metrics are disabled
+     */
+    public ActivityStreamMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Invalidate the cached representations of each resource that an event changes.
+     * @param cache the resource cache, or null to disable invalidation
+     */
+    public void setCache(final LdpResourceCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Get the resource cache.
+     * @return the resource cache, or null if invalidation is disabled
+     */
+    public LdpResourceCache getCache() {
+        return cache;
+    }
 
     /**
      * Process an incoming ActivityStream message.
@@ -51,25 +155,178 @@ public class ActivityStreamProcessor implements Processor {
      * @throws IOException in the event of an error
      */
     public void process(final Exchange exchange) throws IOException {
+        final ActivityStreamMetrics m = metrics;
+        if (m == null) {
+            extract(exchange);
+            return;
+        }
+        final long start = System.nanoTime();
+        try {
+            final ActivityStreamFields fields = extract(exchange);
+            m.record(fields, System.nanoTime() - start);
+        } catch (final IOException | RuntimeException ex) {
+            m.recordError();
+            throw ex;
+        }
+    }
+
+    private ActivityStreamFields extract(final Exchange exchange) throws IOException {
+        final Message message = exchange.getIn();
+        final ActivityStreamFields fields = streaming && !(message.getBody() instanceof Map) ?
+            parse(message) : read(message.getBody(Map.class), event);
+
+        if (headers) {
+            setHeader(message, ACTIVITY_STREAM_ID, fields.id);
+            setHeader(message, ACTIVITY_STREAM_TYPE, fields.type);
+            setHeader(message, ACTIVITY_STREAM_NAME, fields.name);
+            setHeader(message, ACTIVITY_STREAM_ACTOR, fields.actor);
+            setHeader(message, ACTIVITY_STREAM_INBOX, fields.inbox);
+            setHeader(message, ACTIVITY_STREAM_OBJECT_ID, fields.objectId);
+            setHeader(message, ACTIVITY_STREAM_OBJECT_TYPE, fields.objectType);
+        }
+        if (event) {
+            exchange.setProperty(ACTIVITY_STREAM_EVENT, new ActivityStreamEvent(fields, headers));
+        }
+        if (cache != null) {
+            cache.invalidate(fields.type, fields.objectId);
+        }
+        return fields;
+    }
+
+    /**
+     * Extract the ActivityStream fields from a message body that has been read as a map.
+     * @param body the message body
+     * @param copyLists whether list values should be copied rather than shared with the body
+     * @return the extracted fields
+     */
+    static ActivityStreamFields read(final Map<?, ?> body, final boolean copyLists) {
+        final ActivityStreamFields fields = new ActivityStreamFields();
+        int seen = 0;
+        for (final Map.Entry<?, ?> entry : body.entrySet()) {
+            final int field = entry.getKey() instanceof String ? field((String) entry.getKey()) : 0;
+            if (field == 0 || (seen & field) != 0) {
+                continue;
+            }
+            seen |= field;
+            final Object value = entry.getValue();
+            switch (field) {
+                case ActivityStreamFields.ID:
+                    fields.id = value(fields, field, value, copyLists);
+                    break;
+                case ActivityStreamFields.TYPE:
+                    fields.type = value(fields, field, value, copyLists);
+                    break;
+                case ActivityStreamFields.NAME:
+                    if (value instanceof Map) {
+                        fields.invalid |= field;
+                    } else {
+                        fields.name = value(fields, field, value, copyLists);
+                    }
+                    break;
+                case ActivityStreamFields.ACTOR:
+                    fields.actor = value(fields, field, value, copyLists);
+                    break;
+                case ActivityStreamFields.INBOX:
+                    fields.inbox = value(fields, field, value, copyLists);
+                    break;
+                default:
+                    readObject(fields, value, copyLists);
+            }
+        }
+        return fields;
+    }
+
+    private static void readObject(final ActivityStreamFields fields, final Object object, final boolean copyLists) {
+        if (!(object instanceof Map)) {
+            if (object != null) {
+                fields.invalid |= ActivityStreamFields.OBJECT;
+            }
+            return;
+        }
+        int seen = 0;
+        for (final Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+            final int field = entry.getKey() instanceof String ? objectField((String) entry.getKey()) : 0;
+            if (field == 0 || (seen & field) != 0) {
+                continue;
+            }
+            seen |= field;
+            if (field == ActivityStreamFields.OBJECT_ID) {
+                fields.objectId = value(fields, field, entry.getValue(), copyLists);
+            } else {
+                fields.objectType = value(fields, field, entry.getValue(), copyLists);
+            }
+        }
+    }
+
+    /* Accept a String, List or node object value, recording any other value as invalid. */
+    private static Object value(final ActivityStreamFields fields, final int field, final Object value,
+            final boolean copyLists) {
+        if (value instanceof String) {
+            return value;
+        } else if (value instanceof List) {
+            return values((List<?>) value, copyLists);
+        } else if (value instanceof Map) {
+            final String id = nodeId((Map<?, ?>) value);
+            if (id != null) {
+                return id;
+            }
+        }
+        if (value != null) {
+            fields.invalid |= field;
+        }
+        return null;
+    }
 
-        final Map body = exchange.getIn().getBody(Map.class);
+    /* Replace any node objects in a list with their identifiers. */
+    private static List<?> values(final List<?> values, final boolean copyLists) {
+        for (final Object value : values) {
+            if (value instanceof Map) {
+                final List<Object> ids = new ArrayList<>(values.size());
+                for (final Object v : values) {
+                    final Object id = v instanceof Map ? nodeId((Map<?, ?>) v) : v;
+                    if (id != null) {
+                        ids.add(id);
+                    }
+                }
+                return ids;
+            }
+        }
+        return copyLists ? new ArrayList<>(values) : values;
+    }
 
-        setHeader(exchange, ACTIVITY_STREAM_ID, body.get(ID));
-        setHeader(exchange, ACTIVITY_STREAM_TYPE, body.get(TYPE));
-        setHeader(exchange, ACTIVITY_STREAM_NAME, body.get(NAME));
-        setHeader(exchange, ACTIVITY_STREAM_ACTOR, body.get(ACTOR));
-        setHeader(exchange, ACTIVITY_STREAM_INBOX, body.get(INBOX));
+    private static String nodeId(final Map<?, ?> node) {
+        for (final Map.Entry<?, ?> entry : node.entrySet()) {
+            if (entry.getValue() instanceof String && entry.getKey() instanceof String &&
+                    isId((String) entry.getKey())) {
+                return (String) entry.getValue();
+            }
+        }
+        return null;
+    }
 
-        if (body.containsKey(OBJECT) && body.get(OBJECT) instanceof Map) {
-            final Map object = (Map) body.get(OBJECT);
-            setHeader(exchange, ACTIVITY_STREAM_OBJECT_ID, object.get(ID));
-            setHeader(exchange, ACTIVITY_STREAM_OBJECT_TYPE, object.get(TYPE));
+    private static ActivityStreamFields parse(final Message message) throws IOException {
+        final Object body = message.getBody();
+        if (body instanceof byte[]) {
+            return ActivityStreamParser.parse((byte[]) body);
+        } else if (body instanceof String) {
+            return ActivityStreamParser.parse((String) body);
+        }
+        final InputStream stream = message.getBody(InputStream.class);
+        if (stream == null) {
+            throw new IOException("Unable to read ActivityStream message body");
+        }
+        try {
+            return ActivityStreamParser.parse(stream);
+        } finally {
+            if (body instanceof StreamCache) {
+                ((StreamCache) body).reset();
+            }
         }
     }
 
-    private void setHeader(final Exchange exchange, final String header, final Object value) {
-        if (value != null && (value instanceof String || value instanceof List)) {
-            exchange.getIn().setHeader(header, value);
+    private static void setHeader(final Message message, final String header, final Object value) {
+        if (value != null) {
+            message.setHeader(header, value);
         }
     }
 }
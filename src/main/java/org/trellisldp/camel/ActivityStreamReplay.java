@@ -0,0 +1,446 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.CamelContextAware;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.Producer;
+import org.apache.camel.Service;
+import org.slf4j.Logger;
+
+/**
+ * Replays archived ActivityStream notifications, stored as newline-delimited JSON, to an endpoint.
+ *
+ * <p>Each log file is memory-mapped a window at a time and split on newlines in place: every line is
+ * scanned directly from the mapped pages by the same streaming extraction that
+ * {@link ActivityStreamProcessor} uses, without first being copied into a {@code String} or
+ * {@code byte[]}. The extracted events are sent to the target endpoint in batches, as a {@code List}
+ * of {@link ActivityStreamEvent} objects, with the log file and the offset after the batch in the
+ * {@value #ACTIVITY_STREAM_REPLAY_FILE} and {@value #ACTIVITY_STREAM_REPLAY_OFFSET} headers. Blank
+ * lines are ignored, and malformed lines are skipped and counted.
+ *
+ * <pre>{@code
+ * final ActivityStreamReplay replay = new ActivityStreamReplay("direct:reindex", logs);
+ * replay.setCheckpoint(Paths.get("/var/lib/trellis/replay.checkpoint"));
+ * replay.setMaxRate(50_000);
+ * camelContext.addService(replay);
+ * replay.replay();
+ * }</pre>
+ *
+ * <p>When a checkpoint file is set, the file and byte offset after each successfully delivered batch
+ * are recorded there, and a later replay resumes from that point. If delivery fails, the replay
+ * stops with the checkpoint at the last delivered batch. Stopping the service also ends a replay
+ * in progress once the current batch has been delivered. The log files are replayed in the order
+ * in which they are given.
+ *
+ * <p>As a {@link Processor}, the replay runs when an exchange arrives, such as from a timer, and
+ * sets the number of replayed events as the message body.
+ *
+ * @author acoburn
+ */
+public class ActivityStreamReplay implements Processor, CamelContextAware, Service {
+
+    public static final String ACTIVITY_STREAM_REPLAY_FILE = "ActivityStreamReplayFile";
+    public static final String ACTIVITY_STREAM_REPLAY_OFFSET = "ActivityStreamReplayOffset";
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 28;
+
+    private static final Logger LOGGER = getLogger(ActivityStreamReplay.class);
+
+    private static final String FILE = "file";
+    private static final String OFFSET = "offset";
+
+    private final String endpointUri;
+    private final List<Path> logs;
+    private final AtomicLong eventCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private CamelContext camelContext;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private long maxRate;
+    private Path checkpoint;
+
+    private Producer producer;
+    private volatile boolean stopping;
+    private volatile String file;
+    private volatile long offset;
+
+    /**
+     * Create a replay of one or more log files.
+     * @param endpointUri the endpoint to which each batch of events is sent
+     * @param logs the newline-delimited JSON log files, in the order in which they were written
+     */
+    public ActivityStreamReplay(final String endpointUri, final List<Path> logs) {
+        this.endpointUri = endpointUri;
+        this.logs = new ArrayList<>(logs);
+    }
+
+    @Override
+    public void setCamelContext(final CamelContext camelContext) {
+        this.camelContext = camelContext;
+    }
+
+    @Override
+    public CamelContext getCamelContext() {
+        return camelContext;
+    }
+
+    /**
+     * Set the maximum number of events sent in each exchange.
+     * @param batchSize the batch size
+     */
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Get the maximum number of events sent in each exchange.
+     * @return the batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set the number of bytes of a log file that are mapped at a time. A longer line than this
+     * is mapped whole.
+     * @param chunkSize the size of each mapped window
+     */
+    public void setChunkSize(final int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Get the number of bytes of a log file that are mapped at a time.
+     * @return the size of each mapped window
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Limit the rate at which events are sent. By default, there is no limit.
+     * @param maxRate the maximum number of events per second, or zero for no limit
+     */
+    public void setMaxRate(final long maxRate) {
+        this.maxRate = maxRate;
+    }
+
+    /**
+     * Get the maximum rate at which events are sent.
+     * @return the maximum number of events per second, or zero if there is no limit
+     */
+    public long getMaxRate() {
+        return maxRate;
+    }
+
+    /**
+     * Set the file in which the replay position is recorded.
+     * @param checkpoint the checkpoint file, or null to always replay from the beginning
+     */
+    public void setCheckpoint(final Path checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Get the file in which the replay position is recorded.
+     * @return the checkpoint file, or null if there is none
+     */
+    public Path getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Get the number of events delivered since the replay was created.
+     * @return the number of events
+     */
+    public long getEventCount() {
+        return eventCount.get();
+    }
+
+    /**
+     * Get the number of malformed lines skipped since the replay was created.
+     * @return the number of malformed lines
+     */
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     * Get the log file of the most recently delivered batch.
+     * @return the log file, or null if nothing has been delivered
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * Get the byte offset, in its log file, after the most recently delivered batch.
+     * @return the offset
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public void process(final Exchange exchange) throws IOException {
+        exchange.getIn().setBody(replay());
+    }
+
+    /**
+     * Replay the log files, resuming from the checkpoint if there is one.
+     * @return the number of events delivered
+     * @throws IOException if a log file could not be read, or a batch could not be delivered
+     */
+    public synchronized long replay() throws IOException {
+        if (producer == null) {
+            throw new IllegalStateException("The replay must be started before it is run");
+        }
+        int first = 0;
+        long start = 0L;
+        final Properties position = readCheckpoint();
+        if (position != null) {
+            first = indexOf(position.getProperty(FILE));
+            if (first < 0) {
+                LOGGER.warn("Checkpoint file {} is not being replayed; starting from the beginning",
+                        position.getProperty(FILE));
+                first = 0;
+            } else {
+                start = Long.parseLong(position.getProperty(OFFSET, "0"));
+            }
+        }
+        final Pacer pacer = new Pacer(maxRate);
+        long replayed = 0L;
+        for (int i = first; i < logs.size() && !stopping; i++) {
+            replayed += replay(logs.get(i), i == first ? start : 0L, pacer);
+        }
+        return replayed;
+    }
+
+    @Override
+    public void start() {
+        if (batchSize <= 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("The batch size and chunk size must be positive");
+        }
+        if (camelContext == null) {
+            throw new IllegalStateException("A CamelContext is required to start the replay");
+        }
+        synchronized (this) {
+            if (producer != null) {
+                return;
+            }
+            try {
+                producer = camelContext.getEndpoint(endpointUri).createProducer();
+                producer.start();
+            } catch (final Exception ex) {
+                throw new IllegalStateException("Unable to create a producer for " + endpointUri, ex);
+            }
+            stopping = false;
+        }
+    }
+
+    @Override
+    public void stop() {
+        stopping = true;
+        synchronized (this) {
+            if (producer != null) {
+                producer.stop();
+                producer = null;
+            }
+        }
+    }
+
+    private long replay(final Path log, final long start, final Pacer pacer) throws IOException {
+        final List<ActivityStreamEvent> events = new ArrayList<>(batchSize);
+        long replayed = 0L;
+        try (FileChannel channel = FileChannel.open(log, READ)) {
+            final long size = channel.size();
+            long position = start;
+            long window = chunkSize;
+            while (position < size && !stopping) {
+                final int length = (int) Math.min(window, size - position);
+                final boolean last = position + length == size;
+                final MappedByteBuffer buffer = channel.map(READ_ONLY, position, length);
+                int from = 0;
+                while (from < length && !stopping) {
+                    int end = newline(buffer, from, length);
+                    if (end < 0) {
+                        if (!last) {
+                            break;
+                        }
+                        end = length;
+                    }
+                    read(buffer, from, end, events);
+                    from = Math.min(end + 1, length);
+                    if (events.size() >= batchSize) {
+                        replayed += send(log, position + from, events, pacer);
+                    }
+                }
+                if (from == 0 && !last) {
+                    if (length == Integer.MAX_VALUE) {
+                        throw new IOException("Line too long at offset " + position + " of " + log);
+                    }
+                    window = Math.min(window * 2, Integer.MAX_VALUE);
+                } else {
+                    window = chunkSize;
+                }
+                position += from;
+            }
+            if (!events.isEmpty()) {
+                replayed += send(log, position, events, pacer);
+            }
+        }
+        return replayed;
+    }
+
+    private void read(final MappedByteBuffer buffer, final int from, final int end,
+            final List<ActivityStreamEvent> events) {
+        if (isBlank(buffer, from, end)) {
+            return;
+        }
+        try {
+            events.add(new ActivityStreamEvent(ActivityStreamParser.parse(buffer, from, end)));
+        } catch (final IOException ex) {
+            errorCount.incrementAndGet();
+            LOGGER.debug("Skipping a malformed line: {}", ex.getMessage());
+        }
+    }
+
+    private long send(final Path log, final long position, final List<ActivityStreamEvent> events,
+            final Pacer pacer) throws IOException {
+        final int count = events.size();
+        pacer.acquire(count);
+        final Exchange exchange = producer.getEndpoint().createExchange();
+        exchange.getIn().setBody(new ArrayList<>(events));
+        exchange.getIn().setHeader(ACTIVITY_STREAM_REPLAY_FILE, log.toString());
+        exchange.getIn().setHeader(ACTIVITY_STREAM_REPLAY_OFFSET, position);
+        events.clear();
+        try {
+            producer.process(exchange);
+        } catch (final Exception ex) {
+            exchange.setException(ex);
+        }
+        if (exchange.getException() != null) {
+            throw new IOException("Unable to deliver events from " + log + " before offset " + position,
+                    exchange.getException());
+        }
+        writeCheckpoint(log, position);
+        file = log.toString();
+        offset = position;
+        eventCount.addAndGet(count);
+        return count;
+    }
+
+    private int indexOf(final String path) {
+        for (int i = 0; i < logs.size(); i++) {
+            if (logs.get(i).toString().equals(path)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Properties readCheckpoint() throws IOException {
+        if (checkpoint == null || !Files.exists(checkpoint)) {
+            return null;
+        }
+        final Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(checkpoint)) {
+            properties.load(input);
+        }
+        return properties.getProperty(FILE) != null ? properties : null;
+    }
+
+    /* The checkpoint is written beside the target and moved into place, so it is never seen half-written. */
+    private void writeCheckpoint(final Path log, final long position) throws IOException {
+        if (checkpoint == null) {
+            return;
+        }
+        final Properties properties = new Properties();
+        properties.setProperty(FILE, log.toString());
+        properties.setProperty(OFFSET, Long.toString(position));
+        final Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (OutputStream output = Files.newOutputStream(temporary)) {
+            properties.store(output, "ActivityStream replay position");
+        }
+        Files.move(temporary, checkpoint, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    private static int newline(final MappedByteBuffer buffer, final int from, final int limit) {
+        for (int i = from; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isBlank(final MappedByteBuffer buffer, final int from, final int end) {
+        for (int i = from; i < end; i++) {
+            final byte b = buffer.get(i);
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Hold each batch back until the events already sent are within the rate limit. */
+    private final class Pacer {
+        private final long rate;
+        private final long start = System.nanoTime();
+        private long sent;
+
+        Pacer(final long rate) {
+            this.rate = rate;
+        }
+
+        void acquire(final int count) {
+            if (rate > 0) {
+                final long due = start + (long) (sent * 1e9 / rate);
+                long remaining = due - System.nanoTime();
+                while (remaining > 0 && !stopping) {
+                    LockSupport.parkNanos(remaining);
+                    remaining = due - System.nanoTime();
+                }
+                sent += count;
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_OBJECT_TYPE;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_TYPE;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.CamelContextAware;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.Producer;
+import org.apache.camel.Service;
+
+/**
+ * A Camel processor that sends each exchange to an endpoint chosen by its ActivityStream types.
+ *
+ * <p>This replaces a {@code choice()} whose branches test the {@code ActivityStreamType} and
+ * {@code ActivityStreamObjectType} headers. Rules are matched in the order in which they are
+ * declared, as with {@code choice()}, but the types are looked up in a table built when the
+ * processor starts, so each exchange needs only one pass over each type header:
+ *
+ * <pre>{@code
+ * from("jms:trellis")
+ *     .process(new ActivityStreamProcessor())
+ *     .process(new ActivityStreamTypeDispatcher()
+ *         .when("Delete", "direct:delete")
+ *         .whenObjectType("ldp:Container", "direct:container")
+ *         .when("Create", "direct:create")
+ *         .when("Update", "direct:update")
+ *         .otherwise("direct:other"));
+ * }</pre>
+ *
+ * <p>A type written with one of the {@code as}, {@code ldp} or {@code prov} prefixes also matches
+ * the full IRI, and the reverse; a bare term such as {@code Create} is an ActivityStreams type.
+ * If the exchange carries an {@link ActivityStreamEvent}, its types are used instead of the headers.
+ * After the target endpoint has processed the exchange, the route continues. An exchange that
+ * matches no rule, when there is no {@code otherwise} endpoint, is not sent anywhere.
+ *
+ * @author acoburn
+ */
+public class ActivityStreamTypeDispatcher implements Processor, CamelContextAware, Service {
+
+    private static final String[][] PREFIXES = {
+        {"as:", "https://www.w3.org/ns/activitystreams#"},
+        {"ldp:", "http://www.w3.org/ns/ldp#"},
+        {"prov:", "http://www.w3.org/ns/prov#"}};
+
+    private final List<Rule> rules = new ArrayList<>();
+
+    private CamelContext camelContext;
+    private String otherwiseUri;
+
+    private volatile Map<String, Integer> activityTypes;
+    private volatile Map<String, Integer> objectTypes;
+    private volatile Producer[] producers;
+    private volatile Producer otherwise;
+
+    /**
+     * Route exchanges with an activity type to an endpoint.
+     * @param activityType the value of the {@code ActivityStreamType} header
+     * @param endpointUri the target endpoint
+     * @return this dispatcher
+     */
+    public ActivityStreamTypeDispatcher when(final String activityType, final String endpointUri) {
+        rules.add(new Rule(activityType, false, endpointUri));
+        return this;
+    }
+
+    /**
+     * Route exchanges with an object type to an endpoint.
+     * @param objectType the value of the {@code ActivityStreamObjectType} header
+     * @param endpointUri the target endpoint
+     * @return this dispatcher
+     */
+    public ActivityStreamTypeDispatcher whenObjectType(final String objectType, final String endpointUri) {
+        rules.add(new Rule(objectType, true, endpointUri));
+        return this;
+    }
+
+    /**
+     * Route exchanges that match no other rule to an endpoint.
+     * @param endpointUri the target endpoint
+     * @return this dispatcher
+     */
+    public ActivityStreamTypeDispatcher otherwise(final String endpointUri) {
+        this.otherwiseUri = endpointUri;
+        return this;
+    }
+
+    @Override
+    public void setCamelContext(final CamelContext camelContext) {
+        this.camelContext = camelContext;
+    }
+
+    @Override
+    public CamelContext getCamelContext() {
+        return camelContext;
+    }
+
+    @Override
+    public void process(final Exchange exchange) throws Exception {
+        final Producer[] targets = producers;
+        if (targets == null) {
+            throw new IllegalStateException("The type dispatcher has not been started");
+        }
+        final ActivityStreamEvent event = ActivityStreamEvent.of(exchange);
+        final int rule = event != null ? match(event.getTypes(), event.getObjectTypes(), targets.length) :
+            match(exchange.getIn().getHeader(ACTIVITY_STREAM_TYPE),
+                    exchange.getIn().getHeader(ACTIVITY_STREAM_OBJECT_TYPE), targets.length);
+        final Producer target = rule < targets.length ? targets[rule] : otherwise;
+        if (target != null) {
+            target.process(exchange);
+        }
+    }
+
+    /**
+     * Find the first rule that matches the type headers.
+     * @param activityType the {@code ActivityStreamType} header value
+     * @param objectType the {@code ActivityStreamObjectType} header value
+     * @param none the number of rules
+     * @return the index of the matching rule, or the number of rules if none match
+     */
+    int match(final Object activityType, final Object objectType, final int none) {
+        return Math.min(lookup(activityTypes, activityType, none), lookup(objectTypes, objectType, none));
+    }
+
+    @Override
+    public void start() {
+        if (camelContext == null) {
+            throw new IllegalStateException("A CamelContext is required to start the type dispatcher");
+        }
+        final Map<String, Integer> activities = new HashMap<>();
+        final Map<String, Integer> objects = new HashMap<>();
+        final Map<String, Producer> byUri = new HashMap<>();
+        final Producer[] targets = new Producer[rules.size()];
+        for (int i = 0; i < targets.length; i++) {
+            final Rule rule = rules.get(i);
+            final Map<String, Integer> table = rule.object ? objects : activities;
+            for (final String type : expand(rule.type)) {
+                table.putIfAbsent(type, i);
+            }
+            targets[i] = byUri.computeIfAbsent(rule.endpointUri, this::createProducer);
+        }
+        otherwise = otherwiseUri != null ? byUri.computeIfAbsent(otherwiseUri, this::createProducer) : null;
+        activityTypes = activities;
+        objectTypes = objects;
+        producers = targets;
+    }
+
+    @Override
+    public void stop() {
+        final Producer[] targets = producers;
+        producers = null;
+        if (targets != null) {
+            for (final Producer producer : targets) {
+                producer.stop();
+            }
+        }
+        if (otherwise != null) {
+            otherwise.stop();
+            otherwise = null;
+        }
+    }
+
+    private Producer createProducer(final String endpointUri) {
+        try {
+            final Producer producer = camelContext.getEndpoint(endpointUri).createProducer();
+            producer.start();
+            return producer;
+        } catch (final Exception ex) {
+            throw new IllegalStateException("Unable to create a producer for " + endpointUri, ex);
+        }
+    }
+
+    private static int lookup(final Map<String, Integer> table, final Object value, final int none) {
+        if (table.isEmpty()) {
+            return none;
+        }
+        if (value instanceof String) {
+            final Integer rule = table.get(value);
+            return rule != null ? rule : none;
+        }
+        int first = none;
+        if (value instanceof List) {
+            for (final Object type : (List<?>) value) {
+                final Integer rule = type instanceof String ? table.get(type) : null;
+                if (rule != null && rule < first) {
+                    first = rule;
+                }
+            }
+        }
+        return first;
+    }
+
+    /* Get the equivalent forms of a type: the bare ActivityStreams term, the prefixed name and the full IRI. */
+    static Set<String> expand(final String type) {
+        String iri = type.indexOf(':') < 0 ? PREFIXES[0][1] + type : type;
+        for (final String[] prefix : PREFIXES) {
+            if (type.startsWith(prefix[0])) {
+                iri = prefix[1] + type.substring(prefix[0].length());
+            }
+        }
+        final Set<String> types = new LinkedHashSet<>();
+        types.add(type);
+        types.add(iri);
+        for (final String[] prefix : PREFIXES) {
+            if (iri.startsWith(prefix[1])) {
+                types.add(prefix[0] + iri.substring(prefix[1].length()));
+            }
+        }
+        if (iri.startsWith(PREFIXES[0][1])) {
+            types.add(iri.substring(PREFIXES[0][1].length()));
+        }
+        return types;
+    }
+
+    private static final class Rule {
+        private final String type;
+        private final boolean object;
+        private final String endpointUri;
+
+        Rule(final String type, final boolean object, final String endpointUri) {
+            this.type = type;
+            this.object = object;
+            this.endpointUri = endpointUri;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static org.trellisldp.camel.ActivityStreamFields.ACTOR;
+import static org.trellisldp.camel.ActivityStreamFields.ID;
+import static org.trellisldp.camel.ActivityStreamFields.INBOX;
+import static org.trellisldp.camel.ActivityStreamFields.NAME;
+import static org.trellisldp.camel.ActivityStreamFields.OBJECT;
+import static org.trellisldp.camel.ActivityStreamFields.OBJECT_ID;
+import static org.trellisldp.camel.ActivityStreamFields.OBJECT_TYPE;
+import static org.trellisldp.camel.ActivityStreamFields.TYPE;
+
+/**
+ * A lookup table of the ActivityStreams member names, including the forms that JSON-LD permits.
+ *
+ * <p>Besides the plain {@code id} and {@code type} keys, an ActivityStreams document may use the
+ * JSON-LD keywords {@code @id} and {@code @type}. The {@code actor}, {@code name} and {@code object}
+ * properties may also appear as a compact IRI such as {@code as:actor} or a full IRI such as
+ * {@code https://www.w3.org/ns/activitystreams#actor} (or its {@code http} form), while {@code inbox}
+ * is an LDP term and may appear as {@code ldp:inbox} or {@code http://www.w3.org/ns/ldp#inbox}.
+ * This table maps every such key to its {@link ActivityStreamFields} bit without a JSON-LD processor.
+ * It is built once, and a lookup costs about as much as a {@code HashMap.get}, without allocating:
+ * keys may be any {@code CharSequence}, including the streaming parser's buffer.
+ *
+ * @author acoburn
+ */
+final class ActivityStreamVocabulary {
+
+    static final String AS = "https://www.w3.org/ns/activitystreams#";
+
+    static final String AS_HTTP = "http://www.w3.org/ns/activitystreams#";
+
+    static final String LDP = "http://www.w3.org/ns/ldp#";
+
+    private static final String[] KEYS;
+    private static final int[] FIELDS;
+    private static final int MASK;
+
+    static {
+        final String[] terms = {"name", "actor", "object"};
+        final int[] fields = {NAME, ACTOR, OBJECT};
+        final int size = Integer.highestOneBit((terms.length * 4 + 7) * 2 - 1) << 1;
+        KEYS = new String[size];
+        FIELDS = new int[size];
+        MASK = size - 1;
+        for (int i = 0; i < terms.length; i++) {
+            put(terms[i], fields[i]);
+            put("as:" + terms[i], fields[i]);
+            put(AS + terms[i], fields[i]);
+            put(AS_HTTP + terms[i], fields[i]);
+        }
+        put("id", ID);
+        put("@id", ID);
+        put("type", TYPE);
+        put("@type", TYPE);
+        put("inbox", INBOX);
+        put("ldp:inbox", INBOX);
+        put(LDP + "inbox", INBOX);
+    }
+
+    /**
+     * Get the field for a member of the activity.
+     * @param key the member name
+     * @return the field bit, or zero if the member is not extracted
+     */
+    static int field(final CharSequence key) {
+        final int hash = key instanceof String ? key.hashCode() : hash(key);
+        for (int i = hash & MASK; KEYS[i] != null; i = (i + 1) & MASK) {
+            if (KEYS[i].contentEquals(key)) {
+                return FIELDS[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Get the field for a member of the activity's object.
+     * @param key the member name
+     * @return {@link ActivityStreamFields#OBJECT_ID}, {@link ActivityStreamFields#OBJECT_TYPE} or zero
+     */
+    static int objectField(final CharSequence key) {
+        final int field = field(key);
+        if (field == ID) {
+            return OBJECT_ID;
+        }
+        return field == TYPE ? OBJECT_TYPE : 0;
+    }
+
+    /**
+     * Identify whether a member name is an alias of {@code id}.
+     * @param key the member name
+     * @return true if the member holds the node's identifier
+     */
+    static boolean isId(final CharSequence key) {
+        return field(key) == ID;
+    }
+
+    private static void put(final String key, final int field) {
+        int i = key.hashCode() & MASK;
+        while (KEYS[i] != null) {
+            i = (i + 1) & MASK;
+        }
+        KEYS[i] = key;
+        FIELDS[i] = field;
+    }
+
+    /* The same hash as String.hashCode, for other character sequences. */
+    private static int hash(final CharSequence key) {
+        int hash = 0;
+        for (int i = 0; i < key.length(); i++) {
+            hash = 31 * hash + key.charAt(i);
+        }
+        return hash;
+    }
+
+    private ActivityStreamVocabulary() {
+        // prevent instantiation
+    }
+}
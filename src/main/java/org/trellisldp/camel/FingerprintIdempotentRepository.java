@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.Arrays.fill;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+import org.apache.camel.spi.IdempotentRepository;
+
+/**
+ * A memory-bounded {@link IdempotentRepository} that stores fingerprints of message identifiers
+ * rather than the identifiers themselves.
+ *
+ * <p>This is intended for suppressing redelivered notifications, keyed on the
+ * {@link ActivityStreamProcessor#ACTIVITY_STREAM_ID} header:
+ *
+ * <pre>{@code
+ * from("jms:trellis")
+ *     .process(new ActivityStreamProcessor())
+ *     .idempotentConsumer(header(ACTIVITY_STREAM_ID), new FingerprintIdempotentRepository(100_000, 1e-6))
+ *     .to("direct:index");
+ * }</pre>
+ *
+ * <p>All storage is allocated when the repository is created: a ring of fingerprints in insertion
+ * order and an open-addressing index into that ring, so the memory used is known in advance (see
+ * {@link #getMemoryUsage()}) and does not grow with the number of keys. When the ring is full, the
+ * oldest key is forgotten. Keys may also expire after a fixed time to live.
+ *
+ * <p>The fingerprint width is chosen from the capacity and the configured false positive rate,
+ * which is the probability that a key that was never added is reported as a duplicate. When 32 bits
+ * are sufficient, fingerprints are stored as {@code int} values.
+ *
+ * @author acoburn
+ */
+public class FingerprintIdempotentRepository implements IdempotentRepository {
+
+    public static final int DEFAULT_CAPACITY = 100_000;
+
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 1e-6;
+
+    private final int capacity;
+    private final int bits;
+    private final long timeToLive;
+    private final LongSupplier clock;
+
+    /* Fingerprints in insertion order; exactly one of these is allocated. Zero marks a removed key. */
+    private final int[] shortPrints;
+    private final long[] longPrints;
+    private final long[] timestamps;
+
+    /* Ring positions, offset by one so that zero marks an empty slot. */
+    private final int[] index;
+    private final int mask;
+
+    private int head;
+    private int count;
+    private int size;
+
+    /**
+     * Create a repository with the default capacity and false positive rate.
+     */
+    public FingerprintIdempotentRepository() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a repository with the default false positive rate.
+     * @param capacity the maximum number of keys to retain
+     */
+    public FingerprintIdempotentRepository(final int capacity) {
+        this(capacity, DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Create a repository whose keys do not expire.
+     * @param capacity the maximum number of keys to retain
+     * @param falsePositiveRate the probability that a new key is reported as a duplicate
+     */
+    public FingerprintIdempotentRepository(final int capacity, final double falsePositiveRate) {
+        this(capacity, falsePositiveRate, Duration.ZERO);
+    }
+
+    /**
+     * Create a repository.
+     * @param capacity the maximum number of keys to retain
+     * @param falsePositiveRate the probability that a new key is reported as a duplicate
+     * @param timeToLive how long a key is retained, or zero to retain keys until the capacity is reached
+     */
+    public FingerprintIdempotentRepository(final int capacity, final double falsePositiveRate,
+            final Duration timeToLive) {
+        this(capacity, falsePositiveRate, timeToLive, System::currentTimeMillis);
+    }
+
+    /**
+     * Create a repository with a custom clock.
+     * @param capacity the maximum number of keys to retain
+     * @param falsePositiveRate the probability that a new key is reported as a duplicate
+     * @param timeToLive how long a key is retained, or zero to retain keys until the capacity is reached
+     * @param clock a source of the current time, in milliseconds
+     */
+    FingerprintIdempotentRepository(final int capacity, final double falsePositiveRate,
+            final Duration timeToLive, final LongSupplier clock) {
+        if (capacity <= 0 || capacity > 1 << 28) {
+            throw new IllegalArgumentException("The capacity must be between 1 and 2^28: " + capacity);
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("The false positive rate must be between 0 and 1: "
+                    + falsePositiveRate);
+        }
+        if (timeToLive.isNegative()) {
+            throw new IllegalArgumentException("The time to live must not be negative: " + timeToLive);
+        }
+        this.capacity = capacity;
+        this.bits = Fingerprints.bits(capacity, falsePositiveRate);
+        this.timeToLive = timeToLive.toMillis();
+        this.clock = clock;
+        this.shortPrints = bits <= Integer.SIZE ? new int[capacity] : null;
+        this.longPrints = bits <= Integer.SIZE ? null : new long[capacity];
+        this.timestamps = this.timeToLive > 0 ? new long[capacity] : null;
+        this.index = new int[Integer.highestOneBit(capacity) << 2];
+        this.mask = index.length - 1;
+    }
+
+    @Override
+    public synchronized boolean add(final String key) {
+        expire();
+        final long fingerprint = Fingerprints.of(key, bits);
+        if (find(fingerprint) >= 0) {
+            return false;
+        }
+        if (count == capacity) {
+            evictOldest();
+        }
+        final int position = (head + count) % capacity;
+        setFingerprint(position, fingerprint);
+        if (timestamps != null) {
+            timestamps[position] = clock.getAsLong();
+        }
+        int slot = Fingerprints.hash(fingerprint) & mask;
+        while (index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = position + 1;
+        count++;
+        size++;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean contains(final String key) {
+        expire();
+        return find(Fingerprints.of(key, bits)) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The space used by a removed key is reclaimed once it becomes the oldest entry.
+     */
+    @Override
+    public synchronized boolean remove(final String key) {
+        expire();
+        final int slot = find(Fingerprints.of(key, bits));
+        if (slot < 0) {
+            return false;
+        }
+        setFingerprint(index[slot] - 1, 0);
+        delete(slot);
+        size--;
+        return true;
+    }
+
+    @Override
+    public boolean confirm(final String key) {
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        fill(index, 0);
+        head = 0;
+        count = 0;
+        size = 0;
+    }
+
+    @Override
+    public void start() {
+        // Storage is allocated when the repository is created
+    }
+
+    @Override
+    public void stop() {
+        // Keys are retained across restarts of the route
+    }
+
+    /**
+     * Get the number of keys currently held.
+     * @return the number of keys
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Get the maximum number of keys that can be held.
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the number of bits stored for each fingerprint.
+     * @return the fingerprint width
+     */
+    public int getFingerprintBits() {
+        return bits;
+    }
+
+    /**
+     * Get the number of bytes used to store fingerprints, timestamps and the index.
+     * @return the memory used, in bytes
+     */
+    public long getMemoryUsage() {
+        final long prints = shortPrints != null ? (long) Integer.BYTES * capacity : (long) Long.BYTES * capacity;
+        final long times = timestamps != null ? (long) Long.BYTES * capacity : 0L;
+        return prints + times + (long) Integer.BYTES * index.length;
+    }
+
+    private int find(final long fingerprint) {
+        int slot = Fingerprints.hash(fingerprint) & mask;
+        while (index[slot] != 0) {
+            if (getFingerprint(index[slot] - 1) == fingerprint) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void expire() {
+        if (timestamps != null) {
+            final long cutoff = clock.getAsLong() - timeToLive;
+            while (count > 0 && timestamps[head] <= cutoff) {
+                evictOldest();
+            }
+        }
+    }
+
+    private void evictOldest() {
+        final long fingerprint = getFingerprint(head);
+        if (fingerprint != 0) {
+            int slot = Fingerprints.hash(fingerprint) & mask;
+            while (index[slot] != head + 1) {
+                slot = (slot + 1) & mask;
+            }
+            delete(slot);
+            size--;
+        }
+        head = (head + 1) % capacity;
+        count--;
+    }
+
+    /* Remove an index slot, shifting back any later entries in the same probe sequence. */
+    private void delete(final int slot) {
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (index[next] != 0) {
+            final int home = Fingerprints.hash(getFingerprint(index[next] - 1)) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                index[hole] = index[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        index[hole] = 0;
+    }
+
+    private long getFingerprint(final int position) {
+        return shortPrints != null ? shortPrints[position] & 0xffffffffL : longPrints[position];
+    }
+
+    private void setFingerprint(final int position, final long fingerprint) {
+        if (shortPrints != null) {
+            shortPrints[position] = (int) fingerprint;
+        } else {
+            longPrints[position] = fingerprint;
+        }
+    }
+}
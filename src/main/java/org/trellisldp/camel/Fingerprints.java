@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+/**
+ * 64-bit fingerprints of message identifiers.
+ *
+ * <p>A fingerprint is an FNV-1a hash of the UTF-16 code units, passed through the MurmurHash3
+ * finalizer so that every bit depends on every input character. A fingerprint is never zero, so
+ * zero may be used to mark an empty slot.
+ *
+ * @author acoburn
+ */
+final class Fingerprints {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Compute the fingerprint of a value.
+     * @param value the value
+     * @return a non-zero 64-bit fingerprint
+     */
+    static long of(final CharSequence value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return nonZero(mix(hash));
+    }
+
+    /**
+     * Compute the fingerprint of a value, truncated to a number of bits.
+     * @param value the value
+     * @param bits the number of bits, between 1 and 64
+     * @return a non-zero fingerprint that fits in the given number of bits
+     */
+    static long of(final CharSequence value, final int bits) {
+        final long fingerprint = of(value);
+        return bits >= Long.SIZE ? fingerprint : nonZero(fingerprint & ((1L << bits) - 1));
+    }
+
+    /**
+     * Compute the number of fingerprint bits needed to hold a number of entries, such that a value
+     * that was never added is reported as present with no more than the given probability.
+     * @param entries the number of entries
+     * @param falsePositiveRate the false positive probability, between 0 and 1
+     * @return the number of bits, at most 64
+     */
+    static int bits(final long entries, final double falsePositiveRate) {
+        final double bits = Math.ceil(Math.log(entries / falsePositiveRate) / Math.log(2));
+        return (int) Math.max(1, Math.min(Long.SIZE, bits));
+    }
+
+    /**
+     * Spread a fingerprint over a hash table index.
+     * @param fingerprint the fingerprint
+     * @return a well-distributed 32-bit hash
+     */
+    static int hash(final long fingerprint) {
+        return (int) mix(fingerprint);
+    }
+
+    private static long mix(final long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long nonZero(final long fingerprint) {
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    private Fingerprints() {
+        // prevent instantiation
+    }
+}
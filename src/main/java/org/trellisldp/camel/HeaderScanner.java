@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+/**
+ * A single-pass scanner over an HTTP header value.
+ *
+ * <p>The scanner records the bounds of the most recently read token rather than creating a
+ * substring, so callers can compare or convert a token without allocating. Values may be
+ * RFC 7230 quoted strings, in which case delimiters inside the quotes are ignored. A quoted
+ * string that is never closed is treated as an ordinary token, including its opening quote.
+ *
+ * @author acoburn
+ */
+final class HeaderScanner {
+
+    private final String header;
+    private final int length;
+    private int position;
+    private int start;
+    private int end;
+    private boolean escaped;
+
+    /**
+     * Create a scanner for a header value.
+     * @param header the header value
+     */
+    HeaderScanner(final String header) {
+        this.header = header;
+        this.length = header.length();
+    }
+
+    /**
+     * Identify whether there is more input.
+     * @return true if the end of the header has not been reached
+     */
+    boolean hasNext() {
+        return position < length;
+    }
+
+    /**
+     * Get the character at the current position.
+     * @return the current character
+     */
+    char current() {
+        return header.charAt(position);
+    }
+
+    /**
+     * Move past the current character.
+     */
+    void advance() {
+        position++;
+    }
+
+    /**
+     * Skip any whitespace at the current position.
+     */
+    void skipWhitespace() {
+        while (position < length && isWhitespace(header.charAt(position))) {
+            position++;
+        }
+    }
+
+    /**
+     * Skip whitespace and, if present, a single expected character.
+     * @param c the expected character
+     * @return true if the character was found and skipped
+     */
+    boolean skip(final char c) {
+        skipWhitespace();
+        if (position < length && header.charAt(position) == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Read a token, stopping before any of the delimiter characters.
+     * @param delimiters the delimiter characters
+     */
+    void readToken(final String delimiters) {
+        skipWhitespace();
+        start = position;
+        while (position < length && delimiters.indexOf(header.charAt(position)) < 0) {
+            position++;
+        }
+        end = position;
+        while (end > start && isWhitespace(header.charAt(end - 1))) {
+            end--;
+        }
+        escaped = false;
+    }
+
+    /**
+     * Read a token or a quoted string, stopping before any of the delimiter characters.
+     *
+     * <p>For a quoted string, the token bounds exclude the quotes and any text between the
+     * closing quote and the next delimiter is ignored.
+     *
+     * @param delimiters the delimiter characters
+     */
+    void readValue(final String delimiters) {
+        skipWhitespace();
+        if (position < length && header.charAt(position) == '"') {
+            boolean hasEscapes = false;
+            for (int i = position + 1; i < length; i++) {
+                final char c = header.charAt(i);
+                if (c == '\\') {
+                    hasEscapes = true;
+                    i++;
+                } else if (c == '"') {
+                    start = position + 1;
+                    end = i;
+                    escaped = hasEscapes;
+                    position = i + 1;
+                    while (position < length && delimiters.indexOf(header.charAt(position)) < 0) {
+                        position++;
+                    }
+                    return;
+                }
+            }
+        }
+        readToken(delimiters);
+    }
+
+    /**
+     * Read a token enclosed in a pair of brackets, such as a {@code <uri-reference>}.
+     *
+     * <p>If the brackets are not found, the position is left unchanged.
+     *
+     * @param open the opening bracket
+     * @param close the closing bracket
+     * @return true if a bracketed token was read
+     */
+    boolean readBracketed(final char open, final char close) {
+        skipWhitespace();
+        if (position < length && header.charAt(position) == open) {
+            final int closing = header.indexOf(close, position + 1);
+            if (closing >= 0) {
+                start = position + 1;
+                end = closing;
+                escaped = false;
+                position = closing + 1;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skip everything up to the next delimiter character.
+     * @param delimiters the delimiter characters
+     */
+    void skipTo(final String delimiters) {
+        while (position < length && delimiters.indexOf(header.charAt(position)) < 0) {
+            position++;
+        }
+    }
+
+    /**
+     * Identify whether the most recent token is the given text.
+     * @param text the text to compare
+     * @return true if the token matches the text exactly
+     */
+    boolean matches(final String text) {
+        return !escaped && end - start == text.length() && header.regionMatches(start, text, 0, end - start);
+    }
+
+    /**
+     * Identify whether the most recent token is empty.
+     * @return true if the token has no content
+     */
+    boolean isEmpty() {
+        return end == start;
+    }
+
+    /**
+     * Get the most recent token as a string, with any quoted-pair escapes removed.
+     * @return the token text
+     */
+    String text() {
+        if (!escaped) {
+            return header.substring(start, end);
+        }
+        final StringBuilder builder = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            final char c = header.charAt(i);
+            if (c == '\\' && i + 1 < end) {
+                i++;
+                builder.append(header.charAt(i));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Get the most recent token as an integer.
+     * @return the integer value of the token
+     * @throws NumberFormatException if the token is not an integer
+     */
+    int intValue() {
+        if (escaped) {
+            return Integer.parseInt(text());
+        }
+        return Integer.parseInt(header, start, end, 10);
+    }
+
+    /**
+     * Get the header being scanned.
+     * @return the header value
+     */
+    String header() {
+        return header;
+    }
+
+    /**
+     * Get the start of the most recent token.
+     * @return the inclusive start index
+     */
+    int start() {
+        return start;
+    }
+
+    /**
+     * Get the end of the most recent token.
+     * @return the exclusive end index
+     */
+    int end() {
+        return end;
+    }
+
+    /**
+     * Identify whether the most recent token contained quoted-pair escapes.
+     * @return true if the token must be unescaped with {@link #text()}
+     */
+    boolean isEscaped() {
+        return escaped;
+    }
+
+    static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t';
+    }
+}
@@ -0,0 +1,538 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_INBOX;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.CamelContextAware;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.Service;
+import org.slf4j.Logger;
+
+/**
+ * A Camel processor that delivers each message body as a Linked Data Notification to the inbox named by
+ * the {@code ActivityStreamInbox} header or the exchange's {@link ActivityStreamEvent}.
+ *
+ * <p>Delivery happens in the background: the processor queues the notification and returns. Each inbox
+ * has a queue of bounded size, and a notification for an inbox whose queue is full is rejected with a
+ * {@link RejectedExecutionException} on the exchange, so that a slow receiver cannot fill the heap.
+ * Exchanges without an inbox are ignored.
+ *
+ * <p>Inboxes are grouped by host. Every notification is sent through a single HTTP client, which uses
+ * HTTP/2 where the receiver supports it and otherwise keeps HTTP/1.1 connections alive between
+ * requests. Each host has a limit on the number of notifications in flight, and the inboxes of a host
+ * take turns, so that neither a slow host nor a busy inbox holds up the others. Notifications to the
+ * same inbox may arrive out of order when the limit is greater than one.
+ *
+ * <p>A notification that fails with a network error or with a {@code 408}, {@code 429} or {@code 5xx}
+ * status is retried after an exponential backoff with random jitter, up to the maximum number of
+ * attempts. Any other status of {@code 300} or more is a permanent failure. Redirects are not followed,
+ * so that a notification is never sent to a target other than the inbox it was addressed to: a
+ * {@code 3xx} response is a failure like any other. Failures are logged and counted.
+ *
+ * <p>When the processor stops, it accepts no new notifications and waits for those already queued,
+ * in flight or waiting to be retried, for up to the shutdown timeout of the context's executor
+ * service manager. Any that are still undelivered after that are logged and discarded.
+ *
+ * @author acoburn
+ */
+public class InboxDeliveryProcessor implements Processor, CamelContextAware, Service {
+
+    public static final String LD_JSON = "application/ld+json";
+
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 1000;
+
+    public static final int DEFAULT_MAX_CONCURRENCY_PER_HOST = 4;
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    public static final long DEFAULT_INITIAL_BACKOFF = 500L;
+
+    public static final long DEFAULT_MAXIMUM_BACKOFF = 30_000L;
+
+    private static final Logger LOGGER = getLogger(InboxDeliveryProcessor.class);
+
+    private static final int REQUEST_TIMEOUT = 408;
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private static final int SERVER_ERROR = 500;
+
+    /* Host to delivery state; guarded by this. */
+    private final Map<String, Host> hosts = new HashMap<>();
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+
+    private HttpClient client;
+    private CamelContext camelContext;
+    private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+    private int maxConcurrencyPerHost = DEFAULT_MAX_CONCURRENCY_PER_HOST;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long initialBackoff = DEFAULT_INITIAL_BACKOFF;
+    private long maximumBackoff = DEFAULT_MAXIMUM_BACKOFF;
+    private long requestTimeout;
+    private boolean running;
+    private boolean stopping;
+    private int pendingCount;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Create a delivery processor with its own HTTP client.
+     */
+    public InboxDeliveryProcessor() {
+        this(null);
+    }
+
+    /**
+     * Create a delivery processor.
+     * @param client the HTTP client, or null to create one when the processor starts
+     */
+    public InboxDeliveryProcessor(final HttpClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public void setCamelContext(final CamelContext camelContext) {
+        this.camelContext = camelContext;
+    }
+
+    @Override
+    public CamelContext getCamelContext() {
+        return camelContext;
+    }
+
+    /**
+     * Set the number of notifications that may wait for each inbox, including any waiting to be retried.
+     * @param maxQueueSize the maximum queue size
+     */
+    public void setMaxQueueSize(final int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    /**
+     * Get the number of notifications that may wait for each inbox.
+     * @return the maximum queue size
+     */
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    /**
+     * Set the number of notifications that may be in flight to each host.
+     * @param maxConcurrencyPerHost the concurrency limit
+     */
+    public void setMaxConcurrencyPerHost(final int maxConcurrencyPerHost) {
+        this.maxConcurrencyPerHost = maxConcurrencyPerHost;
+    }
+
+    /**
+     * Get the number of notifications that may be in flight to each host.
+     * @return the concurrency limit
+     */
+    public int getMaxConcurrencyPerHost() {
+        return maxConcurrencyPerHost;
+    }
+
+    /**
+     * Set the number of times to try each notification.
+     * @param maxAttempts the maximum number of attempts
+     */
+    public void setMaxAttempts(final int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Get the number of times to try each notification.
+     * @return the maximum number of attempts
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Set the backoff before the first retry. Each later retry doubles it, up to the maximum backoff.
+     * @param initialBackoff the initial backoff, in milliseconds
+     */
+    public void setInitialBackoff(final long initialBackoff) {
+        this.initialBackoff = initialBackoff;
+    }
+
+    /**
+     * Get the backoff before the first retry.
+     * @return the initial backoff, in milliseconds
+     */
+    public long getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    /**
+     * Set the longest backoff before a retry.
+     * @param maximumBackoff the maximum backoff, in milliseconds
+     */
+    public void setMaximumBackoff(final long maximumBackoff) {
+        this.maximumBackoff = maximumBackoff;
+    }
+
+    /**
+     * Get the longest backoff before a retry.
+     * @return the maximum backoff, in milliseconds
+     */
+    public long getMaximumBackoff() {
+        return maximumBackoff;
+    }
+
+    /**
+     * Set the timeout for each request.
+     * @param requestTimeout the timeout in milliseconds, or zero for no limit
+     */
+    public void setRequestTimeout(final long requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Get the timeout for each request.
+     * @return the timeout in milliseconds, or zero if there is no limit
+     */
+    public long getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * Get the number of notifications that are queued, in flight or waiting to be retried.
+     * @return the number of pending notifications
+     */
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * Get the number of notifications delivered.
+     * @return the number of delivered notifications
+     */
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    /**
+     * Get the number of notifications that could not be delivered.
+     * @return the number of failed notifications
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Get the number of notifications rejected because the queue for their inbox was full.
+     * @return the number of rejected notifications
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Get the number of retries.
+     * @return the number of retries
+     */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    @Override
+    public void process(final Exchange exchange) {
+        final ActivityStreamEvent event = ActivityStreamEvent.of(exchange);
+        final String inbox = event != null ? event.getInbox() :
+            exchange.getIn().getHeader(ACTIVITY_STREAM_INBOX, String.class);
+        if (inbox == null) {
+            return;
+        }
+        final URI uri = URI.create(inbox);
+        if (!("http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme())) ||
+                uri.getRawAuthority() == null) {
+            throw new IllegalArgumentException("Not an HTTP inbox URI: " + inbox);
+        }
+        final String contentType = exchange.getIn().getHeader(Exchange.CONTENT_TYPE, String.class);
+        final byte[] body = exchange.getIn().getBody(byte[].class);
+        final Host host;
+        synchronized (this) {
+            if (!running || stopping) {
+                throw new IllegalStateException("The inbox delivery processor has not been started");
+            }
+            host = hosts.computeIfAbsent(uri.getScheme() + "://" + uri.getRawAuthority(), Host::new);
+            final Inbox queue = host.inboxes.computeIfAbsent(inbox, k -> new Inbox());
+            if (queue.waiting + queue.notifications.size() >= maxQueueSize) {
+                rejectedCount.incrementAndGet();
+                exchange.setException(new RejectedExecutionException("The delivery queue is full for " + inbox));
+                return;
+            }
+            queue.notifications.add(new Notification(inbox, uri, queue, body,
+                        contentType != null ? contentType : LD_JSON));
+            pendingCount++;
+            host.ready(inbox, queue);
+        }
+        dispatch(host);
+    }
+
+    @Override
+    public void start() {
+        if (maxQueueSize <= 0 || maxConcurrencyPerHost <= 0 || maxAttempts <= 0 || initialBackoff < 0 ||
+                maximumBackoff < 0 || requestTimeout < 0) {
+            throw new IllegalArgumentException("The delivery limits must be positive and the times non-negative");
+        }
+        if (camelContext == null) {
+            throw new IllegalStateException("A CamelContext is required to start the inbox delivery processor");
+        }
+        synchronized (this) {
+            if (running) {
+                return;
+            }
+            if (client == null) {
+                client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2)
+                    .followRedirects(HttpClient.Redirect.NEVER).build();
+            }
+            scheduler = camelContext.getExecutorServiceManager().newSingleThreadScheduledExecutor(this,
+                    "InboxDeliveryRetry");
+            running = true;
+        }
+    }
+
+    @Override
+    public void stop() {
+        final int discarded;
+        synchronized (this) {
+            if (!running || stopping) {
+                return;
+            }
+            // Let queued notifications and retries finish before the queues are cleared
+            stopping = true;
+            final long deadline = System.currentTimeMillis() +
+                camelContext.getExecutorServiceManager().getShutdownAwaitTermination();
+            try {
+                for (long remaining = deadline - System.currentTimeMillis(); pendingCount > 0 && remaining > 0;
+                        remaining = deadline - System.currentTimeMillis()) {
+                    wait(remaining);
+                }
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            running = false;
+            stopping = false;
+            camelContext.getExecutorServiceManager().shutdownNow(scheduler);
+            scheduler = null;
+            discarded = pendingCount;
+            hosts.clear();
+            pendingCount = 0;
+        }
+        if (discarded > 0) {
+            LOGGER.warn("Discarding {} undelivered notifications", discarded);
+        }
+    }
+
+    /**
+     * Compute the backoff before a retry, with random jitter.
+     * @param attempt the number of attempts already made
+     * @param initial the backoff before the first retry
+     * @param maximum the longest backoff
+     * @return a backoff between half and all of the exponential backoff, in milliseconds
+     */
+    static long backoff(final int attempt, final long initial, final long maximum) {
+        final long delay = Math.min(maximum, initial << Math.min(attempt - 1, 30));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /* Send notifications for a host until there are none ready or the host's limit is reached. */
+    private void dispatch(final Host host) {
+        while (true) {
+            final Notification notification;
+            synchronized (this) {
+                if (!running || host.active >= maxConcurrencyPerHost) {
+                    return;
+                }
+                notification = host.next();
+                if (notification == null) {
+                    return;
+                }
+                host.active++;
+            }
+            send(host, notification);
+        }
+    }
+
+    private void send(final Host host, final Notification notification) {
+        final HttpRequest request;
+        try {
+            final HttpRequest.Builder builder = HttpRequest.newBuilder(notification.inbox)
+                .header(Exchange.CONTENT_TYPE, notification.contentType)
+                .POST(notification.body != null ? HttpRequest.BodyPublishers.ofByteArray(notification.body) :
+                        HttpRequest.BodyPublishers.noBody());
+            if (requestTimeout > 0) {
+                builder.timeout(Duration.ofMillis(requestTimeout));
+            }
+            request = builder.build();
+        } catch (final RuntimeException ex) {
+            // Release the host's slot, or no other notification for the host would be sent
+            failedCount.incrementAndGet();
+            LOGGER.warn("Unable to build a notification request for {}", notification.inbox, ex);
+            finish(host, notification, false);
+            return;
+        }
+        notification.attempts++;
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, err) -> {
+            final int status = response != null ? response.statusCode() : 0;
+            if (err == null && status < 300) {
+                deliveredCount.incrementAndGet();
+                finish(host, notification, false);
+            } else if ((err != null || status == REQUEST_TIMEOUT || status == TOO_MANY_REQUESTS ||
+                        status >= SERVER_ERROR) && notification.attempts < maxAttempts) {
+                retryCount.incrementAndGet();
+                LOGGER.debug("Retrying delivery to {} after attempt {}", notification.inbox, notification.attempts);
+                finish(host, notification, true);
+            } else {
+                failedCount.incrementAndGet();
+                if (err != null) {
+                    LOGGER.warn("Unable to deliver a notification to {}", notification.inbox, err);
+                } else {
+                    LOGGER.warn("Delivery to {} failed with status {}", notification.inbox, status);
+                }
+                finish(host, notification, false);
+            }
+            dispatch(host);
+        });
+    }
+
+    /* Record the end of an attempt, scheduling a retry if needed. */
+    private void finish(final Host host, final Notification notification, final boolean retry) {
+        synchronized (this) {
+            host.active--;
+            if (!running || hosts.get(host.key) != host) {
+                return;
+            }
+            final Inbox inbox = notification.queue;
+            inbox.inFlight--;
+            if (retry) {
+                inbox.waiting++;
+                final long delay = backoff(notification.attempts, initialBackoff, maximumBackoff);
+                scheduler.schedule(() -> retry(host, notification), delay, MILLISECONDS);
+                return;
+            }
+            if (--pendingCount == 0) {
+                notifyAll();
+            }
+            host.remove(notification.key, inbox);
+        }
+    }
+
+    private void retry(final Host host, final Notification notification) {
+        synchronized (this) {
+            if (!running || hosts.get(host.key) != host) {
+                return;
+            }
+            notification.queue.waiting--;
+            notification.queue.notifications.addFirst(notification);
+            host.ready(notification.key, notification.queue);
+        }
+        dispatch(host);
+    }
+
+    private static final class Notification {
+        private final String key;
+        private final URI inbox;
+        private final Inbox queue;
+        private final byte[] body;
+        private final String contentType;
+        private int attempts;
+
+        Notification(final String key, final URI inbox, final Inbox queue, final byte[] body,
+                final String contentType) {
+            this.key = key;
+            this.inbox = inbox;
+            this.queue = queue;
+            this.body = body;
+            this.contentType = contentType;
+        }
+    }
+
+    /* The notifications for an inbox that are queued, in flight or waiting to be retried. */
+    private static final class Inbox {
+        private final ArrayDeque<Notification> notifications = new ArrayDeque<>();
+        private int inFlight;
+        private int waiting;
+        private boolean ready;
+    }
+
+    /* The inboxes of a host, with the inboxes that have notifications ready taking turns. */
+    private final class Host {
+        private final String key;
+        private final Map<String, Inbox> inboxes = new HashMap<>();
+        private final ArrayDeque<String> ready = new ArrayDeque<>();
+        private int active;
+
+        Host(final String key) {
+            this.key = key;
+        }
+
+        void ready(final String inbox, final Inbox queue) {
+            if (!queue.ready) {
+                queue.ready = true;
+                ready.add(inbox);
+            }
+        }
+
+        Notification next() {
+            final String inbox = ready.poll();
+            if (inbox == null) {
+                return null;
+            }
+            final Inbox queue = inboxes.get(inbox);
+            final Notification notification = queue.notifications.poll();
+            queue.inFlight++;
+            if (queue.notifications.isEmpty()) {
+                queue.ready = false;
+            } else {
+                ready.add(inbox);
+            }
+            return notification;
+        }
+
+        /* Forget an inbox, and then the host, once nothing is left for them. */
+        void remove(final String inbox, final Inbox queue) {
+            if (queue.notifications.isEmpty() && queue.inFlight == 0 && queue.waiting == 0) {
+                inboxes.remove(inbox);
+                if (inboxes.isEmpty() && active == 0) {
+                    hosts.remove(key);
+                }
+            }
+        }
+    }
+}
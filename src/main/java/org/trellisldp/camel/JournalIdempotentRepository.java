@@ -0,0 +1,697 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.LongSupplier;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.CamelContextAware;
+import org.apache.camel.spi.IdempotentRepository;
+import org.slf4j.Logger;
+
+/**
+ * A durable {@link IdempotentRepository} that records fingerprints of message identifiers in an
+ * append-only, memory-mapped journal.
+ *
+ * <p>This is intended for suppressing notifications that a broker redelivers after a restart, keyed
+ * on the {@link ActivityStreamProcessor#ACTIVITY_STREAM_ID} header:
+ *
+ * <pre>{@code
+ * from("jms:trellis")
+ *     .process(new ActivityStreamProcessor())
+ *     .idempotentConsumer(header(ACTIVITY_STREAM_ID),
+ *         new JournalIdempotentRepository(Paths.get("/var/lib/trellis/processed.journal")))
+ *     .to("direct:index");
+ * }</pre>
+ *
+ * <p>Each added or removed key is appended to the journal as a fixed-width, 16-byte record holding a
+ * 63-bit fingerprint of the key, with the top bit marking a removal, and the time of the change. When
+ * the repository starts, the journal is read into an open-addressing table of fingerprints and their
+ * positions in the journal, which is the only per-key storage on the heap, however long the keys are.
+ * Each slot takes 16 bytes and the table is kept between a quarter and a half full, so it needs 32 to
+ * 64 bytes per key, and twice that while it is being resized. The table does not shrink as keys are
+ * removed; it is rebuilt at its smallest size when the journal is compacted. With 63-bit fingerprints,
+ * the chance that a new key is mistaken for one of a million held keys is about one in 10^13.
+ *
+ * <p>Like {@link FingerprintIdempotentRepository}, the repository can forget keys after a time to live
+ * or, once it holds the maximum number of keys, forget the oldest. By default, keys are retained until
+ * they are removed or the repository is cleared. Since the journal is in the order that keys were
+ * added, retention needs no more memory than the table.
+ *
+ * <p>The journal is mapped in segments of a fixed number of records, and grows a segment at a time, so
+ * its length is not limited by the size of a single mapping. Writes are flushed to disk according to
+ * the sync interval: after every write when it is zero, at most once per interval when it is positive,
+ * and only when the repository stops when it is negative. A periodic flush happens on the next write
+ * after the interval has passed.
+ *
+ * <p>Compaction writes the live records, in order, to the next generation of the journal, stored
+ * beside the given path with the generation number as a suffix ({@code processed.journal.0},
+ * {@code processed.journal.1} and so on). The new generation is only marked valid once it is complete
+ * and on disk, and the previous generation is deleted after it has been closed, so no file is ever
+ * replaced while it is mapped. Compaction happens once removed keys account for more than half of the
+ * journal and, when the repository has a {@link CamelContext}, as it does inside an idempotent
+ * consumer, on a schedule whenever expired or removed records make up a tenth of the journal.
+ *
+ * @author acoburn
+ */
+public class JournalIdempotentRepository implements IdempotentRepository, CamelContextAware {
+
+    public static final long DEFAULT_SYNC_INTERVAL = 1000L;
+
+    public static final long DEFAULT_COMPACTION_INTERVAL = 60_000L;
+
+    static final int DEFAULT_SEGMENT_SIZE = 1 << 16;
+
+    private static final Logger LOGGER = getLogger(JournalIdempotentRepository.class);
+
+    private static final long MAGIC = 0x54524c4c4a524e4cL;
+    private static final int VERSION = 2;
+    private static final int HEADER = 16;
+    private static final int RECORD = 2 * Long.BYTES;
+    private static final int BITS = 63;
+    private static final long REMOVED = Long.MIN_VALUE;
+    private static final int MAXIMUM_TABLE = 1 << 30;
+    private static final int MINIMUM_GARBAGE = 1024;
+
+    private final Path path;
+    private final int segmentSize;
+    private final LongSupplier clock;
+    private long syncInterval = DEFAULT_SYNC_INTERVAL;
+    private long compactionInterval = DEFAULT_COMPACTION_INTERVAL;
+    private long timeToLive;
+    private int maximumSize;
+
+    private CamelContext camelContext;
+    private ScheduledExecutorService scheduler;
+
+    private FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private long generation;
+    private long records;
+    private long head;
+    private long synced;
+    private long lastSync;
+    private long syncCount;
+    private long compactionCount;
+
+    /* Fingerprints, where zero marks an empty slot, and the journal positions of the records that added them. */
+    private long[] table = new long[16];
+    private long[] positions = new long[16];
+    private int mask = table.length - 1;
+    private int size;
+
+    /**
+     * Create a repository.
+     * @param path the journal path, beside which the numbered generations of the journal are stored
+     */
+    public JournalIdempotentRepository(final Path path) {
+        this(path, DEFAULT_SEGMENT_SIZE, System::currentTimeMillis);
+    }
+
+    /**
+     * Create a repository with a custom segment size and clock.
+     * @param path the journal path, beside which the numbered generations of the journal are stored
+     * @param segmentSize the number of records in each mapped segment of the journal
+     * @param clock a source of the current time, in milliseconds
+     */
+    JournalIdempotentRepository(final Path path, final int segmentSize, final LongSupplier clock) {
+        this.path = path;
+        this.segmentSize = segmentSize;
+        this.clock = clock;
+    }
+
+    @Override
+    public void setCamelContext(final CamelContext camelContext) {
+        this.camelContext = camelContext;
+    }
+
+    @Override
+    public CamelContext getCamelContext() {
+        return camelContext;
+    }
+
+    /**
+     * Set how often the journal is flushed to disk.
+     * @param syncInterval the interval, in milliseconds; zero to flush after every write, or a negative
+     *                     value to flush only when the repository stops
+     */
+    public void setSyncInterval(final long syncInterval) {
+        this.syncInterval = syncInterval;
+    }
+
+    /**
+     * Get how often the journal is flushed to disk.
+     * @return the interval, in milliseconds
+     */
+    public long getSyncInterval() {
+        return syncInterval;
+    }
+
+    /**
+     * Set how often the journal is checked for compaction, when the repository has a CamelContext.
+     * @param compactionInterval the interval, in milliseconds, or zero to compact only as keys are removed
+     */
+    public void setCompactionInterval(final long compactionInterval) {
+        this.compactionInterval = compactionInterval;
+    }
+
+    /**
+     * Get how often the journal is checked for compaction.
+     * @return the interval, in milliseconds
+     */
+    public long getCompactionInterval() {
+        return compactionInterval;
+    }
+
+    /**
+     * Set how long a key is retained. This applies from the next time the repository starts.
+     * @param timeToLive the time to live, or zero to retain keys until they are removed
+     */
+    public void setTimeToLive(final Duration timeToLive) {
+        if (timeToLive.isNegative()) {
+            throw new IllegalArgumentException("The time to live must not be negative: " + timeToLive);
+        }
+        this.timeToLive = timeToLive.toMillis();
+    }
+
+    /**
+     * Get how long a key is retained.
+     * @return the time to live, which is zero if keys are retained until they are removed
+     */
+    public Duration getTimeToLive() {
+        return Duration.ofMillis(timeToLive);
+    }
+
+    /**
+     * Set the number of keys to retain, beyond which the oldest keys are forgotten.
+     * @param maximumSize the maximum number of keys, or zero for no limit
+     */
+    public void setMaximumSize(final int maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("The maximum size must not be negative: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Get the number of keys to retain.
+     * @return the maximum number of keys, or zero if there is no limit
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    @Override
+    public synchronized boolean add(final String key) {
+        checkStarted();
+        expire();
+        final long fingerprint = Fingerprints.of(key, BITS);
+        if (find(fingerprint) >= 0) {
+            return false;
+        }
+        final long position = records;
+        append(fingerprint);
+        insert(fingerprint, position);
+        expire();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean contains(final String key) {
+        checkStarted();
+        expire();
+        return find(Fingerprints.of(key, BITS)) >= 0;
+    }
+
+    @Override
+    public synchronized boolean remove(final String key) {
+        checkStarted();
+        expire();
+        final long fingerprint = Fingerprints.of(key, BITS);
+        final int slot = find(fingerprint);
+        if (slot < 0) {
+            return false;
+        }
+        append(fingerprint | REMOVED);
+        delete(slot);
+        if (records - size >= MINIMUM_GARBAGE && records - size > size) {
+            compact();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean confirm(final String key) {
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        checkStarted();
+        table = new long[16];
+        positions = new long[16];
+        mask = table.length - 1;
+        size = 0;
+        compact();
+    }
+
+    /**
+     * Rewrite the journal so that it holds only the keys that are currently present.
+     */
+    public synchronized void compact() {
+        checkStarted();
+        expire();
+        final long current = generation;
+        final Path next = generation(current + 1);
+        try {
+            try (FileChannel output = FileChannel.open(next, CREATE_NEW, WRITE)) {
+                final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+                buffer.putLong(0L).putInt(VERSION).putInt(0);
+                for (long position = head; position < records; position++) {
+                    final long record = record(position);
+                    final int slot = record > 0 ? find(record) : -1;
+                    if (slot >= 0 && positions[slot] == position) {
+                        if (!buffer.hasRemaining()) {
+                            write(output, buffer);
+                        }
+                        buffer.putLong(record).putLong(timestamp(position));
+                    }
+                }
+                write(output, buffer);
+                output.force(true);
+                // Only a complete generation is marked as a journal
+                buffer.putLong(MAGIC).flip();
+                output.write(buffer, 0);
+                output.force(true);
+            }
+        } catch (final IOException ex) {
+            // Leave no partial generation behind to block the next compaction
+            deleteQuietly(next);
+            throw new UncheckedIOException("Unable to compact the journal " + path, ex);
+        }
+        try {
+            closeJournal();
+            open(current + 1);
+        } catch (final IOException ex) {
+            deleteQuietly(next);
+            try {
+                open(current);
+            } catch (final IOException reopen) {
+                ex.addSuppressed(reopen);
+            }
+            throw new UncheckedIOException("Unable to switch to the compacted journal " + next, ex);
+        }
+        // The previous generation is removed only once the new one is in use
+        deleteQuietly(generation(current));
+        compactionCount++;
+    }
+
+    @Override
+    public void start() {
+        synchronized (this) {
+            if (channel != null) {
+                return;
+            }
+            try {
+                open(-1L);
+            } catch (final IOException ex) {
+                throw new UncheckedIOException("Unable to open the journal " + path, ex);
+            }
+        }
+        if (camelContext != null && compactionInterval > 0) {
+            scheduler = camelContext.getExecutorServiceManager().newSingleThreadScheduledExecutor(this,
+                    "JournalCompaction");
+            scheduler.scheduleWithFixedDelay(this::compactIfDue, compactionInterval, compactionInterval,
+                    MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (scheduler != null) {
+            camelContext.getExecutorServiceManager().shutdownGraceful(scheduler);
+            scheduler = null;
+        }
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            sync(true);
+            try {
+                closeJournal();
+            } catch (final IOException ex) {
+                throw new UncheckedIOException("Unable to close the journal " + path, ex);
+            }
+        }
+    }
+
+    /**
+     * Get the number of keys currently held.
+     * @return the number of keys
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of records in the journal, including additions that were later removed or expired
+     * and the removals themselves.
+     * @return the number of records
+     */
+    public synchronized long getJournalLength() {
+        return records;
+    }
+
+    /**
+     * Get the number of times the journal has been flushed to disk.
+     * @return the number of flushes
+     */
+    public synchronized long getSyncCount() {
+        return syncCount;
+    }
+
+    /**
+     * Get the number of times the journal has been compacted.
+     * @return the number of compactions
+     */
+    public synchronized long getCompactionCount() {
+        return compactionCount;
+    }
+
+    /**
+     * Get the number of bytes used by the in-memory index.
+     * @return the memory used, in bytes
+     */
+    public synchronized long getMemoryUsage() {
+        return 2L * Long.BYTES * table.length;
+    }
+
+    /**
+     * Get the file that holds a generation of the journal.
+     * @param number the generation number
+     * @return the path of that generation
+     */
+    Path generation(final long number) {
+        return path.resolveSibling(path.getFileName() + "." + number);
+    }
+
+    /* Compact when expired or removed records make up a tenth of the journal. */
+    private synchronized void compactIfDue() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            expire();
+            if (records > size && (records - size) * 10 >= records) {
+                compact();
+            }
+        } catch (final RuntimeException ex) {
+            LOGGER.warn("Unable to compact the journal {}", path, ex);
+        }
+    }
+
+    /* Open the newest complete generation, or a given one, and read its records into the index. */
+    private void open(final long number) throws IOException {
+        final long current = number >= 0 ? number : latest();
+        final Path file = generation(current);
+        final FileChannel opened = FileChannel.open(file, CREATE, READ, WRITE);
+        final long length = opened.size();
+        final ByteBuffer header = ByteBuffer.allocate(HEADER);
+        if (length == 0) {
+            header.putLong(MAGIC).putInt(VERSION).putInt(0).flip();
+            opened.write(header, 0);
+            opened.force(true);
+        } else {
+            while (header.hasRemaining() && opened.read(header, header.position()) > 0) {
+                // read the whole header
+            }
+            if (header.hasRemaining() || (length - HEADER) % RECORD != 0 || header.getLong(0) != MAGIC ||
+                    header.getInt(Long.BYTES) != VERSION) {
+                opened.close();
+                throw new IOException("Not a journal: " + file);
+            }
+        }
+        channel = opened;
+        try {
+            replay(current, length);
+        } catch (final IOException | RuntimeException ex) {
+            try {
+                closeJournal();
+            } catch (final IOException close) {
+                ex.addSuppressed(close);
+            }
+            throw ex;
+        }
+    }
+
+    /* Read the records of the open generation into the index. */
+    private void replay(final long current, final long length) throws IOException {
+        generation = current;
+        table = new long[16];
+        positions = new long[16];
+        mask = table.length - 1;
+        size = 0;
+        records = 0;
+        head = 0;
+        final long available = (length - HEADER) / RECORD;
+        for (int i = 0; i == 0 || (long) i * segmentSize < available; i++) {
+            map(i);
+        }
+        while (records < (long) segments.size() * segmentSize) {
+            final long record = record(records);
+            if (record == 0) {
+                break;
+            }
+            final long fingerprint = record & ~REMOVED;
+            final int slot = find(fingerprint);
+            if (record < 0 && slot >= 0) {
+                delete(slot);
+            } else if (record > 0 && slot >= 0) {
+                positions[slot] = records;
+            } else if (record > 0) {
+                insert(fingerprint, records);
+            }
+            records++;
+        }
+        synced = records;
+        lastSync = clock.getAsLong();
+        expire();
+    }
+
+    /* Find the newest complete generation, deleting any others. */
+    private long latest() throws IOException {
+        final String prefix = path.getFileName() + ".";
+        final List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path.toAbsolutePath().getParent(),
+                    file -> file.getFileName().toString().startsWith(prefix))) {
+            for (final Path file : files) {
+                final String suffix = file.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit) && suffix.length() < 19) {
+                    numbers.add(Long.parseLong(suffix));
+                }
+            }
+        }
+        numbers.sort(null);
+        long latest = -1L;
+        for (int i = numbers.size() - 1; i >= 0; i--) {
+            final long number = numbers.get(i);
+            if (latest < 0 && (i == 0 || isComplete(generation(number)))) {
+                latest = number;
+            } else {
+                // an earlier generation, or an interrupted compaction
+                deleteQuietly(generation(number));
+            }
+        }
+        return Math.max(0L, latest);
+    }
+
+    /* A file that is still mapped cannot be deleted on some platforms; it is retried on the next start. */
+    private static void deleteQuietly(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (final IOException ex) {
+            LOGGER.debug("Unable to delete {} yet", file, ex);
+        }
+    }
+
+    private static boolean isComplete(final Path file) throws IOException {
+        try (FileChannel input = FileChannel.open(file, READ)) {
+            final ByteBuffer magic = ByteBuffer.allocate(Long.BYTES);
+            return input.read(magic, 0) == Long.BYTES && magic.getLong(0) == MAGIC;
+        }
+    }
+
+    private void closeJournal() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            channel = null;
+            segments.clear();
+        }
+    }
+
+    private void map(final int segment) throws IOException {
+        segments.add(channel.map(READ_WRITE, HEADER + (long) RECORD * segmentSize * segment,
+                    (long) RECORD * segmentSize));
+    }
+
+    private long record(final long position) {
+        return segments.get((int) (position / segmentSize)).getLong((int) (position % segmentSize) * RECORD);
+    }
+
+    private long timestamp(final long position) {
+        return segments.get((int) (position / segmentSize))
+            .getLong((int) (position % segmentSize) * RECORD + Long.BYTES);
+    }
+
+    private void append(final long record) {
+        if (records == (long) segments.size() * segmentSize) {
+            try {
+                map(segments.size());
+            } catch (final IOException ex) {
+                throw new UncheckedIOException("Unable to extend the journal " + path, ex);
+            }
+        }
+        final MappedByteBuffer segment = segments.get((int) (records / segmentSize));
+        final int offset = (int) (records % segmentSize) * RECORD;
+        segment.putLong(offset + Long.BYTES, clock.getAsLong());
+        segment.putLong(offset, record);
+        records++;
+        sync(false);
+    }
+
+    private void sync(final boolean force) {
+        if (synced == records) {
+            return;
+        }
+        final long now = clock.getAsLong();
+        if (force || syncInterval == 0 || (syncInterval > 0 && now - lastSync >= syncInterval)) {
+            for (long segment = synced / segmentSize; segment <= (records - 1) / segmentSize; segment++) {
+                segments.get((int) segment).force();
+            }
+            synced = records;
+            lastSync = now;
+            syncCount++;
+        }
+    }
+
+    /* Forget the oldest keys that have outlived the time to live or exceed the maximum size. */
+    private void expire() {
+        if (timeToLive == 0 && maximumSize == 0) {
+            return;
+        }
+        final long cutoff = timeToLive > 0 ? clock.getAsLong() - timeToLive : Long.MIN_VALUE;
+        while (head < records && ((maximumSize > 0 && size > maximumSize) || timestamp(head) <= cutoff)) {
+            final long record = record(head);
+            final int slot = record > 0 ? find(record) : -1;
+            if (slot >= 0 && positions[slot] == head) {
+                delete(slot);
+            }
+            head++;
+        }
+    }
+
+    private void checkStarted() {
+        if (channel == null) {
+            throw new IllegalStateException("The journal has not been started");
+        }
+    }
+
+    private int find(final long fingerprint) {
+        int slot = Fingerprints.hash(fingerprint) & mask;
+        while (table[slot] != 0) {
+            if (table[slot] == fingerprint) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(final long fingerprint, final long position) {
+        if (size * 2 >= table.length) {
+            if (table.length == MAXIMUM_TABLE) {
+                throw new IllegalStateException("The journal holds too many keys: " + path);
+            }
+            final long[] previousTable = table;
+            final long[] previousPositions = positions;
+            table = new long[previousTable.length * 2];
+            positions = new long[table.length];
+            mask = table.length - 1;
+            for (int i = 0; i < previousTable.length; i++) {
+                if (previousTable[i] != 0) {
+                    place(previousTable[i], previousPositions[i]);
+                }
+            }
+        }
+        place(fingerprint, position);
+        size++;
+    }
+
+    private void place(final long fingerprint, final long position) {
+        int slot = Fingerprints.hash(fingerprint) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = fingerprint;
+        positions[slot] = position;
+    }
+
+    /* Remove a table slot, shifting back any later entries in the same probe sequence. */
+    private void delete(final int slot) {
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (table[next] != 0) {
+            final int home = Fingerprints.hash(table[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                positions[hole] = positions[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[hole] = 0;
+        size--;
+    }
+
+    private static void write(final FileChannel output, final ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            output.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Camel type converters for the {@link Prefer} and {@link Link} header types.
+ *
+ * <p>These methods are registered by the hand-written {@link LdpConvertersLoader}, which is listed in
+ * {@code META-INF/services/org/apache/camel/TypeConverterLoader}, so that no annotation processing or
+ * classpath scanning is needed. A new conversion method must be added to that loader. Parsed Prefer
+ * values are shared through a {@link PreferCache}.
+ *
+ * <p>A conversion from {@code String} to {@code List} cannot be registered for links without replacing
+ * Camel's own conversion for every list, so a header with several links should be converted to
+ * {@code Link[]} instead.
+ *
+ * @author acoburn
+ */
+public final class LdpConverters {
+
+    private static final PreferCache PREFER_CACHE = new PreferCache();
+
+    /**
+     * Convert a header value to a Prefer object.
+     * @param value the Prefer header value
+     * @return the Prefer object, or null if the value is not valid
+     */
+    public static Prefer toPrefer(final String value) {
+        return PREFER_CACHE.get(value);
+    }
+
+    /**
+     * Convert a Prefer object to a header value.
+     * @param prefer the Prefer object
+     * @return the header value
+     */
+    public static String toString(final Prefer prefer) {
+        return prefer.toHeaderValue();
+    }
+
+    /**
+     * Convert a header value to a Link object, using the first link in the header.
+     * @param value the Link header value
+     * @return the Link object
+     */
+    public static Link toLink(final String value) {
+        return new Link(value);
+    }
+
+    /**
+     * Convert a header value to an array of Link objects.
+     * @param value the Link header value
+     * @return every link in the header
+     */
+    public static Link[] toLinkArray(final String value) {
+        final List<Link> links = Link.parseAll(value);
+        return links.toArray(new Link[links.size()]);
+    }
+
+    /**
+     * Convert a header value to a list of Link objects.
+     *
+     * <p>This is not registered by {@link LdpConvertersLoader}; it may be called as a bean method.
+     *
+     * @param value the Link header value
+     * @return every link in the header
+     */
+    public static List<Link> toLinks(final String value) {
+        return Link.parseAll(value);
+    }
+
+    /**
+     * Convert a Link object to a header value.
+     * @param link the Link object
+     * @return the header value
+     */
+    public static String toString(final Link link) {
+        final StringBuilder builder = new StringBuilder().append('<').append(link.getUri()).append('>');
+        for (final Map.Entry<String, String> param : link.getParams().entrySet()) {
+            builder.append("; ").append(param.getKey()).append("=\"");
+            escape(builder, param.getValue()).append('"');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Convert an array of Link objects to a header value.
+     * @param links the Link objects
+     * @return the header value
+     */
+    public static String toString(final Link[] links) {
+        final StringBuilder builder = new StringBuilder();
+        for (final Link link : links) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(toString(link));
+        }
+        return builder.toString();
+    }
+
+    private static StringBuilder escape(final StringBuilder builder, final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\');
+            }
+            builder.append(c);
+        }
+        return builder;
+    }
+
+    private LdpConverters() {
+        // prevent instantiation
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import java.util.function.Function;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.NoTypeConversionAvailableException;
+import org.apache.camel.TypeConversionException;
+import org.apache.camel.TypeConverter;
+import org.apache.camel.TypeConverterLoaderException;
+import org.apache.camel.spi.TypeConverterLoader;
+import org.apache.camel.spi.TypeConverterRegistry;
+
+/**
+ * Registers the {@link LdpConverters} type converters with a Camel context.
+ *
+ * <p>This loader is listed in {@code META-INF/services/org/apache/camel/TypeConverterLoader}, which
+ * Camel reads at startup. Each converter calls its target method directly, without reflection.
+ *
+ * @author acoburn
+ */
+public final class LdpConvertersLoader implements TypeConverterLoader {
+
+    @Override
+    public void load(final TypeConverterRegistry registry) throws TypeConverterLoaderException {
+        add(registry, Prefer.class, String.class, value -> LdpConverters.toPrefer((String) value));
+        add(registry, String.class, Prefer.class, value -> LdpConverters.toString((Prefer) value));
+        add(registry, Link.class, String.class, value -> LdpConverters.toLink((String) value));
+        add(registry, String.class, Link.class, value -> LdpConverters.toString((Link) value));
+        add(registry, Link[].class, String.class, value -> LdpConverters.toLinkArray((String) value));
+        add(registry, String.class, Link[].class, value -> LdpConverters.toString((Link[]) value));
+    }
+
+    private static void add(final TypeConverterRegistry registry, final Class<?> to, final Class<?> from,
+            final Function<Object, Object> method) {
+        registry.addTypeConverter(to, from, new LdpTypeConverter(method));
+    }
+
+    /**
+     * A type converter that delegates to a single conversion method.
+     */
+    private static final class LdpTypeConverter implements TypeConverter {
+
+        private final Function<Object, Object> method;
+
+        LdpTypeConverter(final Function<Object, Object> method) {
+            this.method = method;
+        }
+
+        @Override
+        public boolean allowNull() {
+            return false;
+        }
+
+        @Override
+        public <T> T convertTo(final Class<T> type, final Object value) {
+            return convertTo(type, null, value);
+        }
+
+        @Override
+        public <T> T convertTo(final Class<T> type, final Exchange exchange, final Object value) {
+            try {
+                return type.cast(method.apply(value));
+            } catch (final RuntimeException ex) {
+                throw new TypeConversionException(value, type, ex);
+            }
+        }
+
+        @Override
+        public <T> T mandatoryConvertTo(final Class<T> type, final Object value)
+                throws NoTypeConversionAvailableException {
+            return mandatoryConvertTo(type, null, value);
+        }
+
+        @Override
+        public <T> T mandatoryConvertTo(final Class<T> type, final Exchange exchange, final Object value)
+                throws NoTypeConversionAvailableException {
+            final T result = convertTo(type, exchange, value);
+            if (result == null) {
+                throw new NoTypeConversionAvailableException(value, type);
+            }
+            return result;
+        }
+
+        @Override
+        public <T> T tryConvertTo(final Class<T> type, final Object value) {
+            return tryConvertTo(type, null, value);
+        }
+
+        @Override
+        public <T> T tryConvertTo(final Class<T> type, final Exchange exchange, final Object value) {
+            try {
+                return convertTo(type, exchange, value);
+            } catch (final TypeConversionException ex) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.Collections.unmodifiableList;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_OBJECT_ID;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.camel.AsyncCallback;
+import org.apache.camel.AsyncProcessor;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Service;
+
+/**
+ * A Camel processor that fetches the LDP resource named by an ActivityStream event.
+ *
+ * <p>The resource identified by the {@code ActivityStreamObjectId} header, or by the object id of the
+ * exchange's {@link ActivityStreamEvent}, is retrieved with a non-blocking {@link HttpClient}, which
+ * keeps a pool of connections to each host. The response body replaces the message body as a
+ * {@code byte[]}, the links in every {@code Link} response header are set as a {@code List<Link>}
+ * in the {@code LdpLinks} header, and the status code and content type are set in the standard
+ * Camel headers. The route continues once the response arrives, so no thread is held while a
+ * request is in flight:
+ *
+ * <pre>{@code
+ * from("jms:trellis")
+ *     .process(new ActivityStreamProcessor())
+ *     .process(new LdpEnrichmentProcessor().prefer(Prefer.ofInclude(LDP_CONTAINMENT)))
+ *     .to("direct:index");
+ * }</pre>
+ *
+ * <p>At most a fixed number of requests are in flight at once. Further exchanges are queued without
+ * holding the calling thread, and the next one is sent as each request completes. A response with an
+ * error status fails the exchange. Exchanges without an object id pass through unchanged. If an
+ * {@link LdpResourceCache} is set, cached representations are used without a request.
+ *
+ * @author acoburn
+ */
+public class LdpEnrichmentProcessor implements AsyncProcessor, Service {
+
+    public static final String LDP_LINKS = "LdpLinks";
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 64;
+
+    public static final String DEFAULT_ACCEPT = "text/turtle";
+
+    private static final String LINK = "Link";
+
+    private static final int OK = 200;
+
+    private HttpClient client;
+    private Prefer prefer;
+    private String accept = DEFAULT_ACCEPT;
+    private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+    private long requestTimeout;
+    private LdpResourceCache cache;
+
+    private String preferHeader;
+
+    /* Requests waiting for one in flight to complete; these fields are guarded by this. */
+    private final ArrayDeque<Request> queued = new ArrayDeque<>();
+    private int inFlight;
+    private boolean running;
+
+    /**
+     * Create an enrichment processor with its own HTTP client.
+     */
+    public LdpEnrichmentProcessor() {
+        this(null);
+    }
+
+    /**
+     * Create an enrichment processor.
+     * @param client the HTTP client, or null to create one when the processor starts
+     */
+    public LdpEnrichmentProcessor(final HttpClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Set the Prefer header to send with each request.
+     * @param prefer the preference, or null for none
+     * @return this processor
+     */
+    public LdpEnrichmentProcessor prefer(final Prefer prefer) {
+        setPrefer(prefer);
+        return this;
+    }
+
+    /**
+     * Set the Prefer header to send with each request.
+     * @param prefer the preference, or null for none
+     */
+    public void setPrefer(final Prefer prefer) {
+        this.prefer = prefer;
+    }
+
+    /**
+     * Get the Prefer header sent with each request.
+     * @return the preference, or null for none
+     */
+    public Prefer getPrefer() {
+        return prefer;
+    }
+
+    /**
+     * Set the Accept header to send with each request. The default is {@code text/turtle}.
+     * @param accept the media types
+     */
+    public void setAccept(final String accept) {
+        this.accept = accept;
+    }
+
+    /**
+     * Get the Accept header sent with each request.
+     * @return the media types
+     */
+    public String getAccept() {
+        return accept;
+    }
+
+    /**
+     * Set the maximum number of requests in flight.
+     * @param maxConcurrency the concurrency limit
+     */
+    public void setMaxConcurrency(final int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Get the maximum number of requests in flight.
+     * @return the concurrency limit
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Set how long to wait for each response.
+     * @param requestTimeout the timeout in milliseconds, or zero for no limit
+     */
+    public void setRequestTimeout(final long requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Get how long to wait for each response.
+     * @return the timeout in milliseconds, or zero if there is no limit
+     */
+    public long getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * Serve repeat reads from a resource cache. Only successful responses are cached.
+     * @param cache the resource cache, or null to fetch every resource
+     */
+    public void setCache(final LdpResourceCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Get the resource cache.
+     * @return the resource cache, or null if resources are not cached
+     */
+    public LdpResourceCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Get the number of requests currently in flight.
+     * @return the number of requests, or zero if the processor is not running
+     */
+    public synchronized int getInFlightCount() {
+        return running ? inFlight : 0;
+    }
+
+    /**
+     * Get the number of requests waiting to be sent.
+     * @return the number of queued requests
+     */
+    public synchronized int getQueuedCount() {
+        return queued.size();
+    }
+
+    @Override
+    public boolean process(final Exchange exchange, final AsyncCallback callback) {
+        if (!isRunning()) {
+            exchange.setException(new RejectedExecutionException("The enrichment processor is not running"));
+            callback.done(true);
+            return true;
+        }
+        final String target = objectId(exchange);
+        if (target == null) {
+            callback.done(true);
+            return true;
+        }
+        final LdpResourceCache resources = cache;
+        final LdpResourceCache.Representation cached = resources != null ? resources.get(target, preferHeader) : null;
+        if (cached != null) {
+            exchange.getMessage().setHeader(Exchange.HTTP_RESPONSE_CODE, OK);
+            apply(exchange.getMessage(), cached);
+            callback.done(true);
+            return true;
+        }
+        final LdpResourceCache.Fetch fetch = resources != null ? resources.startFetch(target) : null;
+        final Request request;
+        try {
+            request = new Request(exchange, callback, target, request(target), resources, fetch);
+        } catch (final IllegalArgumentException ex) {
+            if (fetch != null) {
+                resources.release(fetch);
+            }
+            exchange.setException(ex);
+            callback.done(true);
+            return true;
+        }
+        synchronized (this) {
+            if (inFlight >= maxConcurrency) {
+                queued.add(request);
+                return false;
+            }
+            inFlight++;
+        }
+        send(request);
+        return false;
+    }
+
+    @Override
+    public void process(final Exchange exchange) throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        if (!process(exchange, doneSync -> latch.countDown())) {
+            latch.await();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Exchange> processAsync(final Exchange exchange) {
+        final CompletableFuture<Exchange> future = new CompletableFuture<>();
+        process(exchange, doneSync -> future.complete(exchange));
+        return future;
+    }
+
+    @Override
+    public void start() {
+        if (maxConcurrency <= 0 || requestTimeout < 0) {
+            throw new IllegalArgumentException("The concurrency limit must be positive and the timeout non-negative");
+        }
+        synchronized (this) {
+            if (running) {
+                return;
+            }
+            if (client == null) {
+                client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build();
+            }
+            preferHeader = LdpResourceCache.canonical(prefer);
+            running = true;
+        }
+    }
+
+    @Override
+    public void stop() {
+        final List<Request> rejected;
+        synchronized (this) {
+            running = false;
+            rejected = new ArrayList<>(queued);
+            queued.clear();
+        }
+        for (final Request request : rejected) {
+            if (request.fetch != null) {
+                request.cache.release(request.fetch);
+            }
+            request.exchange.setException(new RejectedExecutionException("The enrichment processor has stopped"));
+            request.callback.done(false);
+        }
+    }
+
+    private synchronized boolean isRunning() {
+        return running;
+    }
+
+    private void send(final Request request) {
+        client.sendAsync(request.request, HttpResponse.BodyHandlers.ofByteArray()).whenComplete((response, err) -> {
+            if (err != null) {
+                if (request.fetch != null) {
+                    request.cache.release(request.fetch);
+                }
+                request.exchange.setException(err instanceof CompletionException && err.getCause() != null ?
+                        err.getCause() : err);
+            } else {
+                enrich(request.exchange, request.target, response, request.cache, request.fetch);
+            }
+            sendNext();
+            request.callback.done(false);
+        });
+    }
+
+    /* Hand the finished request's place to the next queued request, if there is one. */
+    private void sendNext() {
+        final Request next;
+        synchronized (this) {
+            next = queued.poll();
+            if (next == null) {
+                inFlight--;
+                return;
+            }
+        }
+        send(next);
+    }
+
+    private HttpRequest request(final String target) {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(target)).GET();
+        if (accept != null) {
+            builder.header("Accept", accept);
+        }
+        if (preferHeader != null && !preferHeader.isEmpty()) {
+            builder.header("Prefer", preferHeader);
+        }
+        if (requestTimeout > 0) {
+            builder.timeout(Duration.ofMillis(requestTimeout));
+        }
+        return builder.build();
+    }
+
+    private void enrich(final Exchange exchange, final String target, final HttpResponse<byte[]> response,
+            final LdpResourceCache resources, final LdpResourceCache.Fetch fetch) {
+        final Message message = exchange.getMessage();
+        message.setHeader(Exchange.HTTP_RESPONSE_CODE, response.statusCode());
+        if (fetch != null && response.statusCode() != OK) {
+            resources.release(fetch);
+        }
+        if (response.statusCode() >= 400) {
+            exchange.setException(new IOException("Unexpected response status " + response.statusCode() +
+                        " for " + target));
+            return;
+        }
+        final LdpResourceCache.Representation representation = new LdpResourceCache.Representation(
+                response.body(), response.headers().firstValue("Content-Type").orElse(null),
+                links(response.headers().allValues(LINK)));
+        apply(message, representation);
+        if (fetch != null && response.statusCode() == OK) {
+            resources.put(target, preferHeader, representation, fetch);
+        }
+    }
+
+    private static void apply(final Message message, final LdpResourceCache.Representation representation) {
+        if (representation.getContentType() != null) {
+            message.setHeader(Exchange.CONTENT_TYPE, representation.getContentType());
+        }
+        message.setHeader(LDP_LINKS, representation.getLinks());
+        message.setBody(representation.getBody());
+    }
+
+    static List<Link> links(final List<String> headers) {
+        if (headers.size() == 1) {
+            return Link.parseAll(headers.get(0));
+        }
+        final List<Link> links = new ArrayList<>();
+        for (final String header : headers) {
+            links.addAll(Link.parseAll(header));
+        }
+        return unmodifiableList(links);
+    }
+
+    /* An exchange whose request is queued or in flight. */
+    private static final class Request {
+        private final Exchange exchange;
+        private final AsyncCallback callback;
+        private final String target;
+        private final HttpRequest request;
+        private final LdpResourceCache cache;
+        private final LdpResourceCache.Fetch fetch;
+
+        Request(final Exchange exchange, final AsyncCallback callback, final String target,
+                final HttpRequest request, final LdpResourceCache cache, final LdpResourceCache.Fetch fetch) {
+            this.exchange = exchange;
+            this.callback = callback;
+            this.target = target;
+            this.request = request;
+            this.cache = cache;
+            this.fetch = fetch;
+        }
+    }
+
+    private static String objectId(final Exchange exchange) {
+        final ActivityStreamEvent event = ActivityStreamEvent.of(exchange);
+        return event != null ? event.getObjectId() :
+            exchange.getIn().getHeader(ACTIVITY_STREAM_OBJECT_ID, String.class);
+    }
+}
@@ -0,0 +1,464 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.Collections.emptyList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of LDP representations that is invalidated by ActivityStream events.
+ *
+ * <p>Entries are keyed by the resource IRI and the canonical {@code Prefer} header value used to
+ * fetch them, as produced by {@link Prefer#toHeaderValue()}. When the total weight of the cached
+ * bodies or the number of entries exceeds its limit, the least recently used entries are evicted.
+ *
+ * <p>Attach the cache to an {@link ActivityStreamProcessor} so that every {@code Update} or
+ * {@code Delete} of a resource removes its cached representations, and every {@code Create} or
+ * {@code Delete} also removes those of its parent container, whose containment triples change.
+ * An {@link LdpEnrichmentProcessor} with the same cache then serves repeat reads from memory:
+ *
+ * <pre>{@code
+ * final LdpResourceCache cache = new LdpResourceCache();
+ * activityStreamProcessor.setCache(cache);
+ * enrichmentProcessor.setCache(cache);
+ * }</pre>
+ *
+ * <p>A response that is fetched while its resource is being invalidated must not be cached. A caller
+ * therefore calls {@link #startFetch(String)} before fetching a resource and passes the token it
+ * returns to {@link #put(String, String, Representation, Fetch)}, which ignores the response if that
+ * resource has been invalidated since then, or to {@link #release(Fetch)} if nothing is to be cached.
+ * Only the resources with a fetch in progress are tracked, so invalidating other resources never
+ * causes a response to be rejected.
+ *
+ * @author acoburn
+ */
+public class LdpResourceCache {
+
+    public static final long DEFAULT_MAXIMUM_WEIGHT = 64L * 1024 * 1024;
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+
+    /** The approximate size of an entry, excluding its body and key strings. */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private static final Set<String> CREATE = ActivityStreamTypeDispatcher.expand("Create");
+    private static final Set<String> UPDATE = ActivityStreamTypeDispatcher.expand("Update");
+    private static final Set<String> DELETE = ActivityStreamTypeDispatcher.expand("Delete");
+
+    private final long maximumWeight;
+    private final int maximumSize;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, List<Key>> variants = new HashMap<>();
+    /* Resource IRI to the fetches of it that are in progress. */
+    private final Map<String, List<Fetch>> fetches = new HashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private long weight;
+
+    /**
+     * Create a resource cache with the default limits.
+     */
+    public LdpResourceCache() {
+        this(DEFAULT_MAXIMUM_WEIGHT, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Create a resource cache.
+     * @param maximumWeight the maximum total weight of the entries, approximately in bytes
+     * @param maximumSize the maximum number of entries
+     */
+    public LdpResourceCache(final long maximumWeight, final int maximumSize) {
+        if (maximumWeight <= 0 || maximumSize <= 0) {
+            throw new IllegalArgumentException("The maximum weight and size must be positive");
+        }
+        this.maximumWeight = maximumWeight;
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Get a cached representation.
+     * @param iri the resource IRI
+     * @param prefer the canonical Prefer header value, or null
+     * @return the representation, or null if it is not cached
+     */
+    public synchronized Representation get(final String iri, final String prefer) {
+        final Entry entry = entries.get(new Key(iri, prefer));
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.representation;
+    }
+
+    /**
+     * Get a cached representation.
+     * @param iri the resource IRI
+     * @param prefer the preference, or null
+     * @return the representation, or null if it is not cached
+     */
+    public Representation get(final String iri, final Prefer prefer) {
+        return get(iri, canonical(prefer));
+    }
+
+    /**
+     * Cache a representation.
+     * @param iri the resource IRI
+     * @param prefer the canonical Prefer header value, or null
+     * @param representation the representation
+     */
+    public synchronized void put(final String iri, final String prefer, final Representation representation) {
+        put(iri, prefer, representation, new Fetch(iri));
+    }
+
+    /**
+     * Record that a resource is about to be fetched, so that an invalidation of it during the fetch can
+     * be detected. The token must be passed to {@link #put(String, String, Representation, Fetch)} or
+     * {@link #release(Fetch)} once the fetch has finished.
+     * @param iri the resource IRI
+     * @return the fetch token
+     */
+    public synchronized Fetch startFetch(final String iri) {
+        final Fetch fetch = new Fetch(iri);
+        fetches.computeIfAbsent(iri, k -> new ArrayList<>(1)).add(fetch);
+        return fetch;
+    }
+
+    /**
+     * Cache a fetched representation, unless the resource has been invalidated since the fetch started.
+     * @param iri the resource IRI
+     * @param prefer the canonical Prefer header value, or null
+     * @param representation the representation
+     * @param fetch the token from {@link #startFetch(String)}
+     * @return true if the representation was cached
+     */
+    public synchronized boolean put(final String iri, final String prefer, final Representation representation,
+            final Fetch fetch) {
+        release(fetch);
+        if (fetch.stale) {
+            return false;
+        }
+        final Key key = new Key(iri, prefer);
+        final long entryWeight = representation.body.length + 2L * (key.iri.length() + key.prefer.length())
+            + ENTRY_OVERHEAD;
+        if (entryWeight > maximumWeight) {
+            return false;
+        }
+        final Entry previous = entries.put(key, new Entry(representation, entryWeight));
+        if (previous != null) {
+            weight -= previous.weight;
+        } else {
+            variants.computeIfAbsent(iri, k -> new ArrayList<>(1)).add(key);
+        }
+        weight += entryWeight;
+        evict();
+        return true;
+    }
+
+    /**
+     * Finish a fetch without caching its response. Releasing a fetch more than once has no effect.
+     * @param fetch the token from {@link #startFetch(String)}
+     */
+    public synchronized void release(final Fetch fetch) {
+        final List<Fetch> pending = fetches.get(fetch.iri);
+        if (pending != null && pending.remove(fetch) && pending.isEmpty()) {
+            fetches.remove(fetch.iri);
+        }
+    }
+
+    /**
+     * Remove every cached representation of a resource.
+     * @param iri the resource IRI
+     */
+    public synchronized void invalidate(final String iri) {
+        stale(fetches.remove(iri));
+        final List<Key> keys = variants.remove(iri);
+        if (keys != null) {
+            for (final Key key : keys) {
+                weight -= entries.remove(key).weight;
+            }
+        }
+    }
+
+    /**
+     * Remove the cached representations affected by an ActivityStream event.
+     *
+     * <p>An {@code Update} or {@code Delete} removes the object's representations, and a
+     * {@code Create} or {@code Delete} also removes those of its parent container.
+     *
+     * @param activityType the {@code ActivityStreamType} value, either a String or a List
+     * @param objectId the {@code ActivityStreamObjectId} value, either a String or a List
+     */
+    public void invalidate(final Object activityType, final Object objectId) {
+        final boolean create = hasType(activityType, CREATE);
+        final boolean delete = hasType(activityType, DELETE);
+        if (!create && !delete && !hasType(activityType, UPDATE)) {
+            return;
+        }
+        for (final Object value : objectId instanceof List ? (List<?>) objectId : singletonOrEmpty(objectId)) {
+            if (value instanceof String) {
+                final String iri = (String) value;
+                invalidate(iri);
+                final String parent = create || delete ? parent(iri) : null;
+                if (parent != null) {
+                    invalidate(parent);
+                    invalidate(parent + "/");
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of lookups that were served from the cache.
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups that were not served from the cache.
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of entries evicted to stay within the limits.
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Get the number of cached representations.
+     * @return the current size of the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the total weight of the cached representations.
+     * @return the current weight, approximately in bytes
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Get the maximum total weight of the cached representations.
+     * @return the maximum weight, approximately in bytes
+     */
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * Get the maximum number of cached representations.
+     * @return the maximum size
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Remove all entries from the cache, and mark every fetch in progress as stale. The counters are not
+     * reset.
+     */
+    public synchronized void clear() {
+        for (final List<Fetch> pending : fetches.values()) {
+            stale(pending);
+        }
+        fetches.clear();
+        entries.clear();
+        variants.clear();
+        weight = 0;
+    }
+
+    /**
+     * Get the canonical form of a preference, for use as part of a cache key.
+     * @param prefer the preference, or null
+     * @return the canonical Prefer header value, or null
+     */
+    public static String canonical(final Prefer prefer) {
+        return prefer != null ? prefer.toHeaderValue() : null;
+    }
+
+    /**
+     * Get the IRI of a resource's parent container, without a trailing slash.
+     * @param iri the resource IRI
+     * @return the parent IRI, or null if the resource is a root
+     */
+    static String parent(final String iri) {
+        final int end = iri.endsWith("/") ? iri.length() - 1 : iri.length();
+        final int authority = iri.indexOf("://");
+        final int root = authority >= 0 ? iri.indexOf('/', authority + 3) : 0;
+        final int slash = iri.lastIndexOf('/', end - 1);
+        if (root < 0 || slash < root) {
+            return null;
+        }
+        return iri.substring(0, slash);
+    }
+
+    private static void stale(final List<Fetch> pending) {
+        if (pending != null) {
+            for (final Fetch fetch : pending) {
+                fetch.stale = true;
+            }
+        }
+    }
+
+    private void evict() {
+        final Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while ((weight > maximumWeight || entries.size() > maximumSize) && iterator.hasNext()) {
+            final Map.Entry<Key, Entry> eldest = iterator.next();
+            iterator.remove();
+            weight -= eldest.getValue().weight;
+            final List<Key> keys = variants.get(eldest.getKey().iri);
+            keys.remove(eldest.getKey());
+            if (keys.isEmpty()) {
+                variants.remove(eldest.getKey().iri);
+            }
+            evictions.increment();
+        }
+    }
+
+    private static boolean hasType(final Object type, final Set<String> types) {
+        if (type instanceof List) {
+            for (final Object value : (List<?>) type) {
+                if (types.contains(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return type != null && types.contains(type);
+    }
+
+    private static List<?> singletonOrEmpty(final Object value) {
+        return value != null ? List.of(value) : emptyList();
+    }
+
+    /**
+     * A cached LDP representation.
+     *
+     * <p>The body is shared with every exchange that the cache serves, and must not be modified.
+     */
+    public static final class Representation {
+        private final byte[] body;
+        private final String contentType;
+        private final List<Link> links;
+
+        /**
+         * Create a representation.
+         * @param body the response body
+         * @param contentType the response content type, or null
+         * @param links the response links
+         */
+        public Representation(final byte[] body, final String contentType, final List<Link> links) {
+            this.body = body;
+            this.contentType = contentType;
+            this.links = links;
+        }
+
+        /**
+         * Get the response body.
+         * @return the body
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * Get the response content type.
+         * @return the content type, or null
+         */
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * Get the response links.
+         * @return the links
+         */
+        public List<Link> getLinks() {
+            return links;
+        }
+    }
+
+    /**
+     * A token for a fetch of a resource that is in progress.
+     */
+    public static final class Fetch {
+        private final String iri;
+        private boolean stale;
+
+        private Fetch(final String iri) {
+            this.iri = iri;
+        }
+    }
+
+    private static final class Entry {
+        private final Representation representation;
+        private final long weight;
+
+        Entry(final Representation representation, final long weight) {
+            this.representation = representation;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Key {
+        private final String iri;
+        private final String prefer;
+        private final int hash;
+
+        Key(final String iri, final String prefer) {
+            this.iri = iri;
+            this.prefer = prefer != null ? prefer : "";
+            this.hash = 31 * iri.hashCode() + this.prefer.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) other;
+            return hash == key.hash && iri.equals(key.iri) && prefer.equals(key.prefer);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -15,40 +15,129 @@
  */
 package org.trellisldp.camel;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
 import static java.util.Collections.unmodifiableMap;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * An object representing an HTTP Link header.
  *
+ * <p>The rel, type and title parameters are held directly; the full parameter map is only
+ * built if {@link #getParams()} is called. A URI or rel equal to one of the {@link StandardLinks}
+ * constants is that constant.
+ *
  * @author acoburn
  */
 public class Link {
 
+    private static final String NAME_DELIMITERS = "=;,";
+
+    private static final String DELIMITERS = ";,";
+
+    private static final String REL = "rel";
+
+    private static final String TYPE = "type";
+
+    private static final String TITLE = "title";
+
+    private static final String[] NO_PARAMS = new String[0];
+
     private final String uri;
 
-    private final Map<String, String> params = new HashMap<>();
+    private final String rel;
+
+    private final String type;
+
+    private final String title;
+
+    /** Any other parameters, as alternating names and values. */
+    private final String[] extensions;
+
+    private Map<String, String> params;
 
     /**
      * Create a Link object from an HTTP header.
+     *
+     * <p>Only the first link-value of the header is used; see {@link #parseAll(String)} to read
+     * every link in a header.
+     *
      * @param value the value of the link header
      */
     public Link(final String value) {
-        final String[] parts = value.split(";");
-        final String val = parts[0].trim();
-        this.uri = val.startsWith("<") && val.endsWith(">") ? val.substring(1, val.length() - 1) : null;
-        for (int i = 1; i < parts.length; i++) {
-            final String[] p = parts[i].trim().split("=");
-            if (p.length == 2 && !params.containsKey(p[0])) {
-                if (p[1].startsWith("\"") && p[1].endsWith("\"")) {
-                    params.put(p[0], p[1].substring(1, p[1].length() - 1));
-                } else {
-                    params.put(p[0], p[1]);
+        this(new HeaderScanner(value));
+    }
+
+    private Link(final HeaderScanner scanner) {
+        this.uri = scanner.readBracketed('<', '>') ? StandardLinks.intern(scanner) : null;
+        scanner.skipTo(DELIMITERS);
+
+        String relValue = null;
+        String typeValue = null;
+        String titleValue = null;
+        String[] others = NO_PARAMS;
+        int count = 0;
+        while (scanner.skip(';')) {
+            scanner.readToken(NAME_DELIMITERS);
+            final String name = paramName(scanner);
+            final String otherName = name == null && !scanner.isEmpty() ? scanner.text() : null;
+            if (scanner.skip('=')) {
+                scanner.readValue(DELIMITERS);
+                if (REL.equals(name)) {
+                    relValue = relValue == null ? StandardLinks.intern(scanner) : relValue;
+                } else if (TYPE.equals(name)) {
+                    typeValue = typeValue == null ? scanner.text() : typeValue;
+                } else if (TITLE.equals(name)) {
+                    titleValue = titleValue == null ? scanner.text() : titleValue;
+                } else if (otherName != null && indexOf(others, count, otherName) < 0) {
+                    if (count == others.length) {
+                        final String[] grown = new String[Math.max(4, others.length * 2)];
+                        System.arraycopy(others, 0, grown, 0, count);
+                        others = grown;
+                    }
+                    others[count++] = otherName;
+                    others[count++] = scanner.text();
                 }
             }
+            scanner.skipTo(DELIMITERS);
+        }
+        this.rel = relValue;
+        this.type = typeValue;
+        this.title = titleValue;
+        this.extensions = count == others.length ? others : trim(others, count);
+    }
+
+    /**
+     * Parse every link-value in an HTTP Link header.
+     *
+     * <p>Link-values are separated by commas; commas inside a URI reference or a quoted
+     * parameter value are not treated as separators. Link-values without a URI reference
+     * are skipped.
+     *
+     * @param header the value of the link header
+     * @return the links, in the order in which they appear
+     */
+    public static List<Link> parseAll(final String header) {
+        if (header == null) {
+            return emptyList();
+        }
+        final HeaderScanner scanner = new HeaderScanner(header);
+        final List<Link> links = new ArrayList<>();
+        while (scanner.hasNext()) {
+            final Link link = new Link(scanner);
+            if (link.getUri() != null) {
+                links.add(link);
+            }
+            scanner.skipTo(",");
+            if (scanner.hasNext()) {
+                scanner.advance();
+            }
         }
+        return unmodifiableList(links);
     }
 
     /**
@@ -64,7 +153,7 @@ public class Link {
      * @return the type or null if one doesn not exist
      */
     public String getType() {
-        return params.get("type");
+        return type;
     }
 
     /**
@@ -72,7 +161,7 @@ public class Link {
      * @return the title or null if one doesn not exist
      */
     public String getTitle() {
-        return params.get("title");
+        return title;
     }
 
     /**
@@ -80,7 +169,7 @@ public class Link {
      * @return the rel or null if one doesn not exist
      */
     public String getRel() {
-        return params.get("rel");
+        return rel;
     }
 
     /**
@@ -88,6 +177,48 @@ public class Link {
      * @return the header parameters
      */
     public Map<String, String> getParams() {
-        return unmodifiableMap(params);
+        if (params == null) {
+            final Map<String, String> values = new HashMap<>();
+            if (rel != null) {
+                values.put(REL, rel);
+            }
+            if (type != null) {
+                values.put(TYPE, type);
+            }
+            if (title != null) {
+                values.put(TITLE, title);
+            }
+            for (int i = 0; i < extensions.length; i += 2) {
+                values.put(extensions[i], extensions[i + 1]);
+            }
+            params = unmodifiableMap(values);
+        }
+        return params;
+    }
+
+    private static String paramName(final HeaderScanner scanner) {
+        if (scanner.matches(REL)) {
+            return REL;
+        } else if (scanner.matches(TYPE)) {
+            return TYPE;
+        } else if (scanner.matches(TITLE)) {
+            return TITLE;
+        }
+        return null;
+    }
+
+    private static int indexOf(final String[] names, final int count, final String name) {
+        for (int i = 0; i < count; i += 2) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String[] trim(final String[] values, final int count) {
+        final String[] trimmed = new String[count];
+        System.arraycopy(values, 0, trimmed, 0, count);
+        return trimmed;
     }
 }
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.unmodifiableList;
+import static org.trellisldp.camel.StandardLinks.INTERACTION_MODELS;
+import static org.trellisldp.camel.StandardLinks.LDP_BASIC_CONTAINER;
+import static org.trellisldp.camel.StandardLinks.LDP_CONTAINER;
+import static org.trellisldp.camel.StandardLinks.LDP_DIRECT_CONTAINER;
+import static org.trellisldp.camel.StandardLinks.LDP_INDIRECT_CONTAINER;
+import static org.trellisldp.camel.StandardLinks.LDP_NON_RDF_SOURCE;
+import static org.trellisldp.camel.StandardLinks.MEMENTO_MEMENTO;
+import static org.trellisldp.camel.StandardLinks.TYPE;
+import static org.trellisldp.camel.StandardLinks.modelBit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable set of links, indexed by relation.
+ *
+ * <p>The LDP interaction models among the {@code type} links are recorded in a bit mask when the
+ * set is created, so checks such as {@link #isInteractionModel(String)} and {@link #isContainer()}
+ * need no string comparisons when called with the {@link StandardLinks} constants. A link with
+ * several space-separated relations is indexed under each of them. Relations are compared exactly
+ * as written.
+ *
+ * @author acoburn
+ */
+public final class LinkSet implements Iterable<Link> {
+
+    private static final int CONTAINERS = modelBit(LDP_CONTAINER) | modelBit(LDP_BASIC_CONTAINER) |
+        modelBit(LDP_DIRECT_CONTAINER) | modelBit(LDP_INDIRECT_CONTAINER);
+
+    private static final int NON_RDF_SOURCE = modelBit(LDP_NON_RDF_SOURCE);
+
+    private final List<Link> links;
+    private final Map<String, List<Link>> byRel;
+    private final int models;
+
+    private LinkSet(final List<Link> links) {
+        this.links = links;
+        final Map<String, List<Link>> index = new HashMap<>();
+        for (final Link link : links) {
+            final String rel = link.getRel();
+            if (rel == null) {
+                continue;
+            }
+            if (rel.indexOf(' ') < 0) {
+                add(index, rel, link);
+            } else {
+                for (final String value : rel.trim().split(" +")) {
+                    add(index, value, link);
+                }
+            }
+        }
+        int types = 0;
+        for (final Link link : index.getOrDefault(TYPE, emptyList())) {
+            types |= modelBit(link.getUri());
+        }
+        for (final Map.Entry<String, List<Link>> entry : index.entrySet()) {
+            final List<Link> values = entry.getValue();
+            entry.setValue(values.size() == 1 ? singletonList(values.get(0)) : unmodifiableList(values));
+        }
+        this.byRel = index;
+        this.models = types;
+    }
+
+    /**
+     * Create a link set.
+     * @param links the links
+     * @return the link set
+     */
+    public static LinkSet of(final List<Link> links) {
+        return new LinkSet(unmodifiableList(new ArrayList<>(links)));
+    }
+
+    /**
+     * Create a link set from the values of one or more HTTP Link headers.
+     * @param headers the header values
+     * @return the link set
+     */
+    public static LinkSet parse(final String... headers) {
+        if (headers.length == 1) {
+            return new LinkSet(Link.parseAll(headers[0]));
+        }
+        final List<Link> links = new ArrayList<>();
+        for (final String header : headers) {
+            links.addAll(Link.parseAll(header));
+        }
+        return new LinkSet(unmodifiableList(links));
+    }
+
+    /**
+     * Get every link, in the order in which it was given.
+     * @return the links
+     */
+    public List<Link> getLinks() {
+        return links;
+    }
+
+    /**
+     * Get the links with a relation.
+     * @param rel the relation
+     * @return the links, in the order in which they were given
+     */
+    public List<Link> getByRel(final String rel) {
+        return byRel.getOrDefault(rel, emptyList());
+    }
+
+    /**
+     * Get the first link with a relation.
+     * @param rel the relation
+     * @return the link, or null if there is none
+     */
+    public Link getFirst(final String rel) {
+        final List<Link> values = byRel.get(rel);
+        return values != null ? values.get(0) : null;
+    }
+
+    /**
+     * Identify whether there is a link with a relation.
+     * @param rel the relation
+     * @return true if there is such a link
+     */
+    public boolean hasRel(final String rel) {
+        return byRel.containsKey(rel);
+    }
+
+    /**
+     * Identify whether there is a {@code type} link to a URI.
+     * @param iri the type URI
+     * @return true if there is such a link
+     */
+    public boolean hasType(final String iri) {
+        final List<Link> types = getByRel(TYPE);
+        for (final Link link : types) {
+            if (link.getUri() == iri) {
+                return true;
+            }
+        }
+        for (final Link link : types) {
+            if (iri.equals(link.getUri())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Identify whether there is a {@code type} link to an LDP interaction model.
+     * @param iri the interaction model, such as {@link StandardLinks#LDP_BASIC_CONTAINER}
+     * @return true if there is such a link
+     */
+    public boolean isInteractionModel(final String iri) {
+        final int bit = modelBit(iri);
+        return bit != 0 ? (models & bit) != 0 : hasType(iri);
+    }
+
+    /**
+     * Get the most specific LDP interaction model among the {@code type} links.
+     * @return the interaction model, or null if there is none
+     */
+    public String getInteractionModel() {
+        return models != 0 ? INTERACTION_MODELS[31 - Integer.numberOfLeadingZeros(models)] : null;
+    }
+
+    /**
+     * Identify whether the links describe any kind of LDP container.
+     * @return true if there is a {@code type} link to an LDP container model
+     */
+    public boolean isContainer() {
+        return (models & CONTAINERS) != 0;
+    }
+
+    /**
+     * Identify whether the links describe an LDP non-RDF source.
+     * @return true if there is a {@code type} link to {@code ldp:NonRDFSource}
+     */
+    public boolean isNonRDFSource() {
+        return (models & NON_RDF_SOURCE) != 0;
+    }
+
+    /**
+     * Identify whether the links describe a Memento.
+     * @return true if there is a {@code type} link to {@code memento:Memento}
+     */
+    public boolean isMemento() {
+        return hasType(MEMENTO_MEMENTO);
+    }
+
+    /**
+     * Get the number of links.
+     * @return the number of links
+     */
+    public int size() {
+        return links.size();
+    }
+
+    @Override
+    public Iterator<Link> iterator() {
+        return links.iterator();
+    }
+
+    private static void add(final Map<String, List<Link>> index, final String rel, final Link link) {
+        index.computeIfAbsent(rel, k -> new ArrayList<>(2)).add(link);
+    }
+}
@@ -15,20 +15,17 @@
  */
 package org.trellisldp.camel;
 
-import static java.lang.Integer.parseInt;
-import static java.lang.String.join;
-import static java.util.Arrays.asList;
-import static java.util.Arrays.stream;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
 import static java.util.Collections.unmodifiableList;
-import static java.util.stream.Collectors.joining;
+import static java.util.Collections.unmodifiableSet;
 import static org.slf4j.LoggerFactory.getLogger;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -36,6 +33,8 @@ import org.slf4j.Logger;
 /**
  * A class representing an HTTP Prefer header.
  *
+ * <p>Instances are immutable and may be shared between threads.
+ *
  * @author acoburn
  *
  * @see <a href="https://tools.ietf.org/html/rfc7240">RFC 7240</a> and
@@ -63,6 +62,14 @@ public class Prefer {
 
     public static final String PREFER_WAIT = "wait";
 
+    private static final String NAME_DELIMITERS = "=;,";
+
+    private static final String DELIMITERS = ";,";
+
+    private static final String RESPOND_ASYNC = "respond-async";
+
+    private static final String DEPTH_NOROOT = "depth-noroot";
+
     private final String preference;
 
     private final String handling;
@@ -75,6 +82,9 @@ public class Prefer {
 
     private final Set<String> params;
 
+    /** The serialized header value; a racy cache is safe because String is immutable. */
+    private String headerValue;
+
     /**
      * Create a Prefer header representation.
      * @param preference the preference value
@@ -88,42 +98,87 @@ public class Prefer {
             final Set<String> params, final String handling, final Integer wait) {
         this.preference = PREFER_MINIMAL.equals(preference) ||
             PREFER_REPRESENTATION.equals(preference) ? preference : null;
-        this.include = include != null ? include : emptyList();
-        this.omit = omit != null ? omit : emptyList();
+        this.include = include != null ? unmodifiableList(new ArrayList<>(include)) : emptyList();
+        this.omit = omit != null ? unmodifiableList(new ArrayList<>(omit)) : emptyList();
         this.handling = PREFER_LENIENT.equals(handling) || PREFER_STRICT.equals(handling) ? handling : null;
         this.wait = wait;
-        this.params = params != null ? params : emptySet();
+        this.params = params != null ? unmodifiableSet(new HashSet<>(params)) : emptySet();
+    }
+
+    /**
+     * Create a Prefer header representation from already validated, immutable values.
+     *
+     * <p>This is used by the parser, which builds its collections directly and so has no need
+     * of the defensive copies made by the public constructor.
+     */
+    private Prefer(final String preference, final String handling, final Integer wait,
+            final List<String> include, final List<String> omit, final Set<String> params) {
+        this.preference = preference;
+        this.handling = handling;
+        this.wait = wait;
+        this.include = include;
+        this.omit = omit;
+        this.params = params;
     }
 
     /**
      * Create a Prefer header representation from a header string.
+     *
+     * <p>Preferences may be separated by either semicolons or commas, and values may be
+     * quoted strings, which can themselves contain those separators.
+     *
      * @param value the header value
      * @return a Prefer object or null on an invalid string
      */
     public static Prefer valueOf(final String value) {
-        if (value != null) {
-            final Map<String, String> data = new HashMap<>();
-            final Set<String> params = new HashSet<>();
-            stream(value.split(";")).map(String::trim).map(pref -> pref.split("=", 2)).forEach(x -> {
-                if (x.length == 2) {
-                    data.put(x[0].trim(), x[1].trim());
-                } else {
-                    params.add(x[0].trim());
-                }
-            });
-            final String waitValue = data.get(PREFER_WAIT);
-            try {
-                Integer wait = null;
-                if (waitValue != null) {
-                    wait = parseInt(waitValue);
+        if (value == null) {
+            return null;
+        }
+        final HeaderScanner scanner = new HeaderScanner(value);
+        String preference = null;
+        String handling = null;
+        Integer wait = null;
+        String invalidWait = null;
+        List<String> include = emptyList();
+        List<String> omit = emptyList();
+        Set<String> params = emptySet();
+        while (scanner.hasNext()) {
+            scanner.readToken(NAME_DELIMITERS);
+            final String name = preferenceName(scanner);
+            if (scanner.skip('=')) {
+                scanner.readValue(DELIMITERS);
+                if (PREFER_RETURN.equals(name)) {
+                    preference = scanner.matches(PREFER_MINIMAL) ? PREFER_MINIMAL :
+                        scanner.matches(PREFER_REPRESENTATION) ? PREFER_REPRESENTATION : null;
+                } else if (PREFER_HANDLING.equals(name)) {
+                    handling = scanner.matches(PREFER_LENIENT) ? PREFER_LENIENT :
+                        scanner.matches(PREFER_STRICT) ? PREFER_STRICT : null;
+                } else if (PREFER_INCLUDE.equals(name)) {
+                    include = parseParameter(scanner);
+                } else if (PREFER_OMIT.equals(name)) {
+                    omit = parseParameter(scanner);
+                } else if (PREFER_WAIT.equals(name)) {
+                    try {
+                        wait = scanner.intValue();
+                        invalidWait = null;
+                    } catch (final NumberFormatException ex) {
+                        invalidWait = scanner.text();
+                    }
                 }
-                return new Prefer(data.get(PREFER_RETURN), parseParameter(data.get(PREFER_INCLUDE)),
-                        parseParameter(data.get(PREFER_OMIT)), params, data.get(PREFER_HANDLING), wait);
-            } catch (final NumberFormatException ex) {
-                LOGGER.error("Cannot parse wait parameter value {}: {}", waitValue, ex.getMessage());
+            } else if (!scanner.isEmpty()) {
+                params = addParameter(params, scanner.matches(RESPOND_ASYNC) ? RESPOND_ASYNC :
+                        scanner.matches(DEPTH_NOROOT) ? DEPTH_NOROOT : scanner.text());
+            }
+            scanner.skipTo(DELIMITERS);
+            if (scanner.hasNext()) {
+                scanner.advance();
             }
         }
-        return null;
+        if (invalidWait != null) {
+            LOGGER.error("Cannot parse wait parameter value {}", invalidWait);
+            return null;
+        }
+        return new Prefer(preference, handling, wait, include, omit, params);
     }
 
     /**
@@ -155,7 +210,7 @@ public class Prefer {
      * @return true if the respond-async parameter was set; false otherwise
      */
     public Boolean getRespondAsync() {
-        return params.contains("respond-async");
+        return params.contains(RESPOND_ASYNC);
     }
 
     /**
@@ -163,7 +218,7 @@ public class Prefer {
      * @return true if the depth-noroot parameter was set; false otherwise
      */
     public Boolean getDepthNoroot() {
-        return params.contains("depth-noroot");
+        return params.contains(DEPTH_NOROOT);
     }
 
     /**
@@ -171,7 +226,7 @@ public class Prefer {
      * @return the list of IRIs to be included in the representation
      */
     public List<String> getInclude() {
-        return unmodifiableList(include);
+        return include;
     }
 
     /**
@@ -179,19 +234,138 @@ public class Prefer {
      * @return the list of IRIs to be omitted from the representation
      */
     public List<String> getOmit() {
-        return unmodifiableList(omit);
+        return omit;
     }
 
-    private static List<String> parseParameter(final String param) {
-        if (param != null) {
-            return asList(trimQuotes(param).split("\\s+"));
+    private static String preferenceName(final HeaderScanner scanner) {
+        if (scanner.matches(PREFER_RETURN)) {
+            return PREFER_RETURN;
+        } else if (scanner.matches(PREFER_INCLUDE)) {
+            return PREFER_INCLUDE;
+        } else if (scanner.matches(PREFER_OMIT)) {
+            return PREFER_OMIT;
+        } else if (scanner.matches(PREFER_HANDLING)) {
+            return PREFER_HANDLING;
+        } else if (scanner.matches(PREFER_WAIT)) {
+            return PREFER_WAIT;
+        }
+        return null;
+    }
+
+    private static List<String> parseParameter(final HeaderScanner scanner) {
+        final String text = scanner.isEscaped() ? scanner.text() : scanner.header();
+        final int end = scanner.isEscaped() ? text.length() : scanner.end();
+        int position = scanner.isEscaped() ? 0 : scanner.start();
+        String first = null;
+        List<String> values = null;
+        while (position < end) {
+            while (position < end && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            final int start = position;
+            while (position < end && !Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            if (position > start) {
+                final String iri = text.substring(start, position);
+                if (first == null) {
+                    first = iri;
+                } else {
+                    if (values == null) {
+                        values = new ArrayList<>();
+                        values.add(first);
+                    }
+                    values.add(iri);
+                }
+            }
+        }
+        if (values != null) {
+            return unmodifiableList(values);
         }
-        return emptyList();
+        return first != null ? singletonList(first) : emptyList();
     }
 
-    private static String trimQuotes(final String param) {
-        return param.startsWith("\"") && param.endsWith("\"") && param.length() > 1 ?
-            param.substring(1, param.length() - 1) : param;
+    private static Set<String> addParameter(final Set<String> params, final String param) {
+        if (params.isEmpty()) {
+            return singleton(param);
+        }
+        final Set<String> values = new HashSet<>(params);
+        values.add(param);
+        return unmodifiableSet(values);
+    }
+
+    /**
+     * Get the canonical header value for this preference.
+     *
+     * <p>The value is computed the first time it is requested. Parameters other than
+     * {@code respond-async} and {@code depth-noroot} are not included.
+     *
+     * @return the header value
+     */
+    public String toHeaderValue() {
+        String value = headerValue;
+        if (value == null) {
+            value = formatHeaderValue();
+            headerValue = value;
+        }
+        return value;
+    }
+
+    private String formatHeaderValue() {
+        final StringBuilder builder = new StringBuilder();
+        if (preference != null) {
+            append(builder, PREFER_RETURN).append('=').append(preference);
+        }
+        appendList(builder, PREFER_INCLUDE, include);
+        appendList(builder, PREFER_OMIT, omit);
+        if (handling != null) {
+            append(builder, PREFER_HANDLING).append('=').append(handling);
+        }
+        if (wait != null) {
+            append(builder, PREFER_WAIT).append('=').append(wait);
+        }
+        if (params.contains(RESPOND_ASYNC)) {
+            append(builder, RESPOND_ASYNC);
+        }
+        if (params.contains(DEPTH_NOROOT)) {
+            append(builder, DEPTH_NOROOT);
+        }
+        return builder.toString();
+    }
+
+    private static StringBuilder append(final StringBuilder builder, final String text) {
+        if (builder.length() > 0) {
+            builder.append("; ");
+        }
+        return builder.append(text);
+    }
+
+    private static void appendList(final StringBuilder builder, final String name, final List<String> values) {
+        if (!values.isEmpty()) {
+            append(builder, name).append("=\"");
+            for (int i = 0; i < values.size(); i++) {
+                escape(i > 0 ? builder.append(' ') : builder, values.get(i));
+            }
+            builder.append('"');
+        }
+    }
+
+    private static void escape(final StringBuilder builder, final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\');
+            }
+            builder.append(c);
+        }
+    }
+
+    /**
+     * Create a builder for a Prefer object.
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
     }
 
     /**
@@ -200,12 +374,7 @@ public class Prefer {
      * @return the Prefer object
      */
     public static Prefer ofInclude(final String... includes) {
-        final List<String> iris = asList(includes);
-        if (iris.isEmpty()) {
-            return valueOf(join("=", PREFER_RETURN, PREFER_REPRESENTATION));
-        }
-        return valueOf(join("=", PREFER_RETURN, PREFER_REPRESENTATION) + "; " + PREFER_INCLUDE + "=\"" +
-                iris.stream().collect(joining(" ")) + "\"");
+        return builder().preference(PREFER_REPRESENTATION).include(includes).build();
     }
 
     /**
@@ -214,11 +383,136 @@ public class Prefer {
      * @return the Prefer object
      */
     public static Prefer ofOmit(final String... omits) {
-        final List<String> iris = asList(omits);
-        if (iris.isEmpty()) {
-            return valueOf(join("=", PREFER_RETURN, PREFER_REPRESENTATION));
+        return builder().preference(PREFER_REPRESENTATION).omit(omits).build();
+    }
+
+    /**
+     * A builder for {@link Prefer} objects, which constructs them without parsing a header value.
+     *
+     * <pre>{@code
+     * final Prefer prefer = Prefer.builder().preference(PREFER_REPRESENTATION)
+     *     .include(LDP_CONTAINMENT).omit(LDP_MEMBERSHIP).respondAsync().build();
+     * }</pre>
+     */
+    public static final class Builder {
+
+        private String preference;
+        private String handling;
+        private Integer wait;
+        private final List<String> include = new ArrayList<>();
+        private final List<String> omit = new ArrayList<>();
+        private boolean respondAsync;
+        private boolean depthNoroot;
+
+        private Builder() {
+            // use Prefer.builder()
+        }
+
+        /**
+         * Set the return preference.
+         * @param preference either {@link Prefer#PREFER_MINIMAL} or {@link Prefer#PREFER_REPRESENTATION}
+         * @return this builder
+         * @throws IllegalArgumentException if the preference is not valid
+         */
+        public Builder preference(final String preference) {
+            if (!PREFER_MINIMAL.equals(preference) && !PREFER_REPRESENTATION.equals(preference)) {
+                throw new IllegalArgumentException("Invalid return preference: " + preference);
+            }
+            this.preference = PREFER_MINIMAL.equals(preference) ? PREFER_MINIMAL : PREFER_REPRESENTATION;
+            return this;
+        }
+
+        /**
+         * Add IRIs to include in the representation.
+         * @param iris the IRIs
+         * @return this builder
+         */
+        public Builder include(final String... iris) {
+            addAll(include, iris);
+            return this;
+        }
+
+        /**
+         * Add IRIs to omit from the representation.
+         * @param iris the IRIs
+         * @return this builder
+         */
+        public Builder omit(final String... iris) {
+            addAll(omit, iris);
+            return this;
+        }
+
+        /**
+         * Set the handling preference.
+         * @param handling either {@link Prefer#PREFER_LENIENT} or {@link Prefer#PREFER_STRICT}
+         * @return this builder
+         * @throws IllegalArgumentException if the handling value is not valid
+         */
+        public Builder handling(final String handling) {
+            if (!PREFER_LENIENT.equals(handling) && !PREFER_STRICT.equals(handling)) {
+                throw new IllegalArgumentException("Invalid handling preference: " + handling);
+            }
+            this.handling = PREFER_LENIENT.equals(handling) ? PREFER_LENIENT : PREFER_STRICT;
+            return this;
+        }
+
+        /**
+         * Set the wait preference.
+         * @param seconds the number of seconds the client is prepared to wait
+         * @return this builder
+         */
+        public Builder waitFor(final int seconds) {
+            this.wait = seconds;
+            return this;
+        }
+
+        /**
+         * Set the respond-async preference.
+         * @return this builder
+         */
+        public Builder respondAsync() {
+            this.respondAsync = true;
+            return this;
+        }
+
+        /**
+         * Set the depth-noroot preference.
+         * @return this builder
+         */
+        public Builder depthNoroot() {
+            this.depthNoroot = true;
+            return this;
+        }
+
+        /**
+         * Build the Prefer object.
+         * @return the Prefer object
+         */
+        public Prefer build() {
+            Set<String> params = emptySet();
+            if (respondAsync) {
+                params = addParameter(params, RESPOND_ASYNC);
+            }
+            if (depthNoroot) {
+                params = addParameter(params, DEPTH_NOROOT);
+            }
+            return new Prefer(preference, handling, wait, copy(include), copy(omit), params);
+        }
+
+        private static void addAll(final List<String> values, final String[] iris) {
+            for (final String iri : iris) {
+                if (iri.isEmpty() || iri.chars().anyMatch(Character::isWhitespace)) {
+                    throw new IllegalArgumentException("Invalid IRI: '" + iri + "'");
+                }
+                values.add(iri);
+            }
+        }
+
+        private static List<String> copy(final List<String> values) {
+            if (values.isEmpty()) {
+                return emptyList();
+            }
+            return values.size() == 1 ? singletonList(values.get(0)) : unmodifiableList(new ArrayList<>(values));
         }
-        return valueOf(join("=", PREFER_RETURN, PREFER_REPRESENTATION) + "; " + PREFER_OMIT + "=\"" +
-                iris.stream().collect(joining(" ")) + "\"");
     }
 }
@@ -0,0 +1,451 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.camel.AsyncCallback;
+import org.apache.camel.AsyncProcessor;
+import org.apache.camel.CamelContext;
+import org.apache.camel.CamelContextAware;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Producer;
+import org.apache.camel.Service;
+import org.apache.camel.StreamCache;
+
+/**
+ * A Camel processor that honors the {@code respond-async} and {@code wait} preferences of a
+ * {@code Prefer} header by running another endpoint as a background job.
+ *
+ * <p>An exchange without {@code respond-async} is sent to the endpoint in the usual way. Otherwise, a
+ * copy of the exchange is sent to the endpoint on the processor's own thread pool, and the processor
+ * waits up to {@code wait} seconds, limited by the maximum wait, for it to finish. If it finishes in
+ * time, its result becomes the result of the exchange. If not, the exchange is answered at once with
+ * a {@code 202 Accepted} status, a {@code Location} header that points to a status monitor for the job
+ * and a {@code Preference-Applied: respond-async} header. The waiting is asynchronous, so a consumer
+ * that supports asynchronous processing, such as a servlet endpoint with {@code async=true}, does not
+ * hold a thread for it.
+ *
+ * <p>The job outlives the request, so its copy of the exchange does not share anything with it: a
+ * streamed body is first read into a byte array, and the {@code CamelHttpServlet*} headers, which hold
+ * the servlet request and response, are removed from the copy.
+ *
+ * <pre>{@code
+ * PreferAsyncProcessor async = new PreferAsyncProcessor("direct:bulk", "http://localhost:8080/jobs/");
+ * from("servlet:/bulk?httpMethodRestrict=POST&async=true").process(async);
+ * rest("/jobs").get("/{PreferAsyncJobId}").route().process(async::status);
+ * }</pre>
+ *
+ * <p>Jobs are held in a registry of bounded size until the result of a job has been returned directly,
+ * or until the job expiry time has passed since the job finished. A job that is still running does not
+ * expire. When the registry is full, a {@code respond-async} request is answered with a
+ * {@code 503 Service Unavailable} status.
+ *
+ * @author acoburn
+ */
+public class PreferAsyncProcessor implements AsyncProcessor, CamelContextAware, Service {
+
+    public static final String PREFER_ASYNC_JOB_ID = "PreferAsyncJobId";
+
+    public static final String PREFERENCE_APPLIED = "Preference-Applied";
+
+    public static final int DEFAULT_MAXIMUM_JOBS = 1000;
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 10;
+
+    public static final long DEFAULT_MAXIMUM_WAIT = 10_000L;
+
+    public static final long DEFAULT_JOB_EXPIRY = 300_000L;
+
+    private static final String RESPOND_ASYNC = "respond-async";
+
+    private static final String SERVLET_HEADERS = "CamelHttpServlet*";
+
+    private static final int ACCEPTED = 202;
+
+    private static final int NOT_FOUND = 404;
+
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    private final String endpointUri;
+    private final String statusMonitor;
+
+    /* Job id to job, in the order that the jobs started; guarded by this. */
+    private final Map<String, Job> jobs = new LinkedHashMap<>();
+
+    private CamelContext camelContext;
+    private int maximumJobs = DEFAULT_MAXIMUM_JOBS;
+    private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+    private long maximumWait = DEFAULT_MAXIMUM_WAIT;
+    private long jobExpiry = DEFAULT_JOB_EXPIRY;
+
+    private volatile Producer producer;
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Create a processor for background jobs.
+     * @param endpointUri the endpoint that runs each job
+     * @param statusMonitor the base URI of the status monitor, to which each job id is appended
+     */
+    public PreferAsyncProcessor(final String endpointUri, final String statusMonitor) {
+        this.endpointUri = endpointUri;
+        this.statusMonitor = statusMonitor;
+    }
+
+    @Override
+    public void setCamelContext(final CamelContext camelContext) {
+        this.camelContext = camelContext;
+    }
+
+    @Override
+    public CamelContext getCamelContext() {
+        return camelContext;
+    }
+
+    /**
+     * Set the number of jobs that the registry may hold.
+     * @param maximumJobs the maximum number of jobs
+     */
+    public void setMaximumJobs(final int maximumJobs) {
+        this.maximumJobs = maximumJobs;
+    }
+
+    /**
+     * Get the number of jobs that the registry may hold.
+     * @return the maximum number of jobs
+     */
+    public int getMaximumJobs() {
+        return maximumJobs;
+    }
+
+    /**
+     * Set the number of jobs that may run at once. Other jobs wait in the registry.
+     * @param maxConcurrency the number of threads that run jobs
+     */
+    public void setMaxConcurrency(final int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Get the number of jobs that may run at once.
+     * @return the number of threads that run jobs
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Set the longest time to wait for a job, whatever the {@code wait} preference.
+     * @param maximumWait the maximum wait, in milliseconds
+     */
+    public void setMaximumWait(final long maximumWait) {
+        this.maximumWait = maximumWait;
+    }
+
+    /**
+     * Get the longest time to wait for a job.
+     * @return the maximum wait, in milliseconds
+     */
+    public long getMaximumWait() {
+        return maximumWait;
+    }
+
+    /**
+     * Set how long a finished job stays in the registry.
+     * @param jobExpiry the expiry time, in milliseconds
+     */
+    public void setJobExpiry(final long jobExpiry) {
+        this.jobExpiry = jobExpiry;
+    }
+
+    /**
+     * Get how long a finished job stays in the registry.
+     * @return the expiry time, in milliseconds
+     */
+    public long getJobExpiry() {
+        return jobExpiry;
+    }
+
+    /**
+     * Get the number of jobs in the registry, including any that have expired but not yet been removed.
+     * @return the number of jobs
+     */
+    public synchronized int getJobCount() {
+        return jobs.size();
+    }
+
+    @Override
+    public boolean process(final Exchange exchange, final AsyncCallback callback) {
+        final Producer current = producer;
+        if (current == null) {
+            exchange.setException(new IllegalStateException("The async job processor has not been started"));
+            callback.done(true);
+            return true;
+        }
+        final Prefer prefer = exchange.getIn().getHeader("Prefer", Prefer.class);
+        if (prefer == null || !prefer.getRespondAsync()) {
+            try {
+                current.process(exchange);
+            } catch (final Exception ex) {
+                exchange.setException(ex);
+            }
+            callback.done(true);
+            return true;
+        }
+
+        final long wait = prefer.getWait() != null ? Math.min(maximumWait, prefer.getWait() * 1000L) : 0L;
+        final Job job = register(exchange, wait > 0 ? callback : null);
+        if (job == null) {
+            exchange.getMessage().setHeader(Exchange.HTTP_RESPONSE_CODE, SERVICE_UNAVAILABLE);
+            exchange.getMessage().setBody(null);
+            callback.done(true);
+            return true;
+        }
+        try {
+            executor.execute(() -> run(current, job));
+            if (wait > 0) {
+                scheduler.schedule(() -> respond(job), wait, MILLISECONDS);
+            }
+        } catch (final RejectedExecutionException ex) {
+            remove(job.id);
+            if (wait > 0 && job.claim() == null) {
+                return false;
+            }
+            exchange.setException(ex);
+            callback.done(true);
+            return true;
+        }
+        if (wait > 0) {
+            return false;
+        }
+        accepted(exchange, job.id);
+        callback.done(true);
+        return true;
+    }
+
+    @Override
+    public void process(final Exchange exchange) throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        if (!process(exchange, doneSync -> latch.countDown())) {
+            latch.await();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Exchange> processAsync(final Exchange exchange) {
+        final CompletableFuture<Exchange> future = new CompletableFuture<>();
+        process(exchange, doneSync -> future.complete(exchange));
+        return future;
+    }
+
+    /**
+     * Report on a job, as a status monitor. The job id is read from the {@code PreferAsyncJobId} header.
+     *
+     * <p>A job that has finished gives its result, a job that is still running gives a {@code 202}
+     * status and an unknown or expired job gives a {@code 404} status.
+     *
+     * @param exchange the exchange
+     */
+    public void status(final Exchange exchange) {
+        final Job job = lookup(exchange.getIn().getHeader(PREFER_ASYNC_JOB_ID, String.class));
+        final Message message = exchange.getMessage();
+        if (job == null) {
+            message.setHeader(Exchange.HTTP_RESPONSE_CODE, NOT_FOUND);
+            message.setBody(null);
+        } else if (job.done) {
+            copyResults(exchange, job.exchange);
+        } else {
+            message.setHeader(Exchange.HTTP_RESPONSE_CODE, ACCEPTED);
+            message.setBody(null);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (maximumJobs <= 0 || maxConcurrency <= 0 || maximumWait < 0 || jobExpiry < 0) {
+            throw new IllegalArgumentException(
+                    "The job limits must be positive and the wait and expiry times non-negative");
+        }
+        if (camelContext == null) {
+            throw new IllegalStateException("A CamelContext is required to start the async job processor");
+        }
+        if (producer != null) {
+            return;
+        }
+        try {
+            final Producer created = camelContext.getEndpoint(endpointUri).createProducer();
+            created.start();
+            executor = camelContext.getExecutorServiceManager().newFixedThreadPool(this, "PreferAsyncJob",
+                    maxConcurrency);
+            scheduler = camelContext.getExecutorServiceManager().newSingleThreadScheduledExecutor(this,
+                    "PreferAsyncWait");
+            producer = created;
+        } catch (final Exception ex) {
+            throw new IllegalStateException("Unable to create a producer for " + endpointUri, ex);
+        }
+    }
+
+    @Override
+    public void stop() {
+        final Producer current = producer;
+        if (current == null) {
+            return;
+        }
+        producer = null;
+        camelContext.getExecutorServiceManager().shutdownNow(scheduler);
+        camelContext.getExecutorServiceManager().shutdownNow(executor);
+        final List<Job> stopped;
+        synchronized (this) {
+            stopped = new ArrayList<>(jobs.values());
+            jobs.clear();
+        }
+        for (final Job job : stopped) {
+            final Exchange caller = job.claim();
+            if (caller != null) {
+                caller.setException(new RejectedExecutionException("The async job processor has stopped"));
+                job.callback.done(false);
+            }
+        }
+        current.stop();
+    }
+
+    private void run(final Producer current, final Job job) {
+        try {
+            current.process(job.exchange);
+        } catch (final Exception ex) {
+            job.exchange.setException(ex);
+        }
+        synchronized (this) {
+            job.expires = System.currentTimeMillis() + jobExpiry;
+        }
+        job.done = true;
+        respond(job);
+    }
+
+    /* Answer the caller, if it is still waiting, with the result of the job or with a 202 status. */
+    private void respond(final Job job) {
+        final Exchange caller = job.claim();
+        if (caller == null) {
+            return;
+        }
+        if (job.done) {
+            remove(job.id);
+            copyResults(caller, job.exchange);
+        } else {
+            accepted(caller, job.id);
+        }
+        job.callback.done(false);
+    }
+
+    /* Copy an exchange for a job, so that the copy holds nothing that is recycled with the request. */
+    private static Exchange detach(final Exchange exchange) {
+        final Object body = exchange.getIn().getBody();
+        if (body instanceof InputStream || body instanceof Reader || body instanceof StreamCache) {
+            exchange.getIn().setBody(exchange.getIn().getBody(byte[].class));
+        }
+        final Exchange copy = exchange.copy();
+        copy.getIn().removeHeaders(SERVLET_HEADERS);
+        return copy;
+    }
+
+    /* Replace the message of one exchange with the result of another. */
+    private static void copyResults(final Exchange target, final Exchange source) {
+        final Message message = target.getMessage();
+        message.getHeaders().clear();
+        message.getHeaders().putAll(source.getMessage().getHeaders());
+        message.setBody(source.getMessage().getBody());
+        target.setException(source.getException());
+    }
+
+    private void accepted(final Exchange exchange, final String id) {
+        final Message message = exchange.getMessage();
+        message.setHeader(Exchange.HTTP_RESPONSE_CODE, ACCEPTED);
+        message.setHeader("Location", statusMonitor + id);
+        message.setHeader(PREFERENCE_APPLIED, RESPOND_ASYNC);
+        message.setBody(null);
+    }
+
+    private synchronized Job register(final Exchange exchange, final AsyncCallback callback) {
+        if (jobs.size() >= maximumJobs) {
+            final long now = System.currentTimeMillis();
+            final Iterator<Job> iterator = jobs.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().expires <= now) {
+                    iterator.remove();
+                }
+            }
+            if (jobs.size() >= maximumJobs) {
+                return null;
+            }
+        }
+        final Job job = new Job(UUID.randomUUID().toString(), detach(exchange), callback != null ? exchange : null,
+                callback);
+        jobs.put(job.id, job);
+        return job;
+    }
+
+    private synchronized Job lookup(final String id) {
+        final Job job = id != null ? jobs.get(id) : null;
+        if (job != null && job.expires <= System.currentTimeMillis()) {
+            jobs.remove(id);
+            return null;
+        }
+        return job;
+    }
+
+    private synchronized void remove(final String id) {
+        jobs.remove(id);
+    }
+
+    private static final class Job {
+        private final String id;
+        private final Exchange exchange;
+        private final AsyncCallback callback;
+        private Exchange caller;
+        private volatile boolean done;
+        private long expires = Long.MAX_VALUE;
+
+        Job(final String id, final Exchange exchange, final Exchange caller, final AsyncCallback callback) {
+            this.id = id;
+            this.exchange = exchange;
+            this.caller = caller;
+            this.callback = callback;
+        }
+
+        /* Take the waiting caller, so that only one thread answers it. */
+        synchronized Exchange claim() {
+            final Exchange waiting = caller;
+            caller = null;
+            return waiting;
+        }
+    }
+}
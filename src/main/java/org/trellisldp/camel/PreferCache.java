@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe cache of parsed {@link Prefer} objects, keyed by the raw header value.
+ *
+ * <p>Since {@link Prefer} objects are immutable, the same instance is returned for every lookup of
+ * a given header value. When the cache is full, the oldest entries are evicted first. Header values
+ * that cannot be parsed are not cached.
+ *
+ * @author acoburn
+ */
+public class PreferCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 256;
+
+    private final int maximumSize;
+
+    private final ConcurrentMap<String, Prefer> cache = new ConcurrentHashMap<>();
+
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a Prefer cache with the default maximum size.
+     */
+    public PreferCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Create a Prefer cache.
+     * @param maximumSize the maximum number of header values to retain
+     */
+    public PreferCache(final int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("The maximum cache size must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Get a Prefer object for a header value, parsing the value only if it is not already cached.
+     * @param value the header value
+     * @return a Prefer object or null on an invalid string
+     */
+    public Prefer get(final String value) {
+        if (value == null) {
+            return null;
+        }
+        final Prefer cached = cache.get(value);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        final Prefer prefer = Prefer.valueOf(value);
+        if (prefer == null) {
+            return null;
+        }
+        final Prefer existing = cache.putIfAbsent(value, prefer);
+        if (existing != null) {
+            return existing;
+        }
+        insertionOrder.add(value);
+        if (size.incrementAndGet() > maximumSize) {
+            evict();
+        }
+        return prefer;
+    }
+
+    /**
+     * Get the number of lookups that were served from the cache.
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups that required the header value to be parsed.
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of cached header values.
+     * @return the current size of the cache
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Get the maximum number of cached header values.
+     * @return the maximum size of the cache
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Remove all entries from the cache. The hit and miss counters are not reset.
+     */
+    public void clear() {
+        String value = insertionOrder.poll();
+        while (value != null) {
+            if (cache.remove(value) != null) {
+                size.decrementAndGet();
+            }
+            value = insertionOrder.poll();
+        }
+    }
+
+    private void evict() {
+        while (size.get() > maximumSize) {
+            final String eldest = insertionOrder.poll();
+            if (eldest == null) {
+                return;
+            }
+            if (cache.remove(eldest) != null) {
+                size.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.trellisldp.camel.StandardLinks.LDP;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+
+/**
+ * A Camel processor that applies the include and omit preferences of a {@link Prefer} header to an
+ * N-Quads or N-Triples message body, without reading the body into memory.
+ *
+ * <p>Trellis serializes each part of a resource to its own named graph, such as
+ * {@link #LDP_PREFER_CONTAINMENT} for containment triples or {@link #TRELLIS_PREFER_AUDIT} for the audit
+ * log. This processor replaces the message body with a stream that reads the original body one line at
+ * a time and leaves out any quad whose graph the preferences exclude. A graph is excluded if it is
+ * omitted, or if it is one of the graphs that Trellis understands and is neither included nor one of
+ * the graphs that Trellis returns by default. Including {@link #LDP_PREFER_MINIMAL_CONTAINER} omits
+ * the containment and membership graphs. Quads in the default graph or in any other graph, blank lines
+ * and comments are always kept, as is every line of an N-Triples body. Lines that cannot be parsed are
+ * left out and counted.
+ *
+ * <p>The preferences come from the processor's own {@link Prefer}, if one is set, or else from the
+ * {@code Prefer} header of each exchange. Graph names are compared as UTF-8 bytes, without decoding
+ * each line, so a graph name written with numeric escapes will not match.
+ *
+ * @author acoburn
+ */
+public class PreferFilterProcessor implements Processor {
+
+    public static final String TRELLIS = "http://www.trellisldp.org/ns/trellis#";
+
+    public static final String LDP_PREFER_CONTAINMENT = LDP + "PreferContainment";
+
+    public static final String LDP_PREFER_MEMBERSHIP = LDP + "PreferMembership";
+
+    public static final String LDP_PREFER_MINIMAL_CONTAINER = LDP + "PreferMinimalContainer";
+
+    public static final String TRELLIS_PREFER_USER_MANAGED = TRELLIS + "PreferUserManaged";
+
+    public static final String TRELLIS_PREFER_SERVER_MANAGED = TRELLIS + "PreferServerManaged";
+
+    public static final String TRELLIS_PREFER_AUDIT = TRELLIS + "PreferAudit";
+
+    public static final String TRELLIS_PREFER_ACCESS_CONTROL = TRELLIS + "PreferAccessControl";
+
+    /* The graphs that Trellis returns when there is no preference for them. */
+    static final List<String> DEFAULT_GRAPHS = asList(TRELLIS_PREFER_USER_MANAGED, LDP_PREFER_CONTAINMENT,
+            LDP_PREFER_MEMBERSHIP);
+
+    /* The graphs that Trellis understands. */
+    static final List<String> PREFER_GRAPHS = asList(TRELLIS_PREFER_USER_MANAGED, TRELLIS_PREFER_SERVER_MANAGED,
+            LDP_PREFER_CONTAINMENT, LDP_PREFER_MEMBERSHIP, TRELLIS_PREFER_AUDIT, TRELLIS_PREFER_ACCESS_CONTROL);
+
+    private static final String PREFER_HEADER = "Prefer";
+
+    private static final PreferCache PREFER_CACHE = new PreferCache();
+
+    private static final byte[][] DEFAULT_EXCLUSIONS = excluded(null);
+
+    private final Prefer prefer;
+    private final AtomicLong malformedCount = new AtomicLong();
+
+    /* The most recent preferences read from a header, with the graphs that they exclude. */
+    private volatile Exclusions last = new Exclusions(null, DEFAULT_EXCLUSIONS);
+
+    /**
+     * Create a filter that reads the preferences from the {@code Prefer} header of each exchange.
+     */
+    public PreferFilterProcessor() {
+        this(null);
+    }
+
+    /**
+     * Create a filter with fixed preferences.
+     * @param prefer the preferences, or null to read them from the {@code Prefer} header of each exchange
+     */
+    public PreferFilterProcessor(final Prefer prefer) {
+        this.prefer = prefer;
+        if (prefer != null) {
+            this.last = new Exclusions(prefer, excluded(prefer));
+        }
+    }
+
+    /**
+     * Get the fixed preferences.
+     * @return the preferences, or null if they are read from each exchange
+     */
+    public Prefer getPrefer() {
+        return prefer;
+    }
+
+    /**
+     * Get the number of lines that could not be parsed and were left out.
+     * @return the number of malformed lines
+     */
+    public long getMalformedCount() {
+        return malformedCount.get();
+    }
+
+    @Override
+    public void process(final Exchange exchange) {
+        final InputStream body = exchange.getIn().getBody(InputStream.class);
+        if (body != null) {
+            exchange.getIn().setBody(new FilterInputStream(body, exclusions(exchange), malformedCount));
+        }
+    }
+
+    /**
+     * Find the graphs that a set of preferences excludes.
+     * @param prefer the preferences, which may be null
+     * @return the UTF-8 bytes of each excluded graph name
+     */
+    static byte[][] excluded(final Prefer prefer) {
+        final Set<String> included = new LinkedHashSet<>(DEFAULT_GRAPHS);
+        final Set<String> excluded = new LinkedHashSet<>(PREFER_GRAPHS);
+        if (prefer != null) {
+            included.addAll(prefer.getInclude());
+            excluded.addAll(prefer.getOmit());
+            if (prefer.getInclude().contains(LDP_PREFER_MINIMAL_CONTAINER)) {
+                included.remove(LDP_PREFER_CONTAINMENT);
+                included.remove(LDP_PREFER_MEMBERSHIP);
+            }
+            included.removeAll(prefer.getOmit());
+        }
+        excluded.removeAll(included);
+        return excluded.stream().map(graph -> graph.getBytes(UTF_8)).toArray(byte[][]::new);
+    }
+
+    /**
+     * Decide whether to keep a line of N-Quads.
+     * @param line the buffer holding the line
+     * @param length the length of the line
+     * @param excluded the excluded graph names
+     * @return 1 to keep the line, 0 to leave it out or -1 if it cannot be parsed
+     */
+    static int keep(final byte[] line, final int length, final byte[][] excluded) {
+        int i = skipSpace(line, 0, length);
+        if (i == length || line[i] == '#') {
+            return 1;
+        }
+        for (int term = 0; term < 3; term++) {
+            i = skipTerm(line, i, length);
+            if (i < 0) {
+                return -1;
+            }
+            i = skipSpace(line, i, length);
+        }
+        if (i < length && line[i] == '<') {
+            final int end = indexOf(line, (byte) '>', i + 1, length);
+            if (end < 0) {
+                return -1;
+            }
+            for (final byte[] graph : excluded) {
+                if (Arrays.equals(line, i + 1, end, graph, 0, graph.length)) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private Exclusions exclusions(final Exchange exchange) {
+        final Exclusions current = last;
+        if (prefer != null) {
+            return current;
+        }
+        final Object header = exchange.getIn().getHeader(PREFER_HEADER);
+        final Prefer value = header instanceof Prefer ? (Prefer) header :
+            header instanceof String ? PREFER_CACHE.get((String) header) : null;
+        if (value == current.prefer) {
+            return current;
+        }
+        final Exclusions exclusions = new Exclusions(value, value == null ? DEFAULT_EXCLUSIONS : excluded(value));
+        last = exclusions;
+        return exclusions;
+    }
+
+    private static int skipSpace(final byte[] line, final int from, final int length) {
+        int i = from;
+        while (i < length && (line[i] == ' ' || line[i] == '\t' || line[i] == '\r' || line[i] == '\n')) {
+            i++;
+        }
+        return i;
+    }
+
+    /* Skip an IRI, a blank node or a literal with its datatype or language tag, returning -1 if it is cut off. */
+    private static int skipTerm(final byte[] line, final int from, final int length) {
+        if (from >= length) {
+            return -1;
+        }
+        if (line[from] == '<') {
+            final int end = indexOf(line, (byte) '>', from + 1, length);
+            return end < 0 ? -1 : end + 1;
+        }
+        if (line[from] == '"') {
+            int i = from + 1;
+            while (i < length && line[i] != '"') {
+                i += line[i] == '\\' ? 2 : 1;
+            }
+            if (i >= length) {
+                return -1;
+            }
+            i++;
+            if (i + 1 < length && line[i] == '^' && line[i + 1] == '^') {
+                return skipTerm(line, i + 2, length);
+            }
+            if (i < length && line[i] == '@') {
+                return skipToken(line, i, length);
+            }
+            return i;
+        }
+        return skipToken(line, from, length);
+    }
+
+    private static int skipToken(final byte[] line, final int from, final int length) {
+        int i = from;
+        while (i < length && line[i] != ' ' && line[i] != '\t' && line[i] != '\r' && line[i] != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int indexOf(final byte[] line, final byte value, final int from, final int length) {
+        for (int i = from; i < length; i++) {
+            if (line[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final class Exclusions {
+        private final Prefer prefer;
+        private final byte[][] graphs;
+
+        Exclusions(final Prefer prefer, final byte[][] graphs) {
+            this.prefer = prefer;
+            this.graphs = graphs;
+        }
+    }
+
+    /**
+     * A stream over the kept lines of another stream. Only the current line is held in memory.
+     */
+    static final class FilterInputStream extends InputStream {
+
+        private final InputStream in;
+        private final byte[][] excluded;
+        private final AtomicLong malformedCount;
+        private final byte[] buffer = new byte[8192];
+
+        private byte[] line = new byte[256];
+        private int bufferPosition;
+        private int bufferLimit;
+        private int linePosition;
+        private int lineLength;
+        private boolean eof;
+
+        FilterInputStream(final InputStream in, final Exclusions exclusions, final AtomicLong malformedCount) {
+            this.in = in;
+            this.excluded = exclusions.graphs;
+            this.malformedCount = malformedCount;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return line[linePosition++] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            final int count = Math.min(length, lineLength - linePosition);
+            System.arraycopy(line, linePosition, bytes, offset, count);
+            linePosition += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return lineLength - linePosition;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        /* Make sure that there is an unread kept line, returning false at the end of the stream. */
+        private boolean fill() throws IOException {
+            while (linePosition >= lineLength) {
+                if (!readLine()) {
+                    return false;
+                }
+                final int keep = keep(line, lineLength, excluded);
+                if (keep <= 0) {
+                    if (keep < 0) {
+                        malformedCount.incrementAndGet();
+                    }
+                    lineLength = 0;
+                }
+            }
+            return true;
+        }
+
+        /* Read the next line, with its line ending, returning false if there are no more lines. */
+        private boolean readLine() throws IOException {
+            linePosition = 0;
+            lineLength = 0;
+            while (true) {
+                if (bufferPosition >= bufferLimit) {
+                    final int count = eof ? -1 : in.read(buffer);
+                    if (count < 0) {
+                        eof = true;
+                        return lineLength > 0;
+                    }
+                    bufferPosition = 0;
+                    bufferLimit = count;
+                }
+                final int newline = indexOf(buffer, (byte) '\n', bufferPosition, bufferLimit);
+                final int end = newline < 0 ? bufferLimit : newline + 1;
+                append(end - bufferPosition);
+                if (newline >= 0) {
+                    return true;
+                }
+            }
+        }
+
+        private void append(final int count) {
+            if (lineLength + count > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + count));
+            }
+            System.arraycopy(buffer, bufferPosition, line, lineLength, count);
+            lineLength += count;
+            bufferPosition += count;
+        }
+    }
+}
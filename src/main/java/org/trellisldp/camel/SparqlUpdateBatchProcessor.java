@@ -0,0 +1,594 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_OBJECT_ID;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_TYPE;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.CamelContextAware;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.Service;
+import org.slf4j.Logger;
+
+/**
+ * A Camel processor that keeps a triplestore in step with an LDP server by sending batched
+ * SPARQL Update requests.
+ *
+ * <p>Each resource is held in a named graph whose name is the resource IRI. For every exchange with
+ * an object id, from the {@code ActivityStreamObjectId} header or the exchange's
+ * {@link ActivityStreamEvent}, the processor records an operation on that graph: a {@code Delete}
+ * event clears it, and any other event replaces its contents with the message body, which must hold
+ * the resource's triples in N-Triples, such as {@link LdpEnrichmentProcessor} fetches when its accept
+ * type is {@code application/n-triples}. An empty body leaves the graph empty. A body whose
+ * {@code Content-Type} is some other syntax is logged, counted and skipped, since it could not be
+ * sent as part of an update. Only the final operation for each resource is kept.
+ *
+ * <p>Pending operations are grouped by the parent container of each resource, as derived from its
+ * IRI. When a batch is sent, each container gets one request: a {@code DELETE ... WHERE} that clears
+ * the graphs of its resources, followed by an {@code INSERT DATA} with their new contents. Blank node
+ * labels are rewritten for each graph, so that two resources that both use {@code _:b0} do not share
+ * a node. A batch is sent once it holds the maximum number of resources or once its oldest operation
+ * reaches the maximum age. It is sent by the processor's own thread, so the routing thread does not
+ * wait for the triplestore. Requests are sent one at a time, in order.
+ *
+ * <p>When a request fails with a network error or with a {@code 408}, {@code 429} or {@code 5xx}
+ * status, it and the containers that follow it are put back in the queue, where any newer operation
+ * on the same resource takes their place, and the next attempt waits for an exponential backoff. A
+ * container whose request fails the maximum number of times is logged, counted and dropped. Any other
+ * status of {@code 300} or more is a permanent failure: that container is logged, counted and dropped
+ * at once, and the containers after it are still sent. Any pending operations are tried once more
+ * when the processor is stopped.
+ *
+ * @author acoburn
+ */
+public class SparqlUpdateBatchProcessor implements Processor, CamelContextAware, Service {
+
+    public static final String SPARQL_UPDATE = "application/sparql-update";
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 500;
+
+    public static final long DEFAULT_MAXIMUM_AGE = 1000L;
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    public static final long DEFAULT_INITIAL_BACKOFF = 500L;
+
+    public static final long DEFAULT_MAXIMUM_BACKOFF = 30_000L;
+
+    private static final Logger LOGGER = getLogger(SparqlUpdateBatchProcessor.class);
+
+    private static final String DELETE = "Delete";
+
+    private static final String N_TRIPLES = "application/n-triples";
+
+    private static final int REDIRECTION = 300;
+
+    private static final int REQUEST_TIMEOUT = 408;
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private static final int SERVER_ERROR = 500;
+
+    private final String endpoint;
+    private final Object sendLock = new Object();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+
+    private HttpClient client;
+    private CamelContext camelContext;
+    private int maximumSize = DEFAULT_MAXIMUM_SIZE;
+    private long maximumAge = DEFAULT_MAXIMUM_AGE;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long initialBackoff = DEFAULT_INITIAL_BACKOFF;
+    private long maximumBackoff = DEFAULT_MAXIMUM_BACKOFF;
+    private long requestTimeout;
+
+    /* Container IRI to its pending operations; these fields are guarded by this. */
+    private Map<String, Batch> pending = new LinkedHashMap<>();
+    private int pendingCount;
+    private long oldest;
+    private long retryAt;
+    private boolean flushQueued;
+    private boolean running;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Create a batching processor with its own HTTP client.
+     * @param endpoint the SPARQL Update endpoint
+     */
+    public SparqlUpdateBatchProcessor(final String endpoint) {
+        this(endpoint, null);
+    }
+
+    /**
+     * Create a batching processor.
+     * @param endpoint the SPARQL Update endpoint
+     * @param client the HTTP client, or null to create one when the processor starts
+     */
+    public SparqlUpdateBatchProcessor(final String endpoint, final HttpClient client) {
+        this.endpoint = endpoint;
+        this.client = client;
+    }
+
+    @Override
+    public void setCamelContext(final CamelContext camelContext) {
+        this.camelContext = camelContext;
+    }
+
+    @Override
+    public CamelContext getCamelContext() {
+        return camelContext;
+    }
+
+    /**
+     * Set the number of resources at which a batch is sent.
+     * @param maximumSize the maximum batch size
+     */
+    public void setMaximumSize(final int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Get the number of resources at which a batch is sent.
+     * @return the maximum batch size
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Set how long an operation may wait before its batch is sent.
+     * @param maximumAge the maximum age, in milliseconds
+     */
+    public void setMaximumAge(final long maximumAge) {
+        this.maximumAge = maximumAge;
+    }
+
+    /**
+     * Get how long an operation may wait before its batch is sent.
+     * @return the maximum age, in milliseconds
+     */
+    public long getMaximumAge() {
+        return maximumAge;
+    }
+
+    /**
+     * Set the number of times to try the request for each container.
+     * @param maxAttempts the maximum number of attempts
+     */
+    public void setMaxAttempts(final int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Get the number of times to try the request for each container.
+     * @return the maximum number of attempts
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Set the backoff before the first retry. Each later retry doubles it, up to the maximum backoff.
+     * @param initialBackoff the initial backoff, in milliseconds
+     */
+    public void setInitialBackoff(final long initialBackoff) {
+        this.initialBackoff = initialBackoff;
+    }
+
+    /**
+     * Get the backoff before the first retry.
+     * @return the initial backoff, in milliseconds
+     */
+    public long getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    /**
+     * Set the longest backoff before a retry.
+     * @param maximumBackoff the maximum backoff, in milliseconds
+     */
+    public void setMaximumBackoff(final long maximumBackoff) {
+        this.maximumBackoff = maximumBackoff;
+    }
+
+    /**
+     * Get the longest backoff before a retry.
+     * @return the maximum backoff, in milliseconds
+     */
+    public long getMaximumBackoff() {
+        return maximumBackoff;
+    }
+
+    /**
+     * Set the timeout for each request.
+     * @param requestTimeout the timeout in milliseconds, or zero for no limit
+     */
+    public void setRequestTimeout(final long requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Get the timeout for each request.
+     * @return the timeout in milliseconds, or zero if there is no limit
+     */
+    public long getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * Get the number of resources waiting to be sent, including any waiting to be retried.
+     * @return the number of pending operations
+     */
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * Get the number of requests sent successfully.
+     * @return the number of requests
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Get the number of failed requests that were put back in the queue.
+     * @return the number of retries
+     */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * Get the number of requests that were dropped after their last attempt failed.
+     * @return the number of failed requests
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * Get the number of resources that were skipped because their body was not N-Triples.
+     * @return the number of skipped resources
+     */
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    @Override
+    public void process(final Exchange exchange) {
+        final ActivityStreamEvent event = ActivityStreamEvent.of(exchange);
+        final String iri = event != null ? event.getObjectId() :
+            exchange.getIn().getHeader(ACTIVITY_STREAM_OBJECT_ID, String.class);
+        if (iri == null) {
+            return;
+        }
+        if (!isIri(iri)) {
+            LOGGER.warn("Ignoring an event for a resource that is not a valid IRI: {}", iri);
+            return;
+        }
+        final boolean delete = event != null ? event.hasType(DELETE) :
+            ActivityStreamCoalescingProcessor.isDelete(exchange.getIn().getHeader(ACTIVITY_STREAM_TYPE));
+        final String contentType = exchange.getIn().getHeader(Exchange.CONTENT_TYPE, String.class);
+        if (!delete && contentType != null && !isNTriples(contentType)) {
+            skippedCount.incrementAndGet();
+            LOGGER.warn("Skipping {}: a {} body cannot be sent as N-Triples", iri, contentType);
+            return;
+        }
+        final String triples = delete ? null : exchange.getIn().getBody(String.class);
+        final ScheduledExecutorService executor;
+        synchronized (this) {
+            if (!running) {
+                throw new IllegalStateException("The SPARQL update processor has not been started");
+            }
+            final String parent = LdpResourceCache.parent(iri);
+            final Batch batch = pending.computeIfAbsent(parent != null ? parent : iri, k -> new Batch());
+            if (!batch.resources.containsKey(iri) && pendingCount++ == 0) {
+                oldest = System.currentTimeMillis();
+            }
+            batch.resources.put(iri, delete || triples != null ? triples : "");
+            executor = pendingCount >= maximumSize && !flushQueued ? scheduler : null;
+            flushQueued |= executor != null;
+        }
+        if (executor != null) {
+            try {
+                executor.execute(this::flushDue);
+            } catch (final RejectedExecutionException ex) {
+                // the processor is stopping, and will send the pending operations itself
+                synchronized (this) {
+                    flushQueued = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Send any pending operations now, without waiting for a retry backoff to pass.
+     */
+    public void flush() {
+        synchronized (sendLock) {
+            final Map<String, Batch> batches;
+            synchronized (this) {
+                flushQueued = false;
+                if (pendingCount == 0) {
+                    return;
+                }
+                batches = pending;
+                pending = new LinkedHashMap<>();
+                pendingCount = 0;
+            }
+            final Iterator<Map.Entry<String, Batch>> iterator = batches.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<String, Batch> entry = iterator.next();
+                final Outcome outcome = send(update(entry.getValue().resources));
+                if (outcome == Outcome.RETRY) {
+                    entry.getValue().attempts++;
+                    requeue(batches);
+                    return;
+                }
+                if (outcome == Outcome.FAILED) {
+                    failureCount.incrementAndGet();
+                    LOGGER.warn("Dropping the SPARQL update for {} resources in {}, which the endpoint rejected",
+                            entry.getValue().resources.size(), entry.getKey());
+                }
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        if (maximumSize <= 0 || maximumAge <= 0 || maxAttempts <= 0 || initialBackoff < 0 ||
+                maximumBackoff < initialBackoff) {
+            throw new IllegalArgumentException("The batch and retry limits must be positive, and the maximum " +
+                    "backoff no less than the initial backoff");
+        }
+        if (camelContext == null) {
+            throw new IllegalStateException("A CamelContext is required to start the SPARQL update processor");
+        }
+        final long tick = Math.max(1L, maximumAge / 10);
+        synchronized (this) {
+            if (running) {
+                return;
+            }
+            if (client == null) {
+                client = HttpClient.newHttpClient();
+            }
+            scheduler = camelContext.getExecutorServiceManager().newSingleThreadScheduledExecutor(this,
+                    "SparqlUpdateBatcher");
+            scheduler.scheduleWithFixedDelay(this::flushDue, tick, tick, MILLISECONDS);
+            running = true;
+        }
+    }
+
+    @Override
+    public void stop() {
+        final ScheduledExecutorService current;
+        synchronized (this) {
+            running = false;
+            current = scheduler;
+            scheduler = null;
+        }
+        if (current != null) {
+            camelContext.getExecutorServiceManager().shutdownGraceful(current);
+        }
+        flush();
+    }
+
+    /**
+     * Build a SPARQL Update request for the resources of one container.
+     * @param resources the operations, as resource IRI to N-Triples or null for a deletion
+     * @return the update request
+     */
+    static String update(final Map<String, String> resources) {
+        final StringBuilder graphs = new StringBuilder();
+        final StringBuilder inserts = new StringBuilder();
+        int graph = 0;
+        for (final Map.Entry<String, String> resource : resources.entrySet()) {
+            graphs.append(" <").append(resource.getKey()).append('>');
+            final String triples = resource.getValue();
+            if (triples != null && !triples.trim().isEmpty()) {
+                inserts.append("  GRAPH <").append(resource.getKey()).append("> {\n")
+                    .append(relabel(triples, graph++));
+                if (!triples.endsWith("\n")) {
+                    inserts.append('\n');
+                }
+                inserts.append("  }\n");
+            }
+        }
+        final StringBuilder update = new StringBuilder("DELETE { GRAPH ?g { ?s ?p ?o } }\nWHERE { VALUES ?g {")
+            .append(graphs).append(" } GRAPH ?g { ?s ?p ?o } }");
+        if (inserts.length() > 0) {
+            update.append(";\nINSERT DATA {\n").append(inserts).append('}');
+        }
+        return update.append('\n').toString();
+    }
+
+    /**
+     * Give the blank nodes of one graph labels that no other graph in the request uses.
+     *
+     * <p>Every {@code _:label} outside an IRI, a literal or a comment becomes {@code _:g<n>_label}.
+     *
+     * @param triples the N-Triples of the graph
+     * @param graph the position of the graph in the request
+     * @return the N-Triples with their blank nodes relabeled
+     */
+    static String relabel(final String triples, final int graph) {
+        if (triples.indexOf("_:") < 0) {
+            return triples;
+        }
+        final String prefix = "g" + graph + "_";
+        final StringBuilder relabeled = new StringBuilder(triples.length() + 64);
+        boolean iri = false;
+        boolean literal = false;
+        boolean comment = false;
+        for (int i = 0; i < triples.length(); i++) {
+            final char c = triples.charAt(i);
+            relabeled.append(c);
+            if (comment) {
+                comment = c != '\n' && c != '\r';
+            } else if (literal) {
+                if (c == '\\' && i + 1 < triples.length()) {
+                    relabeled.append(triples.charAt(++i));
+                } else {
+                    literal = c != '"';
+                }
+            } else if (iri) {
+                iri = c != '>';
+            } else if (c == '<') {
+                iri = true;
+            } else if (c == '"') {
+                literal = true;
+            } else if (c == '#') {
+                comment = true;
+            } else if (c == '_' && i + 1 < triples.length() && triples.charAt(i + 1) == ':') {
+                relabeled.append(':').append(prefix);
+                i++;
+            }
+        }
+        return relabeled.toString();
+    }
+
+    /* An IRI that may be written between angle brackets in SPARQL. */
+    static boolean isIri(final String iri) {
+        if (iri.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < iri.length(); i++) {
+            final char c = iri.charAt(i);
+            if (c <= ' ' || "<>\"{}|^`\\".indexOf(c) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* A media type that names N-Triples, ignoring any parameters. */
+    static boolean isNTriples(final String contentType) {
+        final int semicolon = contentType.indexOf(';');
+        return (semicolon >= 0 ? contentType.substring(0, semicolon) : contentType).trim()
+            .equalsIgnoreCase(N_TRIPLES);
+    }
+
+    /* Send the pending operations if the batch is full or old enough and no backoff is in force. */
+    private void flushDue() {
+        final boolean due;
+        synchronized (this) {
+            final long now = System.currentTimeMillis();
+            due = pendingCount > 0 && now >= retryAt &&
+                (pendingCount >= maximumSize || now - oldest >= maximumAge);
+            flushQueued = false;
+        }
+        if (due) {
+            flush();
+        }
+    }
+
+    /* Put unsent containers back in front of the queue, where newer operations replace older ones. */
+    private synchronized void requeue(final Map<String, Batch> batches) {
+        final Map<String, Batch> merged = new LinkedHashMap<>();
+        int attempts = 0;
+        for (final Map.Entry<String, Batch> entry : batches.entrySet()) {
+            final Batch batch = entry.getValue();
+            if (!running || batch.attempts >= maxAttempts) {
+                failureCount.incrementAndGet();
+                LOGGER.warn("Dropping the SPARQL update for {} resources in {} after {} attempts",
+                        batch.resources.size(), entry.getKey(), batch.attempts);
+            } else {
+                if (batch.attempts > 0) {
+                    retryCount.incrementAndGet();
+                }
+                attempts = Math.max(attempts, batch.attempts);
+                merged.put(entry.getKey(), batch);
+            }
+        }
+        for (final Map.Entry<String, Batch> entry : pending.entrySet()) {
+            final Batch batch = merged.get(entry.getKey());
+            if (batch != null) {
+                batch.resources.putAll(entry.getValue().resources);
+            } else {
+                merged.put(entry.getKey(), entry.getValue());
+            }
+        }
+        pending = merged;
+        pendingCount = 0;
+        for (final Batch batch : merged.values()) {
+            pendingCount += batch.resources.size();
+        }
+        oldest = 0L;
+        if (attempts > 0) {
+            retryAt = System.currentTimeMillis() + InboxDeliveryProcessor.backoff(attempts, initialBackoff,
+                    maximumBackoff);
+        }
+    }
+
+    private Outcome send(final String update) {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(endpoint))
+            .header(Exchange.CONTENT_TYPE, SPARQL_UPDATE)
+            .POST(HttpRequest.BodyPublishers.ofString(update));
+        if (requestTimeout > 0) {
+            builder.timeout(Duration.ofMillis(requestTimeout));
+        }
+        try {
+            final HttpResponse<String> response = client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+            final int status = response.statusCode();
+            if (status < REDIRECTION) {
+                batchCount.incrementAndGet();
+                return Outcome.SENT;
+            }
+            LOGGER.warn("SPARQL update to {} failed with status {}: {}", endpoint, status, response.body());
+            return status == REQUEST_TIMEOUT || status == TOO_MANY_REQUESTS || status >= SERVER_ERROR ?
+                Outcome.RETRY : Outcome.FAILED;
+        } catch (final IOException ex) {
+            LOGGER.warn("Unable to send a SPARQL update to {}", endpoint, ex);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while sending a SPARQL update to {}", endpoint);
+        }
+        return Outcome.RETRY;
+    }
+
+    private enum Outcome {
+        SENT, RETRY, FAILED
+    }
+
+    /* The pending operations for the resources of one container. */
+    private static final class Batch {
+        /* Resource IRI to N-Triples, where null marks a deleted resource. */
+        private final Map<String, String> resources = new LinkedHashMap<>();
+        private int attempts;
+    }
+}
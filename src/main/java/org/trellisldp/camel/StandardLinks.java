@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+/**
+ * The link relations and link targets used by LDP servers such as Trellis.
+ *
+ * <p>When a {@link Link} is parsed, any rel or URI equal to one of these constants is replaced by
+ * the constant itself, so it may be compared by identity. {@link LinkSet} relies on this to check
+ * interaction models without comparing strings.
+ *
+ * @author acoburn
+ */
+public final class StandardLinks {
+
+    public static final String LDP = "http://www.w3.org/ns/ldp#";
+
+    public static final String MEMENTO = "http://mementoweb.org/ns#";
+
+    /* Link relations */
+
+    public static final String TYPE = "type";
+
+    public static final String DESCRIBEDBY = "describedby";
+
+    public static final String DESCRIBES = "describes";
+
+    public static final String ACL = "acl";
+
+    public static final String SELF = "self";
+
+    public static final String EDIT = "edit";
+
+    public static final String ORIGINAL = "original";
+
+    public static final String TIMEGATE = "timegate";
+
+    public static final String TIMEMAP = "timemap";
+
+    public static final String MEMENTO_REL = "memento";
+
+    public static final String LDP_CONSTRAINED_BY = LDP + "constrainedBy";
+
+    public static final String LDP_INBOX = LDP + "inbox";
+
+    /* Interaction models and other types */
+
+    public static final String LDP_RESOURCE = LDP + "Resource";
+
+    public static final String LDP_RDF_SOURCE = LDP + "RDFSource";
+
+    public static final String LDP_NON_RDF_SOURCE = LDP + "NonRDFSource";
+
+    public static final String LDP_CONTAINER = LDP + "Container";
+
+    public static final String LDP_BASIC_CONTAINER = LDP + "BasicContainer";
+
+    public static final String LDP_DIRECT_CONTAINER = LDP + "DirectContainer";
+
+    public static final String LDP_INDIRECT_CONTAINER = LDP + "IndirectContainer";
+
+    public static final String MEMENTO_MEMENTO = MEMENTO + "Memento";
+
+    public static final String MEMENTO_ORIGINAL_RESOURCE = MEMENTO + "OriginalResource";
+
+    public static final String MEMENTO_TIMEGATE = MEMENTO + "TimeGate";
+
+    public static final String MEMENTO_TIMEMAP = MEMENTO + "TimeMap";
+
+    /**
+     * The LDP interaction models, from the least to the most specific. The position of each
+     * model is its bit in {@link LinkSet}'s type mask.
+     */
+    static final String[] INTERACTION_MODELS = {LDP_RESOURCE, LDP_RDF_SOURCE, LDP_NON_RDF_SOURCE, LDP_CONTAINER,
+        LDP_BASIC_CONTAINER, LDP_DIRECT_CONTAINER, LDP_INDIRECT_CONTAINER};
+
+    /** The interned values, grouped by length so that a token is only compared with values it may equal. */
+    private static final String[][] BY_LENGTH = index(TYPE, DESCRIBEDBY, DESCRIBES, ACL, SELF, EDIT, ORIGINAL,
+            TIMEGATE, TIMEMAP, MEMENTO_REL, LDP_CONSTRAINED_BY, LDP_INBOX, LDP_RESOURCE, LDP_RDF_SOURCE,
+            LDP_NON_RDF_SOURCE, LDP_CONTAINER, LDP_BASIC_CONTAINER, LDP_DIRECT_CONTAINER, LDP_INDIRECT_CONTAINER,
+            MEMENTO_MEMENTO, MEMENTO_ORIGINAL_RESOURCE, MEMENTO_TIMEGATE, MEMENTO_TIMEMAP);
+
+    /* Type links */
+
+    public static final Link TYPE_RESOURCE = typeLink(LDP_RESOURCE);
+
+    public static final Link TYPE_RDF_SOURCE = typeLink(LDP_RDF_SOURCE);
+
+    public static final Link TYPE_NON_RDF_SOURCE = typeLink(LDP_NON_RDF_SOURCE);
+
+    public static final Link TYPE_CONTAINER = typeLink(LDP_CONTAINER);
+
+    public static final Link TYPE_BASIC_CONTAINER = typeLink(LDP_BASIC_CONTAINER);
+
+    public static final Link TYPE_DIRECT_CONTAINER = typeLink(LDP_DIRECT_CONTAINER);
+
+    public static final Link TYPE_INDIRECT_CONTAINER = typeLink(LDP_INDIRECT_CONTAINER);
+
+    public static final Link TYPE_MEMENTO = typeLink(MEMENTO_MEMENTO);
+
+    /**
+     * Get the most recent token of a scanner, using an interned constant if there is one.
+     * @param scanner the header scanner
+     * @return the token text
+     */
+    static String intern(final HeaderScanner scanner) {
+        final int length = scanner.end() - scanner.start();
+        if (length < BY_LENGTH.length && BY_LENGTH[length] != null) {
+            for (final String value : BY_LENGTH[length]) {
+                if (scanner.matches(value)) {
+                    return value;
+                }
+            }
+        }
+        return scanner.text();
+    }
+
+    /**
+     * Get the bit for an interaction model.
+     * @param iri the interaction model IRI
+     * @return the bit, or zero if the IRI is not an LDP interaction model
+     */
+    static int modelBit(final String iri) {
+        for (int i = 0; i < INTERACTION_MODELS.length; i++) {
+            if (INTERACTION_MODELS[i] == iri) {
+                return 1 << i;
+            }
+        }
+        for (int i = 0; i < INTERACTION_MODELS.length; i++) {
+            if (INTERACTION_MODELS[i].equals(iri)) {
+                return 1 << i;
+            }
+        }
+        return 0;
+    }
+
+    private static Link typeLink(final String iri) {
+        return new Link("<" + iri + ">; rel=\"" + TYPE + "\"");
+    }
+
+    private static String[][] index(final String... values) {
+        int max = 0;
+        for (final String value : values) {
+            max = Math.max(max, value.length());
+        }
+        final String[][] index = new String[max + 1][];
+        for (final String value : values) {
+            final String[] current = index[value.length()];
+            final String[] grown = new String[current == null ? 1 : current.length + 1];
+            if (current != null) {
+                System.arraycopy(current, 0, grown, 0, current.length);
+            }
+            grown[grown.length - 1] = value;
+            index[value.length()] = grown;
+        }
+        return index;
+    }
+
+    private StandardLinks() {
+        // prevent instantiation
+    }
+}
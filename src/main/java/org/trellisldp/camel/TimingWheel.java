@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import java.util.function.Consumer;
+
+/**
+ * A hashed timing wheel.
+ *
+ * <p>Time is divided into ticks of a fixed duration, and each timeout is placed in the bucket for
+ * its deadline tick. A timeout whose deadline is more than one revolution away simply stays in its
+ * bucket until the wheel reaches that tick. Scheduling, rescheduling and cancelling are constant
+ * time, and advancing the wheel only visits the buckets for the ticks that have elapsed.
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @param <T> the type of value held by each timeout
+ * @author acoburn
+ */
+final class TimingWheel<T> {
+
+    /**
+     * A scheduled value, linked into one of the wheel's buckets.
+     *
+     * @param <T> the type of value
+     */
+    static final class Timeout<T> {
+        private final T value;
+        private long deadline;
+        private int bucket = -1;
+        private Timeout<T> previous;
+        private Timeout<T> next;
+
+        Timeout(final T value) {
+            this.value = value;
+        }
+
+        /**
+         * Get the scheduled value.
+         * @return the value
+         */
+        T getValue() {
+            return value;
+        }
+
+        /**
+         * Identify whether this timeout is still scheduled.
+         * @return true if the timeout has neither expired nor been cancelled
+         */
+        boolean isScheduled() {
+            return bucket >= 0;
+        }
+    }
+
+    private final Timeout<T>[] buckets;
+    private final int mask;
+    private final long tickMillis;
+    private final long startMillis;
+    private long currentTick;
+    private int size;
+
+    /**
+     * Create a timing wheel.
+     * @param buckets the minimum number of buckets, rounded up to a power of two
+     * @param tickMillis the duration of a tick, in milliseconds
+     * @param startMillis the current time, in milliseconds
+     */
+    @SuppressWarnings("unchecked")
+    TimingWheel(final int buckets, final long tickMillis, final long startMillis) {
+        if (buckets <= 0 || buckets > 1 << 30) {
+            throw new IllegalArgumentException("The number of buckets must be between 1 and 2^30: " + buckets);
+        }
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("The tick duration must be positive: " + tickMillis);
+        }
+        final int length = buckets == 1 ? 1 : Integer.highestOneBit(buckets - 1) << 1;
+        this.buckets = (Timeout<T>[]) new Timeout<?>[length];
+        this.mask = length - 1;
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+    }
+
+    /**
+     * Schedule a new timeout.
+     * @param value the value
+     * @param deadlineMillis the time at which the value expires, in milliseconds
+     * @return the timeout
+     */
+    Timeout<T> schedule(final T value, final long deadlineMillis) {
+        final Timeout<T> timeout = new Timeout<>(value);
+        reschedule(timeout, deadlineMillis);
+        return timeout;
+    }
+
+    /**
+     * Move a timeout to a new deadline, scheduling it again if it has expired or been cancelled.
+     * @param timeout the timeout
+     * @param deadlineMillis the time at which the value expires, in milliseconds
+     */
+    void reschedule(final Timeout<T> timeout, final long deadlineMillis) {
+        cancel(timeout);
+        final long elapsed = deadlineMillis - startMillis;
+        timeout.deadline = Math.max(currentTick, (elapsed + tickMillis - 1) / tickMillis);
+        timeout.bucket = (int) (timeout.deadline & mask);
+        timeout.next = buckets[timeout.bucket];
+        if (timeout.next != null) {
+            timeout.next.previous = timeout;
+        }
+        buckets[timeout.bucket] = timeout;
+        size++;
+    }
+
+    /**
+     * Cancel a timeout. Cancelling a timeout that is not scheduled has no effect.
+     * @param timeout the timeout
+     */
+    void cancel(final Timeout<T> timeout) {
+        if (timeout.bucket < 0) {
+            return;
+        }
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+        size--;
+    }
+
+    /**
+     * Advance the wheel to the current time, passing each expired value to a consumer.
+     * @param nowMillis the current time, in milliseconds
+     * @param expired the consumer of expired values
+     * @return the number of expired values
+     */
+    int advance(final long nowMillis, final Consumer<T> expired) {
+        final long nowTick = (nowMillis - startMillis) / tickMillis;
+        final long ticks = Math.min(nowTick - currentTick + 1, buckets.length);
+        int count = 0;
+        for (long tick = currentTick; tick < currentTick + ticks; tick++) {
+            Timeout<T> timeout = buckets[(int) (tick & mask)];
+            while (timeout != null) {
+                final Timeout<T> next = timeout.next;
+                if (timeout.deadline <= nowTick) {
+                    cancel(timeout);
+                    expired.accept(timeout.value);
+                    count++;
+                }
+                timeout = next;
+            }
+        }
+        currentTick = Math.max(currentTick, nowTick);
+        return count;
+    }
+
+    /**
+     * Get the number of scheduled timeouts.
+     * @return the number of timeouts
+     */
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+/**
+ * Creates the worker threads for {@link ActivityStreamLaneProcessor}.
+ *
+ * <p>This is the Java 21 implementation, which creates a virtual thread when one is requested.
+ * It is packaged under {@code META-INF/versions/21} and replaces the Java 11 implementation.
+ *
+ * @author acoburn
+ */
+final class LaneThreads {
+
+    /**
+     * Identify whether virtual threads are available.
+     * @return true if virtual threads can be created
+     */
+    static boolean isVirtualThreadSupported() {
+        return true;
+    }
+
+    /**
+     * Create an unstarted worker thread.
+     * @param task the task to run
+     * @param name the thread name
+     * @param virtual true to request a virtual thread, if they are supported
+     * @return the thread
+     */
+    static Thread newThread(final Runnable task, final String name, final boolean virtual) {
+        if (virtual) {
+            return Thread.ofVirtual().name(name).unstarted(task);
+        }
+        final Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private LaneThreads() {
+        // prevent instantiation
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonMap;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.trellisldp.camel.ActivityStreamBatchProcessor.ACTIVITY_STREAM_BATCH;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.processor.aggregate.GroupedExchangeAggregationStrategy;
+import org.apache.camel.test.junit5.CamelTestSupport;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class ActivityStreamBatchProcessorTest extends CamelTestSupport {
+
+    private static final String PROV_ACTIVITY = "http://www.w3.org/ns/prov#Activity";
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint resultEndpoint;
+
+    @Produce(uri = "direct:start")
+    private ProducerTemplate template;
+
+    @Test
+    void testListOfMaps() throws InterruptedException {
+        final List<Object> messages = asList(message("id-1", "http://localhost/1", asList("Create", PROV_ACTIVITY)),
+                message("id-2", "http://localhost/2", "Update"), new HashMap<>(),
+                "{\"id\":\"id-4\",\"type\":\"Delete\",\"object\":{\"id\":\"http://localhost/4\"}}",
+                "{\"id\":\"id-5\"}".getBytes(UTF_8), 42L);
+
+        template.sendBody("direct:start", messages);
+
+        resultEndpoint.expectedMessageCount(1);
+        resultEndpoint.assertIsSatisfied();
+
+        final ActivityStreamBatch batch = resultEndpoint.getExchanges().get(0).getIn()
+            .getHeader(ACTIVITY_STREAM_BATCH, ActivityStreamBatch.class);
+        assertEquals(6, batch.size());
+        assertArrayEquals(new String[] {"id-1", "id-2", null, "id-4", "id-5", null}, batch.getIds());
+        assertArrayEquals(new String[] {"http://localhost/1", "http://localhost/2", null, "http://localhost/4",
+            null, null}, batch.getObjectIds());
+        assertArrayEquals(new String[] {"Create", PROV_ACTIVITY}, batch.getTypes(0));
+        batch.getTypes(0)[0] = "Update";
+        assertArrayEquals(new String[] {"Create", PROV_ACTIVITY}, batch.getTypes(0));
+        assertArrayEquals(new String[] {"Update"}, batch.getTypes()[1]);
+        assertEquals(0, batch.getTypes(2).length);
+        assertArrayEquals(new String[] {"Delete"}, batch.getTypes(3));
+        assertEquals("id-4", batch.getId(3));
+        assertEquals("http://localhost/4", batch.getObjectId(3));
+        assertNull(batch.getObjectId(4));
+        assertEquals(messages, resultEndpoint.getExchanges().get(0).getIn().getBody());
+    }
+
+    @Test
+    void testJsonLdAliases() throws IOException {
+        final Map<String, Object> data = new HashMap<>();
+        data.put("@id", "id-1");
+        data.put("@type", "Update");
+        data.put("as:object", singletonMap("@id", "http://localhost/1"));
+        final ActivityStreamBatch batch = ActivityStreamBatchProcessor.extract(asList(data,
+                "{\"@id\":\"id-2\",\"object\":{\"@id\":\"http://localhost/2\"}}"));
+        assertArrayEquals(new String[] {"id-1", "id-2"}, batch.getIds());
+        assertArrayEquals(new String[] {"http://localhost/1", "http://localhost/2"}, batch.getObjectIds());
+        assertArrayEquals(new String[] {"Update"}, batch.getTypes(0));
+    }
+
+    @Test
+    void testGroupedExchange() throws InterruptedException {
+        template.sendBody("direct:grouped", message("id-1", "http://localhost/1", "Create"));
+        template.sendBody("direct:grouped", message("id-2", "http://localhost/2", asList("Update", 5L)));
+        template.sendBody("direct:grouped", "{\"id\":\"id-3\",\"type\":[\"Delete\"]}");
+
+        resultEndpoint.expectedMessageCount(1);
+        resultEndpoint.assertIsSatisfied();
+
+        final ActivityStreamBatch batch = resultEndpoint.getExchanges().get(0).getIn()
+            .getHeader(ACTIVITY_STREAM_BATCH, ActivityStreamBatch.class);
+        assertArrayEquals(new String[] {"id-1", "id-2", "id-3"}, batch.getIds());
+        assertArrayEquals(new String[] {"http://localhost/1", "http://localhost/2", null}, batch.getObjectIds());
+        assertArrayEquals(new String[][] {{"Create"}, {"Update"}, {"Delete"}}, batch.getTypes());
+    }
+
+    private static Map<String, Object> message(final String id, final String object, final Object type) {
+        final Map<String, Object> obj = new HashMap<>();
+        obj.put("id", object);
+        final Map<String, Object> data = new HashMap<>();
+        data.put("id", id);
+        data.put("type", type);
+        data.put("object", obj);
+        return data;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws IOException {
+                from("direct:start").process(new ActivityStreamBatchProcessor()).to("mock:result");
+                from("direct:grouped").aggregate(constant(true), new GroupedExchangeAggregationStrategy())
+                    .completionSize(3)
+                    .process(new ActivityStreamBatchProcessor()).to("mock:result");
+            }
+        };
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.trellisldp.camel.ActivityStreamCoalescingProcessor.ACTIVITY_STREAM_COALESCED;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_ID;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_OBJECT_ID;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_TYPE;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.camel.CamelExecutionException;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit5.CamelTestSupport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class ActivityStreamCoalescingProcessorTest extends CamelTestSupport {
+
+    private static final String RESOURCE = "http://localhost/resource";
+
+    private static final String UPDATE = "Update";
+
+    private static final String CREATE = "Create";
+
+    private static final String SLOW = "http://localhost/slow";
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint resultEndpoint;
+
+    @EndpointInject(uri = "mock:passthrough")
+    private MockEndpoint passthroughEndpoint;
+
+    @Produce(uri = "direct:start")
+    private ProducerTemplate template;
+
+    private final ActivityStreamCoalescingProcessor coalescer = new ActivityStreamCoalescingProcessor("direct:target");
+
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+
+    @Test
+    void testBurstOfUpdates() throws InterruptedException {
+        for (int i = 0; i < 20; i++) {
+            send("id-" + i, RESOURCE, UPDATE);
+        }
+        send("id-other", RESOURCE + "/other", CREATE);
+
+        resultEndpoint.expectedMessageCount(2);
+        resultEndpoint.assertIsSatisfied();
+        passthroughEndpoint.expectedMessageCount(0);
+        passthroughEndpoint.assertIsSatisfied();
+
+        final Map<String, Exchange> events = byObject();
+        assertEquals("id-19", events.get(RESOURCE).getIn().getHeader(ACTIVITY_STREAM_ID));
+        assertEquals(20, events.get(RESOURCE).getIn().getHeader(ACTIVITY_STREAM_COALESCED));
+        assertEquals(1, events.get(RESOURCE + "/other").getIn().getHeader(ACTIVITY_STREAM_COALESCED));
+        assertEquals(0, coalescer.getPendingCount());
+    }
+
+    @Test
+    void testDeleteWins() throws InterruptedException {
+        send("id-1", RESOURCE, CREATE);
+        send("id-2", RESOURCE, asList("Delete", "http://www.w3.org/ns/prov#Activity"));
+        send("id-3", RESOURCE, UPDATE);
+
+        resultEndpoint.expectedMessageCount(1);
+        resultEndpoint.assertIsSatisfied();
+        final Exchange event = resultEndpoint.getExchanges().get(0);
+        assertEquals("id-2", event.getIn().getHeader(ACTIVITY_STREAM_ID));
+        assertEquals(3, event.getIn().getHeader(ACTIVITY_STREAM_COALESCED));
+    }
+
+    @Test
+    void testDeleteThenCreate() throws InterruptedException {
+        send("id-1", RESOURCE, UPDATE);
+        send("id-2", RESOURCE, "Delete");
+        send("id-3", RESOURCE, CREATE);
+
+        resultEndpoint.expectedMessageCount(1);
+        resultEndpoint.assertIsSatisfied();
+        final Exchange event = resultEndpoint.getExchanges().get(0);
+        assertEquals("id-3", event.getIn().getHeader(ACTIVITY_STREAM_ID));
+        assertEquals(3, event.getIn().getHeader(ACTIVITY_STREAM_COALESCED));
+    }
+
+    @Test
+    void testSlowTarget() throws InterruptedException {
+        gate = new CountDownLatch(1);
+        send("id-1", SLOW, UPDATE);
+        Thread.sleep(200L);
+        send("id-2", RESOURCE, UPDATE);
+
+        resultEndpoint.expectedMessageCount(1);
+        resultEndpoint.assertIsSatisfied();
+        assertEquals("id-2", resultEndpoint.getExchanges().get(0).getIn().getHeader(ACTIVITY_STREAM_ID));
+
+        gate.countDown();
+        resultEndpoint.reset();
+        resultEndpoint.expectedMessageCount(1);
+        resultEndpoint.assertIsSatisfied();
+        assertEquals("id-1", resultEndpoint.getExchanges().get(0).getIn().getHeader(ACTIVITY_STREAM_ID));
+    }
+
+    @Test
+    void testMissingObjectIdPassesThrough() throws InterruptedException {
+        send("id-1", null, UPDATE);
+
+        passthroughEndpoint.expectedMessageCount(1);
+        passthroughEndpoint.assertIsSatisfied();
+        assertEquals(0, coalescer.getPendingCount());
+    }
+
+    @Test
+    void testMaximumDelay() throws InterruptedException {
+        coalescer.setMaximumDelay(200L);
+        final long end = System.currentTimeMillis() + 600L;
+        while (System.currentTimeMillis() < end) {
+            send("id", RESOURCE, UPDATE);
+            Thread.sleep(20L);
+        }
+        assertTrue(resultEndpoint.getReceivedCounter() >= 2);
+    }
+
+    @Test
+    void testStopSendsPendingEvents() throws Exception {
+        coalescer.setQuietPeriod(60_000L);
+        send("id-1", RESOURCE, UPDATE);
+        assertEquals(1, coalescer.getPendingCount());
+        assertEquals(0, resultEndpoint.getReceivedCounter());
+
+        coalescer.stop();
+        assertEquals(0, coalescer.getPendingCount());
+        assertEquals(1, resultEndpoint.getReceivedCounter());
+        assertThrows(CamelExecutionException.class, () -> send("id-2", RESOURCE, UPDATE));
+        coalescer.start();
+    }
+
+    @Test
+    void testIsDelete() {
+        assertTrue(ActivityStreamCoalescingProcessor.isDelete("Delete"));
+        assertTrue(ActivityStreamCoalescingProcessor.isDelete(asList(UPDATE, "Delete")));
+        assertFalse(ActivityStreamCoalescingProcessor.isDelete(UPDATE));
+        assertFalse(ActivityStreamCoalescingProcessor.isDelete(null));
+    }
+
+    private void send(final String id, final String object, final Object type) {
+        final Map<String, Object> headers = new HashMap<>();
+        headers.put(ACTIVITY_STREAM_ID, id);
+        headers.put(ACTIVITY_STREAM_OBJECT_ID, object);
+        headers.put(ACTIVITY_STREAM_TYPE, type);
+        template.sendBodyAndHeaders("direct:start", null, headers);
+    }
+
+    private Map<String, Exchange> byObject() {
+        final Map<String, Exchange> events = new HashMap<>();
+        for (final Exchange exchange : resultEndpoint.getExchanges()) {
+            events.put(exchange.getIn().getHeader(ACTIVITY_STREAM_OBJECT_ID, String.class), exchange);
+        }
+        return events;
+    }
+
+    @AfterEach
+    void openGate() {
+        gate.countDown();
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() {
+        coalescer.setQuietPeriod(100L);
+        coalescer.setTickDuration(10L);
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws IOException {
+                from("direct:target").process(exchange -> {
+                    if (SLOW.equals(exchange.getIn().getHeader(ACTIVITY_STREAM_OBJECT_ID))) {
+                        gate.await();
+                    }
+                }).to("mock:result");
+                from("direct:start").process(coalescer).to("mock:passthrough");
+            }
+        };
+    }
+}
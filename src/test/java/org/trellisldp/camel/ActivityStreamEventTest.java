@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_ACTOR;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_EVENT;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_ID;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_TYPE;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit5.CamelTestSupport;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class ActivityStreamEventTest extends CamelTestSupport {
+
+    private static final String PROV_ACTIVITY = "http://www.w3.org/ns/prov#Activity";
+    private static final String RESOURCE = "http://localhost/resource";
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint resultEndpoint;
+
+    @EndpointInject(uri = "mock:create")
+    private MockEndpoint createEndpoint;
+
+    @Produce(uri = "direct:start")
+    private ProducerTemplate template;
+
+    @Test
+    void testMapBody() throws InterruptedException {
+        final List<Object> types = new ArrayList<>(asList("Create", PROV_ACTIVITY, 5));
+        final Map<String, Object> object = new HashMap<>();
+        object.put("id", RESOURCE);
+        object.put("type", "http://www.w3.org/ns/ldp#RDFSource");
+        final Map<String, Object> data = new HashMap<>();
+        data.put("id", "urn:uuid:1");
+        data.put("type", types);
+        data.put("actor", asList("http://example.org/user1", "http://example.org/user2"));
+        data.put("name", 42);
+        data.put("object", object);
+
+        template.sendBody("direct:start", data);
+        types.clear();
+
+        resultEndpoint.expectedMessageCount(1);
+        createEndpoint.expectedMessageCount(1);
+        assertMockEndpointsSatisfied();
+
+        final Exchange exchange = resultEndpoint.getExchanges().get(0);
+        assertNull(exchange.getIn().getHeader(ACTIVITY_STREAM_ID));
+        assertNull(exchange.getIn().getHeader(ACTIVITY_STREAM_TYPE));
+
+        final ActivityStreamEvent event = ActivityStreamEvent.of(exchange);
+        assertEquals("urn:uuid:1", event.getId());
+        assertEquals(asList("Create", PROV_ACTIVITY), event.getTypes());
+        assertTrue(event.hasType("Create"));
+        assertFalse(event.hasType("Update"));
+        assertNull(event.getName());
+        assertEquals("http://example.org/user1", event.getActor());
+        assertEquals(2, event.getActors().size());
+        assertNull(event.getInbox());
+        assertEquals(RESOURCE, event.getObjectId());
+        assertEquals(asList("http://www.w3.org/ns/ldp#RDFSource"), event.getObjectTypes());
+        assertTrue(event.hasObjectType("http://www.w3.org/ns/ldp#RDFSource"));
+        assertThrows(UnsupportedOperationException.class, () -> event.getTypes().add("Delete"));
+        assertTrue(event.toString().contains(RESOURCE));
+    }
+
+    @Test
+    void testStreamingBody() throws InterruptedException {
+        template.sendBody("direct:stream", "{\"id\":\"urn:uuid:2\",\"type\":\"Update\",\"actor\":[\"a\",\"b\"]," +
+                "\"object\":{\"id\":[\"" + RESOURCE + "\"]}}");
+
+        resultEndpoint.expectedMessageCount(1);
+        resultEndpoint.assertIsSatisfied();
+
+        final Exchange exchange = resultEndpoint.getExchanges().get(0);
+        assertEquals("urn:uuid:2", exchange.getIn().getHeader(ACTIVITY_STREAM_ID));
+        final ActivityStreamEvent event = exchange.getProperty(ACTIVITY_STREAM_EVENT, ActivityStreamEvent.class);
+        exchange.getIn().getHeader(ACTIVITY_STREAM_ACTOR, List.class).clear();
+        assertEquals(asList("Update"), event.getTypes());
+        assertTrue(event.hasType("Update"));
+        assertEquals(asList("a", "b"), event.getActors());
+        assertNull(event.getObjectId());
+        assertEquals(emptyList(), event.getObjectTypes());
+        assertFalse(event.hasObjectType("ldp:Container"));
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws IOException {
+                final ActivityStreamProcessor processor = new ActivityStreamProcessor();
+                processor.setEvent(true);
+                processor.setHeaders(false);
+                final ActivityStreamProcessor streaming = new ActivityStreamProcessor();
+                streaming.setStreaming(true);
+                streaming.setEvent(true);
+                from("direct:start").process(processor)
+                    .process(new ActivityStreamTypeDispatcher().when("Create", "mock:create"))
+                    .to("mock:result");
+                from("direct:stream").process(streaming).to("mock:result");
+            }
+        };
+    }
+}
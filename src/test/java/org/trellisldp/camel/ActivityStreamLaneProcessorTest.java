@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_OBJECT_ID;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.LongStream;
+
+import org.apache.camel.CamelExecutionException;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit5.CamelTestSupport;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class ActivityStreamLaneProcessorTest extends CamelTestSupport {
+
+    private static final String RESOURCE = "http://localhost/resource/";
+
+    private static final String SEQUENCE = "Sequence";
+
+    private static final String FAIL = "Fail";
+
+    @EndpointInject(uri = "mock:passthrough")
+    private MockEndpoint passthroughEndpoint;
+
+    @Produce(uri = "direct:start")
+    private ProducerTemplate template;
+
+    private final ActivityStreamLaneProcessor lanes = new ActivityStreamLaneProcessor("direct:work");
+
+    private final Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+    private final Map<String, String> threads = new ConcurrentHashMap<>();
+
+    private volatile CountDownLatch entered = new CountDownLatch(0);
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+
+    @Test
+    void testOrderPerResource() throws Exception {
+        final List<CompletableFuture<Exchange>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            for (int r = 0; r < 16; r++) {
+                futures.add(lanes.processAsync(exchange(RESOURCE + r, i)));
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, SECONDS);
+
+        assertEquals(16, received.size());
+        for (final List<Integer> sequence : received.values()) {
+            assertEquals(100, sequence.size());
+            for (int i = 0; i < sequence.size(); i++) {
+                assertEquals(i, sequence.get(i));
+            }
+        }
+        assertEquals(1600L, LongStream.of(lanes.getProcessedCounts()).sum());
+        assertTrue(LongStream.of(lanes.getProcessedCounts()).filter(count -> count > 0).count() > 1);
+        assertTrue(threads.values().stream().allMatch(name -> name.startsWith("ActivityStreamLane-")));
+    }
+
+    @Test
+    void testSameResourceSameLane() {
+        for (int r = 0; r < 100; r++) {
+            final int lane = ActivityStreamLaneProcessor.laneOf(RESOURCE + r, 8);
+            assertTrue(lane >= 0 && lane < 8);
+            assertEquals(lane, ActivityStreamLaneProcessor.laneOf(RESOURCE + r, 8));
+        }
+    }
+
+    @Test
+    void testEventObjectId() throws Exception {
+        final Exchange exchange = exchange(null, 0);
+        exchange.getIn().setBody("{\"type\":\"Update\",\"object\":{\"id\":\"" + RESOURCE + "event\"}}");
+        final ActivityStreamProcessor processor = new ActivityStreamProcessor();
+        processor.setStreaming(true);
+        processor.setEvent(true);
+        processor.setHeaders(false);
+        processor.process(exchange);
+        exchange.getIn().setHeader(SEQUENCE, 0);
+
+        lanes.processAsync(exchange).get(10, SECONDS);
+        assertEquals(List.of(0), received.get(RESOURCE + "event"));
+    }
+
+    @Test
+    void testQueueDepths() throws Exception {
+        restart(1, 10);
+        entered = new CountDownLatch(1);
+        gate = new CountDownLatch(1);
+        final List<CompletableFuture<Exchange>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(lanes.processAsync(exchange(RESOURCE + i, i)));
+        }
+        assertTrue(entered.await(10, SECONDS));
+        assertArrayEquals(new int[] {4}, lanes.getQueueDepths());
+        assertArrayEquals(new long[] {0L}, lanes.getProcessedCounts());
+
+        gate.countDown();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, SECONDS);
+        assertArrayEquals(new int[] {0}, lanes.getQueueDepths());
+        assertArrayEquals(new long[] {5L}, lanes.getProcessedCounts());
+    }
+
+    @Test
+    void testStopDrainsQueues() throws Exception {
+        restart(2, 10);
+        entered = new CountDownLatch(1);
+        gate = new CountDownLatch(1);
+        final List<CompletableFuture<Exchange>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(lanes.processAsync(exchange(RESOURCE, i)));
+        }
+        assertTrue(entered.await(10, SECONDS));
+
+        final Thread stopper = new Thread(lanes::stop);
+        stopper.start();
+        gate.countDown();
+        stopper.join(10_000L);
+        assertFalse(stopper.isAlive());
+
+        assertTrue(futures.stream().allMatch(CompletableFuture::isDone));
+        assertEquals(10, received.get(RESOURCE).size());
+        assertEquals(0, lanes.getQueueDepths().length);
+
+        final Exchange rejected = lanes.processAsync(exchange(RESOURCE, 10)).get(10, SECONDS);
+        assertTrue(rejected.getException() instanceof RejectedExecutionException);
+        lanes.start();
+    }
+
+    @Test
+    void testStopWithBlockedCaller() throws Exception {
+        restart(1, 1);
+        entered = new CountDownLatch(1);
+        gate = new CountDownLatch(1);
+        final CompletableFuture<Exchange> first = lanes.processAsync(exchange(RESOURCE, 0));
+        assertTrue(entered.await(10, SECONDS));
+        final CompletableFuture<Exchange> second = lanes.processAsync(exchange(RESOURCE, 1));
+        final CompletableFuture<Exchange> blocked = CompletableFuture.supplyAsync(() ->
+                lanes.processAsync(exchange(RESOURCE, 2))).thenCompose(future -> future);
+
+        final Thread stopper = new Thread(lanes::stop);
+        stopper.start();
+        Thread.sleep(50L);
+        gate.countDown();
+        stopper.join(10_000L);
+        assertFalse(stopper.isAlive());
+
+        assertNull(first.get(10, SECONDS).getException());
+        assertNull(second.get(10, SECONDS).getException());
+        final Exchange last = blocked.get(10, SECONDS);
+        assertTrue(last.getException() == null || last.getException() instanceof RejectedExecutionException);
+        assertEquals(last.getException() == null ? 3 : 2, received.get(RESOURCE).size());
+        lanes.start();
+    }
+
+    @Test
+    void testRoute() throws InterruptedException {
+        template.sendBodyAndHeader("direct:start", null, ACTIVITY_STREAM_OBJECT_ID, RESOURCE);
+
+        passthroughEndpoint.expectedMessageCount(1);
+        passthroughEndpoint.assertIsSatisfied();
+        assertEquals(1, received.get(RESOURCE).size());
+    }
+
+    @Test
+    void testError() {
+        final Map<String, Object> headers = Map.of(ACTIVITY_STREAM_OBJECT_ID, RESOURCE, FAIL, true);
+        assertThrows(CamelExecutionException.class, () ->
+                template.sendBodyAndHeaders("direct:start", null, headers));
+        assertEquals(0, passthroughEndpoint.getReceivedCounter());
+    }
+
+    @Test
+    void testPlatformThreads() {
+        lanes.setVirtualThreads(true);
+        assertEquals(LaneThreads.isVirtualThreadSupported(), lanes.isVirtualThreads());
+        assertFalse(LaneThreads.newThread(() -> { }, "test", false).isAlive());
+    }
+
+    @Test
+    void testInvalidConfiguration() {
+        final ActivityStreamLaneProcessor processor = new ActivityStreamLaneProcessor("direct:work");
+        processor.setLaneCount(0);
+        assertThrows(IllegalArgumentException.class, processor::start);
+        processor.setLaneCount(1);
+        assertThrows(IllegalStateException.class, processor::start);
+    }
+
+    private void restart(final int laneCount, final int queueSize) {
+        lanes.stop();
+        lanes.setLaneCount(laneCount);
+        lanes.setQueueSize(queueSize);
+        lanes.start();
+    }
+
+    private Exchange exchange(final String object, final int sequence) {
+        final Exchange exchange = context.getEndpoint("direct:start").createExchange();
+        exchange.getIn().setHeader(ACTIVITY_STREAM_OBJECT_ID, object);
+        exchange.getIn().setHeader(SEQUENCE, sequence);
+        return exchange;
+    }
+
+    private void record(final Exchange exchange) throws InterruptedException {
+        if (exchange.getIn().getHeader(FAIL) != null) {
+            throw new IllegalStateException("Expected failure");
+        }
+        entered.countDown();
+        gate.await();
+        final ActivityStreamEvent event = ActivityStreamEvent.of(exchange);
+        final String key = event != null ? event.getObjectId() :
+            exchange.getIn().getHeader(ACTIVITY_STREAM_OBJECT_ID, String.class);
+        threads.put(key, Thread.currentThread().getName());
+        received.computeIfAbsent(key, k -> new ArrayList<>()).add(exchange.getIn().getHeader(SEQUENCE, Integer.class));
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() {
+        lanes.setLaneCount(4);
+        lanes.setQueueSize(100);
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws IOException {
+                from("direct:start").process(lanes).to("mock:passthrough");
+                from("direct:work").process(ActivityStreamLaneProcessorTest.this::record);
+            }
+        };
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_ACTOR;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_ID;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_INBOX;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_NAME;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_OBJECT_ID;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_OBJECT_TYPE;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.apache.camel.CamelExecutionException;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit5.CamelTestSupport;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class ActivityStreamMetricsTest extends CamelTestSupport {
+
+    private static final String CREATE = "Create";
+
+    private final ActivityStreamMetrics metrics = new ActivityStreamMetrics("test");
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint resultEndpoint;
+
+    @Produce(uri = "direct:start")
+    private ProducerTemplate template;
+
+    @Test
+    void testMapBodies() throws InterruptedException {
+        final Map<String, Object> data = new HashMap<>();
+        data.put("id", "id-1");
+        data.put("type", asList(CREATE, "http://www.w3.org/ns/prov#Activity"));
+        data.put("actor", 42);
+        data.put("object", "http://localhost/resource");
+        template.sendBody("direct:start", data);
+
+        data.put("type", CREATE);
+        data.put("actor", "http://example.org/user");
+        data.put("object", new HashMap<>());
+        template.sendBody("direct:start", data);
+
+        resultEndpoint.expectedMessageCount(2);
+        resultEndpoint.assertIsSatisfied();
+        assertNull(resultEndpoint.getExchanges().get(0).getIn().getHeader(ACTIVITY_STREAM_ACTOR));
+
+        assertEquals(2L, metrics.getMessageCount());
+        assertEquals(0L, metrics.getErrorCount());
+        assertEquals(2L, metrics.getTypeCounts().get(CREATE));
+        assertEquals(1L, metrics.getTypeCounts().get("http://www.w3.org/ns/prov#Activity"));
+        assertEquals(1L, metrics.getInvalidFieldCounts().get(ACTIVITY_STREAM_ACTOR));
+        assertEquals(1L, metrics.getInvalidFieldCounts().get("ActivityStreamObject"));
+        assertEquals(2L, metrics.getMissingFieldCounts().get(ACTIVITY_STREAM_NAME));
+        assertEquals(2L, metrics.getMissingFieldCounts().get(ACTIVITY_STREAM_INBOX));
+        assertEquals(2L, metrics.getMissingFieldCounts().get(ACTIVITY_STREAM_OBJECT_ID));
+        assertFalse(metrics.getMissingFieldCounts().containsKey(ACTIVITY_STREAM_ID));
+        assertFalse(metrics.getMissingFieldCounts().containsKey(ACTIVITY_STREAM_ACTOR));
+        assertTrue(metrics.getLatencyMax() > 0L);
+        assertTrue(metrics.getLatency50thPercentile() <= metrics.getLatency999thPercentile());
+    }
+
+    @Test
+    void testStreamingBodies() throws InterruptedException {
+        template.sendBody("direct:stream", "{\"id\":\"id-1\",\"type\":\"Update\",\"object\":{\"id\":[1],\"type\":5}}");
+        assertThrows(CamelExecutionException.class, () -> template.sendBody("direct:stream", "{\"id\":"));
+
+        resultEndpoint.expectedMessageCount(1);
+        resultEndpoint.assertIsSatisfied();
+
+        assertEquals(1L, metrics.getMessageCount());
+        assertEquals(1L, metrics.getErrorCount());
+        assertEquals(1L, metrics.getTypeCounts().get("Update"));
+        assertEquals(1L, metrics.getInvalidFieldCounts().get(ACTIVITY_STREAM_OBJECT_ID));
+        assertEquals(1L, metrics.getInvalidFieldCounts().get(ACTIVITY_STREAM_OBJECT_TYPE));
+        assertFalse(metrics.getMissingFieldCounts().containsKey(ACTIVITY_STREAM_OBJECT_ID));
+
+        metrics.reset();
+        assertEquals(0L, metrics.getMessageCount());
+        assertEquals(0L, metrics.getErrorCount());
+        assertTrue(metrics.getTypeCounts().isEmpty());
+        assertTrue(metrics.getInvalidFieldCounts().isEmpty());
+        assertEquals(0L, metrics.getLatency99thPercentile());
+    }
+
+    @Test
+    void testTypeLimit() {
+        final ActivityStreamMetrics limited = new ActivityStreamMetrics();
+        final ActivityStreamFields fields = new ActivityStreamFields();
+        for (int i = 0; i < ActivityStreamMetrics.MAXIMUM_TYPES + 10; i++) {
+            fields.type = "Type" + i;
+            limited.record(fields, 1L);
+        }
+        assertEquals(ActivityStreamMetrics.MAXIMUM_TYPES + 1, limited.getTypeCounts().size());
+        assertEquals(10L, limited.getTypeCounts().get(ActivityStreamMetrics.OTHER_TYPE));
+    }
+
+    @Test
+    void testJmxRegistration() throws JMException {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        template.sendBody("direct:stream", "{\"id\":\"id-1\",\"type\":\"Create\"}");
+
+        final ObjectName name = metrics.register();
+        try {
+            assertEquals("org.trellisldp.camel:type=ActivityStreamMetrics,name=\"test\"", name.toString());
+            assertEquals(1L, server.getAttribute(name, "MessageCount"));
+            final TabularData types = (TabularData) server.getAttribute(name, "TypeCounts");
+            assertEquals(1, types.size());
+            assertTrue(server.getAttribute(name, "Latency99thPercentile") instanceof Long);
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, server.getAttribute(name, "MessageCount"));
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws IOException {
+                final ActivityStreamProcessor processor = new ActivityStreamProcessor();
+                processor.setMetrics(metrics);
+                final ActivityStreamProcessor streaming = new ActivityStreamProcessor();
+                streaming.setStreaming(true);
+                streaming.setMetrics(metrics);
+                from("direct:start").process(processor).to("mock:result");
+                from("direct:stream").process(streaming).to("mock:result");
+            }
+        };
+    }
+}
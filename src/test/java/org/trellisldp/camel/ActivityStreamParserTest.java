@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class ActivityStreamParserTest {
+
+    @Test
+    void testMultiByteCharacters() throws IOException {
+        final String name = "\u00e9\u4e2d\ud83d\ude00";
+        final ActivityStreamFields fields = ActivityStreamParser.parse(("{\"name\":\"" + name + "\"}")
+                .getBytes(UTF_8));
+        assertEquals(name, fields.name);
+        assertNull(fields.id);
+    }
+
+    @Test
+    void testEscapes() throws IOException {
+        final ActivityStreamFields fields = ActivityStreamParser.parse(
+                "{\"id\":\"a\\\"b\\\\c\\/d\\n\\t\\u0041\"}");
+        assertEquals("a\"b\\c/d\n\tA", fields.id);
+    }
+
+    @Test
+    void testFirstValueWins() throws IOException {
+        final ActivityStreamFields fields = ActivityStreamParser.parse(
+                "{\"id\":\"first\",\"id\":\"second\",\"object\":5,\"object\":{\"id\":\"ignored\"}}");
+        assertEquals("first", fields.id);
+        assertNull(fields.objectId);
+    }
+
+    @Test
+    void testIllTypedValues() throws IOException {
+        final ActivityStreamFields fields = ActivityStreamParser.parse(
+                "{\"id\":{\"a\":[1,2,{}]},\"type\":[\"Create\",7,[\"x\"],\"Update\"],\"inbox\":-1.5e3}");
+        assertNull(fields.id);
+        assertNull(fields.inbox);
+        assertEquals(asList("Create", "Update"), fields.type);
+    }
+
+    @Test
+    void testStopsOnceComplete() throws IOException {
+        final byte[] json = ("{\"id\":\"1\",\"type\":\"Create\",\"name\":\"n\",\"actor\":\"a\",\"inbox\":\"i\"," +
+            "\"object\":{\"type\":\"t\",\"id\":\"o\"}} trailing content is never read").getBytes(UTF_8);
+        final ByteArrayInputStream stream = new ByteArrayInputStream(json);
+        final ActivityStreamFields fields = ActivityStreamParser.parse(stream);
+        assertEquals("o", fields.objectId);
+        assertEquals("t", fields.objectType);
+
+        final ActivityStreamFields fromString = ActivityStreamParser.parse(new String(json, UTF_8));
+        assertEquals("o", fromString.objectId);
+    }
+
+    @Test
+    void testInvalidFieldMask() throws IOException {
+        final ActivityStreamFields fields = ActivityStreamParser.parse(
+                "{\"id\":5,\"type\":{\"a\":1},\"name\":null,\"actor\":[\"a\"],\"object\":{\"id\":true}}");
+        assertNull(fields.id);
+        assertNull(fields.type);
+        assertNull(fields.name);
+        assertEquals(asList("a"), fields.actor);
+        assertEquals(ActivityStreamFields.ID | ActivityStreamFields.TYPE | ActivityStreamFields.OBJECT_ID,
+                fields.invalid);
+        assertEquals(ActivityStreamFields.OBJECT, ActivityStreamParser.parse("{\"object\":\"x\"}").invalid);
+        assertEquals(0, ActivityStreamParser.parse("{\"object\":null,\"type\":null}").invalid);
+    }
+
+    @Test
+    void testJsonLdAliases() throws IOException {
+        final ActivityStreamFields fields = ActivityStreamParser.parse("{\"@id\":\"urn:1\",\"@type\":\"Update\"," +
+            "\"as:actor\":\"http://example.org/user1\",\"https://www.w3.org/ns/activitystreams#name\":\"n\"," +
+            "\"http://www.w3.org/ns/ldp#inbox\":\"http://example.org/inbox\"," +
+            "\"as:object\":{\"@type\":\"ldp:RDFSource\",\"@id\":\"http://localhost/resource\"}}");
+        assertEquals("urn:1", fields.id);
+        assertEquals("Update", fields.type);
+        assertEquals("http://example.org/user1", fields.actor);
+        assertEquals("n", fields.name);
+        assertEquals("http://example.org/inbox", fields.inbox);
+        assertEquals("http://localhost/resource", fields.objectId);
+        assertEquals("ldp:RDFSource", fields.objectType);
+        assertEquals(0, fields.invalid);
+    }
+
+    @Test
+    void testNodeObjects() throws IOException {
+        final ActivityStreamFields fields = ActivityStreamParser.parse("{\"actor\":[{\"type\":\"Person\"," +
+            "\"@id\":\"http://example.org/user1\"},\"http://example.org/user2\",{\"name\":\"x\"}]," +
+            "\"inbox\":{\"id\":\"http://example.org/inbox\",\"extra\":{\"id\":\"no\"}}," +
+            "\"object\":{\"id\":{\"id\":\"http://localhost/resource\"}},\"name\":{\"id\":\"n\"}}");
+        assertEquals(asList("http://example.org/user1", "http://example.org/user2"), fields.actor);
+        assertEquals("http://example.org/inbox", fields.inbox);
+        assertEquals("http://localhost/resource", fields.objectId);
+        assertNull(fields.name);
+        assertEquals(ActivityStreamFields.NAME, fields.invalid);
+        assertEquals(ActivityStreamFields.ID, ActivityStreamParser.parse("{\"id\":{\"type\":\"x\"}}").invalid);
+    }
+
+    @Test
+    void testEmptyObject() throws IOException {
+        final ActivityStreamFields fields = ActivityStreamParser.parse(" { } ");
+        assertNull(fields.id);
+        assertNull(fields.type);
+        assertNull(fields.objectType);
+    }
+
+    @Test
+    void testMalformed() {
+        assertThrows(IOException.class, () -> ActivityStreamParser.parse(""));
+        assertThrows(IOException.class, () -> ActivityStreamParser.parse("{\"id\":\"\\x\"}"));
+        assertThrows(IOException.class, () -> ActivityStreamParser.parse("{\"id\":\"\\u12G4\"}"));
+        assertThrows(IOException.class, () -> ActivityStreamParser.parse("{\"other\":[1,2"));
+        assertThrows(IOException.class, () -> ActivityStreamParser.parse("{\"id\":\"1\" \"type\":\"2\"}"));
+        assertTrue(assertThrows(IOException.class, () -> ActivityStreamParser.parse("{\"id\":#}"))
+                .getMessage().startsWith("Malformed"));
+    }
+}
@@ -15,8 +15,12 @@
  */
 package org.trellisldp.camel;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonMap;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_ACTOR;
 import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_ID;
 import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_INBOX;
@@ -25,10 +29,12 @@ import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_OBJEC
 import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_OBJECT_TYPE;
 import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_TYPE;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.camel.CamelExecutionException;
 import org.apache.camel.EndpointInject;
 import org.apache.camel.Produce;
 import org.apache.camel.ProducerTemplate;
@@ -140,12 +146,113 @@ class ActivityStreamProcessorTest extends CamelTestSupport {
         assertEquals(data, result, "Check the result body");
     }
 
+    @Test
+    void testStreamingProcessor() throws IOException, InterruptedException {
+
+        final String json = "{\"@context\": [\"https://www.w3.org/ns/activitystreams\"]," +
+            "\"id\": \"urn:uuid:1234\", \"type\": [\"Update\", \"" + PROV_ACTIVITY + "\"]," +
+            "\"published\": \"2020-01-01T00:00:00Z\", \"count\": 4, \"flag\": true, \"nothing\": null," +
+            "\"actor\": [\"http://example.org/user1\"], \"name\": \"caf\u00e9 \\u2603\"," +
+            "\"object\": {\"nested\": {\"id\": \"ignored\"}, \"id\": \"http://localhost/resource\"," +
+            "\"type\": \"" + LDP_RDF_SOURCE + "\"}}";
+
+        template.sendBody("direct:stream", json.getBytes(UTF_8));
+
+        resultEndpoint.expectedMessageCount(1);
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_ID, "urn:uuid:1234");
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_TYPE, asList("Update", PROV_ACTIVITY));
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_NAME, "caf\u00e9 \u2603");
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_INBOX, null);
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_ACTOR, null);
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_OBJECT_ID, "http://localhost/resource");
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_OBJECT_TYPE, LDP_RDF_SOURCE);
+        resultEndpoint.assertIsSatisfied();
+    }
+
+    @Test
+    void testStreamingProcessorInputStream() throws IOException, InterruptedException {
+
+        final String json = "{\"id\":\"unique-id\",\"type\":\"Delete\",\"actor\":\"http://example.org/user1\"," +
+            "\"inbox\":\"http://example.org/inbox\",\"name\":\"deleted\"," +
+            "\"object\":{\"id\":\"http://localhost/resource\",\"type\":[]}, \"trailing\": [";
+
+        template.sendBody("direct:stream", new ByteArrayInputStream(json.getBytes(UTF_8)));
+
+        resultEndpoint.expectedMessageCount(1);
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_ID, "unique-id");
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_TYPE, "Delete");
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_NAME, "deleted");
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_INBOX, "http://example.org/inbox");
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_ACTOR, "http://example.org/user1");
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_OBJECT_ID, "http://localhost/resource");
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_OBJECT_TYPE, emptyList());
+        resultEndpoint.assertIsSatisfied();
+    }
+
+    @Test
+    void testStreamingProcessorMapBody() throws IOException, InterruptedException {
+
+        final Map<String, Object> data = new HashMap<>();
+        data.put("id", "unique-id");
+        data.put("object", "STRING-VALUE");
+
+        template.sendBody("direct:stream", data);
+
+        resultEndpoint.expectedMessageCount(1);
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_ID, "unique-id");
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_OBJECT_ID, null);
+        resultEndpoint.assertIsSatisfied();
+    }
+
+    @Test
+    void testJsonLdAliases() throws InterruptedException {
+
+        final Map<String, Object> object = new HashMap<>();
+        object.put("@id", "http://localhost/resource");
+        object.put("@type", LDP_CONTAINER);
+        final Map<String, Object> actor = new HashMap<>();
+        actor.put("id", "http://example.org/user1");
+        actor.put("type", "Person");
+        final Map<String, Object> data = new HashMap<>();
+        data.put("@id", "unique-id");
+        data.put("@type", "Create");
+        data.put("as:actor", asList(actor, "http://example.org/user2"));
+        data.put("ldp:inbox", singletonMap("id", "http://example.org/inbox"));
+        data.put("as:object", object);
+
+        template.sendBody("direct:start", data);
+
+        resultEndpoint.expectedMessageCount(1);
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_ID, "unique-id");
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_TYPE, "Create");
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_ACTOR,
+                asList("http://example.org/user1", "http://example.org/user2"));
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_INBOX, "http://example.org/inbox");
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_OBJECT_ID, "http://localhost/resource");
+        resultEndpoint.expectedHeaderReceived(ACTIVITY_STREAM_OBJECT_TYPE, LDP_CONTAINER);
+        resultEndpoint.assertIsSatisfied();
+    }
+
+    @Test
+    void testStreamingProcessorMalformed() throws InterruptedException {
+        assertThrows(CamelExecutionException.class, () ->
+                template.sendBody("direct:stream", "{\"id\": \"unterminated}"));
+        assertThrows(CamelExecutionException.class, () -> template.sendBody("direct:stream", "[]"));
+        assertThrows(CamelExecutionException.class, () -> template.sendBody("direct:stream", "{\"id\" 4}"));
+        resultEndpoint.expectedMessageCount(0);
+        resultEndpoint.assertIsSatisfied();
+    }
+
     @Override
     protected RouteBuilder createRouteBuilder() {
         return new RouteBuilder() {
             @Override
             public void configure() throws IOException {
                 from("direct:start").process(new ActivityStreamProcessor()).to("mock:result");
+
+                final ActivityStreamProcessor streaming = new ActivityStreamProcessor();
+                streaming.setStreaming(true);
+                from("direct:stream").process(streaming).to("mock:result");
             }
         };
     }
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.trellisldp.camel.ActivityStreamReplay.ACTIVITY_STREAM_REPLAY_FILE;
+import static org.trellisldp.camel.ActivityStreamReplay.ACTIVITY_STREAM_REPLAY_OFFSET;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit5.CamelTestSupport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author acoburn
+ */
+class ActivityStreamReplayTest extends CamelTestSupport {
+
+    @TempDir
+    Path directory;
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint resultEndpoint;
+
+    private volatile String failOn;
+
+    @Test
+    void testReplayInBatches() throws Exception {
+        final StringBuilder log = new StringBuilder();
+        for (int i = 0; i < 25; i++) {
+            log.append(event(i)).append(i % 5 == 0 ? "\r\n" : "\n");
+            if (i == 10) {
+                log.append("\n  \n{\"id\": \"truncated\n");
+            }
+        }
+        final Path file = write("events.ndjson", log.substring(0, log.length() - 1));
+
+        final ActivityStreamReplay replay = replay(singletonList(file));
+        replay.setBatchSize(10);
+        replay.setChunkSize(64);
+        try {
+            resultEndpoint.expectedMessageCount(3);
+            assertEquals(25L, replay.replay());
+            resultEndpoint.assertIsSatisfied();
+        } finally {
+            replay.stop();
+        }
+
+        final List<ActivityStreamEvent> events = new ArrayList<>();
+        for (final Exchange exchange : resultEndpoint.getExchanges()) {
+            for (final Object event : exchange.getIn().getBody(List.class)) {
+                events.add((ActivityStreamEvent) event);
+            }
+            assertEquals(file.toString(), exchange.getIn().getHeader(ACTIVITY_STREAM_REPLAY_FILE));
+        }
+        assertEquals(25, events.size());
+        for (int i = 0; i < 25; i++) {
+            assertEquals("urn:uuid:" + i, events.get(i).getId());
+            assertEquals("http://localhost/resource/" + i, events.get(i).getObjectId());
+        }
+        assertEquals(Files.size(file), resultEndpoint.getExchanges().get(2).getIn()
+                .getHeader(ACTIVITY_STREAM_REPLAY_OFFSET, Long.class));
+        assertEquals(1L, replay.getErrorCount());
+        assertEquals(25L, replay.getEventCount());
+    }
+
+    @Test
+    void testResumeFromCheckpoint() throws Exception {
+        final Path first = write("first.ndjson", lines(0, 5));
+        final Path second = write("second.ndjson", lines(5, 10));
+        final Path checkpoint = directory.resolve("replay.checkpoint");
+
+        final ActivityStreamReplay replay = replay(asList(first, second));
+        replay.setCheckpoint(checkpoint);
+        replay.setBatchSize(3);
+        try {
+            assertEquals(10L, replay.replay());
+            assertEquals(second.toString(), replay.getFile());
+            assertEquals(Files.size(second), replay.getOffset());
+
+            Files.write(second, lines(10, 12).getBytes(UTF_8), APPEND);
+            resultEndpoint.reset();
+            resultEndpoint.expectedMessageCount(1);
+            assertEquals(2L, replay.replay());
+            resultEndpoint.assertIsSatisfied();
+            final List<?> events = resultEndpoint.getExchanges().get(0).getIn().getBody(List.class);
+            assertEquals("urn:uuid:10", ((ActivityStreamEvent) events.get(0)).getId());
+        } finally {
+            replay.stop();
+        }
+    }
+
+    @Test
+    void testFailedDeliveryKeepsCheckpoint() throws Exception {
+        final Path file = write("events.ndjson", lines(0, 10));
+        final Path checkpoint = directory.resolve("replay.checkpoint");
+        failOn = "urn:uuid:6";
+
+        final ActivityStreamReplay replay = replay(singletonList(file));
+        replay.setCheckpoint(checkpoint);
+        replay.setBatchSize(4);
+        try {
+            assertThrows(IOException.class, replay::replay);
+            assertEquals(4L, replay.getEventCount());
+            assertEquals((long) lines(0, 4).length(), replay.getOffset());
+
+            failOn = null;
+            resultEndpoint.reset();
+            assertEquals(6L, replay.replay());
+            final List<?> events = resultEndpoint.getExchanges().get(0).getIn().getBody(List.class);
+            assertEquals("urn:uuid:4", ((ActivityStreamEvent) events.get(0)).getId());
+        } finally {
+            replay.stop();
+        }
+    }
+
+    @Test
+    void testRateLimit() throws Exception {
+        final Path file = write("events.ndjson", lines(0, 30));
+        final ActivityStreamReplay replay = replay(singletonList(file));
+        replay.setBatchSize(10);
+        replay.setMaxRate(100L);
+        try {
+            final long start = System.nanoTime();
+            assertEquals(30L, replay.replay());
+            assertTrue(System.nanoTime() - start >= 190_000_000L);
+        } finally {
+            replay.stop();
+        }
+    }
+
+    @Test
+    void testNotStarted() {
+        final ActivityStreamReplay replay = new ActivityStreamReplay("mock:result", singletonList(directory));
+        assertThrows(IllegalStateException.class, replay::replay);
+        replay.setCamelContext(context);
+        replay.setBatchSize(0);
+        assertThrows(IllegalArgumentException.class, replay::start);
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() {
+        return new RouteBuilder() {
+            @Override
+            public void configure() {
+                from("direct:replay").process(exchange -> {
+                    for (final Object event : exchange.getIn().getBody(List.class)) {
+                        if (((ActivityStreamEvent) event).getId().equals(failOn)) {
+                            throw new IOException("Delivery failed");
+                        }
+                    }
+                }).to("mock:result");
+            }
+        };
+    }
+
+    private ActivityStreamReplay replay(final List<Path> logs) {
+        final ActivityStreamReplay replay = new ActivityStreamReplay("direct:replay", logs);
+        replay.setCamelContext(context);
+        replay.start();
+        return replay;
+    }
+
+    private Path write(final String name, final String content) throws IOException {
+        return Files.write(directory.resolve(name), content.getBytes(UTF_8));
+    }
+
+    private static String lines(final int from, final int to) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            builder.append(event(i)).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static String event(final int i) {
+        return "{\"id\":\"urn:uuid:" + i + "\",\"type\":\"Update\",\"object\":{\"id\":\"http://localhost/resource/" +
+            i + "\",\"type\":\"ldp:RDFSource\"}}";
+    }
+}
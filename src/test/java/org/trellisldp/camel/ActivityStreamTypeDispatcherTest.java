@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_OBJECT_TYPE;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_TYPE;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit5.CamelTestSupport;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class ActivityStreamTypeDispatcherTest extends CamelTestSupport {
+
+    private static final String PROV_ACTIVITY = "http://www.w3.org/ns/prov#Activity";
+    private static final String LDP_CONTAINER = "http://www.w3.org/ns/ldp#Container";
+    private static final String LDP_RDF_SOURCE = "ldp:RDFSource";
+
+    @EndpointInject(uri = "mock:delete")
+    private MockEndpoint deleteEndpoint;
+
+    @EndpointInject(uri = "mock:container")
+    private MockEndpoint containerEndpoint;
+
+    @EndpointInject(uri = "mock:update")
+    private MockEndpoint updateEndpoint;
+
+    @EndpointInject(uri = "mock:other")
+    private MockEndpoint otherEndpoint;
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint resultEndpoint;
+
+    @Produce(uri = "direct:start")
+    private ProducerTemplate template;
+
+    private final ActivityStreamTypeDispatcher dispatcher = new ActivityStreamTypeDispatcher()
+        .when("Delete", "mock:delete")
+        .whenObjectType("ldp:Container", "mock:container")
+        .when("as:Create", "mock:update")
+        .when("Update", "mock:update")
+        .otherwise("mock:other");
+
+    @Test
+    void testDispatch() throws InterruptedException {
+        send(asList("Update", PROV_ACTIVITY), LDP_RDF_SOURCE);
+        send(asList(PROV_ACTIVITY, "Delete"), asList(LDP_RDF_SOURCE, LDP_CONTAINER));
+        send("Create", LDP_CONTAINER);
+        send("https://www.w3.org/ns/activitystreams#Create", LDP_RDF_SOURCE);
+        send(PROV_ACTIVITY, null);
+        send(null, null);
+
+        updateEndpoint.expectedMessageCount(2);
+        deleteEndpoint.expectedMessageCount(1);
+        containerEndpoint.expectedMessageCount(1);
+        otherEndpoint.expectedMessageCount(2);
+        resultEndpoint.expectedMessageCount(6);
+        assertMockEndpointsSatisfied();
+    }
+
+    @Test
+    void testMatchOrder() {
+        final int none = 4;
+        assertEquals(0, dispatcher.match(asList("Update", "Delete"), LDP_CONTAINER, none));
+        assertEquals(1, dispatcher.match(asList("Update", "Create"), asList(LDP_RDF_SOURCE, "ldp:Container"), none));
+        assertEquals(2, dispatcher.match("Create", null, none));
+        assertEquals(3, dispatcher.match("as:Update", "ldp:NonRDFSource", none));
+        assertEquals(none, dispatcher.match(asList(5, PROV_ACTIVITY), 7, none));
+        assertEquals(none, dispatcher.match(null, LDP_RDF_SOURCE, none));
+    }
+
+    @Test
+    void testExpand() {
+        assertEquals(new LinkedHashSet<>(asList("Create", "https://www.w3.org/ns/activitystreams#Create",
+                        "as:Create")), ActivityStreamTypeDispatcher.expand("Create"));
+        assertEquals(new LinkedHashSet<>(asList("prov:Activity", PROV_ACTIVITY)),
+                ActivityStreamTypeDispatcher.expand("prov:Activity"));
+        assertEquals(new LinkedHashSet<>(asList(LDP_CONTAINER, "ldp:Container")),
+                ActivityStreamTypeDispatcher.expand(LDP_CONTAINER));
+        assertEquals(new LinkedHashSet<>(asList("http://example.org/Type")),
+                ActivityStreamTypeDispatcher.expand("http://example.org/Type"));
+    }
+
+    private void send(final Object type, final Object objectType) {
+        final Map<String, Object> headers = new HashMap<>();
+        headers.put(ACTIVITY_STREAM_TYPE, type);
+        headers.put(ACTIVITY_STREAM_OBJECT_TYPE, objectType);
+        template.sendBodyAndHeaders("direct:start", null, headers);
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws IOException {
+                from("direct:start").process(dispatcher).to("mock:result");
+            }
+        };
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class ActivityStreamVocabularyTest {
+
+    @Test
+    void testAliases() {
+        for (final String key : new String[] {"actor", "as:actor", "https://www.w3.org/ns/activitystreams#actor",
+                "http://www.w3.org/ns/activitystreams#actor"}) {
+            assertEquals(ActivityStreamFields.ACTOR, ActivityStreamVocabulary.field(key), key);
+        }
+        assertEquals(ActivityStreamFields.ID, ActivityStreamVocabulary.field("@id"));
+        assertEquals(ActivityStreamFields.TYPE, ActivityStreamVocabulary.field("@type"));
+        for (final String key : new String[] {"inbox", "ldp:inbox", "http://www.w3.org/ns/ldp#inbox"}) {
+            assertEquals(ActivityStreamFields.INBOX, ActivityStreamVocabulary.field(key), key);
+        }
+        for (final String key : new String[] {"as:id", "as:type", "as:inbox",
+                "https://www.w3.org/ns/activitystreams#id", "https://www.w3.org/ns/activitystreams#inbox"}) {
+            assertEquals(0, ActivityStreamVocabulary.field(key), key);
+        }
+        assertEquals(0, ActivityStreamVocabulary.field("published"));
+        assertEquals(0, ActivityStreamVocabulary.field("@context"));
+        assertEquals(0, ActivityStreamVocabulary.field("as:"));
+    }
+
+    @Test
+    void testCharSequenceKeys() {
+        final StringBuilder key = new StringBuilder("ldp:inbox");
+        assertEquals(ActivityStreamFields.INBOX, ActivityStreamVocabulary.field(key));
+        key.setLength(3);
+        assertEquals(0, ActivityStreamVocabulary.field(key));
+    }
+
+    @Test
+    void testObjectFields() {
+        assertEquals(ActivityStreamFields.OBJECT_ID, ActivityStreamVocabulary.objectField("@id"));
+        assertEquals(ActivityStreamFields.OBJECT_TYPE, ActivityStreamVocabulary.objectField("type"));
+        assertEquals(0, ActivityStreamVocabulary.objectField("actor"));
+        assertTrue(ActivityStreamVocabulary.isId("@id"));
+        assertFalse(ActivityStreamVocabulary.isId("as:id"));
+        assertFalse(ActivityStreamVocabulary.isId("type"));
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the parsing hot paths stay within the per-operation allocation budgets
+ * in {@code allocation-budgets.properties}.
+ *
+ * @author acoburn
+ */
+class AllocationBudgetTest {
+
+    private static final String BUDGETS = "/allocation-budgets.properties";
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 10_000;
+    private static final int ROUNDS = 5;
+
+    private static final String PREFER = "return=representation; " +
+        "include=\"http://www.w3.org/ns/ldp#PreferContainment http://www.w3.org/ns/ldp#PreferMembership\"; " +
+        "omit=\"http://www.w3.org/ns/ldp#PreferMinimalContainer\"";
+
+    private static final String LINK = "<http://www.w3.org/ns/ldp#BasicContainer>; rel=\"type\"; title=\"a title\"";
+
+    private static final String JSON = "{\"@context\":\"https://www.w3.org/ns/activitystreams\"," +
+        "\"id\":\"urn:uuid:1234\",\"type\":[\"Update\",\"http://www.w3.org/ns/prov#Activity\"]," +
+        "\"actor\":[\"http://example.org/user1\"],\"published\":\"2020-01-01T00:00:00Z\"," +
+        "\"object\":{\"id\":\"http://localhost/resource\",\"type\":[\"http://www.w3.org/ns/ldp#RDFSource\"]}}";
+
+    private static com.sun.management.ThreadMXBean threads;
+    private static Properties budgets;
+    private static CamelContext context;
+    private static int sink;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "Allocation measurement is unavailable");
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "Allocation measurement is unsupported");
+        threads.setThreadAllocatedMemoryEnabled(true);
+        budgets = new Properties();
+        try (InputStream input = requireNonNull(AllocationBudgetTest.class.getResourceAsStream(BUDGETS))) {
+            budgets.load(input);
+        }
+        context = new DefaultCamelContext();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (context != null) {
+            context.stop();
+        }
+    }
+
+    @Test
+    void testPreferValueOf() throws IOException {
+        check("prefer.valueOf", () -> sink += Prefer.valueOf(PREFER).getInclude().size());
+    }
+
+    @Test
+    void testNewLink() throws IOException {
+        check("link.new", () -> sink += new Link(LINK).getRel().length());
+    }
+
+    @Test
+    void testProcessMap() throws IOException {
+        final ActivityStreamProcessor processor = new ActivityStreamProcessor();
+        final Map<String, Object> object = new HashMap<>();
+        object.put("id", "http://localhost/resource");
+        object.put("type", "http://www.w3.org/ns/ldp#RDFSource");
+        final Map<String, Object> body = new HashMap<>();
+        body.put("id", "urn:uuid:1234");
+        body.put("type", "Update");
+        body.put("actor", "http://example.org/user1");
+        body.put("object", object);
+        final Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setBody(body);
+        check("processor.map", () -> processor.process(exchange));
+    }
+
+    @Test
+    void testProcessStreaming() throws IOException {
+        final ActivityStreamProcessor processor = new ActivityStreamProcessor();
+        processor.setStreaming(true);
+        final Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setBody(JSON.getBytes(UTF_8));
+        check("processor.streaming", () -> processor.process(exchange));
+    }
+
+    private static void check(final String operation, final Operation op) throws IOException {
+        final long budget = Long.parseLong(requireNonNull(budgets.getProperty(operation), operation).trim());
+        final long bytes = measure(op);
+        assertTrue(bytes <= budget, () -> operation + " allocated " + bytes + " bytes per operation; the budget is " +
+                budget);
+    }
+
+    /* The fewest bytes allocated per operation over several rounds, which discounts one-off JIT and GC noise. */
+    private static long measure(final Operation op) throws IOException {
+        final long thread = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP; i++) {
+            op.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long start = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < ITERATIONS; i++) {
+                op.run();
+            }
+            best = Math.min(best, (threads.getThreadAllocatedBytes(thread) - start) / ITERATIONS);
+        }
+        return best;
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        void run() throws IOException;
+    }
+}
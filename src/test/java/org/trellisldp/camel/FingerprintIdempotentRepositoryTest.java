@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.time.Duration.ofMinutes;
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_ID;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit5.CamelTestSupport;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class FingerprintIdempotentRepositoryTest extends CamelTestSupport {
+
+    private static final String KEY = "urn:uuid:";
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint resultEndpoint;
+
+    @Produce(uri = "direct:start")
+    private ProducerTemplate template;
+
+    @Test
+    void testAddContainsRemove() {
+        final FingerprintIdempotentRepository repository = new FingerprintIdempotentRepository(16);
+        assertTrue(repository.add(KEY + 1));
+        assertFalse(repository.add(KEY + 1));
+        assertTrue(repository.contains(KEY + 1));
+        assertFalse(repository.contains(KEY + 2));
+        assertTrue(repository.confirm(KEY + 1));
+        assertEquals(1, repository.size());
+
+        assertTrue(repository.remove(KEY + 1));
+        assertFalse(repository.remove(KEY + 1));
+        assertFalse(repository.contains(KEY + 1));
+        assertEquals(0, repository.size());
+        assertTrue(repository.add(KEY + 1));
+
+        repository.clear();
+        assertEquals(0, repository.size());
+        assertFalse(repository.contains(KEY + 1));
+    }
+
+    @Test
+    void testCapacityEviction() {
+        final FingerprintIdempotentRepository repository = new FingerprintIdempotentRepository(100);
+        for (int i = 0; i < 250; i++) {
+            assertTrue(repository.add(KEY + i));
+        }
+        assertEquals(100, repository.size());
+        for (int i = 0; i < 150; i++) {
+            assertFalse(repository.contains(KEY + i));
+        }
+        for (int i = 150; i < 250; i++) {
+            assertTrue(repository.contains(KEY + i));
+        }
+    }
+
+    @Test
+    void testRemovedKeysAreSkippedOnEviction() {
+        final FingerprintIdempotentRepository repository = new FingerprintIdempotentRepository(4);
+        repository.add("a");
+        repository.add("b");
+        repository.add("c");
+        repository.remove("a");
+        repository.add("d");
+        assertEquals(3, repository.size());
+        repository.add("e");
+        assertFalse(repository.contains("a"));
+        assertTrue(repository.contains("b"));
+        repository.add("f");
+        assertFalse(repository.contains("b"));
+        assertTrue(repository.contains("c"));
+        assertEquals(4, repository.size());
+    }
+
+    @Test
+    void testTimeToLive() {
+        final AtomicLong now = new AtomicLong(1000L);
+        final FingerprintIdempotentRepository repository = new FingerprintIdempotentRepository(10, 1e-6,
+                ofSeconds(30), now::get);
+        repository.add("a");
+        now.addAndGet(20_000L);
+        repository.add("b");
+        assertTrue(repository.contains("a"));
+        now.addAndGet(10_000L);
+        assertFalse(repository.contains("a"));
+        assertTrue(repository.contains("b"));
+        assertEquals(1, repository.size());
+        now.addAndGet(20_000L);
+        assertTrue(repository.add("b"));
+    }
+
+    @Test
+    void testRandomOperationsMatchASet() {
+        final Random random = new Random(42L);
+        final FingerprintIdempotentRepository repository = new FingerprintIdempotentRepository(1 << 16);
+        final Set<String> expected = new HashSet<>();
+        for (int i = 0; i < 200_000; i++) {
+            final String key = KEY + random.nextInt(20_000);
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove(key), repository.remove(key));
+            } else {
+                assertEquals(expected.add(key), repository.add(key));
+            }
+        }
+        assertEquals(expected.size(), repository.size());
+        for (int i = 0; i < 20_000; i++) {
+            assertEquals(expected.contains(KEY + i), repository.contains(KEY + i));
+        }
+    }
+
+    @Test
+    void testFalsePositiveRate() {
+        final FingerprintIdempotentRepository repository = new FingerprintIdempotentRepository(10_000, 0.01);
+        assertEquals(20, repository.getFingerprintBits());
+        for (int i = 0; i < 10_000; i++) {
+            repository.add(KEY + i);
+        }
+        int falsePositives = 0;
+        for (int i = 10_000; i < 110_000; i++) {
+            if (repository.contains(KEY + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, "Too many false positives: " + falsePositives);
+    }
+
+    @Test
+    void testMemoryUsage() {
+        assertEquals(4 * 1000 + 4 * 2048, new FingerprintIdempotentRepository(1000, 0.001).getMemoryUsage());
+        assertEquals(8 * 1000 + 4 * 2048, new FingerprintIdempotentRepository(1000, 1e-12).getMemoryUsage());
+        assertEquals(16 * 1000 + 4 * 2048,
+                new FingerprintIdempotentRepository(1000, 1e-12, ofMinutes(5)).getMemoryUsage());
+        assertEquals(64, new FingerprintIdempotentRepository(1000, 1e-16).getFingerprintBits());
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new FingerprintIdempotentRepository(0));
+        assertThrows(IllegalArgumentException.class, () -> new FingerprintIdempotentRepository(10, 0.0));
+        assertThrows(IllegalArgumentException.class, () -> new FingerprintIdempotentRepository(10, 1.0));
+        assertThrows(IllegalArgumentException.class, () ->
+                new FingerprintIdempotentRepository(10, 0.01, Duration.ofSeconds(-1)));
+    }
+
+    @Test
+    void testDuplicateActivityStreamIds() throws InterruptedException {
+        template.sendBody("direct:start", "{\"id\":\"urn:uuid:1\",\"type\":\"Create\"}");
+        template.sendBody("direct:start", "{\"id\":\"urn:uuid:2\",\"type\":\"Update\"}");
+        template.sendBody("direct:start", "{\"id\":\"urn:uuid:1\",\"type\":\"Create\"}");
+
+        resultEndpoint.expectedMessageCount(2);
+        resultEndpoint.assertIsSatisfied();
+        assertEquals("urn:uuid:2", resultEndpoint.getExchanges().get(1).getIn().getHeader(ACTIVITY_STREAM_ID));
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws IOException {
+                final ActivityStreamProcessor processor = new ActivityStreamProcessor();
+                processor.setStreaming(true);
+                from("direct:start").process(processor)
+                    .idempotentConsumer(header(ACTIVITY_STREAM_ID), new FingerprintIdempotentRepository(1000))
+                    .to("mock:result");
+            }
+        };
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_INBOX;
+import static org.trellisldp.camel.InboxDeliveryProcessor.LD_JSON;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.support.DefaultExchange;
+import org.apache.camel.test.junit5.CamelTestSupport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class InboxDeliveryProcessorTest extends CamelTestSupport {
+
+    private static final String NOTIFICATION = "{\"type\":\"Update\",\"object\":\"http://localhost/resource\"}";
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint resultEndpoint;
+
+    @Produce(uri = "direct:start")
+    private ProducerTemplate template;
+
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private final Map<String, String> contentTypes = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+
+    private HttpServer server;
+    private HttpServer other;
+    private InboxDeliveryProcessor delivery;
+
+    @Test
+    void testDelivery() throws Exception {
+        template.sendBodyAndHeader("direct:start", NOTIFICATION, ACTIVITY_STREAM_INBOX, url(server, "/inbox/a"));
+        template.sendBodyAndHeader("direct:start", NOTIFICATION, ACTIVITY_STREAM_INBOX, url(server, "/inbox/b"));
+        template.sendBody("direct:start", NOTIFICATION);
+
+        resultEndpoint.expectedMessageCount(3);
+        resultEndpoint.assertIsSatisfied();
+        await(() -> delivery.getDeliveredCount() == 2);
+        assertEquals(2, received.size());
+        assertTrue(received.contains("/inbox/a " + NOTIFICATION));
+        assertTrue(received.contains("/inbox/b " + NOTIFICATION));
+        assertEquals(LD_JSON, contentTypes.get("/inbox/a"));
+        assertEquals(0, delivery.getPendingCount());
+    }
+
+    @Test
+    void testSlowHost() throws Exception {
+        gate = new CountDownLatch(1);
+        for (int i = 0; i < 10; i++) {
+            template.sendBodyAndHeader("direct:start", NOTIFICATION, ACTIVITY_STREAM_INBOX,
+                    url(server, "/slow/" + i % 3));
+        }
+        template.sendBodyAndHeader("direct:start", NOTIFICATION, ACTIVITY_STREAM_INBOX, url(other, "/fast"));
+
+        await(() -> delivery.getDeliveredCount() == 1);
+        assertEquals("/fast " + NOTIFICATION, received.get(0));
+        await(() -> active.get() == 2);
+        assertEquals(10, delivery.getPendingCount());
+
+        gate.countDown();
+        await(() -> delivery.getDeliveredCount() == 11);
+        assertEquals(2, maxActive.get());
+        assertEquals(0, delivery.getPendingCount());
+    }
+
+    @Test
+    void testRetry() throws Exception {
+        failures.put("/flaky", new AtomicInteger(2));
+        template.sendBodyAndHeader("direct:start", NOTIFICATION, ACTIVITY_STREAM_INBOX, url(server, "/flaky"));
+        template.sendBodyAndHeader("direct:start", NOTIFICATION, ACTIVITY_STREAM_INBOX, url(server, "/rejected"));
+        failures.put("/down", new AtomicInteger(10));
+        template.sendBodyAndHeader("direct:start", NOTIFICATION, ACTIVITY_STREAM_INBOX, url(server, "/down"));
+
+        await(() -> delivery.getPendingCount() == 0);
+        assertEquals(1L, delivery.getDeliveredCount());
+        assertEquals(2L, delivery.getFailedCount());
+        assertEquals(4L, delivery.getRetryCount());
+        assertEquals(List.of("/flaky " + NOTIFICATION), received);
+    }
+
+    @Test
+    void testRedirect() throws Exception {
+        template.sendBodyAndHeader("direct:start", NOTIFICATION, ACTIVITY_STREAM_INBOX, url(server, "/moved"));
+
+        await(() -> delivery.getPendingCount() == 0 && delivery.getFailedCount() == 1);
+        assertEquals(0L, delivery.getDeliveredCount());
+        assertEquals(0L, delivery.getRetryCount());
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void testInvalidRequest() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            template.sendBodyAndHeaders("direct:start", NOTIFICATION, Map.of(ACTIVITY_STREAM_INBOX,
+                        url(server, "/invalid"), Exchange.CONTENT_TYPE, "application/ld+json\r\nX-Injected: yes"));
+        }
+        template.sendBodyAndHeader("direct:start", NOTIFICATION, ACTIVITY_STREAM_INBOX, url(server, "/inbox/a"));
+
+        await(() -> delivery.getDeliveredCount() == 1);
+        assertEquals(3L, delivery.getFailedCount());
+        assertEquals(0, delivery.getPendingCount());
+        assertEquals(List.of("/inbox/a " + NOTIFICATION), received);
+    }
+
+    @Test
+    void testStopDrainsQueues() throws Exception {
+        gate = new CountDownLatch(1);
+        final InboxDeliveryProcessor processor = new InboxDeliveryProcessor();
+        processor.setCamelContext(context);
+        processor.setMaxConcurrencyPerHost(1);
+        processor.start();
+        for (int i = 0; i < 3; i++) {
+            processor.process(exchange(url(server, "/drain")));
+        }
+        await(() -> active.get() == 1);
+        executor.execute(() -> {
+            try {
+                Thread.sleep(100L);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            gate.countDown();
+        });
+        processor.stop();
+        assertEquals(3L, processor.getDeliveredCount());
+        assertEquals(0, processor.getPendingCount());
+        assertThrows(IllegalStateException.class, () -> processor.process(exchange(url(server, "/drain"))));
+    }
+
+    @Test
+    void testBoundedQueue() throws Exception {
+        gate = new CountDownLatch(1);
+        final InboxDeliveryProcessor processor = new InboxDeliveryProcessor();
+        processor.setCamelContext(context);
+        processor.setMaxConcurrencyPerHost(1);
+        processor.setMaxQueueSize(2);
+        processor.start();
+        try {
+            for (int i = 0; i < 3; i++) {
+                final Exchange exchange = exchange(url(server, "/queue"));
+                processor.process(exchange);
+                assertNull(exchange.getException());
+                if (i == 0) {
+                    await(() -> active.get() == 1);
+                }
+            }
+            final Exchange rejected = exchange(url(server, "/queue"));
+            processor.process(rejected);
+            assertTrue(rejected.getException() instanceof RejectedExecutionException);
+            assertEquals(1L, processor.getRejectedCount());
+            final Exchange accepted = exchange(url(server, "/other"));
+            processor.process(accepted);
+            assertNull(accepted.getException());
+
+            gate.countDown();
+            await(() -> processor.getDeliveredCount() == 4);
+        } finally {
+            processor.stop();
+        }
+    }
+
+    @Test
+    void testBackoff() {
+        for (int i = 0; i < 100; i++) {
+            final long first = InboxDeliveryProcessor.backoff(1, 100L, 1000L);
+            assertTrue(first >= 50L && first <= 100L);
+            final long third = InboxDeliveryProcessor.backoff(3, 100L, 1000L);
+            assertTrue(third >= 200L && third <= 400L);
+            final long capped = InboxDeliveryProcessor.backoff(40, 100L, 1000L);
+            assertTrue(capped >= 500L && capped <= 1000L);
+        }
+    }
+
+    @Test
+    void testInvalid() {
+        final InboxDeliveryProcessor processor = new InboxDeliveryProcessor();
+        assertThrows(IllegalStateException.class, () -> processor.process(exchange(url(server, "/inbox"))));
+        assertThrows(IllegalArgumentException.class, () -> processor.process(exchange("urn:uuid:inbox")));
+        assertThrows(IllegalStateException.class, processor::start);
+        processor.setCamelContext(context);
+        processor.setMaxQueueSize(0);
+        assertThrows(IllegalArgumentException.class, processor::start);
+    }
+
+    @AfterEach
+    void stopServers() {
+        gate.countDown();
+        server.stop(0);
+        other.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws IOException {
+        server = start();
+        other = start();
+        delivery = new InboxDeliveryProcessor();
+        delivery.setMaxConcurrencyPerHost(2);
+        delivery.setMaxAttempts(3);
+        delivery.setInitialBackoff(10L);
+        return new RouteBuilder() {
+            @Override
+            public void configure() {
+                from("direct:start").process(delivery).to("mock:result");
+            }
+        };
+    }
+
+    private HttpServer start() throws IOException {
+        final HttpServer stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stub.setExecutor(executor);
+        stub.createContext("/", this::handle);
+        stub.start();
+        return stub;
+    }
+
+    private Exchange exchange(final String inbox) {
+        final Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setHeader(ACTIVITY_STREAM_INBOX, inbox);
+        exchange.getIn().setBody(NOTIFICATION);
+        return exchange;
+    }
+
+    private static String url(final HttpServer stub, final String path) {
+        return "http://localhost:" + stub.getAddress().getPort() + path;
+    }
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000L;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        final String path = exchange.getRequestURI().getPath();
+        if (!path.equals("/fast")) {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                gate.await();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            active.decrementAndGet();
+        }
+        final String body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = new String(in.readAllBytes(), UTF_8);
+        }
+        final AtomicInteger failing = failures.get(path);
+        if (failing != null && failing.getAndDecrement() > 0) {
+            exchange.sendResponseHeaders(503, -1);
+        } else if (path.equals("/rejected")) {
+            exchange.sendResponseHeaders(400, -1);
+        } else if (path.equals("/moved")) {
+            exchange.getResponseHeaders().add("Location", "/inbox/moved");
+            exchange.sendResponseHeaders(302, -1);
+        } else {
+            contentTypes.put(path, exchange.getRequestHeaders().getFirst("Content-Type"));
+            received.add(path + " " + body);
+            exchange.sendResponseHeaders(201, -1);
+        }
+        exchange.close();
+    }
+}
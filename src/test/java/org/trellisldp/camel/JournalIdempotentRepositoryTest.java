@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_ID;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit5.CamelTestSupport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author acoburn
+ */
+class JournalIdempotentRepositoryTest extends CamelTestSupport {
+
+    private static final String KEY = "urn:uuid:";
+
+    @TempDir
+    static Path directory;
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint resultEndpoint;
+
+    @Produce(uri = "direct:start")
+    private ProducerTemplate template;
+
+    @Test
+    void testAddContainsRemove() {
+        final JournalIdempotentRepository repository = new JournalIdempotentRepository(journal("basic"));
+        repository.start();
+        try {
+            assertTrue(repository.add(KEY + 1));
+            assertFalse(repository.add(KEY + 1));
+            assertTrue(repository.contains(KEY + 1));
+            assertFalse(repository.contains(KEY + 2));
+            assertTrue(repository.confirm(KEY + 1));
+            assertEquals(1, repository.size());
+
+            assertTrue(repository.remove(KEY + 1));
+            assertFalse(repository.remove(KEY + 1));
+            assertFalse(repository.contains(KEY + 1));
+            assertEquals(0, repository.size());
+            assertTrue(repository.add(KEY + 1));
+            assertEquals(3, repository.getJournalLength());
+        } finally {
+            repository.stop();
+        }
+    }
+
+    @Test
+    void testRestart() {
+        final Path path = journal("restart");
+        final JournalIdempotentRepository repository = new JournalIdempotentRepository(path, 64, () -> 0L);
+        repository.start();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(repository.add(KEY + i));
+        }
+        for (int i = 0; i < 1000; i += 10) {
+            assertTrue(repository.remove(KEY + i));
+        }
+        assertTrue(repository.add(KEY + 0));
+        repository.stop();
+        assertThrows(IllegalStateException.class, () -> repository.contains(KEY + 1));
+
+        final JournalIdempotentRepository restarted = new JournalIdempotentRepository(path, 64, () -> 0L);
+        restarted.start();
+        try {
+            assertEquals(901, restarted.size());
+            assertEquals(1101, restarted.getJournalLength());
+            assertTrue(restarted.contains(KEY + 0));
+            assertFalse(restarted.contains(KEY + 10));
+            assertTrue(restarted.contains(KEY + 999));
+            assertFalse(restarted.add(KEY + 999));
+            assertTrue(restarted.add(KEY + 1000));
+        } finally {
+            restarted.stop();
+        }
+    }
+
+    @Test
+    void testCompaction() {
+        final Path path = journal("compaction");
+        final JournalIdempotentRepository repository = new JournalIdempotentRepository(path, 64, () -> 0L);
+        repository.start();
+        for (int i = 0; i < 3000; i++) {
+            repository.add(KEY + i);
+        }
+        for (int i = 0; i < 2500; i++) {
+            repository.remove(KEY + i);
+        }
+        assertTrue(repository.getCompactionCount() > 0);
+        assertTrue(repository.getJournalLength() < 3000);
+        assertEquals(500, repository.size());
+        repository.stop();
+
+        final JournalIdempotentRepository restarted = new JournalIdempotentRepository(path, 64, () -> 0L);
+        restarted.start();
+        try {
+            assertEquals(500, restarted.size());
+            assertFalse(restarted.contains(KEY + 2499));
+            assertTrue(restarted.contains(KEY + 2500));
+            restarted.compact();
+            assertEquals(500, restarted.getJournalLength());
+            assertTrue(restarted.contains(KEY + 2999));
+        } finally {
+            restarted.stop();
+        }
+    }
+
+    @Test
+    void testClear() {
+        final Path path = journal("clear");
+        final JournalIdempotentRepository repository = new JournalIdempotentRepository(path);
+        repository.start();
+        repository.add(KEY + 1);
+        repository.add(KEY + 2);
+        repository.clear();
+        assertEquals(0, repository.size());
+        assertEquals(0, repository.getJournalLength());
+        repository.add(KEY + 3);
+        repository.stop();
+
+        repository.start();
+        try {
+            assertEquals(1, repository.size());
+            assertFalse(repository.contains(KEY + 1));
+            assertTrue(repository.contains(KEY + 3));
+        } finally {
+            repository.stop();
+        }
+    }
+
+    @Test
+    void testSyncInterval() {
+        final AtomicLong clock = new AtomicLong();
+        final JournalIdempotentRepository repository = new JournalIdempotentRepository(journal("sync"), 64,
+                clock::get);
+        repository.setSyncInterval(0L);
+        repository.start();
+        repository.add(KEY + 1);
+        repository.add(KEY + 2);
+        assertEquals(2L, repository.getSyncCount());
+
+        repository.setSyncInterval(1000L);
+        repository.add(KEY + 3);
+        clock.set(500L);
+        repository.add(KEY + 4);
+        assertEquals(2L, repository.getSyncCount());
+        clock.set(1000L);
+        repository.add(KEY + 5);
+        assertEquals(3L, repository.getSyncCount());
+
+        repository.setSyncInterval(-1L);
+        clock.set(5000L);
+        repository.add(KEY + 6);
+        assertEquals(3L, repository.getSyncCount());
+        repository.stop();
+        assertEquals(4L, repository.getSyncCount());
+    }
+
+    @Test
+    void testTimeToLive() {
+        final AtomicLong clock = new AtomicLong();
+        final Path path = journal("ttl");
+        final JournalIdempotentRepository repository = new JournalIdempotentRepository(path, 64, clock::get);
+        repository.setTimeToLive(Duration.ofMillis(100L));
+        repository.start();
+        repository.add(KEY + 1);
+        repository.add(KEY + 2);
+        clock.set(10L);
+        repository.remove(KEY + 2);
+        clock.set(50L);
+        repository.add(KEY + 3);
+        clock.set(60L);
+        repository.add(KEY + 2);
+        clock.set(100L);
+        assertFalse(repository.contains(KEY + 1));
+        assertTrue(repository.contains(KEY + 2));
+        assertTrue(repository.add(KEY + 1));
+        repository.stop();
+
+        clock.set(120L);
+        repository.start();
+        try {
+            assertEquals(3, repository.size());
+            repository.compact();
+            assertEquals(3L, repository.getJournalLength());
+            clock.set(150L);
+            assertFalse(repository.contains(KEY + 3));
+            assertTrue(repository.contains(KEY + 2));
+            assertTrue(repository.contains(KEY + 1));
+            assertEquals(2, repository.size());
+        } finally {
+            repository.stop();
+        }
+        assertThrows(IllegalArgumentException.class, () -> repository.setTimeToLive(Duration.ofMillis(-1L)));
+    }
+
+    @Test
+    void testMaximumSize() {
+        final Path path = journal("maximum");
+        final JournalIdempotentRepository repository = new JournalIdempotentRepository(path, 64, () -> 0L);
+        repository.setMaximumSize(100);
+        repository.start();
+        for (int i = 0; i < 150; i++) {
+            assertTrue(repository.add(KEY + i));
+        }
+        assertEquals(100, repository.size());
+        assertFalse(repository.contains(KEY + 49));
+        assertTrue(repository.contains(KEY + 50));
+        repository.stop();
+
+        repository.start();
+        try {
+            assertEquals(100, repository.size());
+            assertTrue(repository.add(KEY + 0));
+            assertFalse(repository.contains(KEY + 50));
+            assertTrue(repository.contains(KEY + 149));
+        } finally {
+            repository.stop();
+        }
+        assertThrows(IllegalArgumentException.class, () -> repository.setMaximumSize(-1));
+    }
+
+    @Test
+    void testGenerations() throws Exception {
+        final Path path = journal("generations");
+        final JournalIdempotentRepository repository = new JournalIdempotentRepository(path, 64, () -> 0L);
+        repository.start();
+        repository.add(KEY + 1);
+        repository.add(KEY + 2);
+        repository.remove(KEY + 1);
+        repository.compact();
+        assertFalse(Files.exists(repository.generation(0)));
+        assertTrue(Files.exists(repository.generation(1)));
+        repository.stop();
+
+        // An interrupted compaction leaves a generation that was never marked complete
+        Files.write(repository.generation(2), new byte[48]);
+        repository.start();
+        try {
+            assertFalse(Files.exists(repository.generation(2)));
+            assertEquals(1, repository.size());
+            assertTrue(repository.contains(KEY + 2));
+            repository.compact();
+            assertTrue(Files.exists(repository.generation(2)));
+        } finally {
+            repository.stop();
+        }
+    }
+
+    @Test
+    void testFailedCompaction() throws Exception {
+        final Path path = journal("failed");
+        final JournalIdempotentRepository repository = new JournalIdempotentRepository(path, 64, () -> 0L);
+        repository.start();
+        try {
+            repository.add(KEY + 1);
+            repository.add(KEY + 2);
+            repository.remove(KEY + 1);
+
+            // A file left where the next generation goes makes the write fail
+            Files.write(repository.generation(1), new byte[48]);
+            assertThrows(UncheckedIOException.class, repository::compact);
+            assertFalse(Files.exists(repository.generation(1)));
+            assertTrue(Files.exists(repository.generation(0)));
+            assertEquals(0L, repository.getCompactionCount());
+            assertTrue(repository.contains(KEY + 2));
+            assertTrue(repository.add(KEY + 3));
+
+            repository.compact();
+            assertEquals(1L, repository.getCompactionCount());
+            assertFalse(Files.exists(repository.generation(0)));
+            assertEquals(2L, repository.getJournalLength());
+            assertTrue(repository.contains(KEY + 3));
+        } finally {
+            repository.stop();
+        }
+    }
+
+    @Test
+    void testScheduledCompaction() throws Exception {
+        final AtomicLong clock = new AtomicLong();
+        final JournalIdempotentRepository repository = new JournalIdempotentRepository(journal("scheduled"), 64,
+                clock::get);
+        repository.setCamelContext(context);
+        repository.setTimeToLive(Duration.ofMillis(100L));
+        repository.setCompactionInterval(10L);
+        repository.start();
+        try {
+            for (int i = 0; i < 500; i++) {
+                repository.add(KEY + i);
+            }
+            assertEquals(0L, repository.getCompactionCount());
+            clock.set(100L);
+            final long deadline = System.currentTimeMillis() + 5000L;
+            while (repository.getCompactionCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+            assertEquals(0L, repository.getJournalLength());
+            assertEquals(0, repository.size());
+        } finally {
+            repository.stop();
+        }
+    }
+
+    @Test
+    void testNotAJournal() throws Exception {
+        final Path path = journal("invalid");
+        Files.write(path.resolveSibling(path.getFileName() + ".0"),
+                "not a journal, but the same length!".substring(0, 24).getBytes(UTF_8));
+        final JournalIdempotentRepository repository = new JournalIdempotentRepository(path);
+        assertThrows(UncheckedIOException.class, repository::start);
+        assertThrows(IllegalStateException.class, () -> repository.add(KEY + 1));
+    }
+
+    @Test
+    void testIdempotentConsumer() throws Exception {
+        template.sendBodyAndHeader("direct:start", "one", ACTIVITY_STREAM_ID, KEY + 1);
+        template.sendBodyAndHeader("direct:start", "two", ACTIVITY_STREAM_ID, KEY + 1);
+        template.sendBodyAndHeader("direct:start", "three", ACTIVITY_STREAM_ID, KEY + 2);
+
+        resultEndpoint.expectedBodiesReceived("one", "three");
+        resultEndpoint.assertIsSatisfied();
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() {
+        return new RouteBuilder() {
+            @Override
+            public void configure() {
+                from("direct:start")
+                    .idempotentConsumer(header(ACTIVITY_STREAM_ID), new JournalIdempotentRepository(journal("route")))
+                    .to("mock:result");
+            }
+        };
+    }
+
+    private static Path journal(final String name) {
+        return directory.resolve(name + ".journal");
+    }
+}
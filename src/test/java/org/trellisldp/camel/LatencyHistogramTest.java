@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void testBuckets() {
+        for (long value = 0; value < 100_000; value++) {
+            final int index = LatencyHistogram.indexOf(value);
+            assertTrue(value <= LatencyHistogram.upperBound(index));
+            assertTrue(index == 0 || value > LatencyHistogram.upperBound(index - 1));
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.indexOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void testPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0L, histogram.getPercentile(50.0));
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value * 1000L);
+        }
+        histogram.record(-5L);
+        assertEquals(10_001L, histogram.getCount());
+        assertEquals(10_000_000L, histogram.getMax());
+        assertWithin(5_000_000L, histogram.getPercentile(50.0));
+        assertWithin(9_900_000L, histogram.getPercentile(99.0));
+        assertEquals(10_000_000L, histogram.getPercentile(100.0));
+        assertEquals(0L, histogram.getPercentile(0.0));
+        assertEquals(5_000_500.0 * 10_000 / 10_001, histogram.getMean(), 1.0);
+
+        histogram.reset();
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0L, histogram.getMax());
+        assertEquals(0.0, histogram.getMean());
+    }
+
+    @Test
+    void testConcurrentRecording() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 25_000; i++) {
+                    histogram.record(i);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(100_000L, histogram.getCount());
+        assertEquals(24_999L, histogram.getMax());
+    }
+
+    private static void assertWithin(final long expected, final long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 16, "Expected about " + expected + ": " + actual);
+    }
+}
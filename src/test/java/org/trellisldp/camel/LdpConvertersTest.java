@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.camel.EndpointInject;
+import org.apache.camel.NoTypeConversionAvailableException;
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.TypeConverter;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit5.CamelTestSupport;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class LdpConvertersTest extends CamelTestSupport {
+
+    private static final String PREFER = "return=representation; include=\"http://www.w3.org/ns/ldp#PreferMembership " +
+        "http://www.w3.org/ns/ldp#PreferContainment\"; handling=lenient; wait=4; respond-async";
+
+    private static final String LINKS = "<http://www.w3.org/ns/ldp#BasicContainer>; rel=\"type\", " +
+        "<http://example.org/resource?ext=acl>; rel=\"acl\"";
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint resultEndpoint;
+
+    @Produce(uri = "direct:start")
+    private ProducerTemplate template;
+
+    @Test
+    void testPreferConversion() throws Exception {
+        final TypeConverter converter = context.getTypeConverter();
+        final Prefer prefer = converter.convertTo(Prefer.class, PREFER);
+        assertEquals("representation", prefer.getPreference());
+        assertEquals(asList("http://www.w3.org/ns/ldp#PreferMembership",
+                    "http://www.w3.org/ns/ldp#PreferContainment"), prefer.getInclude());
+        assertSame(prefer, converter.mandatoryConvertTo(Prefer.class, PREFER));
+        assertEquals(PREFER, converter.convertTo(String.class, prefer));
+        assertEquals("return=minimal; omit=\"http://example.org/\\\"quoted\\\"\"; depth-noroot",
+                converter.convertTo(String.class, new Prefer("minimal", null,
+                        asList("http://example.org/\"quoted\""), singleton("depth-noroot"), null, null)));
+
+        assertNull(converter.convertTo(Prefer.class, "wait=blah"));
+        assertThrows(NoTypeConversionAvailableException.class, () ->
+                converter.mandatoryConvertTo(Prefer.class, "wait=blah"));
+    }
+
+    @Test
+    void testLinkConversion() {
+        final TypeConverter converter = context.getTypeConverter();
+        final Link link = converter.convertTo(Link.class, LINKS);
+        assertEquals("http://www.w3.org/ns/ldp#BasicContainer", link.getUri());
+        assertEquals("<http://www.w3.org/ns/ldp#BasicContainer>; rel=\"type\"",
+                converter.convertTo(String.class, link));
+
+        final Link[] links = converter.convertTo(Link[].class, LINKS);
+        assertEquals(2, links.length);
+        assertEquals("acl", links[1].getRel());
+        assertEquals(LINKS, converter.convertTo(String.class, links));
+
+        final List<Link> list = LdpConverters.toLinks(LINKS);
+        assertEquals(2, list.size());
+    }
+
+    @Test
+    void testHeaderConversionInRoute() throws InterruptedException {
+        template.sendBodyAndHeader("direct:start", null, "Prefer", PREFER);
+        resultEndpoint.expectedMessageCount(1);
+        resultEndpoint.assertIsSatisfied();
+        final Prefer prefer = resultEndpoint.getExchanges().get(0).getIn().getHeader("Prefer", Prefer.class);
+        assertEquals((Integer) 4, prefer.getWait());
+        assertEquals("lenient", resultEndpoint.getExchanges().get(0).getIn().getHeader("Handling"));
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws IOException {
+                from("direct:start")
+                    .process(exchange -> exchange.getIn().setHeader("Handling",
+                                exchange.getIn().getHeader("Prefer", Prefer.class).getHandling()))
+                    .to("mock:result");
+            }
+        };
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_OBJECT_ID;
+import static org.trellisldp.camel.LdpEnrichmentProcessor.LDP_LINKS;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.camel.CamelExecutionException;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit5.CamelTestSupport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class LdpEnrichmentProcessorTest extends CamelTestSupport {
+
+    private static final String TURTLE = "text/turtle";
+
+    private static final String CONTAINMENT = "http://www.w3.org/ns/ldp#PreferContainment";
+
+    private static final String BODY = "<> a <http://www.w3.org/ns/ldp#BasicContainer> .";
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint resultEndpoint;
+
+    @Produce(uri = "direct:start")
+    private ProducerTemplate template;
+
+    private final Map<String, String> requestHeaders = new ConcurrentHashMap<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+
+    private HttpServer server;
+    private LdpEnrichmentProcessor enricher;
+
+    @Test
+    void testEnrich() throws InterruptedException {
+        template.sendBodyAndHeader("direct:start", null, ACTIVITY_STREAM_OBJECT_ID, url("/resource"));
+
+        resultEndpoint.expectedMessageCount(1);
+        resultEndpoint.assertIsSatisfied();
+        final Exchange exchange = resultEndpoint.getExchanges().get(0);
+        assertEquals(BODY, exchange.getIn().getBody(String.class));
+        assertEquals(200, exchange.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE));
+        assertEquals(TURTLE, exchange.getIn().getHeader(Exchange.CONTENT_TYPE));
+
+        final List<?> links = exchange.getIn().getHeader(LDP_LINKS, List.class);
+        assertEquals(3, links.size());
+        assertEquals("type", ((Link) links.get(0)).getRel());
+        assertEquals("http://www.w3.org/ns/ldp#BasicContainer", ((Link) links.get(0)).getUri());
+        assertEquals("describedby", ((Link) links.get(2)).getRel());
+
+        assertEquals(TURTLE, requestHeaders.get("Accept"));
+        assertEquals("return=representation; include=\"" + CONTAINMENT + "\"", requestHeaders.get("Prefer"));
+    }
+
+    @Test
+    void testEventObjectId() throws Exception {
+        final Exchange exchange = context.getEndpoint("direct:start").createExchange();
+        exchange.getIn().setBody("{\"type\":\"Update\",\"object\":{\"id\":\"" + url("/event") + "\"}}");
+        final ActivityStreamProcessor processor = new ActivityStreamProcessor();
+        processor.setStreaming(true);
+        processor.setEvent(true);
+        processor.setHeaders(false);
+        processor.process(exchange);
+
+        enricher.processAsync(exchange).get(10, SECONDS);
+        assertNull(exchange.getException());
+        assertEquals(BODY, exchange.getMessage().getBody(String.class));
+    }
+
+    @Test
+    void testMissingObjectIdPassesThrough() throws InterruptedException {
+        template.sendBody("direct:start", "unchanged");
+
+        resultEndpoint.expectedBodiesReceived("unchanged");
+        resultEndpoint.assertIsSatisfied();
+        assertNull(resultEndpoint.getExchanges().get(0).getIn().getHeader(LDP_LINKS));
+    }
+
+    @Test
+    void testErrorStatus() {
+        assertThrows(CamelExecutionException.class, () ->
+                template.sendBodyAndHeader("direct:start", null, ACTIVITY_STREAM_OBJECT_ID, url("/missing")));
+        assertEquals(0, resultEndpoint.getReceivedCounter());
+    }
+
+    @Test
+    void testConcurrencyLimit() throws Exception {
+        enricher.stop();
+        enricher.setMaxConcurrency(2);
+        enricher.start();
+        gate = new CountDownLatch(1);
+
+        // The calling thread is not held while requests wait for a free place
+        final List<CompletableFuture<Exchange>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            final Exchange exchange = context.getEndpoint("direct:start").createExchange();
+            exchange.getIn().setHeader(ACTIVITY_STREAM_OBJECT_ID, url("/resource"));
+            futures.add(enricher.processAsync(exchange));
+        }
+
+        final long end = System.currentTimeMillis() + 10_000L;
+        while (active.get() < 2 && System.currentTimeMillis() < end) {
+            Thread.sleep(10L);
+        }
+        assertEquals(2, enricher.getInFlightCount());
+        assertEquals(4, enricher.getQueuedCount());
+        assertFalse(futures.get(5).isDone());
+
+        gate.countDown();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, SECONDS);
+        assertEquals(2, maxActive.get());
+        assertEquals(0, enricher.getInFlightCount());
+        assertEquals(0, enricher.getQueuedCount());
+        for (final CompletableFuture<Exchange> future : futures) {
+            assertEquals(BODY, future.get().getMessage().getBody(String.class));
+        }
+    }
+
+    @Test
+    void testCache() throws Exception {
+        final LdpResourceCache cache = new LdpResourceCache();
+        final ActivityStreamProcessor activityStream = new ActivityStreamProcessor();
+        activityStream.setCache(cache);
+        enricher.setCache(cache);
+
+        template.sendBodyAndHeader("direct:start", null, ACTIVITY_STREAM_OBJECT_ID, url("/resource"));
+        template.sendBodyAndHeader("direct:start", null, ACTIVITY_STREAM_OBJECT_ID, url("/resource"));
+        assertEquals(1, requests.get());
+        assertEquals(1L, cache.getHitCount());
+
+        final Exchange update = context.getEndpoint("direct:start").createExchange();
+        update.getIn().setBody(Map.of("type", "Update", "object", Map.of("id", url("/resource"))));
+        activityStream.process(update);
+        template.sendBodyAndHeader("direct:start", null, ACTIVITY_STREAM_OBJECT_ID, url("/resource"));
+        assertEquals(2, requests.get());
+
+        resultEndpoint.expectedMessageCount(3);
+        resultEndpoint.assertIsSatisfied();
+        for (final Exchange exchange : resultEndpoint.getExchanges()) {
+            assertEquals(BODY, exchange.getIn().getBody(String.class));
+            assertEquals(200, exchange.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE));
+            assertEquals(3, exchange.getIn().getHeader(LDP_LINKS, List.class).size());
+        }
+    }
+
+    @Test
+    void testLinks() {
+        assertEquals(3, LdpEnrichmentProcessor.links(List.of("<a>; rel=\"type\", <b>; rel=\"type\"",
+                        "<c>; rel=\"describedby\"")).size());
+        assertEquals(0, LdpEnrichmentProcessor.links(List.of()).size());
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private String url(final String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        final int current = active.incrementAndGet();
+        maxActive.accumulateAndGet(current, Math::max);
+        try {
+            gate.await();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        exchange.getRequestHeaders().forEach((name, values) -> requestHeaders.put(name, values.get(0)));
+        active.decrementAndGet();
+        if (exchange.getRequestURI().getPath().equals("/missing")) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        final byte[] body = BODY.getBytes(UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", TURTLE);
+        exchange.getResponseHeaders().add("Link", "<http://www.w3.org/ns/ldp#BasicContainer>; rel=\"type\", "
+                + "<http://www.w3.org/ns/ldp#Resource>; rel=\"type\"");
+        exchange.getResponseHeaders().add("Link", "<" + exchange.getRequestURI() + "?ext=acl>; rel=\"describedby\"");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        enricher = new LdpEnrichmentProcessor().prefer(Prefer.ofInclude(CONTAINMENT));
+        return new RouteBuilder() {
+            @Override
+            public void configure() {
+                from("direct:start").process(enricher).to("mock:result");
+            }
+        };
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class LdpResourceCacheTest {
+
+    private static final String ROOT = "http://localhost/";
+
+    private static final String CONTAINER = "http://localhost/container";
+
+    private static final String CHILD = "http://localhost/container/child";
+
+    private static final String LDP_CONTAINMENT = "http://www.w3.org/ns/ldp#PreferContainment";
+
+    private static final String CONTAINMENT = "return=representation; include=\"" + LDP_CONTAINMENT + "\"";
+
+    @Test
+    void testGetAndPut() {
+        final LdpResourceCache cache = new LdpResourceCache();
+        final LdpResourceCache.Representation representation = representation(10);
+        assertNull(cache.get(CHILD, (String) null));
+        cache.put(CHILD, null, representation);
+        assertSame(representation, cache.get(CHILD, (String) null));
+        assertSame(representation, cache.get(CHILD, (Prefer) null));
+        assertNull(cache.get(CHILD, CONTAINMENT));
+        assertEquals(1, cache.size());
+        assertEquals(2L, cache.getHitCount());
+        assertEquals(2L, cache.getMissCount());
+    }
+
+    @Test
+    void testCanonicalPrefer() {
+        final LdpResourceCache cache = new LdpResourceCache();
+        final LdpResourceCache.Representation representation = representation(10);
+        cache.put(CHILD, LdpResourceCache.canonical(Prefer.valueOf(CONTAINMENT)), representation);
+        assertSame(representation, cache.get(CHILD, Prefer.ofInclude(LDP_CONTAINMENT)));
+        assertNull(LdpResourceCache.canonical(null));
+    }
+
+    @Test
+    void testEvictLeastRecentlyUsedBySize() {
+        final LdpResourceCache cache = new LdpResourceCache(LdpResourceCache.DEFAULT_MAXIMUM_WEIGHT, 2);
+        cache.put(ROOT, null, representation(1));
+        cache.put(CONTAINER, null, representation(1));
+        assertNotNull(cache.get(ROOT, (String) null));
+        cache.put(CHILD, null, representation(1));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(ROOT, (String) null));
+        assertNull(cache.get(CONTAINER, (String) null));
+        assertNotNull(cache.get(CHILD, (String) null));
+        assertEquals(1L, cache.getEvictionCount());
+    }
+
+    @Test
+    void testEvictByWeight() {
+        final LdpResourceCache cache = new LdpResourceCache(3000L, 100);
+        cache.put(ROOT, null, representation(1000));
+        cache.put(CONTAINER, null, representation(1000));
+        assertTrue(cache.getWeight() > 2000L);
+        cache.put(CHILD, null, representation(1000));
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.getWeight() <= 3000L);
+        assertNull(cache.get(ROOT, (String) null));
+
+        assertFalse(cache.put(ROOT, null, representation(5000), cache.startFetch(ROOT)));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testInvalidateAllVariants() {
+        final LdpResourceCache cache = new LdpResourceCache();
+        cache.put(CHILD, null, representation(10));
+        cache.put(CHILD, CONTAINMENT, representation(10));
+        cache.put(CONTAINER, null, representation(10));
+        cache.invalidate(CHILD);
+
+        assertNull(cache.get(CHILD, (String) null));
+        assertNull(cache.get(CHILD, CONTAINMENT));
+        assertNotNull(cache.get(CONTAINER, (String) null));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testInvalidateUpdate() {
+        final LdpResourceCache cache = populated();
+        cache.invalidate("Update", CHILD);
+        assertNull(cache.get(CHILD, (String) null));
+        assertNotNull(cache.get(CONTAINER, (String) null));
+    }
+
+    @Test
+    void testInvalidateCreate() {
+        final LdpResourceCache cache = populated();
+        cache.invalidate(asList("Create", "http://www.w3.org/ns/prov#Activity"), CHILD);
+        assertNull(cache.get(CHILD, (String) null));
+        assertNull(cache.get(CONTAINER, (String) null));
+        assertNotNull(cache.get(ROOT, (String) null));
+    }
+
+    @Test
+    void testInvalidateDelete() {
+        final LdpResourceCache cache = populated();
+        cache.invalidate("https://www.w3.org/ns/activitystreams#Delete", CONTAINER + "/");
+        assertNotNull(cache.get(CHILD, (String) null));
+        assertNull(cache.get(CONTAINER + "/", (String) null));
+        assertNull(cache.get(ROOT, (String) null));
+    }
+
+    @Test
+    void testIgnoreOtherEvents() {
+        final LdpResourceCache cache = populated();
+        cache.invalidate("Announce", CHILD);
+        cache.invalidate(null, CHILD);
+        cache.invalidate("Update", null);
+        cache.invalidate(emptyList(), CHILD);
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    void testStalePutIsRejected() {
+        final LdpResourceCache cache = new LdpResourceCache();
+        final LdpResourceCache.Fetch child = cache.startFetch(CHILD);
+        final LdpResourceCache.Fetch container = cache.startFetch(CONTAINER);
+        cache.invalidate(CONTAINER);
+        for (int i = 0; i < 2000; i++) {
+            cache.invalidate(ROOT + i);
+        }
+        assertTrue(cache.put(CHILD, null, representation(10), child));
+        assertFalse(cache.put(CONTAINER, null, representation(10), container));
+
+        final LdpResourceCache.Fetch first = cache.startFetch(CHILD);
+        cache.invalidate(CHILD);
+        final LdpResourceCache.Fetch second = cache.startFetch(CHILD);
+        assertFalse(cache.put(CHILD, null, representation(10), first));
+        assertTrue(cache.put(CHILD, null, representation(10), second));
+    }
+
+    @Test
+    void testReleasedFetch() {
+        final LdpResourceCache cache = new LdpResourceCache();
+        final LdpResourceCache.Fetch fetch = cache.startFetch(CHILD);
+        cache.release(fetch);
+        cache.release(fetch);
+        cache.invalidate(CHILD);
+        assertTrue(cache.put(CHILD, null, representation(10), cache.startFetch(CHILD)));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testClear() {
+        final LdpResourceCache cache = populated();
+        final LdpResourceCache.Fetch fetch = cache.startFetch(CHILD);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0L, cache.getWeight());
+        assertFalse(cache.put(CHILD, null, representation(10), fetch));
+    }
+
+    @Test
+    void testParent() {
+        assertEquals(CONTAINER, LdpResourceCache.parent(CHILD));
+        assertEquals(CONTAINER, LdpResourceCache.parent(CHILD + "/"));
+        assertEquals("http://localhost", LdpResourceCache.parent(CONTAINER));
+        assertNull(LdpResourceCache.parent(ROOT));
+        assertNull(LdpResourceCache.parent("http://localhost"));
+        assertEquals("/a", LdpResourceCache.parent("/a/b"));
+    }
+
+    @Test
+    void testInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new LdpResourceCache(0L, 10));
+        assertThrows(IllegalArgumentException.class, () -> new LdpResourceCache(10L, 0));
+    }
+
+    private static LdpResourceCache populated() {
+        final LdpResourceCache cache = new LdpResourceCache();
+        cache.put(ROOT, null, representation(10));
+        cache.put(CONTAINER, null, representation(10));
+        cache.put(CONTAINER + "/", null, representation(10));
+        cache.put(CHILD, null, representation(10));
+        return cache;
+    }
+
+    private static LdpResourceCache.Representation representation(final int length) {
+        return new LdpResourceCache.Representation(new byte[length], "text/turtle", emptyList());
+    }
+}
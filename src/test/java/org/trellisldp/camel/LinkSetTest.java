@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.trellisldp.camel.StandardLinks.ACL;
+import static org.trellisldp.camel.StandardLinks.DESCRIBEDBY;
+import static org.trellisldp.camel.StandardLinks.LDP_BASIC_CONTAINER;
+import static org.trellisldp.camel.StandardLinks.LDP_CONTAINER;
+import static org.trellisldp.camel.StandardLinks.LDP_DIRECT_CONTAINER;
+import static org.trellisldp.camel.StandardLinks.LDP_NON_RDF_SOURCE;
+import static org.trellisldp.camel.StandardLinks.LDP_RDF_SOURCE;
+import static org.trellisldp.camel.StandardLinks.LDP_RESOURCE;
+import static org.trellisldp.camel.StandardLinks.MEMENTO_REL;
+import static org.trellisldp.camel.StandardLinks.TYPE;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class LinkSetTest {
+
+    private static final String CONTAINER = "<http://www.w3.org/ns/ldp#BasicContainer>; rel=\"type\", " +
+        "<http://www.w3.org/ns/ldp#Resource>; rel=\"type\", <http://localhost/c?ext=acl>; rel=\"acl\"";
+
+    private static final String MEMENTO = "<http://localhost/c?version=1>; rel=\"memento\"; " +
+        "datetime=\"Fri, 11 May 2018 15:29:25 GMT\", <http://mementoweb.org/ns#Memento>; rel=\"type\"";
+
+    @Test
+    void testContainer() {
+        final LinkSet links = LinkSet.parse(CONTAINER);
+        assertEquals(3, links.size());
+        assertTrue(links.isInteractionModel(LDP_BASIC_CONTAINER));
+        assertTrue(links.isInteractionModel(LDP_RESOURCE));
+        assertTrue(links.isInteractionModel(new String(LDP_BASIC_CONTAINER)));
+        assertFalse(links.isInteractionModel(LDP_DIRECT_CONTAINER));
+        assertFalse(links.isInteractionModel(LDP_CONTAINER));
+        assertTrue(links.isContainer());
+        assertFalse(links.isNonRDFSource());
+        assertFalse(links.isMemento());
+        assertSame(LDP_BASIC_CONTAINER, links.getInteractionModel());
+        assertEquals("http://localhost/c?ext=acl", links.getFirst(ACL).getUri());
+        assertNull(links.getFirst(DESCRIBEDBY));
+        assertFalse(links.hasRel(DESCRIBEDBY));
+        assertEquals(2, links.getByRel(TYPE).size());
+    }
+
+    @Test
+    void testNonRDFSource() {
+        final LinkSet links = LinkSet.parse("<http://www.w3.org/ns/ldp#NonRDFSource>; rel=\"type\"",
+                "<http://www.w3.org/ns/ldp#Resource>; rel=\"type\", <http://localhost/b?ext=description>; " +
+                "rel=\"describedby\"");
+        assertTrue(links.isNonRDFSource());
+        assertFalse(links.isContainer());
+        assertSame(LDP_NON_RDF_SOURCE, links.getInteractionModel());
+        assertEquals(1, links.getByRel(DESCRIBEDBY).size());
+        assertFalse(links.isInteractionModel(LDP_RDF_SOURCE));
+    }
+
+    @Test
+    void testMemento() {
+        final LinkSet links = LinkSet.parse(MEMENTO);
+        assertTrue(links.isMemento());
+        assertTrue(links.hasType("http://mementoweb.org/ns#Memento"));
+        assertTrue(links.isInteractionModel("http://mementoweb.org/ns#Memento"));
+        assertNull(links.getInteractionModel());
+        assertEquals("Fri, 11 May 2018 15:29:25 GMT", links.getFirst(MEMENTO_REL).getParams().get("datetime"));
+    }
+
+    @Test
+    void testMultipleRelations() {
+        final LinkSet links = LinkSet.parse("<http://localhost/a>; rel=\"first  memento\"");
+        assertSame(links.getFirst("first"), links.getFirst(MEMENTO_REL));
+        assertEquals(1, links.size());
+    }
+
+    @Test
+    void testOf() {
+        final LinkSet links = LinkSet.of(asList(StandardLinks.TYPE_DIRECT_CONTAINER, new Link("<http://a>"),
+                    new Link("rel=\"type\"")));
+        assertTrue(links.isContainer());
+        assertTrue(links.isInteractionModel(LDP_DIRECT_CONTAINER));
+        assertFalse(links.hasType("http://b"));
+        assertEquals(3, links.getLinks().size());
+        assertThrows(UnsupportedOperationException.class, () -> links.getLinks().clear());
+        assertThrows(UnsupportedOperationException.class, () -> links.getByRel(TYPE).clear());
+    }
+
+    @Test
+    void testEmpty() {
+        final LinkSet links = LinkSet.parse((String) null);
+        assertEquals(0, links.size());
+        assertFalse(links.iterator().hasNext());
+        assertNull(links.getInteractionModel());
+        assertTrue(links.getByRel(TYPE).isEmpty());
+    }
+}
@@ -17,6 +17,10 @@ package org.trellisldp.camel;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 import org.junit.platform.runner.JUnitPlatform;
@@ -93,4 +97,48 @@ class LinkTest {
         final Link link = new Link("<uri>; rel=one; rel=two; rel=three");
         assertEquals("one", link.getRel());
     }
+
+    @Test
+    void testParseAll() {
+        final List<Link> links = Link.parseAll("<http://www.w3.org/ns/ldp#Resource>; rel=\"type\", " +
+                "<http://www.w3.org/ns/ldp#BasicContainer>;rel=type , " +
+                "<http://example.org/resource?ext=acl,other>; rel=\"acl\"; title=\"a; b, c=d\"," +
+                "<http://example.org/timemap>; rel=\"timemap\"; type=\"application/link-format\"; " +
+                "from=\"Tue, 20 Jun 2017 00:00:00 GMT\"");
+        assertEquals(4, links.size());
+        assertEquals("http://www.w3.org/ns/ldp#Resource", links.get(0).getUri());
+        assertEquals("type", links.get(0).getRel());
+        assertEquals("http://www.w3.org/ns/ldp#BasicContainer", links.get(1).getUri());
+        assertEquals("type", links.get(1).getRel());
+        assertEquals("http://example.org/resource?ext=acl,other", links.get(2).getUri());
+        assertEquals("acl", links.get(2).getRel());
+        assertEquals("a; b, c=d", links.get(2).getTitle());
+        assertEquals("application/link-format", links.get(3).getType());
+        assertEquals("Tue, 20 Jun 2017 00:00:00 GMT", links.get(3).getParams().get("from"));
+        assertEquals(3, links.get(3).getParams().size());
+    }
+
+    @Test
+    void testParseAllEmpty() {
+        assertTrue(Link.parseAll(null).isEmpty());
+        assertTrue(Link.parseAll("").isEmpty());
+        assertTrue(Link.parseAll(" , ,").isEmpty());
+        assertEquals(1, Link.parseAll("<a>; rel=next,").size());
+    }
+
+    @Test
+    void testEscapedParam() {
+        final Link link = new Link("<uri>; title=\"say \\\"hello\\\"\"; foo=1; foo=2; bar");
+        assertEquals("say \"hello\"", link.getTitle());
+        assertEquals("1", link.getParams().get("foo"));
+        assertEquals(2, link.getParams().size());
+        assertThrows(UnsupportedOperationException.class, () -> link.getParams().put("rel", "next"));
+    }
+
+    @Test
+    void testFirstLinkOnly() {
+        final Link link = new Link("<first>; rel=\"next\", <second>; rel=\"prev\"");
+        assertEquals("first", link.getUri());
+        assertEquals("next", link.getRel());
+    }
 }
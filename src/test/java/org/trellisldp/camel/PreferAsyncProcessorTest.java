@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.trellisldp.camel.PreferAsyncProcessor.PREFERENCE_APPLIED;
+import static org.trellisldp.camel.PreferAsyncProcessor.PREFER_ASYNC_JOB_ID;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.support.DefaultExchange;
+import org.apache.camel.test.junit5.CamelTestSupport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class PreferAsyncProcessorTest extends CamelTestSupport {
+
+    private static final String MONITOR = "http://localhost/jobs/";
+
+    private static final String RESPOND_ASYNC = "respond-async";
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint resultEndpoint;
+
+    @Produce(uri = "direct:start")
+    private ProducerTemplate template;
+
+    private final PreferAsyncProcessor async = new PreferAsyncProcessor("direct:job", MONITOR);
+
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+
+    @Test
+    void testWithoutRespondAsync() throws InterruptedException {
+        template.sendBodyAndHeader("direct:start", "one", "Prefer", "return=representation; wait=5");
+
+        resultEndpoint.expectedMessageCount(1);
+        resultEndpoint.assertIsSatisfied();
+        final Message message = resultEndpoint.getExchanges().get(0).getMessage();
+        assertEquals("done one", message.getBody(String.class));
+        assertEquals(201, message.getHeader(Exchange.HTTP_RESPONSE_CODE));
+        assertEquals(0, async.getJobCount());
+    }
+
+    @Test
+    void testFinishedWithinWait() throws InterruptedException {
+        template.sendBodyAndHeader("direct:start", "two", "Prefer", "respond-async, wait=5");
+
+        resultEndpoint.expectedMessageCount(1);
+        resultEndpoint.assertIsSatisfied();
+        final Message message = resultEndpoint.getExchanges().get(0).getMessage();
+        assertEquals("done two", message.getBody(String.class));
+        assertEquals(201, message.getHeader(Exchange.HTTP_RESPONSE_CODE));
+        assertNull(message.getHeader(PREFERENCE_APPLIED));
+        assertEquals(0, async.getJobCount());
+    }
+
+    @Test
+    void testAccepted() throws InterruptedException {
+        gate = new CountDownLatch(1);
+        final long start = System.nanoTime();
+        template.sendBodyAndHeader("direct:start", "three", "Prefer", "respond-async, wait=1");
+
+        resultEndpoint.expectedMessageCount(1);
+        resultEndpoint.assertIsSatisfied();
+        assertTrue(System.nanoTime() - start >= 100_000_000L);
+        final Message message = resultEndpoint.getExchanges().get(0).getMessage();
+        assertEquals(202, message.getHeader(Exchange.HTTP_RESPONSE_CODE));
+        assertEquals(RESPOND_ASYNC, message.getHeader(PREFERENCE_APPLIED));
+        assertNull(message.getBody());
+        final String location = message.getHeader("Location", String.class);
+        assertTrue(location.startsWith(MONITOR));
+        final String id = location.substring(MONITOR.length());
+
+        assertEquals(202, status(async, id).getHeader(Exchange.HTTP_RESPONSE_CODE));
+        gate.countDown();
+        Message status = status(async, id);
+        final long deadline = System.currentTimeMillis() + 5000L;
+        while (Integer.valueOf(202).equals(status.getHeader(Exchange.HTTP_RESPONSE_CODE)) &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+            status = status(async, id);
+        }
+        assertEquals(201, status.getHeader(Exchange.HTTP_RESPONSE_CODE));
+        assertEquals("done three", status.getBody(String.class));
+        assertEquals(1, async.getJobCount());
+        assertEquals(404, status(async, "unknown").getHeader(Exchange.HTTP_RESPONSE_CODE));
+    }
+
+    @Test
+    void testRegistryFull() throws InterruptedException {
+        gate = new CountDownLatch(1);
+        template.sendBodyAndHeader("direct:start", "four", "Prefer", RESPOND_ASYNC);
+        template.sendBodyAndHeader("direct:start", "five", "Prefer", RESPOND_ASYNC);
+        template.sendBodyAndHeader("direct:start", "six", "Prefer", RESPOND_ASYNC);
+
+        resultEndpoint.expectedMessageCount(3);
+        resultEndpoint.assertIsSatisfied();
+        assertEquals(202, resultEndpoint.getExchanges().get(0).getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE));
+        assertEquals(202, resultEndpoint.getExchanges().get(1).getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE));
+        assertEquals(503, resultEndpoint.getExchanges().get(2).getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE));
+        assertEquals(2, async.getJobCount());
+    }
+
+    @Test
+    void testExpiry() throws Exception {
+        final PreferAsyncProcessor processor = new PreferAsyncProcessor("direct:job", MONITOR);
+        processor.setCamelContext(context);
+        processor.setMaximumJobs(1);
+        processor.setJobExpiry(50L);
+        processor.start();
+        try {
+            final Exchange first = exchange("seven");
+            processor.process(first);
+            final String id = first.getMessage().getHeader("Location", String.class).substring(MONITOR.length());
+            final long deadline = System.currentTimeMillis() + 5000L;
+            while (status(processor, id).getBody() == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+            assertEquals("done seven", status(processor, id).getBody(String.class));
+
+            Thread.sleep(100L);
+            final Exchange second = exchange("eight");
+            processor.process(second);
+            assertEquals(202, second.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE));
+            assertEquals(404, status(processor, id).getHeader(Exchange.HTTP_RESPONSE_CODE));
+        } finally {
+            processor.stop();
+        }
+    }
+
+    @Test
+    void testDetached() throws Exception {
+        final Exchange exchange = exchange(null);
+        exchange.getIn().setBody(new ByteArrayInputStream("ten".getBytes(UTF_8)));
+        exchange.getIn().setHeader("CamelHttpServletRequest", "request");
+        exchange.getIn().setHeader("CamelHttpServletResponse", "response");
+        exchange.getIn().setHeader("CamelHttpMethod", "POST");
+        async.process(exchange);
+
+        final String id = exchange.getMessage().getHeader("Location", String.class).substring(MONITOR.length());
+        final long deadline = System.currentTimeMillis() + 5000L;
+        while (status(async, id).getBody() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        final Message status = status(async, id);
+        assertEquals("done ten", status.getBody(String.class));
+        assertNull(status.getHeader("CamelHttpServletRequest"));
+        assertNull(status.getHeader("CamelHttpServletResponse"));
+        assertEquals("POST", status.getHeader("CamelHttpMethod"));
+    }
+
+    @Test
+    void testNotStarted() throws Exception {
+        final PreferAsyncProcessor processor = new PreferAsyncProcessor("direct:job", MONITOR);
+        final Exchange exchange = exchange("nine");
+        processor.process(exchange);
+        assertTrue(exchange.getException() instanceof IllegalStateException);
+        assertThrows(IllegalStateException.class, processor::start);
+        processor.setCamelContext(context);
+        processor.setMaximumJobs(0);
+        assertThrows(IllegalArgumentException.class, processor::start);
+    }
+
+    @AfterEach
+    void openGate() {
+        gate.countDown();
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() {
+        async.setMaximumJobs(2);
+        async.setMaximumWait(100L);
+        return new RouteBuilder() {
+            @Override
+            public void configure() {
+                from("direct:start").process(async).to("mock:result");
+                from("direct:job").process(exchange -> {
+                    gate.await();
+                    exchange.getMessage().setHeader(Exchange.HTTP_RESPONSE_CODE, 201);
+                    exchange.getMessage().setBody("done " + exchange.getIn().getBody(String.class));
+                });
+            }
+        };
+    }
+
+    private Exchange exchange(final String body) {
+        final Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setHeader("Prefer", Prefer.valueOf(RESPOND_ASYNC));
+        exchange.getIn().setBody(body);
+        return exchange;
+    }
+
+    private Message status(final PreferAsyncProcessor processor, final String id) {
+        final Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setHeader(PREFER_ASYNC_JOB_ID, id);
+        processor.status(exchange);
+        return exchange.getMessage();
+    }
+}
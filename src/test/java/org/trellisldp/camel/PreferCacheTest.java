@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class PreferCacheTest {
+
+    private static final String INCLUDE =
+        "return=representation; include=\"http://www.w3.org/ns/ldp#PreferContainment\"";
+
+    @Test
+    void testSharedInstances() {
+        final PreferCache cache = new PreferCache();
+        final Prefer prefer = cache.get(INCLUDE);
+        assertEquals("representation", prefer.getPreference());
+        assertSame(prefer, cache.get(INCLUDE));
+        assertSame(prefer, cache.get(INCLUDE));
+        assertEquals(2L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+        assertEquals(1, cache.size());
+        assertEquals(PreferCache.DEFAULT_MAXIMUM_SIZE, cache.getMaximumSize());
+    }
+
+    @Test
+    void testInvalidValues() {
+        final PreferCache cache = new PreferCache(4);
+        assertNull(cache.get(null));
+        assertNull(cache.get("wait=blah"));
+        assertNull(cache.get("wait=blah"));
+        assertEquals(0, cache.size());
+        assertEquals(2L, cache.getMissCount());
+    }
+
+    @Test
+    void testEviction() {
+        final PreferCache cache = new PreferCache(2);
+        final Prefer first = cache.get("return=minimal");
+        cache.get("return=representation");
+        cache.get("handling=strict");
+        assertEquals(2, cache.size());
+        assertNotSame(first, cache.get("return=minimal"));
+        assertEquals(2, cache.size());
+        assertEquals(4L, cache.getMissCount());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testConcurrentAccess() throws InterruptedException {
+        final PreferCache cache = new PreferCache(8);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 1000; i++) {
+            final int value = i % 16;
+            executor.submit(() -> cache.get("wait=" + value));
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        assertEquals(1000L, cache.getHitCount() + cache.getMissCount());
+        assertTrue(cache.size() <= 8, "Cache size stays within bounds");
+    }
+
+    @Test
+    void testInvalidSize() {
+        assertThrows(IllegalArgumentException.class, () -> new PreferCache(0));
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.trellisldp.camel.PreferFilterProcessor.LDP_PREFER_CONTAINMENT;
+import static org.trellisldp.camel.PreferFilterProcessor.LDP_PREFER_MEMBERSHIP;
+import static org.trellisldp.camel.PreferFilterProcessor.LDP_PREFER_MINIMAL_CONTAINER;
+import static org.trellisldp.camel.PreferFilterProcessor.TRELLIS_PREFER_ACCESS_CONTROL;
+import static org.trellisldp.camel.PreferFilterProcessor.TRELLIS_PREFER_AUDIT;
+import static org.trellisldp.camel.PreferFilterProcessor.TRELLIS_PREFER_SERVER_MANAGED;
+import static org.trellisldp.camel.PreferFilterProcessor.TRELLIS_PREFER_USER_MANAGED;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.support.DefaultExchange;
+import org.apache.camel.test.junit5.CamelTestSupport;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class PreferFilterProcessorTest extends CamelTestSupport {
+
+    private static final String SUBJECT = "<http://localhost/container/> ";
+
+    private static final String USER = quad("<http://purl.org/dc/terms/title> \"A <container> \\\" .\"@en",
+            TRELLIS_PREFER_USER_MANAGED);
+
+    private static final String SERVER = quad("<http://www.w3.org/1999/02/22-rdf-syntax-ns#type> " +
+            "<http://www.w3.org/ns/ldp#BasicContainer>", TRELLIS_PREFER_SERVER_MANAGED);
+
+    private static final String CONTAINS = quad("<http://www.w3.org/ns/ldp#contains> <http://localhost/container/a>",
+            LDP_PREFER_CONTAINMENT);
+
+    private static final String MEMBER = quad("<http://example.org/member> _:b0", LDP_PREFER_MEMBERSHIP);
+
+    private static final String AUDIT = quad("<http://www.w3.org/ns/prov#wasGeneratedBy> _:b1", TRELLIS_PREFER_AUDIT);
+
+    private static final String ACL = quad("<http://www.w3.org/ns/auth/acl#mode> " +
+            "\"Read\"^^<http://www.w3.org/2001/XMLSchema#string>", TRELLIS_PREFER_ACCESS_CONTROL);
+
+    private static final String OTHER = quad("<http://example.org/p> \"1\"", "http://example.org/graph");
+
+    private static final String TRIPLE = SUBJECT + "<http://example.org/p> \"2\" .\n";
+
+    private static final String NQUADS = "# comment\n" + USER + SERVER + CONTAINS + MEMBER + AUDIT + ACL + OTHER +
+        "\n" + TRIPLE;
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint resultEndpoint;
+
+    @Produce(uri = "direct:start")
+    private ProducerTemplate template;
+
+    @Test
+    void testDefaultPreferences() throws InterruptedException {
+        template.sendBody("direct:start", NQUADS);
+
+        resultEndpoint.expectedMessageCount(1);
+        resultEndpoint.assertIsSatisfied();
+        assertEquals("# comment\n" + USER + CONTAINS + MEMBER + OTHER + "\n" + TRIPLE,
+                resultEndpoint.getExchanges().get(0).getIn().getBody(String.class));
+    }
+
+    @Test
+    void testIncludeAndOmit() throws InterruptedException {
+        template.sendBodyAndHeader("direct:start", NQUADS, "Prefer", "return=representation; include=\"" +
+                TRELLIS_PREFER_AUDIT + " " + TRELLIS_PREFER_ACCESS_CONTROL + "\"; omit=\"" + LDP_PREFER_CONTAINMENT +
+                " http://example.org/graph\"");
+        template.sendBodyAndHeader("direct:start", NQUADS, "Prefer", Prefer.ofInclude(LDP_PREFER_MINIMAL_CONTAINER));
+
+        resultEndpoint.expectedMessageCount(2);
+        resultEndpoint.assertIsSatisfied();
+        assertEquals("# comment\n" + USER + MEMBER + AUDIT + ACL + "\n" + TRIPLE,
+                resultEndpoint.getExchanges().get(0).getIn().getBody(String.class));
+        assertEquals("# comment\n" + USER + OTHER + "\n" + TRIPLE,
+                resultEndpoint.getExchanges().get(1).getIn().getBody(String.class));
+    }
+
+    @Test
+    void testFixedPreferences() {
+        final PreferFilterProcessor processor = new PreferFilterProcessor(Prefer.ofOmit(TRELLIS_PREFER_USER_MANAGED));
+        final Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setHeader("Prefer", Prefer.ofInclude(TRELLIS_PREFER_AUDIT));
+        exchange.getIn().setBody(USER + AUDIT + "<http://localhost/a> <http://example.org/p> \"cut off\n" + TRIPLE);
+        processor.process(exchange);
+
+        assertEquals(TRIPLE, exchange.getIn().getBody(String.class));
+        assertEquals(1L, processor.getMalformedCount());
+    }
+
+    @Test
+    void testStreaming() throws IOException {
+        final int lines = 1_000_000;
+        final byte[] child = CONTAINS.getBytes(UTF_8);
+        final byte[] user = USER.getBytes(UTF_8);
+        final InputStream body = new InputStream() {
+            private int line;
+            private int position;
+
+            @Override
+            public int read() {
+                if (line >= lines) {
+                    return -1;
+                }
+                final byte[] current = line % 100 == 0 ? user : child;
+                final int value = current[position++];
+                if (position == current.length) {
+                    line++;
+                    position = 0;
+                }
+                return value;
+            }
+        };
+        final Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setHeader("Prefer", Prefer.ofOmit(LDP_PREFER_CONTAINMENT));
+        exchange.getIn().setBody(body);
+        new PreferFilterProcessor().process(exchange);
+
+        final byte[] bytes = new byte[4096];
+        long length = 0;
+        try (InputStream filtered = exchange.getIn().getBody(InputStream.class)) {
+            for (int count = filtered.read(bytes); count >= 0; count = filtered.read(bytes)) {
+                length += count;
+            }
+        }
+        assertEquals((long) user.length * lines / 100, length);
+    }
+
+    @Test
+    void testKeep() {
+        final byte[][] excluded = PreferFilterProcessor.excluded(null);
+        assertEquals(1, keep("", excluded));
+        assertEquals(1, keep("  # <a> <b> <c> <" + TRELLIS_PREFER_AUDIT + "> .\n", excluded));
+        assertEquals(0, keep(AUDIT, excluded));
+        assertEquals(0, keep(SUBJECT + "<p> \"x\\\"<" + TRELLIS_PREFER_AUDIT + ">\"<" + TRELLIS_PREFER_AUDIT + ">.",
+                    excluded));
+        assertEquals(1, keep(SUBJECT + "<p> \"<" + TRELLIS_PREFER_AUDIT + ">\" .", excluded));
+        assertEquals(1, keep("_:a <p> _:b _:g .\r\n", excluded));
+        assertEquals(-1, keep(SUBJECT + "<p> \"unterminated .", excluded));
+        assertEquals(-1, keep(SUBJECT + "<p> <o> <" + TRELLIS_PREFER_AUDIT, excluded));
+        assertEquals(-1, keep("<s> <p>", excluded));
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() {
+        return new RouteBuilder() {
+            @Override
+            public void configure() {
+                from("direct:start").process(new PreferFilterProcessor()).convertBodyTo(String.class)
+                    .to("mock:result");
+            }
+        };
+    }
+
+    private static int keep(final String line, final byte[][] excluded) {
+        final byte[] bytes = line.getBytes(UTF_8);
+        return PreferFilterProcessor.keep(bytes, bytes.length, excluded);
+    }
+
+    private static String quad(final String predicateObject, final String graph) {
+        return SUBJECT + predicateObject + " <" + graph + "> .\n";
+    }
+}
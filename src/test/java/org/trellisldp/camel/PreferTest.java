@@ -15,11 +15,19 @@
  */
 package org.trellisldp.camel;
 
+import static java.util.Arrays.asList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.junit.jupiter.api.Test;
 import org.junit.platform.runner.JUnitPlatform;
 import org.junit.runner.RunWith;
@@ -252,8 +260,120 @@ class PreferTest {
         assertFalse(prefer.getDepthNoroot());
     }
 
+    @Test
+    void testQuotedSeparators() {
+        final Prefer prefer = Prefer.valueOf("return=representation; include=\"http://example.org/a;b " +
+                "http://example.org/c,d\"; omit=\"http://example.org/\\\"e\\\"\"; depth-noroot");
+        assertEquals("representation", prefer.getPreference());
+        assertEquals(asList("http://example.org/a;b", "http://example.org/c,d"), prefer.getInclude());
+        assertEquals(asList("http://example.org/\"e\""), prefer.getOmit());
+        assertTrue(prefer.getDepthNoroot());
+        assertFalse(prefer.getRespondAsync());
+    }
+
+    @Test
+    void testCommaSeparatedPreferences() {
+        final Prefer prefer = Prefer.valueOf("respond-async, wait=100, handling=\"lenient\"");
+        assertTrue(prefer.getRespondAsync());
+        assertEquals((Integer) 100, prefer.getWait());
+        assertEquals("lenient", prefer.getHandling());
+        assertNull(prefer.getPreference());
+    }
+
+    @Test
+    void testMultipleIncludes() {
+        final Prefer prefer = Prefer.valueOf("return=representation; include=\"  http://example.org/a\t" +
+                "http://example.org/b  http://example.org/c \"; other=value; ;");
+        assertEquals(asList("http://example.org/a", "http://example.org/b", "http://example.org/c"),
+                prefer.getInclude());
+        assertTrue(prefer.getOmit().isEmpty());
+    }
+
+    @Test
+    void testLastValueWins() {
+        final Prefer prefer = Prefer.valueOf("wait=blah; wait=5; return=minimal; return=representation");
+        assertEquals((Integer) 5, prefer.getWait());
+        assertEquals("representation", prefer.getPreference());
+    }
+
+    @Test
+    void testImmutableValues() {
+        final List<String> include = new ArrayList<>(asList("http://example.org/a"));
+        final Set<String> params = new HashSet<>(asList("respond-async"));
+        final Prefer prefer = new Prefer(null, include, null, params, null, null);
+        include.add("http://example.org/b");
+        params.clear();
+        assertEquals(1L, prefer.getInclude().size());
+        assertTrue(prefer.getRespondAsync());
+        assertThrows(UnsupportedOperationException.class, () -> prefer.getInclude().add("http://example.org/c"));
+        assertThrows(UnsupportedOperationException.class, () -> prefer.getOmit().add("http://example.org/c"));
+    }
+
     @Test
     void testNullPrefer() {
         assertNull(Prefer.valueOf(null));
     }
+
+    @Test
+    void testBuilder() {
+        final Prefer prefer = Prefer.builder().preference(Prefer.PREFER_MINIMAL)
+            .include("http://example.org/a", "http://example.org/b").include("http://example.org/c")
+            .omit("http://example.org/d").handling(Prefer.PREFER_STRICT).waitFor(10).respondAsync().depthNoroot()
+            .build();
+        assertEquals("minimal", prefer.getPreference());
+        assertEquals(asList("http://example.org/a", "http://example.org/b", "http://example.org/c"),
+                prefer.getInclude());
+        assertEquals(asList("http://example.org/d"), prefer.getOmit());
+        assertEquals("strict", prefer.getHandling());
+        assertEquals((Integer) 10, prefer.getWait());
+        assertTrue(prefer.getRespondAsync());
+        assertTrue(prefer.getDepthNoroot());
+        assertThrows(UnsupportedOperationException.class, () -> prefer.getInclude().add("http://example.org/e"));
+    }
+
+    @Test
+    void testEmptyBuilder() {
+        final Prefer prefer = Prefer.builder().build();
+        assertNull(prefer.getPreference());
+        assertNull(prefer.getHandling());
+        assertNull(prefer.getWait());
+        assertTrue(prefer.getInclude().isEmpty());
+        assertFalse(prefer.getRespondAsync());
+        assertEquals("", prefer.toHeaderValue());
+    }
+
+    @Test
+    void testBuilderInvalidValues() {
+        final Prefer.Builder builder = Prefer.builder();
+        assertThrows(IllegalArgumentException.class, () -> builder.preference("other"));
+        assertThrows(IllegalArgumentException.class, () -> builder.handling(null));
+        assertThrows(IllegalArgumentException.class, () -> builder.include("http://example.org/a b"));
+        assertThrows(IllegalArgumentException.class, () -> builder.omit(""));
+    }
+
+    @Test
+    void testToHeaderValue() {
+        final Prefer prefer = Prefer.builder().preference(Prefer.PREFER_REPRESENTATION)
+            .include("http://example.org/a", "http://example.org/\"b\"").omit("http://example.org/c")
+            .handling(Prefer.PREFER_LENIENT).waitFor(5).respondAsync().depthNoroot().build();
+        final String value = "return=representation; include=\"http://example.org/a http://example.org/\\\"b\\\"\"; " +
+            "omit=\"http://example.org/c\"; handling=lenient; wait=5; respond-async; depth-noroot";
+        assertEquals(value, prefer.toHeaderValue());
+        assertSame(prefer.toHeaderValue(), prefer.toHeaderValue());
+
+        final Prefer parsed = Prefer.valueOf(value);
+        assertEquals(prefer.getInclude(), parsed.getInclude());
+        assertEquals(value, parsed.toHeaderValue());
+    }
+
+    @Test
+    void testStaticFactoriesMatchParsedValues() {
+        final Prefer include = Prefer.ofInclude("http://example.org/a", "http://example.org/b");
+        assertEquals("return=representation; include=\"http://example.org/a http://example.org/b\"",
+                include.toHeaderValue());
+        assertEquals(Prefer.valueOf(include.toHeaderValue()).getInclude(), include.getInclude());
+        assertEquals("return=representation; omit=\"http://example.org/a\"",
+                Prefer.ofOmit("http://example.org/a").toHeaderValue());
+        assertEquals("return=representation", Prefer.ofOmit().toHeaderValue());
+    }
 }
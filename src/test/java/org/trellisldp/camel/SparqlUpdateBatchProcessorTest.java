@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_OBJECT_ID;
+import static org.trellisldp.camel.ActivityStreamProcessor.ACTIVITY_STREAM_TYPE;
+import static org.trellisldp.camel.SparqlUpdateBatchProcessor.SPARQL_UPDATE;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.support.DefaultExchange;
+import org.apache.camel.test.junit5.CamelTestSupport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class SparqlUpdateBatchProcessorTest extends CamelTestSupport {
+
+    private static final String RESOURCE = "http://localhost/container/resource";
+
+    private static final String TRIPLE = "<urn:test:subject> <http://purl.org/dc/terms/title> \"%s\" .";
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint resultEndpoint;
+
+    @Produce(uri = "direct:start")
+    private ProducerTemplate template;
+
+    private final List<String> updates = new CopyOnWriteArrayList<>();
+    private final List<String> contentTypes = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+
+    private HttpServer server;
+
+    @Test
+    void testLastOperationWins() throws Exception {
+        template.sendBodyAndHeader("direct:start", String.format(TRIPLE, "first"), ACTIVITY_STREAM_OBJECT_ID,
+                RESOURCE + 1);
+        template.sendBodyAndHeader("direct:start", String.format(TRIPLE, "second"), ACTIVITY_STREAM_OBJECT_ID,
+                RESOURCE + 2);
+        template.sendBodyAndHeader("direct:start", String.format(TRIPLE, "third"), ACTIVITY_STREAM_OBJECT_ID,
+                RESOURCE + 2);
+        template.sendBodyAndHeaders("direct:start", null, Map.of(ACTIVITY_STREAM_OBJECT_ID, RESOURCE + 1,
+                    ACTIVITY_STREAM_TYPE, List.of("Delete")));
+        assertTrue(updates.isEmpty());
+        template.sendBodyAndHeader("direct:start", String.format(TRIPLE, "fourth"), ACTIVITY_STREAM_OBJECT_ID,
+                "http://localhost/other/resource");
+
+        resultEndpoint.expectedMessageCount(5);
+        resultEndpoint.assertIsSatisfied();
+        await(() -> updates.size() == 2);
+        assertEquals(SPARQL_UPDATE, contentTypes.get(0));
+        final String update = updates.get(0);
+        assertTrue(update.contains("VALUES ?g { <" + RESOURCE + "1> <" + RESOURCE + "2> }"));
+        assertFalse(update.contains("first"));
+        assertFalse(update.contains("second"));
+        assertTrue(update.contains("GRAPH <" + RESOURCE + "2> {\n" + String.format(TRIPLE, "third") + "\n  }"));
+        assertFalse(update.contains("GRAPH <" + RESOURCE + "1> {"));
+        assertFalse(update.contains("fourth"));
+        assertTrue(updates.get(1).contains("VALUES ?g { <http://localhost/other/resource> }"));
+        assertTrue(updates.get(1).contains("fourth"));
+    }
+
+    @Test
+    void testFullBatchInBackground() throws Exception {
+        gate = new CountDownLatch(1);
+        final SparqlUpdateBatchProcessor processor = processor("/slow");
+        processor.setMaximumSize(1);
+        processor.start();
+        try {
+            processor.process(exchange(RESOURCE, String.format(TRIPLE, "slow")));
+            await(() -> updates.size() == 1);
+            assertEquals(0L, processor.getBatchCount());
+            gate.countDown();
+            await(() -> processor.getBatchCount() == 1);
+            assertEquals(0, processor.getPendingCount());
+        } finally {
+            gate.countDown();
+            processor.stop();
+        }
+    }
+
+    @Test
+    void testMaximumAge() throws Exception {
+        final SparqlUpdateBatchProcessor processor = processor("/update");
+        processor.setMaximumAge(50L);
+        processor.start();
+        try {
+            processor.process(exchange(RESOURCE, String.format(TRIPLE, "aged")));
+            assertEquals(1, processor.getPendingCount());
+            final long deadline = System.currentTimeMillis() + 5000L;
+            while (processor.getBatchCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+            assertEquals(1L, processor.getBatchCount());
+            assertEquals(0, processor.getPendingCount());
+            assertTrue(updates.get(0).contains("aged"));
+        } finally {
+            processor.stop();
+        }
+    }
+
+    @Test
+    void testStopSendsPending() throws Exception {
+        final SparqlUpdateBatchProcessor processor = processor("/update");
+        processor.start();
+        processor.process(exchange(RESOURCE, null));
+        processor.process(exchange("not an iri", String.format(TRIPLE, "ignored")));
+        assertEquals(1, processor.getPendingCount());
+        processor.stop();
+
+        assertEquals(1, updates.size());
+        assertEquals("DELETE { GRAPH ?g { ?s ?p ?o } }\nWHERE { VALUES ?g { <" + RESOURCE + "> } " +
+                "GRAPH ?g { ?s ?p ?o } }\n", updates.get(0));
+        assertThrows(IllegalStateException.class, () -> processor.process(exchange(RESOURCE, null)));
+    }
+
+    @Test
+    void testFailure() throws Exception {
+        final SparqlUpdateBatchProcessor processor = processor("/error");
+        processor.setMaxAttempts(2);
+        processor.setInitialBackoff(60_000L);
+        processor.setMaximumBackoff(60_000L);
+        processor.start();
+        try {
+            processor.process(exchange(RESOURCE, String.format(TRIPLE, "failed")));
+            processor.flush();
+            assertEquals(1L, processor.getRetryCount());
+            assertEquals(0L, processor.getFailureCount());
+            assertEquals(1, processor.getPendingCount());
+            processor.flush();
+            assertEquals(1L, processor.getFailureCount());
+            assertEquals(0L, processor.getBatchCount());
+            assertEquals(0, processor.getPendingCount());
+        } finally {
+            processor.stop();
+        }
+    }
+
+    @Test
+    void testPermanentFailure() throws Exception {
+        final SparqlUpdateBatchProcessor processor = processor("/update");
+        processor.setInitialBackoff(60_000L);
+        processor.setMaximumBackoff(60_000L);
+        processor.start();
+        try {
+            processor.process(exchange(RESOURCE, "invalid"));
+            processor.process(exchange("http://localhost/other/resource", String.format(TRIPLE, "valid")));
+            processor.flush();
+            assertEquals(1L, processor.getFailureCount());
+            assertEquals(0L, processor.getRetryCount());
+            assertEquals(1L, processor.getBatchCount());
+            assertEquals(0, processor.getPendingCount());
+            assertEquals(2, updates.size());
+            assertTrue(updates.get(1).contains("valid"));
+        } finally {
+            processor.stop();
+        }
+    }
+
+    @Test
+    void testSkipsOtherSyntaxes() throws Exception {
+        final SparqlUpdateBatchProcessor processor = processor("/update");
+        processor.start();
+        try {
+            final Exchange turtle = exchange(RESOURCE + 1, "<> a <urn:test:Type> .");
+            turtle.getIn().setHeader(Exchange.CONTENT_TYPE, "text/turtle");
+            processor.process(turtle);
+            final Exchange ntriples = exchange(RESOURCE + 2, String.format(TRIPLE, "kept"));
+            ntriples.getIn().setHeader(Exchange.CONTENT_TYPE, "application/n-triples; charset=utf-8");
+            processor.process(ntriples);
+            assertEquals(1L, processor.getSkippedCount());
+            assertEquals(1, processor.getPendingCount());
+            processor.flush();
+            assertEquals(1, updates.size());
+            assertTrue(updates.get(0).contains("kept"));
+            assertFalse(updates.get(0).contains(RESOURCE + 1));
+        } finally {
+            processor.stop();
+        }
+    }
+
+    @Test
+    void testRetryKeepsNewerOperations() throws Exception {
+        failures.set(1);
+        final SparqlUpdateBatchProcessor processor = processor("/flaky");
+        processor.setInitialBackoff(60_000L);
+        processor.setMaximumBackoff(60_000L);
+        processor.start();
+        try {
+            processor.process(exchange(RESOURCE, String.format(TRIPLE, "older")));
+            processor.process(exchange("http://localhost/other/resource", String.format(TRIPLE, "unsent")));
+            processor.flush();
+            assertEquals(1L, processor.getRetryCount());
+            assertEquals(2, processor.getPendingCount());
+            processor.process(exchange(RESOURCE, String.format(TRIPLE, "newer")));
+            assertEquals(2, processor.getPendingCount());
+            processor.flush();
+            assertEquals(2L, processor.getBatchCount());
+            assertEquals(3, updates.size());
+            assertTrue(updates.get(1).contains("newer"));
+            assertFalse(updates.get(1).contains("older"));
+            assertTrue(updates.get(2).contains("unsent"));
+        } finally {
+            processor.stop();
+        }
+    }
+
+    @Test
+    void testBackoff() throws Exception {
+        failures.set(2);
+        final SparqlUpdateBatchProcessor processor = processor("/flaky");
+        processor.setMaximumAge(20L);
+        processor.setInitialBackoff(10L);
+        processor.start();
+        try {
+            processor.process(exchange(RESOURCE, String.format(TRIPLE, "retried")));
+            await(() -> processor.getBatchCount() == 1);
+            assertEquals(2L, processor.getRetryCount());
+            assertEquals(0L, processor.getFailureCount());
+            assertEquals(3, updates.size());
+            assertTrue(updates.get(2).contains("retried"));
+        } finally {
+            processor.stop();
+        }
+    }
+
+    @Test
+    void testUpdate() {
+        final Map<String, String> resources = new LinkedHashMap<>();
+        resources.put("http://localhost/a/1", null);
+        resources.put("http://localhost/a/2", "");
+        resources.put("http://localhost/a/3", "<http://localhost/a/3> <http://purl.org/dc/terms/title> \"three\" .\n");
+        resources.put("http://localhost/a/4", "<http://localhost/a/4> <http://purl.org/dc/terms/creator> _:b0 .");
+        assertEquals("DELETE { GRAPH ?g { ?s ?p ?o } }\n" +
+                "WHERE { VALUES ?g { <http://localhost/a/1> <http://localhost/a/2> <http://localhost/a/3> " +
+                "<http://localhost/a/4> } GRAPH ?g { ?s ?p ?o } };\n" +
+                "INSERT DATA {\n" +
+                "  GRAPH <http://localhost/a/3> {\n" +
+                "<http://localhost/a/3> <http://purl.org/dc/terms/title> \"three\" .\n" +
+                "  }\n" +
+                "  GRAPH <http://localhost/a/4> {\n" +
+                "<http://localhost/a/4> <http://purl.org/dc/terms/creator> _:g1_b0 .\n" +
+                "  }\n" +
+                "}\n", SparqlUpdateBatchProcessor.update(resources));
+    }
+
+    @Test
+    void testRelabel() {
+        assertEquals(TRIPLE, SparqlUpdateBatchProcessor.relabel(TRIPLE, 3));
+        final String literal = " <urn:p_:q> \"_:b3 \\\" _:b4\"@en .\n";
+        assertEquals("_:g3_b0 <urn:p> _:g3_b1 .\n# _:b2\n_:g3_x" + literal,
+                SparqlUpdateBatchProcessor.relabel("_:b0 <urn:p> _:b1 .\n# _:b2\n_:x" + literal, 3));
+    }
+
+    @Test
+    void testIsIri() {
+        assertTrue(SparqlUpdateBatchProcessor.isIri(RESOURCE));
+        assertFalse(SparqlUpdateBatchProcessor.isIri(""));
+        assertFalse(SparqlUpdateBatchProcessor.isIri("http://localhost/a b"));
+        assertFalse(SparqlUpdateBatchProcessor.isIri("http://localhost/a> } ; DROP ALL ; {"));
+    }
+
+    @Test
+    void testIsNTriples() {
+        assertTrue(SparqlUpdateBatchProcessor.isNTriples("application/n-triples"));
+        assertTrue(SparqlUpdateBatchProcessor.isNTriples("Application/N-Triples ; charset=UTF-8"));
+        assertFalse(SparqlUpdateBatchProcessor.isNTriples("text/turtle"));
+        assertFalse(SparqlUpdateBatchProcessor.isNTriples("application/n-triples-star"));
+    }
+
+    @Test
+    void testNotStarted() {
+        final SparqlUpdateBatchProcessor processor = new SparqlUpdateBatchProcessor(url("/update"));
+        assertThrows(IllegalStateException.class, () -> processor.process(exchange(RESOURCE, null)));
+        assertThrows(IllegalStateException.class, processor::start);
+        processor.setCamelContext(context);
+        processor.setMaximumSize(0);
+        assertThrows(IllegalArgumentException.class, processor::start);
+    }
+
+    @AfterEach
+    void stopServer() {
+        gate.countDown();
+        server.stop(0);
+    }
+
+    private SparqlUpdateBatchProcessor processor(final String path) {
+        final SparqlUpdateBatchProcessor processor = new SparqlUpdateBatchProcessor(url(path));
+        processor.setCamelContext(context);
+        return processor;
+    }
+
+    private Exchange exchange(final String iri, final String body) {
+        final Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setHeader(ACTIVITY_STREAM_OBJECT_ID, iri);
+        exchange.getIn().setHeader(ACTIVITY_STREAM_TYPE, List.of("Update"));
+        exchange.getIn().setBody(body);
+        return exchange;
+    }
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000L;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private String url(final String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        final String update;
+        try (InputStream in = exchange.getRequestBody()) {
+            update = new String(in.readAllBytes(), UTF_8);
+        }
+        updates.add(update);
+        contentTypes.add(exchange.getRequestHeaders().getFirst("Content-Type"));
+        final String path = exchange.getRequestURI().getPath();
+        if (path.equals("/slow")) {
+            try {
+                gate.await();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        final boolean failed = path.equals("/error") || path.equals("/flaky") && failures.getAndDecrement() > 0;
+        exchange.sendResponseHeaders(failed ? 500 : update.contains("invalid") ? 400 : 204, -1);
+        exchange.close();
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        final SparqlUpdateBatchProcessor processor = new SparqlUpdateBatchProcessor(url("/update"));
+        processor.setMaximumSize(3);
+        processor.setMaximumAge(60_000L);
+        return new RouteBuilder() {
+            @Override
+            public void configure() {
+                from("direct:start").process(processor).to("mock:result");
+            }
+        };
+    }
+}
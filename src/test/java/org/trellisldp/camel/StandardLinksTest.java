@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class StandardLinksTest {
+
+    @Test
+    void testParsedValuesAreInterned() {
+        final Link link = new Link("<http://www.w3.org/ns/ldp#DirectContainer>; rel=\"type\"");
+        assertSame(StandardLinks.LDP_DIRECT_CONTAINER, link.getUri());
+        assertSame(StandardLinks.TYPE, link.getRel());
+
+        final Link acl = new Link("<http://localhost/a?ext=acl>; rel=acl");
+        assertSame(StandardLinks.ACL, acl.getRel());
+        assertEquals("http://localhost/a?ext=acl", acl.getUri());
+
+        final Link inbox = new Link("<http://localhost/inbox>; rel=\"http://www.w3.org/ns/ldp#inbox\"");
+        assertSame(StandardLinks.LDP_INBOX, inbox.getRel());
+    }
+
+    @Test
+    void testEscapedValuesAreNotInterned() {
+        final Link link = new Link("<http://localhost/a>; rel=\"ty\\pe\"");
+        assertEquals("type", link.getRel());
+        assertNotSame(StandardLinks.TYPE, link.getRel());
+    }
+
+    @Test
+    void testTypeLinks() {
+        assertSame(StandardLinks.LDP_BASIC_CONTAINER, StandardLinks.TYPE_BASIC_CONTAINER.getUri());
+        assertSame(StandardLinks.TYPE, StandardLinks.TYPE_BASIC_CONTAINER.getRel());
+        assertEquals("<http://www.w3.org/ns/ldp#NonRDFSource>; rel=\"type\"",
+                LdpConverters.toString(StandardLinks.TYPE_NON_RDF_SOURCE));
+        assertSame(StandardLinks.MEMENTO_MEMENTO, StandardLinks.TYPE_MEMENTO.getUri());
+    }
+
+    @Test
+    void testModelBits() {
+        assertEquals(1, StandardLinks.modelBit(StandardLinks.LDP_RESOURCE));
+        assertEquals(1 << 6, StandardLinks.modelBit(new String(StandardLinks.LDP_INDIRECT_CONTAINER)));
+        assertEquals(0, StandardLinks.modelBit(StandardLinks.MEMENTO_MEMENTO));
+        assertEquals(0, StandardLinks.modelBit(null));
+    }
+}
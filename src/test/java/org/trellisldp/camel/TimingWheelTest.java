@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.camel;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author acoburn
+ */
+class TimingWheelTest {
+
+    @Test
+    void testExpiry() {
+        final TimingWheel<String> wheel = new TimingWheel<>(8, 10L, 1000L);
+        final List<String> expired = new ArrayList<>();
+        wheel.schedule("a", 1050L);
+        wheel.schedule("b", 1025L);
+        wheel.schedule("c", 1500L);
+        assertEquals(3, wheel.size());
+
+        assertEquals(0, wheel.advance(1020L, expired::add));
+        assertEquals(1, wheel.advance(1030L, expired::add));
+        assertEquals(asList("b"), expired);
+        assertEquals(1, wheel.advance(1055L, expired::add));
+        assertEquals(asList("b", "a"), expired);
+
+        // "c" shares a bucket with earlier ticks but is several revolutions away
+        assertEquals(0, wheel.advance(1400L, expired::add));
+        assertEquals(1, wheel.advance(1500L, expired::add));
+        assertEquals(asList("b", "a", "c"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testRescheduleAndCancel() {
+        final TimingWheel<String> wheel = new TimingWheel<>(4, 10L, 0L);
+        final List<String> expired = new ArrayList<>();
+        final TimingWheel.Timeout<String> a = wheel.schedule("a", 20L);
+        final TimingWheel.Timeout<String> b = wheel.schedule("b", 20L);
+        wheel.reschedule(a, 100L);
+        wheel.cancel(b);
+        wheel.cancel(b);
+        assertFalse(b.isScheduled());
+        assertEquals(1, wheel.size());
+
+        wheel.advance(50L, expired::add);
+        assertTrue(expired.isEmpty());
+        assertTrue(a.isScheduled());
+        wheel.advance(100L, expired::add);
+        assertEquals(asList("a"), expired);
+        assertFalse(a.isScheduled());
+    }
+
+    @Test
+    void testPastDeadlinesExpireOnNextAdvance() {
+        final TimingWheel<String> wheel = new TimingWheel<>(16, 10L, 0L);
+        final List<String> expired = new ArrayList<>();
+        wheel.advance(1000L, expired::add);
+        wheel.schedule("late", 10L);
+        wheel.advance(1000L, expired::add);
+        assertEquals(asList("late"), expired);
+    }
+
+    @Test
+    void testLargeGap() {
+        final TimingWheel<Integer> wheel = new TimingWheel<>(8, 1L, 0L);
+        final List<Integer> expired = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            wheel.schedule(i, i);
+        }
+        assertEquals(1000, wheel.advance(100_000L, expired::add));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<>(0, 10L, 0L));
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<>(8, 0L, 0L));
+    }
+}